@@ -0,0 +1,234 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan;
+
+import liquibase.configuration.AbstractConfigurationContainer;
+import liquibase.configuration.LiquibaseConfiguration;
+
+/**
+ * Runtime settings for the KIM refactorings. Each property can be set as a system property prefixed with
+ * <code>liquibase.kim.</code> (for example, <code>-Dliquibase.kim.useReferenceSnapshot=true</code>).
+ *
+ * @author Leo Przybylski
+ */
+public class KimConfiguration extends AbstractConfigurationContainer {
+
+    public static final String USE_REFERENCE_SNAPSHOT = "useReferenceSnapshot";
+    public static final String SNAPSHOT_FETCH_SIZE    = "snapshotFetchSize";
+    public static final String PRINCIPAL_CHUNK_SIZE   = "principalChunkSize";
+    public static final String USE_STREAMING_PARSER   = "useStreamingParser";
+    public static final String PARALLEL_CONNECTIONS   = "parallelConnections";
+    public static final String LOOKUP_CONNECTIONS     = "lookupConnections";
+    public static final String OBJECT_ID_STRATEGY     = "objectIdStrategy";
+    public static final String DUPLICATE_CHANGES      = "duplicateChanges";
+    public static final String EXPORT_FETCH_SIZE      = "exportFetchSize";
+    public static final String ROLE_CLOSURE_DEPTH     = "roleClosureDepth";
+    public static final String STATEMENT_CACHE_SIZE   = "statementCacheSize";
+    public static final String PIPELINE_DEPTH         = "pipelineDepth";
+    public static final String COMMIT_INTERVAL        = "commitInterval";
+
+    public KimConfiguration() {
+        super("liquibase.kim");
+
+        getContainer().addProperty(USE_REFERENCE_SNAPSHOT, Boolean.class)
+            .setDescription("Load the KIM reference tables into memory once and serve foreign key lookups from them")
+            .setDefaultValue(false);
+
+        getContainer().addProperty(SNAPSHOT_FETCH_SIZE, Integer.class)
+            .setDescription("JDBC fetch size used when streaming the KIM reference tables into the snapshot")
+            .setDefaultValue(500);
+
+        getContainer().addProperty(PRINCIPAL_CHUNK_SIZE, Integer.class)
+            .setDescription("Number of principal names resolved per KRIM_PRNCPL_T query")
+            .setDefaultValue(100);
+
+        getContainer().addProperty(USE_STREAMING_PARSER, Boolean.class)
+            .setDescription("Parse XML changelogs with the StAX based KimChangeLogParser instead of the Liquibase SAX parser")
+            .setDefaultValue(false);
+
+        getContainer().addProperty(PARALLEL_CONNECTIONS, Integer.class)
+            .setDescription("Size of the connection pool ParallelChangeLogExecutor applies independent changesets over")
+            .setDefaultValue(4);
+
+        getContainer().addProperty(LOOKUP_CONNECTIONS, Integer.class)
+            .setDescription("Number of connections the nested changes of a KIM change are resolved over concurrently")
+            .setDefaultValue(4);
+
+        getContainer().addProperty(OBJECT_ID_STRATEGY, String.class)
+            .setDescription("How OBJ_ID values are generated: random, timeOrdered, database or an ObjectIdStrategy class name")
+            .setDefaultValue("random");
+
+        getContainer().addProperty(DUPLICATE_CHANGES, String.class)
+            .setDescription("What to do with KIM rows defined more than once in a changelog: ignore, warn, collapse or fail")
+            .setDefaultValue("warn");
+
+        getContainer().addProperty(EXPORT_FETCH_SIZE, Integer.class)
+            .setDescription("JDBC fetch size of the KimExporter table readers")
+            .setDefaultValue(1000);
+
+        getContainer().addProperty(ROLE_CLOSURE_DEPTH, Integer.class)
+            .setDescription("Deepest role nesting KRIM_ROLE_MBR_CLOSURE_T is expanded to")
+            .setDefaultValue(16);
+
+        getContainer().addProperty(STATEMENT_CACHE_SIZE, Integer.class)
+            .setDescription("Prepared statements kept open per connection for KIM lookups and inserts; 0 disables the cache")
+            .setDefaultValue(100);
+
+        getContainer().addProperty(PIPELINE_DEPTH, Integer.class)
+            .setDescription("Changesets prepared ahead of the one executing when changesets are applied serially; 0 disables the pipeline")
+            .setDefaultValue(0);
+
+        getContainer().addProperty(COMMIT_INTERVAL, Integer.class)
+            .setDescription("KIM changesets ParallelChangeLogExecutor commits together in one transaction; 1 commits each changeset on its own")
+            .setDefaultValue(1);
+    }
+
+    /**
+     * Convenience lookup of the registered {@link KimConfiguration}
+     *
+     * @return the {@link KimConfiguration} held by {@link LiquibaseConfiguration}
+     */
+    public static KimConfiguration getInstance() {
+        return LiquibaseConfiguration.getInstance().getConfiguration(KimConfiguration.class);
+    }
+
+    public boolean getUseReferenceSnapshot() {
+        return getContainer().getValue(USE_REFERENCE_SNAPSHOT, Boolean.class);
+    }
+
+    public KimConfiguration setUseReferenceSnapshot(final boolean useReferenceSnapshot) {
+        getContainer().setValue(USE_REFERENCE_SNAPSHOT, useReferenceSnapshot);
+        return this;
+    }
+
+    public int getSnapshotFetchSize() {
+        return getContainer().getValue(SNAPSHOT_FETCH_SIZE, Integer.class);
+    }
+
+    public KimConfiguration setSnapshotFetchSize(final int snapshotFetchSize) {
+        getContainer().setValue(SNAPSHOT_FETCH_SIZE, snapshotFetchSize);
+        return this;
+    }
+
+    public int getPrincipalChunkSize() {
+        return getContainer().getValue(PRINCIPAL_CHUNK_SIZE, Integer.class);
+    }
+
+    public KimConfiguration setPrincipalChunkSize(final int principalChunkSize) {
+        getContainer().setValue(PRINCIPAL_CHUNK_SIZE, principalChunkSize);
+        return this;
+    }
+
+    public boolean getUseStreamingParser() {
+        return getContainer().getValue(USE_STREAMING_PARSER, Boolean.class);
+    }
+
+    public KimConfiguration setUseStreamingParser(final boolean useStreamingParser) {
+        getContainer().setValue(USE_STREAMING_PARSER, useStreamingParser);
+        return this;
+    }
+
+    public int getParallelConnections() {
+        return getContainer().getValue(PARALLEL_CONNECTIONS, Integer.class);
+    }
+
+    public KimConfiguration setParallelConnections(final int parallelConnections) {
+        getContainer().setValue(PARALLEL_CONNECTIONS, parallelConnections);
+        return this;
+    }
+
+    public int getLookupConnections() {
+        return getContainer().getValue(LOOKUP_CONNECTIONS, Integer.class);
+    }
+
+    public KimConfiguration setLookupConnections(final int lookupConnections) {
+        getContainer().setValue(LOOKUP_CONNECTIONS, lookupConnections);
+        return this;
+    }
+
+    public String getObjectIdStrategy() {
+        return getContainer().getValue(OBJECT_ID_STRATEGY, String.class);
+    }
+
+    public KimConfiguration setObjectIdStrategy(final String objectIdStrategy) {
+        getContainer().setValue(OBJECT_ID_STRATEGY, objectIdStrategy);
+        return this;
+    }
+
+    public String getDuplicateChanges() {
+        return getContainer().getValue(DUPLICATE_CHANGES, String.class);
+    }
+
+    public KimConfiguration setDuplicateChanges(final String duplicateChanges) {
+        getContainer().setValue(DUPLICATE_CHANGES, duplicateChanges);
+        return this;
+    }
+
+    public int getExportFetchSize() {
+        return getContainer().getValue(EXPORT_FETCH_SIZE, Integer.class);
+    }
+
+    public KimConfiguration setExportFetchSize(final int exportFetchSize) {
+        getContainer().setValue(EXPORT_FETCH_SIZE, exportFetchSize);
+        return this;
+    }
+
+    public int getRoleClosureDepth() {
+        return getContainer().getValue(ROLE_CLOSURE_DEPTH, Integer.class);
+    }
+
+    public KimConfiguration setRoleClosureDepth(final int roleClosureDepth) {
+        getContainer().setValue(ROLE_CLOSURE_DEPTH, roleClosureDepth);
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return getContainer().getValue(STATEMENT_CACHE_SIZE, Integer.class);
+    }
+
+    public KimConfiguration setStatementCacheSize(final int statementCacheSize) {
+        getContainer().setValue(STATEMENT_CACHE_SIZE, statementCacheSize);
+        return this;
+    }
+
+    public int getPipelineDepth() {
+        return getContainer().getValue(PIPELINE_DEPTH, Integer.class);
+    }
+
+    public KimConfiguration setPipelineDepth(final int pipelineDepth) {
+        getContainer().setValue(PIPELINE_DEPTH, pipelineDepth);
+        return this;
+    }
+
+    public int getCommitInterval() {
+        return getContainer().getValue(COMMIT_INTERVAL, Integer.class);
+    }
+
+    public KimConfiguration setCommitInterval(final int commitInterval) {
+        getContainer().setValue(COMMIT_INTERVAL, commitInterval);
+        return this;
+    }
+}
@@ -24,8 +24,13 @@ import liquibase.exception.UnexpectedLiquibaseException;
 import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -49,9 +54,8 @@ public class AddPermissionAttribute extends KimAbstractChange {
 
     protected String name;
     protected String value;
-    protected String namespace;
+    protected NamespacedName permissionKey = NamespacedName.valueOf(null, null);
     protected String attributeDef;
-    protected String permission;
     protected String type;
     protected String active = "Y";
     protected String permissionId;
@@ -67,6 +71,9 @@ public class AddPermissionAttribute extends KimAbstractChange {
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         final InsertStatement insertAttribute = new InsertStatement("", database.getDefaultSchemaName(), "krim_perm_attr_data_t");
         final String attrName = getAttributeDef() != null ? getAttributeDef() : getName();
         try {
@@ -84,7 +91,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
             insertAttribute.addColumnValue("kim_attr_defn_id", definitionId);
             insertAttribute.addColumnValue("attr_val", getValue());
             insertAttribute.addColumnValue("ver_nbr", 1);
-            insertAttribute.addColumnValue("obj_id", UUID.randomUUID().toString());
+            insertAttribute.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
             return new SqlStatement[] {
                 insertAttribute
@@ -133,7 +140,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      * @param attributeDef value to set
      */
     public void setAttributeDef(final String attributeDef) {
-        this.attributeDef = attributeDef;
+        this.attributeDef = StringPool.getInstance().intern(attributeDef);
     }
 
 
@@ -172,7 +179,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      */
     @DatabaseChangeProperty
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -181,7 +188,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      * @return namespace value
      */
     public String getNamespace() {
-        return this.namespace;
+        return permissionKey.getNamespace();
     }
 
     /**
@@ -191,7 +198,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      */
     @DatabaseChangeProperty
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.permissionKey = permissionKey.withNamespace(namespace);
     }
 
     /**
@@ -200,7 +207,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      * @return permission value
      */
     public String getPermission() {
-        return this.permission;
+        return permissionKey.getName();
     }
 
     /**
@@ -210,7 +217,7 @@ public class AddPermissionAttribute extends KimAbstractChange {
      */
     @DatabaseChangeProperty
     public void setPermission(final String permission) {
-        this.permission = permission;
+        this.permissionKey = permissionKey.withName(permission);
     }
 
     /**
@@ -255,4 +262,45 @@ public class AddPermissionAttribute extends KimAbstractChange {
         this.permissionId = permissionId;
     }
 
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("attributeDef".equals(name)) {
+            setAttributeDef(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("permission".equals(name)) {
+            setPermission(value);
+        }
+        else if ("value".equals(name)) {
+            setValue(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.permission(getNamespace(), getPermission()));
+        reads.add(KimKey.type(type));
+        reads.add(KimKey.attributeDefinition(attributeDef != null ? attributeDef : name));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.permissionAttribute(getNamespace(), getPermission(), attributeDef != null ? attributeDef : name);
+    }
 }
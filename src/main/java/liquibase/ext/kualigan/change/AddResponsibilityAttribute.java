@@ -16,7 +16,7 @@
 package liquibase.ext.kualigan.change;
 
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import liquibase.change.Change;
 import liquibase.change.DatabaseChange;
@@ -30,6 +30,10 @@ import liquibase.statement.core.InsertStatement;
 
 import liquibase.change.core.DeleteDataChange;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
 /**
@@ -64,6 +68,9 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+	if (isDuplicate()) {
+	    return new SqlStatement[0];
+	}
 	final InsertStatement insertAttribute = new InsertStatement("", database.getDefaultSchemaName(), "krim_rsp_attr_data_t");
 
 	final BigInteger attributeId = getPrimaryKey(database);
@@ -79,7 +86,7 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
 	insertAttribute.addColumnValue("kim_attr_defn_id", attributeDefintionId);
 	insertAttribute.addColumnValue("attr_val", getValue());
 	insertAttribute.addColumnValue("ver_nbr", 1);
-	insertAttribute.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertAttribute.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	return new SqlStatement[]{
 	    insertAttribute
@@ -116,7 +123,7 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -134,7 +141,7 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
      * @param responsibility value to set
      */
     public void setResponsibility(final String responsibility) {
-        this.responsibility = responsibility;
+        this.responsibility = StringPool.getInstance().intern(responsibility);
     }
 
     /**
@@ -152,7 +159,7 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
      * @param attributeDef value to set
      */
     public void setAttributeDef(final String attributeDef) {
-        this.attributeDef = attributeDef;
+        this.attributeDef = StringPool.getInstance().intern(attributeDef);
     }
 
     /**
@@ -188,7 +195,7 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -212,4 +219,43 @@ public class AddResponsibilityAttribute extends KimAbstractChange implements Cus
     public void setResponsibilityId(String responsibilityId) {
 	this.responsibilityId = responsibilityId;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("responsibility".equals(name)) {
+            setResponsibility(value);
+        }
+        else if ("attributeDef".equals(name)) {
+            setAttributeDef(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("value".equals(name)) {
+            setValue(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.responsibility(responsibility));
+        reads.add(KimKey.type(type));
+        reads.add(KimKey.attributeDefinition(attributeDef));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.responsibilityAttribute(responsibility, attributeDef);
+    }
 }
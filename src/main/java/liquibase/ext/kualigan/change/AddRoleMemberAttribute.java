@@ -25,8 +25,13 @@ import liquibase.exception.CustomChangeException;
 import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -50,8 +55,7 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
 
     protected String type;
     protected String attributeDef;
-    protected String roleName;
-    protected String roleNamespace;
+    protected NamespacedName roleKey = NamespacedName.valueOf(null, null);
     protected String member;
     protected String value;
     protected String unique;
@@ -68,6 +72,9 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         final InsertStatement insertAttribute = new InsertStatement("", database.getDefaultSchemaName(), "krim_role_mbr_attr_data_t");
         try {
             final BigInteger attributeId = getPrimaryKey(database);
@@ -85,7 +92,7 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
             insertAttribute.addColumnValue("kim_attr_defn_id", definitionId);
             insertAttribute.addColumnValue("attr_val", getValue());
             insertAttribute.addColumnValue("ver_nbr", 1);
-            insertAttribute.addColumnValue("obj_id", UUID.randomUUID().toString());
+            insertAttribute.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
         }
         catch (Exception e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to generate sql statements for 'Role Member Attribute' (role: %s, mbr: %s, val: %s)'",getRoleName(),
@@ -124,7 +131,7 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
     }
 
     public void setType(String type) {
-	this.type = type;
+	this.type = StringPool.getInstance().intern(type);
     }
 
     public String getAttributeDef() {
@@ -132,23 +139,23 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
     }
 
     public void setAttributeDef(String attributeDef) {
-	this.attributeDef = attributeDef;
+	this.attributeDef = StringPool.getInstance().intern(attributeDef);
     }
 
     public String getRoleName() {
-	return roleName;
+	return roleKey.getName();
     }
 
     public void setRoleName(String roleName) {
-	this.roleName = roleName;
+	this.roleKey = roleKey.withName(roleName);
     }
 
     public String getRoleNamespace() {
-	return roleNamespace;
+	return roleKey.getNamespace();
     }
 
     public void setRoleNamespace(String roleNamespace) {
-	this.roleNamespace = roleNamespace;
+	this.roleKey = roleKey.withNamespace(roleNamespace);
     }
 
     public String getMember() {
@@ -178,4 +185,47 @@ public class AddRoleMemberAttribute extends KimAbstractChange {
     public void setRoleMemberId(String roleMemberId) {
 	this.roleMemberId = roleMemberId;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("attributeDef".equals(name)) {
+            setAttributeDef(value);
+        }
+        else if ("roleName".equals(name)) {
+            setRoleName(value);
+        }
+        else if ("roleNamespace".equals(name)) {
+            setRoleNamespace(value);
+        }
+        else if ("member".equals(name)) {
+            setMember(value);
+        }
+        else if ("value".equals(name)) {
+            setValue(value);
+        }
+        else if ("unique".equals(name)) {
+            setUnique(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.type(type));
+        reads.add(KimKey.attributeDefinition(attributeDef));
+        reads.add(KimKey.role(getRoleNamespace(), getRoleName()));
+        reads.add(KimKey.roleMember(getRoleNamespace(), getRoleName(), member));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.roleMemberAttribute(getRoleNamespace(), getRoleName(), member, attributeDef, value);
+    }
 }
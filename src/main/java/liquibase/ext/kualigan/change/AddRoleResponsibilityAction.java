@@ -25,8 +25,12 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 import org.apache.commons.lang.StringUtils;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -64,6 +68,9 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+	if (isDuplicate()) {
+	    return new SqlStatement[0];
+	}
 	final InsertStatement insertAction = new InsertStatement(null, database.getDefaultSchemaName(), "krim_role_rsp_actn_t");
 	final BigInteger id = getPrimaryKey(database);
 	final String roleRespId = resolveRoleResponsibility(database);
@@ -79,7 +86,7 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
 	insertAction.addColumnValue("priority_nbr", getPriority());
 	insertAction.addColumnValue("role_mbr_id", roleMemberId);
 	insertAction.addColumnValue("ver_nbr", 1);
-	insertAction.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertAction.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	return new SqlStatement[]{
 	    insertAction
@@ -150,7 +157,7 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
      * @param actionPolicyCode value to set
      */
     public void setActionPolicyCode(final String actionPolicyCode) {
-        this.actionPolicyCode = actionPolicyCode;
+        this.actionPolicyCode = StringPool.getInstance().intern(actionPolicyCode);
     }
 
     /**
@@ -186,7 +193,7 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
      * @param roleNamespace value to set
      */
     public void setRoleNamespace(final String roleNamespace) {
-        this.roleNamespace = roleNamespace;
+        this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
     }
 
     /**
@@ -204,7 +211,7 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
      * @param roleName value to set
      */
     public void setRoleName(final String roleName) {
-        this.roleName = roleName;
+        this.roleName = StringPool.getInstance().intern(roleName);
     }
 
     /**
@@ -222,7 +229,7 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
      * @param actionTypeCode value to set
      */
     public void setActionTypeCode(final String actionTypeCode) {
-        this.actionTypeCode = actionTypeCode;
+        this.actionTypeCode = StringPool.getInstance().intern(actionTypeCode);
     }
 
     public String getMember() {
@@ -255,4 +262,50 @@ public class AddRoleResponsibilityAction extends KimAbstractChange implements Cu
 	final String roleId = getRoleForeignKey(database, roleName, roleNamespace);
 	return getRoleResponsibilityForeignKey(database, roleId, responsibilityId);
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("responsibilityName".equals(name)) {
+            setResponsibilityName(value);
+        }
+        else if ("priority".equals(name)) {
+            setPriority(value);
+        }
+        else if ("actionPolicyCode".equals(name)) {
+            setActionPolicyCode(value);
+        }
+        else if ("force".equals(name)) {
+            setForce(value);
+        }
+        else if ("roleNamespace".equals(name)) {
+            setRoleNamespace(value);
+        }
+        else if ("roleName".equals(name)) {
+            setRoleName(value);
+        }
+        else if ("actionTypeCode".equals(name)) {
+            setActionTypeCode(value);
+        }
+        else if ("member".equals(name)) {
+            setMember(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.role(roleNamespace, roleName));
+        reads.add(KimKey.responsibility(responsibilityName));
+        reads.add(KimKey.roleMember(roleNamespace, roleName, member));
+        reads.add(KimKey.roleResponsibility(roleNamespace, roleName, responsibilityName));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.roleResponsibilityAction(roleNamespace, roleName, responsibilityName, member);
+    }
 }
@@ -0,0 +1,260 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.statement.SqlStatement;
+
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.statement.AddRoleResponsibilityActionsStatement;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase Refactoring for adding the same action to a role/responsibility assignment for every member of the
+ * role in KIM, or for the members of one type or with one qualifier value. All actions are added by one statement
+ * however many members the role has. Members that already have an action for the responsibility keep it unless
+ * {@code replace} is set.
+ * <p>
+ * Rolling back deletes the unedited actions of the selected members that hold exactly the values this change adds.
+ * An identical action a member had before cannot be told apart from one this change added and is deleted as well. A
+ * change with {@code replace} set cannot be rolled back, since the actions it replaced are gone.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="addRoleResponsibilityActions", description = "Adds an Action to a Role/Responsibility assignment for every member of the Role", priority = EXTENSION_PRIORITY)
+public class AddRoleResponsibilityActions extends KimAbstractChange {
+
+    private String roleNamespace;
+    private String roleName;
+    private String responsibilityNamespace;
+    private String responsibilityName;
+    private String actionTypeCode;
+    private String actionPolicyCode;
+    private String priority;
+    private String force;
+    private String memberType;
+    private String attributeDef;
+    private String attributeValue;
+    private String replace;
+
+    public AddRoleResponsibilityActions() {
+        super("roleResponsibilityActions", "Adding an action to every member of a role with a responsibility to KIM", EXTENSION_PRIORITY);
+    }
+
+    @Override
+    protected String getSequenceName() {
+        return "krim_role_rsp_actn_id_s";
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        return new SqlStatement[] {
+            toStatement(false)
+        };
+    }
+
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        if (isReplace()) {
+            throw new RollbackImpossibleException("addRoleResponsibilityActions with replace=\"true\" deletes actions it cannot restore");
+        }
+        return new SqlStatement[] {
+            toStatement(true)
+        };
+    }
+
+    protected AddRoleResponsibilityActionsStatement toStatement(final boolean remove) {
+        final AddRoleResponsibilityActionsStatement retval = new AddRoleResponsibilityActionsStatement();
+        retval.setRoleNamespace(getRoleNamespace());
+        retval.setRole(getRoleName());
+        retval.setResponsibilityNamespace(getResponsibilityNamespace());
+        retval.setResponsibility(getResponsibilityName());
+        retval.setActionTypeCode(getActionTypeCode());
+        retval.setActionPolicyCode(getActionPolicyCode());
+        retval.setPriority(getPriority());
+        retval.setForce(getForce());
+        retval.setMemberType(getMemberType());
+        retval.setAttributeDef(getAttributeDef());
+        retval.setAttributeValue(getAttributeValue());
+        retval.setReplace(isReplace());
+        retval.setRemove(remove);
+        return retval;
+    }
+
+    public String getRoleNamespace() {
+        return roleNamespace;
+    }
+
+    public void setRoleNamespace(final String roleNamespace) {
+        this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
+    }
+
+    public String getRoleName() {
+        return roleName;
+    }
+
+    public void setRoleName(final String roleName) {
+        this.roleName = StringPool.getInstance().intern(roleName);
+    }
+
+    public String getResponsibilityNamespace() {
+        return responsibilityNamespace;
+    }
+
+    public void setResponsibilityNamespace(final String responsibilityNamespace) {
+        this.responsibilityNamespace = StringPool.getInstance().intern(responsibilityNamespace);
+    }
+
+    public String getResponsibilityName() {
+        return responsibilityName;
+    }
+
+    public void setResponsibilityName(final String responsibilityName) {
+        this.responsibilityName = responsibilityName;
+    }
+
+    public String getActionTypeCode() {
+        return actionTypeCode;
+    }
+
+    public void setActionTypeCode(final String actionTypeCode) {
+        this.actionTypeCode = StringPool.getInstance().intern(actionTypeCode);
+    }
+
+    public String getActionPolicyCode() {
+        return actionPolicyCode;
+    }
+
+    public void setActionPolicyCode(final String actionPolicyCode) {
+        this.actionPolicyCode = StringPool.getInstance().intern(actionPolicyCode);
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final String priority) {
+        this.priority = priority;
+    }
+
+    public String getForce() {
+        return force;
+    }
+
+    public void setForce(final String force) {
+        this.force = force;
+    }
+
+    /**
+     * @return the member type ({@code P}, {@code G} or {@code R}) actions are limited to, or <code>null</code> for all
+     */
+    public String getMemberType() {
+        return memberType;
+    }
+
+    public void setMemberType(final String memberType) {
+        this.memberType = StringPool.getInstance().intern(memberType);
+    }
+
+    /**
+     * @return the qualifier actions are limited to, or <code>null</code> for every member
+     */
+    public String getAttributeDef() {
+        return attributeDef;
+    }
+
+    public void setAttributeDef(final String attributeDef) {
+        this.attributeDef = StringPool.getInstance().intern(attributeDef);
+    }
+
+    public String getAttributeValue() {
+        return attributeValue;
+    }
+
+    public void setAttributeValue(final String attributeValue) {
+        this.attributeValue = attributeValue;
+    }
+
+    public boolean isReplace() {
+        return replace != null ? Boolean.valueOf(replace) : false;
+    }
+
+    public void setReplace(final String replace) {
+        this.replace = replace;
+    }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("roleNamespace".equals(name)) {
+            setRoleNamespace(value);
+        }
+        else if ("roleName".equals(name)) {
+            setRoleName(value);
+        }
+        else if ("responsibilityNamespace".equals(name)) {
+            setResponsibilityNamespace(value);
+        }
+        else if ("responsibilityName".equals(name)) {
+            setResponsibilityName(value);
+        }
+        else if ("actionTypeCode".equals(name)) {
+            setActionTypeCode(value);
+        }
+        else if ("actionPolicyCode".equals(name)) {
+            setActionPolicyCode(value);
+        }
+        else if ("priority".equals(name)) {
+            setPriority(value);
+        }
+        else if ("force".equals(name)) {
+            setForce(value);
+        }
+        else if ("memberType".equals(name)) {
+            setMemberType(value);
+        }
+        else if ("attributeDef".equals(name)) {
+            setAttributeDef(value);
+        }
+        else if ("attributeValue".equals(name)) {
+            setAttributeValue(value);
+        }
+        else if ("replace".equals(name)) {
+            setReplace(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+}
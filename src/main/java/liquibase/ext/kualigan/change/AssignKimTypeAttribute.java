@@ -26,11 +26,15 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 import org.apache.commons.lang.StringUtils;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -64,6 +68,9 @@ public class AssignKimTypeAttribute extends KimAbstractChange implements CustomS
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         final InsertStatement assignAttribute = new InsertStatement(null, database.getDefaultSchemaName(), "KRIM_TYP_ATTR_T");
         final BigInteger id      = getPrimaryKey(database);
         final String attributeId = getAttributeDefinitionForeignKey(database, getAttribute());
@@ -74,7 +81,7 @@ public class AssignKimTypeAttribute extends KimAbstractChange implements CustomS
         assignAttribute.addColumnValue("KIM_ATTR_DEFN_ID", attributeId);
         assignAttribute.addColumnValue("ACTV_IND", getActive());
         assignAttribute.addColumnValue("ver_nbr", 1);
-        assignAttribute.addColumnValue("obj_id", UUID.randomUUID().toString());
+        assignAttribute.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
         final List<SqlStatement> results = new ArrayList<SqlStatement>();
         results.add(assignAttribute);
@@ -104,7 +111,7 @@ public class AssignKimTypeAttribute extends KimAbstractChange implements CustomS
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -140,7 +147,7 @@ public class AssignKimTypeAttribute extends KimAbstractChange implements CustomS
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -160,4 +167,36 @@ public class AssignKimTypeAttribute extends KimAbstractChange implements CustomS
     public void setActive(final String active) {
         this.active = active;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("attribute".equals(name)) {
+            setAttribute(value);
+        }
+        else if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.attributeDefinition(getAttribute()));
+        writes.add(KimKey.type(getType()));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.typeAttribute(getType(), getAttribute());
+    }
 }
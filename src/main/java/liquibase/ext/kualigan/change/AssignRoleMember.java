@@ -27,11 +27,21 @@ import liquibase.statement.core.InsertStatement;
 import org.apache.commons.lang.StringUtils;
 
 import liquibase.ext.kualigan.statement.AssignMemberStatement;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
@@ -44,11 +54,10 @@ import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 @DatabaseChange(name="assignRoleMember", description = "Assigns a member to a role", priority = EXTENSION_PRIORITY)
 public class AssignRoleMember extends KimAbstractChange implements CustomSqlChange {
 
-    protected String namespace;
+    protected NamespacedName roleKey = NamespacedName.valueOf(null, null);
     protected String type;
     protected String member;
     protected String memberNamespace;
-    protected String role;
     protected String active;
     protected List<AddRoleMemberAttribute> attributes = new ArrayList<AddRoleMemberAttribute>();
     protected String uniqueAttributeDefinitions;
@@ -71,20 +80,13 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
-        final List<SqlStatement> attributeStatements = new ArrayList<SqlStatement>();
-        
-        for (final AddRoleMemberAttribute member : getAttributes()) {
-            for (final SqlStatement statement : member.generateStatements(database)) {
-                attributeStatements.add(statement);
-            }
+        if (isDuplicate()) {
+            return new SqlStatement[0];
         }
+        requestPrincipals(database, getPrincipalNames());
 
-        final List<SqlStatement> actionStatements = new ArrayList<SqlStatement>();
-        for (final AddRoleResponsibilityAction member : getActions()) {
-            for (final SqlStatement statement : member.generateStatements(database)) {
-                actionStatements.add(statement);
-            }
-        }
+        final Iterable<SqlStatement> attributeStatements = new ChildStatements(this, database, getAttributes());
+        final Iterable<SqlStatement> actionStatements = new ChildStatements(this, database, getActions());
 
         return new SqlStatement[] { new AssignMemberStatement(getNamespace(),
                                                               getType(),
@@ -96,6 +98,26 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
                                                               actionStatements) };
     }
 
+    /**
+     * Get the principal names resolved by this assignment, its attributes and its actions, so they can be
+     * looked up together.
+     *
+     * @return principal names (may contain <code>null</code> values)
+     */
+    protected List<String> getPrincipalNames() {
+        final List<String> retval = new ArrayList<String>();
+        if ("P".equals(getType())) {
+            retval.add(getMember());
+        }
+        for (final AddRoleMemberAttribute attribute : getAttributes()) {
+            retval.add(attribute.getMember());
+        }
+        for (final AddRoleResponsibilityAction action : getActions()) {
+            retval.add(action.getMember());
+        }
+        return retval;
+    }
+
     private String getMemberId(Database database) {
         String memberId;
         if ("P".equals(getType())){
@@ -112,10 +134,12 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
 
     @Override
     public SqlStatement[] generateRollbackStatements(Database database) throws RollbackImpossibleException {
+        requestPrincipals(database, getPrincipalNames());
+
         final DeleteDataChange undoAssign = new DeleteDataChange();
         final String roleId = getRoleForeignKey(database, getRole(),getNamespace());
         String memberId = getMemberId(database);
-        List<String> uniqueAttributeValues = null;
+        Map<String, String> uniqueAttributeValues = null;
         if (StringUtils.isNotBlank(uniqueAttributeDefinitions)){
             uniqueAttributeValues = getUniqueAttributeValues(attributes, uniqueAttributeDefinitions);
         }
@@ -133,15 +157,22 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
             results.addAll(Arrays.asList(action.generateRollbackStatements(database)));
         }
         results.addAll(Arrays.asList(undoAssign.generateStatements(database)));
+        if (RoleMemberClosure.isMaintained(database)) {
+            results.add(new RoleMemberClosureStatement("select ROLE_ID from KRIM_ROLE_T where ROLE_ID = " + BoundQuery.toLiteral(roleId)));
+            results.add(RoleMemberClosure.getDepthCheck());
+        }
         return results.toArray(new SqlStatement[results.size()]);
     }
 
-    private List<String> getUniqueAttributeValues(List<AddRoleMemberAttribute> attributes, String uniqueAttributeDefinitions) {
+    /**
+     * Values of the unique qualifiers of this member keyed by attribute definition name
+     */
+    private Map<String, String> getUniqueAttributeValues(List<AddRoleMemberAttribute> attributes, String uniqueAttributeDefinitions) {
         List<String> uniqueTokens = Arrays.asList(uniqueAttributeDefinitions.split(","));
-        List<String> result = new ArrayList<String>();
+        Map<String, String> result = new LinkedHashMap<String, String>();
         for (AddRoleMemberAttribute addRoleMemberAttribute : attributes){
             if (uniqueTokens.contains(addRoleMemberAttribute.getAttributeDef())){
-                result.add(addRoleMemberAttribute.getValue());
+                result.put(addRoleMemberAttribute.getAttributeDef(), addRoleMemberAttribute.getValue());
             }
             else{
                 throw new IllegalArgumentException(String.format("Attribute definition '%s' defined as unique but not part or attributes list", addRoleMemberAttribute.getAttributeDef()));
@@ -177,7 +208,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @return namespace value
      */
     public String getNamespace() {
-        return this.namespace;
+        return roleKey.getNamespace();
     }
 
     /**
@@ -186,7 +217,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.roleKey = roleKey.withNamespace(namespace);
     }
 
     /**
@@ -195,7 +226,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @return role value
      */
     public String getRole() {
-        return this.role;
+        return roleKey.getName();
     }
 
     /**
@@ -204,7 +235,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.roleKey = roleKey.withName(role);
     }
 
     /**
@@ -222,7 +253,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -285,7 +316,7 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
     }
 
     public void setMemberNamespace(String memberNamespace) {
-        this.memberNamespace = memberNamespace;
+        this.memberNamespace = StringPool.getInstance().intern(memberNamespace);
     }
 
     public String getUniqueAttributeDefinitions() {
@@ -307,4 +338,84 @@ public class AssignRoleMember extends KimAbstractChange implements CustomSqlChan
 	this.actions.add(addRoleResponsibilityAction);
 	return addRoleResponsibilityAction;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("member".equals(name)) {
+            setMember(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("role".equals(name)) {
+            setRole(value);
+        }
+        else if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("memberNamespace".equals(name)) {
+            setMemberNamespace(value);
+        }
+        else if ("uniqueAttributeDefinitions".equals(name)) {
+            setUniqueAttributeDefinitions(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("attribute".equals(name) || "attributes".equals(name)) {
+            return createAttribute();
+        }
+        else if ("action".equals(name) || "actions".equals(name)) {
+            return createAction();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.role(getNamespace(), getRole()));
+        if ("R".equals(getType())) {
+            reads.add(KimKey.role(getMemberNamespace() != null ? getMemberNamespace() : getNamespace(), getMember()));
+        }
+        writes.add(KimKey.roleMember(getNamespace(), getRole(), getMember()));
+        for (final AddRoleMemberAttribute attribute : getAttributes()) {
+            if (!attribute.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        for (final AddRoleResponsibilityAction action : getActions()) {
+            if (!action.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A member is identified by its role, type, member and qualifiers; its attributes and actions are part of it.
+     */
+    @Override
+    public KimKey getNaturalKey() {
+        final StringBuilder member = new StringBuilder(getType() + ":");
+        if ("R".equals(getType())) {
+            member.append(getMemberNamespace() != null ? getMemberNamespace() : getNamespace()).append(':');
+        }
+        member.append(getMember());
+        final Map<String, String> qualifiers = new TreeMap<String, String>();
+        for (final AddRoleMemberAttribute attribute : getAttributes()) {
+            qualifiers.put(attribute.getAttributeDef(), attribute.getValue());
+        }
+        if (!qualifiers.isEmpty()) {
+            member.append(qualifiers);
+        }
+        return KimKey.roleMember(getNamespace(), getRole(), member.toString());
+    }
 }
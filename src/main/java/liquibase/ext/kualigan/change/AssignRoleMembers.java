@@ -0,0 +1,169 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.statement.SqlStatement;
+
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase refactoring for loading many members into one KIM role. Members are nested {@code member} elements
+ * with the attributes of {@code assignRoleMember} and their qualifiers as nested {@code attribute} elements. Names are
+ * resolved by the generated SQL, which on Oracle sends a thousand members per round trip.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="assignRoleMembers", description = "Assigns many members to a KIM Role.", priority = EXTENSION_PRIORITY)
+public class AssignRoleMembers extends KimAbstractChange {
+
+    private String namespace;
+    private String role;
+    private final List<AssignRoleMember> members = new ArrayList<AssignRoleMember>();
+
+    public AssignRoleMembers() {
+        super("roleMembers", "Assigning members to a KIM role", EXTENSION_PRIORITY);
+    }
+
+    @Override
+    protected String getSequenceName() {
+        return "KRIM_ROLE_MBR_ID_S";
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        final BulkAssignMembersStatement retval = new BulkAssignMembersStatement(getNamespace(), getRole());
+        for (final AssignRoleMember member : getMembers()) {
+            if (!member.getActions().isEmpty()) {
+                throw new UnexpectedLiquibaseException(String.format("assignRoleMembers does not add responsibility actions (member %s of %s)",
+                                                                     member.getMember(), getRole()));
+            }
+            final BulkAssignMembersStatement.Member added = retval.addMember(member.getType(), member.getMember(), member.getMemberNamespace());
+            for (final AddRoleMemberAttribute attribute : member.getAttributes()) {
+                added.addAttribute(attribute.getType(), attribute.getAttributeDef(), attribute.getValue());
+            }
+        }
+        if (RoleMemberClosure.isMaintained(database)) {
+            return new SqlStatement[] { retval, RoleMemberClosure.getDepthCheck() };
+        }
+        return new SqlStatement[] { retval };
+    }
+
+    /**
+     * Removes each member as {@code assignRoleMember} would.
+     */
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
+        for (final AssignRoleMember member : getMembers()) {
+            retval.addAll(Arrays.asList(member.generateRollbackStatements(database)));
+        }
+        return retval.toArray(new SqlStatement[retval.size()]);
+    }
+
+    /**
+     * The members, each assigned to this change's role
+     */
+    public List<AssignRoleMember> getMembers() {
+        for (final AssignRoleMember member : members) {
+            member.setNamespace(getNamespace());
+            member.setRole(getRole());
+        }
+        return members;
+    }
+
+    public AssignRoleMember createMember() {
+        final AssignRoleMember retval = new AssignRoleMember();
+        members.add(retval);
+        return retval;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(final String namespace) {
+        this.namespace = StringPool.getInstance().intern(namespace);
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(final String role) {
+        this.role = StringPool.getInstance().intern(role);
+    }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("role".equals(name)) {
+            setRole(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("member".equals(name) || "members".equals(name)) {
+            return createMember();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        for (final AssignRoleMember member : getMembers()) {
+            if (!member.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -26,7 +26,7 @@
 package liquibase.ext.kualigan.change;
 
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import liquibase.change.Change;
 import liquibase.change.DatabaseChange;
@@ -40,6 +40,10 @@ import liquibase.statement.core.InsertStatement;
 
 import liquibase.change.core.DeleteDataChange;
 
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
 /**
@@ -73,6 +77,9 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         final InsertStatement assignPermission = new InsertStatement(null, database.getDefaultSchemaName(), "krim_role_perm_t");
         final BigInteger id = getPrimaryKey(database);
         final String roleId = getRoleForeignKey(database, getRole(), getRoleNamespace());
@@ -83,7 +90,7 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
         assignPermission.addColumnValue("perm_id", permId);
         assignPermission.addColumnValue("actv_ind", getActive());
         assignPermission.addColumnValue("ver_nbr", 1);
-        assignPermission.addColumnValue("obj_id", UUID.randomUUID().toString());
+        assignPermission.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
         
         return new SqlStatement[]{
             assignPermission
@@ -116,7 +123,7 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
      * @param permission value to set
      */
     public void setPermission(final String permission) {
-        this.permission = permission;
+        this.permission = StringPool.getInstance().intern(permission);
     }
 
     /**
@@ -134,7 +141,7 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
      * @param permissionNamespace value to set
      */
     public void setPermissionNamespace(final String permissionNamespace) {
-        this.permissionNamespace = permissionNamespace;
+        this.permissionNamespace = StringPool.getInstance().intern(permissionNamespace);
     }
 
     /**
@@ -152,7 +159,7 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
     /**
@@ -178,6 +185,41 @@ public class AssignRolePermission extends KimAbstractChange implements CustomSql
     }
 
     public void setRoleNamespace(String roleNamespace) {
-        this.roleNamespace = roleNamespace;
+        this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
+    }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("permission".equals(name)) {
+            setPermission(value);
+        }
+        else if ("permissionNamespace".equals(name)) {
+            setPermissionNamespace(value);
+        }
+        else if ("role".equals(name)) {
+            setRole(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("roleNamespace".equals(name)) {
+            setRoleNamespace(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.role(getRoleNamespace(), getRole()));
+        reads.add(KimKey.permission(getPermissionNamespace(), getPermission()));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.rolePermission(getRoleNamespace(), getRole(), getPermissionNamespace(), getPermission());
     }
 }
@@ -0,0 +1,264 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.statement.SqlStatement;
+
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.statement.AssignPermissionsStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase refactoring for granting a set of permissions to a set of KIM roles. Roles and permissions are
+ * nested {@code role} and {@code permission} elements with {@code namespace} and {@code name} attributes. Instead of
+ * listing permissions, {@code permissionNamespace} (and optionally {@code permissionTemplate}) selects every active
+ * permission matching them. Each role gets each permission it does not have yet, all in one statement.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="assignPermissions", description = "Assign a set of KIM Permissions to a set of KIM Roles.", priority = EXTENSION_PRIORITY)
+public class AssignRolePermissions extends KimAbstractChange {
+
+    /**
+     * A nested {@code role} element
+     */
+    public static class Role extends KimObjectName {
+        public Role() {
+        }
+
+        public Role(final String namespace, final String name) {
+            super(namespace, name);
+        }
+
+        public String getSerializedObjectName() {
+            return "role";
+        }
+    }
+
+    /**
+     * A nested {@code permission} element
+     */
+    public static class Permission extends KimObjectName {
+        public Permission() {
+        }
+
+        public Permission(final String namespace, final String name) {
+            super(namespace, name);
+        }
+
+        public String getSerializedObjectName() {
+            return "permission";
+        }
+    }
+
+    private List<Role> roles = new ArrayList<Role>();
+    private List<Permission> permissions = new ArrayList<Permission>();
+    private String permissionNamespace;
+    private String permissionTemplate;
+    private String active = "Y";
+
+    public AssignRolePermissions() {
+        super("rolePermissions", "Assigning KIM permissions to roles", EXTENSION_PRIORITY);
+    }
+
+    @Override
+    protected String getSequenceName() {
+        return "krim_role_perm_id_s";
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     * @throws UnexpectedLiquibaseException when a listed role or permission does not exist
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        checkNames(database);
+        final AssignPermissionsStatement retval = new AssignPermissionsStatement();
+        for (final Role role : getRoles()) {
+            retval.addRole(role.getNamespace(), role.getName());
+        }
+        for (final Permission permission : getPermissions()) {
+            retval.addPermission(permission.getNamespace(), permission.getName());
+        }
+        retval.setPermissionNamespace(getPermissionNamespace());
+        retval.setPermissionTemplate(getPermissionTemplate());
+        retval.setActive(getActive());
+        return new SqlStatement[] { retval };
+    }
+
+    /**
+     * Which of the grants existed before the change ran is not recorded, so the change cannot tell the grants it added
+     * apart from the others. A changeset that needs to be rolled back lists the grants to remove in its own
+     * {@code rollback} element.
+     */
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        throw new RollbackImpossibleException("assignPermissions does not record which grants it added");
+    }
+
+    /**
+     * The statement matches roles and permissions by name, and would skip a misspelled one without notice
+     */
+    protected void checkNames(final Database database) {
+        for (final Role role : getRoles()) {
+            if (getRoleForeignKey(database, role.getName(), role.getNamespace()) == null) {
+                throw new UnexpectedLiquibaseException(String.format("No KIM role %s", role));
+            }
+        }
+        for (final Permission permission : getPermissions()) {
+            final String count;
+            try {
+                count = new BoundQuery("select count(*) from KRIM_PERM_T where NM = ? and NMSPC_CD = ?",
+                                       permission.getName(), permission.getNamespace()).queryForString(getLookupDatabase(database));
+            }
+            catch (DatabaseException e) {
+                throw new UnexpectedLiquibaseException(String.format("Unable to look up KIM permission %s", permission), e);
+            }
+            if (count == null || Integer.parseInt(count.trim()) == 0) {
+                throw new UnexpectedLiquibaseException(String.format("No KIM permission %s", permission));
+            }
+        }
+    }
+
+    public List<Role> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(final List<Role> roles) {
+        this.roles = roles;
+    }
+
+    /**
+     * @return the permissions granted; when empty, the permissions matching {@link #getPermissionNamespace()} and
+     * {@link #getPermissionTemplate()} are granted instead
+     */
+    public List<Permission> getPermissions() {
+        return permissions;
+    }
+
+    public void setPermissions(final List<Permission> permissions) {
+        this.permissions = permissions;
+    }
+
+    public void addRole(final String namespace, final String name) {
+        roles.add(new Role(namespace, name));
+    }
+
+    public void addPermission(final String namespace, final String name) {
+        permissions.add(new Permission(namespace, name));
+    }
+
+    public String getPermissionNamespace() {
+        return permissionNamespace;
+    }
+
+    public void setPermissionNamespace(final String permissionNamespace) {
+        this.permissionNamespace = StringPool.getInstance().intern(permissionNamespace);
+    }
+
+    public String getPermissionTemplate() {
+        return permissionTemplate;
+    }
+
+    public void setPermissionTemplate(final String permissionTemplate) {
+        this.permissionTemplate = StringPool.getInstance().intern(permissionTemplate);
+    }
+
+    public String getActive() {
+        return active;
+    }
+
+    public void setActive(final String active) {
+        this.active = active;
+    }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("permissionNamespace".equals(name)) {
+            setPermissionNamespace(value);
+        }
+        else if ("permissionTemplate".equals(name)) {
+            setPermissionTemplate(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimObjectName createName(final String name) {
+        if ("role".equals(name) || "roles".equals(name)) {
+            final Role retval = new Role();
+            roles.add(retval);
+            return retval;
+        }
+        else if ("permission".equals(name) || "permissions".equals(name)) {
+            final Permission retval = new Permission();
+            permissions.add(retval);
+            return retval;
+        }
+        return super.createName(name);
+    }
+
+    /**
+     * The grants are only known when permissions are listed; a namespace or template filter matches whatever
+     * permissions exist when the change runs.
+     */
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        if (permissions.isEmpty()) {
+            return false;
+        }
+        for (final Role role : roles) {
+            reads.add(KimKey.role(role.getNamespace(), role.getName()));
+            for (final Permission permission : permissions) {
+                writes.add(KimKey.rolePermission(role.getNamespace(), role.getName(), permission.getNamespace(), permission.getName()));
+            }
+        }
+        for (final Permission permission : permissions) {
+            reads.add(KimKey.permission(permission.getNamespace(), permission.getName()));
+        }
+        return true;
+    }
+}
@@ -26,8 +26,11 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.ext.kualigan.statement.AssignResponsibilityStatement;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import java.math.BigInteger;
+import java.util.Set;
 import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
@@ -62,6 +65,9 @@ public class AssignRoleResponsibility extends KimAbstractChange implements Custo
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         return new SqlStatement[] { new AssignResponsibilityStatement(getNamespace(),
                                                                       getResponsibility(),
                                                                       getRole(),
@@ -94,7 +100,7 @@ public class AssignRoleResponsibility extends KimAbstractChange implements Custo
      * @param responsibility value to set
      */
     public void setResponsibility(final String responsibility) {
-        this.responsibility = responsibility;
+        this.responsibility = StringPool.getInstance().intern(responsibility);
     }
 
     /**
@@ -112,7 +118,7 @@ public class AssignRoleResponsibility extends KimAbstractChange implements Custo
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -130,7 +136,7 @@ public class AssignRoleResponsibility extends KimAbstractChange implements Custo
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
     /**
@@ -167,7 +173,42 @@ public class AssignRoleResponsibility extends KimAbstractChange implements Custo
      * @param application value to set
      */
     public void setApplication(final String application) {
-        this.application = application;
+        this.application = StringPool.getInstance().intern(application);
     }
 
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("responsibility".equals(name)) {
+            setResponsibility(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("role".equals(name)) {
+            setRole(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("application".equals(name)) {
+            setApplication(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.role(getNamespace(), getRole()));
+        reads.add(KimKey.responsibility(getResponsibility()));
+        writes.add(KimKey.roleResponsibility(getNamespace(), getRole(), getResponsibility()));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.roleResponsibility(getNamespace(), getRole(), getResponsibility());
+    }
 }
@@ -0,0 +1,88 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.database.Database;
+import liquibase.statement.SqlStatement;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The statements of the nested changes of a KIM change, generated while they are iterated instead of up front. Children
+ * are generated a batch at a time (concurrently when {@link KimAbstractChange#generateChildStatements(Database, List)}
+ * allows it), so only one batch of statements is held at once. The statements can be iterated once.
+ *
+ * @author Leo Przybylski
+ */
+public class ChildStatements implements Iterable<SqlStatement> {
+    public static final int BATCH_SIZE = 64;
+
+    private final KimAbstractChange parent;
+    private final Database database;
+    private final List<? extends KimAbstractChange> children;
+    private boolean consumed;
+
+    public ChildStatements(final KimAbstractChange parent, final Database database, final List<? extends KimAbstractChange> children) {
+        this.parent = parent;
+        this.database = database;
+        this.children = children != null ? children : Collections.<KimAbstractChange>emptyList();
+    }
+
+    public synchronized Iterator<SqlStatement> iterator() {
+        if (consumed) {
+            throw new IllegalStateException(String.format("Statements of the nested changes of %s were already consumed", parent.getClass().getSimpleName()));
+        }
+        consumed = true;
+
+        return new Iterator<SqlStatement>() {
+            private int next;
+            private Iterator<SqlStatement> batch = Collections.<SqlStatement>emptyList().iterator();
+
+            public boolean hasNext() {
+                while (!batch.hasNext() && next < children.size()) {
+                    final int end = Math.min(next + BATCH_SIZE, children.size());
+                    batch = parent.generateChildStatements(database, children.subList(next, end)).iterator();
+                    next = end;
+                }
+                return batch.hasNext();
+            }
+
+            public SqlStatement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.statement.SqlStatement;
+
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.statement.CloneNamespaceStatement;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase Refactoring that copies every permission, responsibility and role of a KIM namespace, along with
+ * their attributes, members, assignments and actions, into a new namespace. The copies keep the types and attribute
+ * definitions of the source namespace. The copy runs entirely in the database with one INSERT ... SELECT per table,
+ * whatever the size of the namespace. The target namespace is expected to be empty. Rolling back deletes the
+ * permissions, responsibilities and roles of the target namespace.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="cloneKimNamespace", description = "Copies the KIM configuration of a namespace into a new namespace", priority = EXTENSION_PRIORITY)
+public class CloneKimNamespace extends KimAbstractChange {
+
+    private String sourceNamespace;
+    private String targetNamespace;
+
+    public CloneKimNamespace() {
+        super("cloneKimNamespace", "Copying a KIM namespace", EXTENSION_PRIORITY);
+    }
+
+    @Override
+    protected String getSequenceName() {
+        return null;
+    }
+
+    /**
+     * The id map of the copy is created, truncated and dropped as it runs
+     */
+    @Override
+    public boolean generatesDdl() {
+        return true;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return String.format("KIM namespace %s copied to %s", getSourceNamespace(), getTargetNamespace());
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        // Responsibilities are also found by name alone, which the copies make ambiguous
+        KimReferenceSnapshot.reset(database);
+        return withDepthCheck(database, new CloneNamespaceStatement(getSourceNamespace(), getTargetNamespace(), false));
+    }
+
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        KimReferenceSnapshot.reset(database);
+        return withDepthCheck(database, new CloneNamespaceStatement(getSourceNamespace(), getTargetNamespace(), true));
+    }
+
+    /**
+     * Both directions refresh the role member closure, if it is maintained
+     */
+    protected SqlStatement[] withDepthCheck(final Database database, final CloneNamespaceStatement statement) {
+        if (RoleMemberClosure.isMaintained(database)) {
+            return new SqlStatement[] { statement, RoleMemberClosure.getDepthCheck() };
+        }
+        return new SqlStatement[] { statement };
+    }
+
+    public String getSourceNamespace() {
+        return sourceNamespace;
+    }
+
+    public void setSourceNamespace(final String sourceNamespace) {
+        this.sourceNamespace = StringPool.getInstance().intern(sourceNamespace);
+    }
+
+    public String getTargetNamespace() {
+        return targetNamespace;
+    }
+
+    public void setTargetNamespace(final String targetNamespace) {
+        this.targetNamespace = StringPool.getInstance().intern(targetNamespace);
+    }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("sourceNamespace".equals(name)) {
+            setSourceNamespace(value);
+        }
+        else if ("targetNamespace".equals(name)) {
+            setTargetNamespace(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+}
@@ -16,18 +16,25 @@
 package liquibase.ext.kualigan.change;
 
 import java.math.BigInteger;
-import java.util.UUID;
+import java.util.Set;
 
 import liquibase.change.Change;
 import liquibase.change.DatabaseChange;
 import liquibase.change.DatabaseChangeProperty;
 import liquibase.change.custom.CustomSqlChange;
 import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
 import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.change.core.DeleteDataChange;
 
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
 /**
@@ -60,6 +67,9 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+	if (isDuplicate()) {
+	    return new SqlStatement[0];
+	}
 	final InsertStatement insertDefinition = new InsertStatement(null, database.getDefaultSchemaName(), "krim_attr_defn_t");
 
 	final BigInteger id = getPrimaryKey(database);
@@ -71,7 +81,9 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
 	insertDefinition.addColumnValue("actv_ind", getActive());
 	insertDefinition.addColumnValue("cmpnt_nm", getComponent());
 	insertDefinition.addColumnValue("ver_nbr", 1);
-	insertDefinition.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertDefinition.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
+
+	evictReference(database, Reference.ATTRIBUTE_DEFINITION, getName());
 
 	return new SqlStatement[]{
 	    insertDefinition
@@ -79,6 +91,12 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
     }
 
 
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        evictReference(database, Reference.ATTRIBUTE_DEFINITION, getName());
+        return super.generateRollbackStatements(database);
+    }
+
     /**
      * Used for rollbacks. Defines the steps/{@link Change}s necessary to rollback.
      * 
@@ -87,7 +105,7 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
     protected Change[] createInverses() {
         final DeleteDataChange removeDefinition = new DeleteDataChange();
         removeDefinition.setTableName("krim_attr_defn_t");
-        removeDefinition.setWhereClause(String.format("nmspc_cd = '%s' AND nm = '%s' AND cmpnt_nm = '%s'", getNamespace(), getName(), getComponent()));
+        removeDefinition.setWhereClause(new BoundQuery("nmspc_cd = ? AND nm = ? AND cmpnt_nm = ?", getNamespace(), getName(), getComponent()).toLiteralSql());
 
         return new Change[] {
             removeDefinition
@@ -109,7 +127,7 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
      * @param component value to set
      */
     public void setComponent(final String component) {
-        this.component = component;
+        this.component = StringPool.getInstance().intern(component);
     }
 
     /**
@@ -127,7 +145,7 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -184,4 +202,37 @@ public class CreateAttributeDefinition extends KimAbstractChange implements Cust
         this.active = active;
     }
 
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("component".equals(name)) {
+            setComponent(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("label".equals(name)) {
+            setLabel(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        writes.add(KimKey.attributeDefinition(getName()));
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.attributeDefinition(getName());
+    }
 }
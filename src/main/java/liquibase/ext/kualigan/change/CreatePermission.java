@@ -29,11 +29,16 @@ import liquibase.statement.core.InsertStatement;
 import org.apache.commons.lang.StringUtils;
 
 import liquibase.ext.kualigan.statement.CreatePermissionStatement;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
@@ -65,15 +70,14 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
-
-        final List<SqlStatement> attributeStatements = new ArrayList<SqlStatement>();
-        
-        for (final AddPermissionAttribute attribute : getAttributes()) {
-            for (final SqlStatement statement : attribute.generateStatements(database)) {
-                attributeStatements.add(statement);
-            }
+        if (isDuplicate()) {
+            return new SqlStatement[0];
         }
 
+        final Iterable<SqlStatement> attributeStatements = new ChildStatements(this, database, getAttributes());
+
+        evictPermission(database);
+
         return new SqlStatement[] { new CreatePermissionStatement(getTemplate(),
 								  getNamespace(),
 								  getName(),
@@ -90,6 +94,7 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
 	final DeleteDataChange removePerm = new DeleteDataChange();
 	removePerm.setTableName("krim_perm_t");
 	removePerm.setWhereClause(String.format("perm_id = '%s'",permissionId));
+	evictPermission(database);
 
 	for (AddPermissionAttribute attribute : attributes){
 	    attribute.setPermissionId(permissionId);
@@ -100,6 +105,21 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
 	return result.toArray(new SqlStatement[result.size()]);
     }
 
+    /**
+     * Drops this permission from the {@link KimReferenceSnapshot} (if one is in use), by name and namespace as well as
+     * under its template
+     */
+    protected void evictPermission(final Database database) {
+        if (KimReferenceSnapshot.getInstance(database) == null) {
+            return;
+        }
+        evictReference(database, Reference.PERMISSION, getName(), getNamespace());
+        if (getTemplate() != null) {
+            evictReference(database, Reference.TEMPLATED_PERMISSION, getName(), getNamespace(),
+                           getPermissionTemplateForeignKey(database, getTemplate()));
+        }
+    }
+
     @Override
     protected String getSequenceName() {
 	return "KRIM_PERM_ID_S";
@@ -120,7 +140,7 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
      * @param template value to set
      */
     public void setTemplate(final String template) {
-        this.template = template;
+        this.template = StringPool.getInstance().intern(template);
     }
 
     /**
@@ -138,7 +158,7 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -220,4 +240,55 @@ public class CreatePermission extends KimAbstractChange implements CustomSqlChan
 	return permissionAttribute;
     }
 
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("template".equals(name)) {
+            setTemplate(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("description".equals(name)) {
+            setDescription(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("attribute".equals(name) || "attributes".equals(name)) {
+            return createAttribute();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        writes.add(KimKey.permission(getNamespace(), getName()));
+        for (final AddPermissionAttribute attribute : getAttributes()) {
+            if (!attribute.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.permission(getNamespace(), getName());
+    }
+
+    @Override
+    public List<? extends KimAbstractChange> getNestedChanges() {
+        return getAttributes();
+    }
 }
@@ -26,11 +26,15 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.ext.kualigan.statement.CreateResponsibilityStatement;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
@@ -67,6 +71,9 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
 
         final List<SqlStatement> attributeStatements = new ArrayList<SqlStatement>();
         
@@ -76,6 +83,9 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
             }
         }
 
+        evictReference(database, Reference.RESPONSIBILITY, getName());
+        evictReference(database, Reference.NAMESPACED_RESPONSIBILITY, getName(), getNamespace());
+
         return new SqlStatement[] { new CreateResponsibilityStatement(getTemplate(),
 								      getNamespace(),
 								      getName(),
@@ -94,6 +104,8 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
 	final DeleteDataChange removeResponsibility = new DeleteDataChange();
 	removeResponsibility.setTableName("krim_rsp_t");
 	removeResponsibility.setWhereClause(String.format("rsp_id = '%s'", responsibilityId));
+	evictReference(database, Reference.RESPONSIBILITY, getName());
+	evictReference(database, Reference.NAMESPACED_RESPONSIBILITY, getName(), getNamespace());
 
 	for (AddResponsibilityAttribute attribute : attributes){
 	    attribute.setResponsibilityId(responsibilityId);
@@ -120,7 +132,7 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
      * @param template value to set
      */
     public void setTemplate(final String template) {
-        this.template = template;
+        this.template = StringPool.getInstance().intern(template);
     }
 
     /**
@@ -138,7 +150,7 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -199,4 +211,55 @@ public class CreateResponsibility extends KimAbstractChange implements CustomSql
 	return attribute;
     }
 
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("template".equals(name)) {
+            setTemplate(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("description".equals(name)) {
+            setDescription(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("attribute".equals(name) || "attributes".equals(name)) {
+            return createAttribute();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        writes.add(KimKey.responsibility(getName()));
+        for (final AddResponsibilityAttribute attribute : getAttributes()) {
+            if (!attribute.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.responsibility(getName());
+    }
+
+    @Override
+    public List<? extends KimAbstractChange> getNestedChanges() {
+        return getAttributes();
+    }
 }
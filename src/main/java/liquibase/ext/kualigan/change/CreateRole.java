@@ -28,6 +28,7 @@ package liquibase.ext.kualigan.change;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import liquibase.change.DatabaseChange;
@@ -40,6 +41,10 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.ext.kualigan.statement.CreateRoleStatement;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import liquibase.change.core.DeleteDataChange;
 
@@ -83,26 +88,25 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
-        final List<SqlStatement> memberStatements = new ArrayList<SqlStatement>();
-
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         for (final AssignRoleMember member : getMembers()) {
-            for (final SqlStatement statement : member.generateStatements(database)) {
-                memberStatements.add(statement);
-            }
+            requestPrincipals(database, member.getPrincipalNames());
         }
 
-        final List<SqlStatement> typeStatements = new ArrayList<SqlStatement>();
-        for (final CreateType type : getTypes()) {
-            for (final SqlStatement statement : type.generateStatements(database)) {
-                typeStatements.add(statement);
-            }
-        }
+        final Iterable<SqlStatement> memberStatements = new ChildStatements(this, database, getMembers());
+        final Iterable<SqlStatement> typeStatements = new ChildStatements(this, database, getTypes());
+
+        evictReference(database, Reference.ROLE, getName(), getNamespace());
 
         return new SqlStatement[] { new CreateRoleStatement(getNamespace(),
                                                             getName(),
                                                             getDescription(),
                                                             getLastUpdated(),
                                                             getActive(),
+                                                            getType(),
+                                                            getTypeNamespace(),
                                                             memberStatements,
                                                             typeStatements) };
 
@@ -113,7 +117,8 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
         final String typeReference = getTypeForeignKey(database, getType(), getTypeNamespace());
         final DeleteDataChange removeRole = new DeleteDataChange();
         removeRole.setTableName("KRIM_ROLE_T");
-        removeRole.setWhereClause(String.format("role_nm = '%s' and kim_typ_id = '%s'", getName(), typeReference));
+        removeRole.setWhereClause(new BoundQuery("role_nm = ? and kim_typ_id = ?", getName(), typeReference).toLiteralSql());
+        evictReference(database, Reference.ROLE, getName(), getNamespace());
         return removeRole.generateStatements(database);
     }
 
@@ -133,7 +138,7 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -171,7 +176,7 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -237,7 +242,7 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
     }
 
     public void setTypeNamespace(String typeNamespace) {
-        this.typeNamespace = typeNamespace;
+        this.typeNamespace = StringPool.getInstance().intern(typeNamespace);
     }
 
     @DatabaseChangeProperty
@@ -269,4 +274,73 @@ public class CreateRole extends KimAbstractChange implements CustomSqlChange {
         getMembers().add(assignRoleMember);
         return assignRoleMember;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("description".equals(name)) {
+            setDescription(value);
+        }
+        else if ("lastUpdated".equals(name)) {
+            setLastUpdated(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("typeNamespace".equals(name)) {
+            setTypeNamespace(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("type".equals(name) || "types".equals(name)) {
+            return createType();
+        }
+        else if ("member".equals(name) || "members".equals(name) || "roleMember".equals(name)) {
+            return createMember();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        reads.add(KimKey.type(getType()));
+        writes.add(KimKey.role(getNamespace(), getName()));
+        for (final CreateType type : getTypes()) {
+            if (!type.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        for (final AssignRoleMember member : getMembers()) {
+            if (!member.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.role(getNamespace(), getName());
+    }
+
+    @Override
+    public List<? extends KimAbstractChange> getNestedChanges() {
+        final List<KimAbstractChange> retval = new ArrayList<KimAbstractChange>(getTypes());
+        retval.addAll(getMembers());
+        return retval;
+    }
 }
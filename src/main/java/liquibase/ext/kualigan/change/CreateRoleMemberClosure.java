@@ -0,0 +1,141 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.AbstractChange;
+import liquibase.change.ColumnConfig;
+import liquibase.change.ConstraintsConfig;
+import liquibase.change.DatabaseChange;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.change.core.CreateTableChange;
+import liquibase.change.core.DropTableChange;
+import liquibase.change.custom.CustomSqlChange;
+import liquibase.change.custom.CustomSqlRollback;
+import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import liquibase.statement.SqlStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase Refactoring that creates the flattened role membership table (see {@link RoleMemberClosure}) and
+ * fills it from {@code KRIM_ROLE_MBR_T}. If the table already exists it is only rebuilt. Members assigned or removed
+ * by later KIM changes keep it up to date.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="createRoleMemberClosure", description = "Creates and fills the flattened role membership table", priority = EXTENSION_PRIORITY)
+public class CreateRoleMemberClosure extends AbstractChange implements CustomSqlChange, CustomSqlRollback {
+
+    public CreateRoleMemberClosure() {
+    }
+
+    @Override
+    public final String getConfirmationMessage() {
+        return String.format("%s rebuilt", RoleMemberClosure.TABLE_NAME);
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override 
+    public ValidationErrors validate(final Database database) {
+        return new ValidationErrors();
+    }
+
+    @Override
+    public void setFileOpener(final ResourceAccessor resourceAccessor) {
+    }
+
+    /**
+     * Statements depend on whether the table already exists
+     */
+    @Override
+    public boolean generateStatementsVolatile(final Database database) {
+        return true;
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        final List<SqlStatement> results = new ArrayList<SqlStatement>();
+        if (!RoleMemberClosure.isMaintained(database)) {
+            final CreateTableChange createTable = new CreateTableChange();
+            createTable.setSchemaName(database.getDefaultSchemaName());
+            createTable.setTableName(RoleMemberClosure.TABLE_NAME);
+            createTable.addColumn(getColumn("ANCSTR_ROLE_ID", "VARCHAR(40)"));
+            createTable.addColumn(getColumn("MBR_ID", "VARCHAR(40)"));
+            createTable.addColumn(getColumn("MBR_TYP_CD", "VARCHAR(1)"));
+            createTable.addColumn(getColumn("DPTH", "NUMBER(8)"));
+            results.addAll(Arrays.asList(createTable.generateStatements(database)));
+            results.addAll(Arrays.asList(getIndex("KRIM_ROLE_MBR_CLOSURE_TI1", database, "ANCSTR_ROLE_ID", "MBR_ID", "MBR_TYP_CD").generateStatements(database)));
+            results.addAll(Arrays.asList(getIndex("KRIM_ROLE_MBR_CLOSURE_TI2", database, "MBR_ID", "MBR_TYP_CD").generateStatements(database)));
+        }
+        results.add(new RoleMemberClosureStatement());
+        results.add(RoleMemberClosure.getDepthCheck());
+        RoleMemberClosure.setMaintained(database, true);
+        return results.toArray(new SqlStatement[results.size()]);
+    }
+
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        final DropTableChange dropTable = new DropTableChange();
+        dropTable.setSchemaName(database.getDefaultSchemaName());
+        dropTable.setTableName(RoleMemberClosure.TABLE_NAME);
+        RoleMemberClosure.setMaintained(database, false);
+        return dropTable.generateStatements(database);
+    }
+
+    protected ColumnConfig getColumn(final String name, final String type) {
+        return new ColumnConfig().setName(name).setType(type).setConstraints(new ConstraintsConfig().setNullable(false));
+    }
+
+    protected CreateIndexChange getIndex(final String name, final Database database, final String... columnNames) {
+        final CreateIndexChange retval = new CreateIndexChange();
+        retval.setSchemaName(database.getDefaultSchemaName());
+        retval.setTableName(RoleMemberClosure.TABLE_NAME);
+        retval.setIndexName(name);
+        for (final String columnName : columnNames) {
+            retval.addColumn(new ColumnConfig().setName(columnName));
+        }
+        return retval;
+    }
+}
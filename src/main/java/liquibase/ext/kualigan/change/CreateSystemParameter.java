@@ -49,6 +49,9 @@ import java.util.List;
 import java.util.UUID;
 
 import liquibase.ext.kualigan.statement.CreateSystemParameterStatement;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -58,8 +61,8 @@ import static liquibase.ext.Constants.EXTENSION_PRIORITY;
  * @author Leo Przybylski
  */
 @DatabaseChange(name="createParameter", description = "Creates a Rice System parameter.", priority = EXTENSION_PRIORITY)
-public class CreateSystemParameter extends AbstractChange implements CustomSqlChange, CustomSqlRollback {
-    public static final String WHERE_CLAUSE = "APPL_ID = '%s' AND NMSPC_CD = '%s' AND CMPNT_CD = '%s' AND PARM_NM = '%s'";
+public class CreateSystemParameter extends AbstractChange implements CustomSqlChange, CustomSqlRollback, NaturalKeyChange {
+    public static final String WHERE_CLAUSE = "APPL_ID = ? AND NMSPC_CD = ? AND CMPNT_CD = ? AND PARM_NM = ?";
 
     protected String application;
     protected String component;
@@ -70,6 +73,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
     protected String description;
     protected String operator;
     protected String active = "Y";
+    private boolean duplicate;
 
     public CreateSystemParameter() {
     }
@@ -100,7 +104,9 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
-	
+	if (isDuplicate()) {
+	    return new SqlStatement[0];
+	}
         return new SqlStatement[] { new CreateSystemParameterStatement(getApplication(),
 								       getNamespace(),
 								       getComponent(),
@@ -116,7 +122,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
     public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
 	final DeleteDataChange change = new DeleteDataChange();
 	change.setTableName("KRCR_PARM_T");
-	change.setWhere(String.format(WHERE_CLAUSE, getApplication(), getNamespace(), getComponent(), getName()));
+	change.setWhere(new BoundQuery(WHERE_CLAUSE, getApplication(), getNamespace(), getComponent(), getName()).toLiteralSql());
 
 	return change.generateStatements(database);
     }
@@ -136,7 +142,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
      * @param application value to set
      */
     public void setApplication(final String application) {
-        this.application = application;
+        this.application = StringPool.getInstance().intern(application);
     }
 
     /**
@@ -154,7 +160,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
      * @param component value to set
      */
     public void setComponent(final String component) {
-        this.component = component;
+        this.component = StringPool.getInstance().intern(component);
     }
 
     /**
@@ -172,7 +178,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -226,7 +232,7 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -282,4 +288,16 @@ public class CreateSystemParameter extends AbstractChange implements CustomSqlCh
     public void setActive(final String active) {
         this.active = active;
     }
+
+    public KimKey getNaturalKey() {
+        return KimKey.parameter(getApplication(), getNamespace(), getComponent(), getName());
+    }
+
+    public void markDuplicate() {
+        duplicate = true;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
 }
@@ -31,13 +31,19 @@ import liquibase.change.DatabaseChange;
 import liquibase.change.DatabaseChangeProperty;
 import liquibase.change.core.DeleteDataChange;
 import liquibase.database.Database;
+import liquibase.exception.RollbackImpossibleException;
 import liquibase.statement.SqlStatement;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import liquibase.ext.kualigan.statement.CreateTypeStatement;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.StringPool;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -79,14 +85,14 @@ public class CreateType extends KimAbstractChange {
      * @return an array of {@link String}s with the statements
      */
     public SqlStatement[] generateStatements(final Database database) {
+        if (isDuplicate()) {
+            return new SqlStatement[0];
+        }
         
-        final List<SqlStatement> attributeStatements = new ArrayList<SqlStatement>();
+        final Iterable<SqlStatement> attributeStatements = new ChildStatements(this, database, getAttributes());
 
-        for (final AssignKimTypeAttribute attribute : getAttributes()) {
-            for (final SqlStatement statement : attribute.generateStatements(database)) {
-                attributeStatements.add(statement);
-            }
-        }
+        evictReference(database, Reference.TYPE, getName());
+        evictReference(database, Reference.NAMESPACED_TYPE, getName(), getNamespace());
 
         return new SqlStatement[] { new CreateTypeStatement(getNamespace(),
                                                             getName(),
@@ -94,6 +100,13 @@ public class CreateType extends KimAbstractChange {
                                                             getActive(), attributeStatements) };
     }
 
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        evictReference(database, Reference.TYPE, getName());
+        evictReference(database, Reference.NAMESPACED_TYPE, getName(), getNamespace());
+        return super.generateRollbackStatements(database);
+    }
+
     /**
      * Used for rollbacks. Defines the steps/{@link liquibase.change.Change}s necessary to rollback.
      *
@@ -102,7 +115,7 @@ public class CreateType extends KimAbstractChange {
     protected Change[] createInverses() {
         final DeleteDataChange removeType = new DeleteDataChange();
         removeType.setTableName("krim_typ_t");
-        removeType.setWhereClause(String.format("nmspc_cd = '%s' AND nm = '%s' AND srvc_nm = '%s'", getNamespace(), getName(), getService()));
+        removeType.setWhereClause(new BoundQuery("nmspc_cd = ? AND nm = ? AND srvc_nm = ?", getNamespace(), getName(), getService()).toLiteralSql());
 
         return new Change[] {
             removeType
@@ -124,7 +137,7 @@ public class CreateType extends KimAbstractChange {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -160,7 +173,7 @@ public class CreateType extends KimAbstractChange {
      * @param service value to set
      */
     public void setService(final String service) {
-        this.service = service;
+        this.service = StringPool.getInstance().intern(service);
     }
 
     /**
@@ -178,7 +191,7 @@ public class CreateType extends KimAbstractChange {
      * @param application value to set
      */
     public void setApplication(final String application) {
-        this.application = application;
+        this.application = StringPool.getInstance().intern(application);
     }
 
     /**
@@ -221,4 +234,59 @@ public class CreateType extends KimAbstractChange {
         this.getAttributes().add(assignKimTypeAttribute);
         return assignKimTypeAttribute;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else if ("service".equals(name)) {
+            setService(value);
+        }
+        else if ("application".equals(name)) {
+            setApplication(value);
+        }
+        else if ("active".equals(name)) {
+            setActive(value);
+        }
+        else if ("uniqueAttributeDefinitions".equals(name)) {
+            setUniqueAttributeDefinitions(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
+
+    @Override
+    protected KimAbstractChange createChild(final String name) {
+        if ("attribute".equals(name) || "attributes".equals(name)) {
+            return createAttribute();
+        }
+        return super.createChild(name);
+    }
+
+    @Override
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        writes.add(KimKey.type(getName()));
+        for (final AssignKimTypeAttribute attribute : getAttributes()) {
+            if (!attribute.collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public KimKey getNaturalKey() {
+        return KimKey.type(getName());
+    }
+
+    @Override
+    public List<? extends KimAbstractChange> getNestedChanges() {
+        return getAttributes();
+    }
 }
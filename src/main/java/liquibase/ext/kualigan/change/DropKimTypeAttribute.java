@@ -26,6 +26,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 import org.apache.commons.lang.StringUtils;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -106,7 +108,7 @@ public class DropKimTypeAttribute extends KimAbstractChange implements CustomSql
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -124,7 +126,7 @@ public class DropKimTypeAttribute extends KimAbstractChange implements CustomSql
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -144,4 +146,21 @@ public class DropKimTypeAttribute extends KimAbstractChange implements CustomSql
     public void setAttribute(final String attribute) {
         this.attribute = attribute;
     }
+
+    @Override
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("type".equals(name)) {
+            setType(value);
+        }
+        else if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("attribute".equals(name)) {
+            setAttribute(value);
+        }
+        else {
+            return super.bindAttribute(name, value);
+        }
+        return true;
+    }
 }
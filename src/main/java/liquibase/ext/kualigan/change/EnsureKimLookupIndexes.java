@@ -0,0 +1,258 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.AbstractChange;
+import liquibase.change.ColumnConfig;
+import liquibase.change.DatabaseChange;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.change.core.DropIndexChange;
+import liquibase.change.custom.CustomSqlChange;
+import liquibase.change.custom.CustomSqlRollback;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.exception.SetupException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.logging.LogFactory;
+import liquibase.resource.ResourceAccessor;
+import liquibase.statement.SqlStatement;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import liquibase.ext.kualigan.lookup.KimLookupIndex;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase Refactoring that creates the indexes supporting KIM natural key lookups (see
+ * {@link KimLookupIndex}) where the live schema has none. Place it ahead of a heavy migration, and optionally once more
+ * with {@code drop="true"} afterwards to remove the indexes it created and log how many lookups each index served.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="ensureKimLookupIndexes", description = "Creates missing indexes for KIM natural key lookups", priority = EXTENSION_PRIORITY)
+public class EnsureKimLookupIndexes extends AbstractChange implements CustomSqlChange, CustomSqlRollback {
+    protected Boolean drop = Boolean.FALSE;
+
+    public EnsureKimLookupIndexes() {
+    }
+
+    @Override
+    public final String getConfirmationMessage() {
+        return "";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override 
+    public ValidationErrors validate(final Database database) {
+        return new ValidationErrors();
+    }
+
+    @Override
+    public void setFileOpener(final ResourceAccessor resourceAccessor) {
+    }
+
+    /**
+     * Statements depend on the live schema
+     */
+    @Override
+    public boolean generateStatementsVolatile(final Database database) {
+        return true;
+    }
+
+    @Override
+    public boolean generateRollbackStatementsVolatile(final Database database) {
+        return true;
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        return generateStatements(database, isDrop());
+    }
+
+    /**
+     * The inverse of the configured mode: indexes created are dropped and dropped ones recreated.
+     */
+    @Override
+    public SqlStatement[] generateRollbackStatements(final Database database) throws RollbackImpossibleException {
+        return generateStatements(database, !isDrop());
+    }
+
+    protected SqlStatement[] generateStatements(final Database database, final boolean drop) {
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            LogFactory.getLogger().warning("ensureKimLookupIndexes needs a live JDBC connection to inspect the schema; skipping");
+            return new SqlStatement[0];
+        }
+
+        final List<SqlStatement> results = new ArrayList<SqlStatement>();
+        try {
+            final DatabaseMetaData metaData = ((JdbcConnection) database.getConnection()).getUnderlyingConnection().getMetaData();
+            for (final KimLookupIndex index : KimLookupIndex.values()) {
+                final String tableName = findTableName(metaData, database, index.getTableName());
+                if (tableName == null) {
+                    continue;
+                }
+                final Map<String, List<String>> existing = getIndexes(metaData, database, tableName);
+
+                if (drop) {
+                    // Only the reserved names this change creates, never a covering index from another changeset
+                    if (existing.containsKey(index.getIndexName())) {
+                        final DropIndexChange dropIndex = new DropIndexChange();
+                        dropIndex.setSchemaName(database.getDefaultSchemaName());
+                        dropIndex.setTableName(tableName);
+                        dropIndex.setIndexName(index.getIndexName());
+                        results.addAll(Arrays.asList(dropIndex.generateStatements(database)));
+                    }
+                    continue;
+                }
+
+                final String covering = findCoveringIndex(index, existing);
+                if (covering != null) {
+                    LogFactory.getLogger().debug(String.format("%s lookups are covered by %s", index.getTableName(), covering));
+                    continue;
+                }
+                final CreateIndexChange createIndex = new CreateIndexChange();
+                createIndex.setSchemaName(database.getDefaultSchemaName());
+                createIndex.setTableName(tableName);
+                createIndex.setIndexName(index.getIndexName());
+                for (final String columnName : index.getColumnNames()) {
+                    createIndex.addColumn(new ColumnConfig().setName(columnName));
+                }
+                LogFactory.getLogger().info(String.format("Creating %s on %s%s", index.getIndexName(), tableName, index.getColumnNames()));
+                results.addAll(Arrays.asList(createIndex.generateStatements(database)));
+            }
+        }
+        catch (SQLException e) {
+            throw new UnexpectedLiquibaseException("Unable to inspect indexes for KIM lookups", e);
+        }
+
+        if (drop) {
+            LogFactory.getLogger().info(KimLookupIndex.report());
+        }
+        return results.toArray(new SqlStatement[results.size()]);
+    }
+
+    /**
+     * The table name as the database stores it, trying the name as given, upper case and lower case
+     *
+     * @return the stored table name or null if the table does not exist
+     */
+    protected String findTableName(final DatabaseMetaData metaData, final Database database, final String tableName) throws SQLException {
+        for (final String candidate : new String[] { tableName, tableName.toUpperCase(), tableName.toLowerCase() }) {
+            final ResultSet tables = metaData.getTables(database.getDefaultCatalogName(), database.getDefaultSchemaName(), candidate, null);
+            try {
+                if (tables.next()) {
+                    return tables.getString("TABLE_NAME");
+                }
+            }
+            finally {
+                tables.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Existing indexes of a table
+     *
+     * @return upper case column names in index order keyed by upper case index name
+     */
+    protected Map<String, List<String>> getIndexes(final DatabaseMetaData metaData, final Database database, final String tableName) throws SQLException {
+        final Map<String, Map<Short, String>> columns = new LinkedHashMap<String, Map<Short, String>>();
+        final ResultSet indexes = metaData.getIndexInfo(database.getDefaultCatalogName(), database.getDefaultSchemaName(), tableName, false, true);
+        try {
+            while (indexes.next()) {
+                final String indexName = indexes.getString("INDEX_NAME");
+                final String columnName = indexes.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    continue;
+                }
+                if (!columns.containsKey(indexName.toUpperCase())) {
+                    columns.put(indexName.toUpperCase(), new TreeMap<Short, String>());
+                }
+                columns.get(indexName.toUpperCase()).put(indexes.getShort("ORDINAL_POSITION"), columnName.toUpperCase());
+            }
+        }
+        finally {
+            indexes.close();
+        }
+
+        final Map<String, List<String>> retval = new LinkedHashMap<String, List<String>>();
+        for (final Map.Entry<String, Map<Short, String>> index : columns.entrySet()) {
+            retval.put(index.getKey(), new ArrayList<String>(index.getValue().values()));
+        }
+        return retval;
+    }
+
+    protected String findCoveringIndex(final KimLookupIndex index, final Map<String, List<String>> existing) {
+        for (final Map.Entry<String, List<String>> candidate : existing.entrySet()) {
+            if (index.isCoveredBy(candidate.getValue())) {
+                return candidate.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the drop attribute on this object
+     *
+     * @return drop value
+     */
+    public Boolean getDrop() {
+        return this.drop;
+    }
+
+    /**
+     * Set the drop attribute on this object
+     *
+     * @param drop value to set
+     */
+    public void setDrop(final Boolean drop) {
+        this.drop = drop;
+    }
+
+    protected boolean isDrop() {
+        return Boolean.TRUE.equals(getDrop());
+    }
+}
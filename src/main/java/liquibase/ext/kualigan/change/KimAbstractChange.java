@@ -28,20 +28,42 @@ package liquibase.ext.kualigan.change;
 import liquibase.change.AbstractChange;
 import liquibase.change.custom.CustomSqlChange;
 import liquibase.change.custom.CustomSqlRollback;
+import liquibase.changelog.ChangeSet;
 import liquibase.database.Database;
 import liquibase.exception.*;
 import liquibase.executor.ExecutorService;
+import liquibase.parser.core.ParsedNode;
+import liquibase.parser.core.ParsedNodeException;
 import liquibase.resource.ResourceAccessor;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 import liquibase.statement.SqlStatement;
 import liquibase.statement.core.RuntimeStatement;
-import org.apache.commons.lang.StringUtils;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+import liquibase.ext.kualigan.lookup.KimLookupIndex;
+import liquibase.ext.kualigan.lookup.PrincipalResolver;
+import liquibase.ext.kualigan.lookup.RoleMemberQuery;
+import liquibase.ext.kualigan.parser.StringPool;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.execution.LookupPool;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
-public abstract class KimAbstractChange extends AbstractChange implements CustomSqlChange, CustomSqlRollback {
+public abstract class KimAbstractChange extends AbstractChange implements CustomSqlChange, CustomSqlRollback, NaturalKeyChange {
+    private boolean duplicate;
 
     public KimAbstractChange(String changeName, String changeDescription, int priority) {
     }
@@ -76,6 +98,163 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected abstract String getSequenceName();
 
+    /**
+     * Binds this change from its parsed element. With {@code liquibase.kim.useStreamingParser=true}, attributes go
+     * through {@link #bindAttribute(String, String)} and nested elements through {@link #createChild(String)} or
+     * {@link #createName(String)}, all plain method calls, instead of the reflective property metadata
+     * {@link AbstractChange#load} works from. Repeated values are pooled with {@link StringPool}. Otherwise the
+     * reflective binding is used unchanged.
+     *
+     * @throws ParsedNodeException for an attribute or nested element this change does not have
+     */
+    @Override
+    public void load(final ParsedNode parsedNode, final ResourceAccessor resourceAccessor) throws ParsedNodeException {
+        if (!KimConfiguration.getInstance().getUseStreamingParser()) {
+            super.load(parsedNode, resourceAccessor);
+            return;
+        }
+        setResourceAccessor(resourceAccessor);
+        final StringPool pool = StringPool.getInstance();
+        for (final ParsedNode child : parsedNode.getChildren()) {
+            if (child.getChildren().isEmpty() && child.getValue() != null) {
+                if (!bindAttribute(child.getName(), pool.intern(child.getName(), child.getValue().toString()))) {
+                    throw new ParsedNodeException(String.format("Unexpected attribute '%s' on %s", child.getName(), parsedNode.getName()));
+                }
+                continue;
+            }
+            final KimAbstractChange nested = createChild(child.getName());
+            if (nested != null) {
+                nested.load(child, resourceAccessor);
+                continue;
+            }
+            final KimObjectName value = createName(child.getName());
+            if (value == null) {
+                throw new ParsedNodeException(String.format("Unexpected element '%s' in %s", child.getName(), parsedNode.getName()));
+            }
+            value.load(child, resourceAccessor);
+        }
+    }
+
+    /**
+     * Sets a property from an XML attribute.
+     *
+     * @param name attribute name
+     * @param value attribute value
+     * @return false if this change has no such attribute
+     */
+    protected boolean bindAttribute(final String name, final String value) {
+        return false;
+    }
+
+    /**
+     * Creates and adds the child change for a nested XML element.
+     *
+     * @param name element name
+     * @return the new child or null if this change has no such element
+     */
+    protected KimAbstractChange createChild(final String name) {
+        return null;
+    }
+
+    /**
+     * Creates and adds the {@link KimObjectName} for a nested XML element that names a role, permission or other KIM
+     * object instead of being a change of its own.
+     *
+     * @param name element name
+     * @return the new name or null if this change has no such element
+     */
+    protected KimObjectName createName(final String name) {
+        return null;
+    }
+
+    /**
+     * Adds the natural keys of the KIM rows this change (and its nested changes) reads and writes, so that changesets
+     * touching different rows can be applied concurrently (see {@link liquibase.ext.kualigan.execution.ChangeSetGraph}).
+     *
+     * @param reads keys of rows looked up
+     * @param writes keys of rows inserted or deleted
+     * @return false if the keys are not known, in which case the change is never run concurrently with another
+     */
+    public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+        return false;
+    }
+
+    /**
+     * Whether the statements of this change include DDL, which most databases commit implicitly. Such changes are
+     * never applied in a group of changesets sharing one transaction (see
+     * {@link liquibase.ext.kualigan.execution.ChangeSetGroup}).
+     */
+    public boolean generatesDdl() {
+        return false;
+    }
+
+    public KimKey getNaturalKey() {
+        return null;
+    }
+
+    /**
+     * @return the nested changes this change generates statements for
+     */
+    public List<? extends KimAbstractChange> getNestedChanges() {
+        return Collections.<KimAbstractChange>emptyList();
+    }
+
+    public void markDuplicate() {
+        duplicate = true;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    /**
+     * Generates the statements of nested changes, in their order. When a {@link LookupPool} is registered for the
+     * database the children are resolved concurrently, each sending its lookups over a connection of its own. Only
+     * the first change of a changeset does so; later ones may depend on rows the changeset has not committed yet.
+     *
+     * @param database the {@link Database} being migrated
+     * @param children nested changes
+     * @return the statements of every child
+     */
+    protected List<SqlStatement> generateChildStatements(final Database database, final List<? extends KimAbstractChange> children) {
+        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
+        final LookupPool pool = children.size() > 1 && isFirstInChangeSet() ? LookupPool.getInstance(database) : null;
+        if (pool == null) {
+            for (final KimAbstractChange child : children) {
+                retval.addAll(Arrays.asList(child.generateStatements(database)));
+            }
+            return retval;
+        }
+
+        final List<Callable<SqlStatement[]>> tasks = new ArrayList<Callable<SqlStatement[]>>();
+        for (final KimAbstractChange child : children) {
+            tasks.add(new Callable<SqlStatement[]>() {
+                    public SqlStatement[] call() {
+                        return child.generateStatements(database);
+                    }
+                });
+        }
+        for (final SqlStatement[] statements : pool.invokeAll(tasks)) {
+            retval.addAll(Arrays.asList(statements));
+        }
+        return retval;
+    }
+
+    /**
+     * Whether nothing ran before this change in its changeset
+     */
+    protected boolean isFirstInChangeSet() {
+        final ChangeSet changeSet = getChangeSet();
+        return changeSet != null && !changeSet.getChanges().isEmpty() && changeSet.getChanges().get(0) == this;
+    }
+
+    /**
+     * The {@link Database} lookups are sent to. While nested changes are resolved concurrently this is the lookup
+     * connection of the current task.
+     */
+    protected Database getLookupDatabase(final Database database) {
+        return LookupPool.getLookupDatabase(database);
+    }
 
     protected BigInteger getPrimaryKey(Database database) {
         try {
@@ -92,22 +271,76 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
                         };
                     }
                 };
-            return (BigInteger) ExecutorService.getInstance().getExecutor(database).queryForObject(getPermissionId, BigInteger.class);
+            return (BigInteger) ExecutorService.getInstance().getExecutor(getLookupDatabase(database)).queryForObject(getPermissionId, BigInteger.class);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to generate primary key using sequence (%s)", getSequenceName()), e);
         }
     }
 
+    /**
+     * Resolves a foreign key into one of the KIM reference tables. When a {@link KimReferenceSnapshot} is in use the
+     * key is served from it, and only keys missing from it are queried (and then remembered).
+     *
+     * @param database the {@link Database} to query
+     * @param query the {@link BoundQuery} selecting the id, with the natural key bound
+     * @param reference the snapshot index matching the query
+     * @param key natural key values used in the query
+     * @return the id of the referenced row
+     */
+    protected String queryForReference(final Database database, 
+                                       final BoundQuery query, 
+                                       final Reference reference, 
+                                       final String... key) throws DatabaseException {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+        if (snapshot != null) {
+            final String cached = snapshot.lookup(reference, key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        KimLookupIndex.forReference(reference).served();
+        final String retval = query.queryForString(getLookupDatabase(database));
+        if (snapshot != null) {
+            snapshot.register(reference, retval, key);
+        }
+        return retval;
+    }
+
+    /**
+     * Records the id of a row this change inserts in the {@link KimReferenceSnapshot} (if one is in use).
+     *
+     * @param database the {@link Database} the snapshot belongs to
+     * @param reference the snapshot index to update
+     * @param id the id of the inserted row
+     * @param key natural key values
+     */
+    protected void registerReference(final Database database, final Reference reference, final String id, final String... key) {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+        if (snapshot != null) {
+            snapshot.register(reference, id, key);
+        }
+    }
+
+    /**
+     * Drops a natural key from the {@link KimReferenceSnapshot} (if one is in use) after this change inserts or removes
+     * the row it points to, so that the next lookup is answered by the database.
+     *
+     * @param database the {@link Database} the snapshot belongs to
+     * @param reference the snapshot index to update
+     * @param key natural key values
+     */
+    protected void evictReference(final Database database, final Reference reference, final String... key) {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+        if (snapshot != null) {
+            snapshot.evict(reference, key);
+        }
+    }
+
     protected String getPermissionTemplateForeignKey(Database database, final String templateName) {
         try {
-            final RuntimeStatement templateIdStatement = new RuntimeStatement() {
-                    public Sql[] generate(Database database1) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select PERM_TMPL_ID from KRIM_PERM_TMPL_T where NM = '%s'", templateName))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(templateIdStatement, String.class);
+            return queryForReference(database, new BoundQuery("select PERM_TMPL_ID from KRIM_PERM_TMPL_T where NM = ?", templateName),
+                                     Reference.PERMISSION_TEMPLATE, templateName);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Permission Template' (%s)", templateName), e);
         }
@@ -115,14 +348,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getResponsibilityTemplateForeignKey(Database database, final String templateName) {
         try {
-            final RuntimeStatement templateIdStatement = new RuntimeStatement() {
-                    public Sql[] generate(Database database1) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select RSP_TMPL_ID from KRIM_RSP_TMPL_T where nm = '%s'", templateName))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(templateIdStatement, String.class);
+            return queryForReference(database, new BoundQuery("select RSP_TMPL_ID from KRIM_RSP_TMPL_T where NM = ?", templateName),
+                                     Reference.RESPONSIBILITY_TEMPLATE, templateName);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Responsibility Template' (nm: %s)", templateName), e);
         }
@@ -130,14 +357,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getAttributeDefinitionForeignKey(Database database, final String attributeDef){
         try {
-            final SqlStatement getDefinitionId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[] {
-                            new UnparsedSql(String.format("select KIM_ATTR_DEFN_ID from krim_attr_defn_t where nm = '%s'", attributeDef))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getDefinitionId, String.class);
+            return queryForReference(database, new BoundQuery("select KIM_ATTR_DEFN_ID from KRIM_ATTR_DEFN_T where NM = ?", attributeDef),
+                                     Reference.ATTRIBUTE_DEFINITION, attributeDef);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key 'Attribute Definition' (%s)",attributeDef),e);
         }
@@ -145,14 +366,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getTypeForeignKey(Database database, final String kimType) {
         try {
-            final SqlStatement getTypeId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[] {
-                            new UnparsedSql(String.format("select kim_typ_id from krim_typ_t where nm = '%s'", kimType))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getTypeId, String.class);
+            return queryForReference(database, new BoundQuery("select KIM_TYP_ID from KRIM_TYP_T where NM = ?", kimType),
+                                     Reference.TYPE, kimType);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key 'Type Reference' (%s)",kimType),e);
         }
@@ -163,14 +378,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
             return getTypeForeignKey(database,kimType);
         }
         try {
-            final SqlStatement getTypeId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[] {
-                            new UnparsedSql(String.format("select kim_typ_id from krim_typ_t where nm = '%s' and nmspc_cd = '%s'", kimType, kimTypeNamespace))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getTypeId, String.class);
+            return queryForReference(database, new BoundQuery("select KIM_TYP_ID from KRIM_TYP_T where NM = ? and NMSPC_CD = ?", kimType, kimTypeNamespace),
+                                     Reference.NAMESPACED_TYPE, kimType, kimTypeNamespace);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key 'Type Reference' (%s, %s)",kimType, kimTypeNamespace),e);
         }
@@ -178,14 +387,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getPermissionForeignKey(Database database, final String permissionName, final String permissionNameSpace){
         try {
-            final SqlStatement getPermissionId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select PERM_ID from KRIM_PERM_T where nm = '%s' and NMSPC_CD = '%s'", permissionName, permissionNameSpace))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getPermissionId, String.class);
+            return queryForReference(database, new BoundQuery("select PERM_ID from KRIM_PERM_T where NM = ? and NMSPC_CD = ?", permissionName, permissionNameSpace),
+                                     Reference.PERMISSION, permissionName, permissionNameSpace);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retreive foreign key reference for 'Permission' (name: %s, namespace: %s)", permissionName, permissionNameSpace));
         }
@@ -197,14 +400,9 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
         }
         try {
             final String permissionTemplateId = getPermissionTemplateForeignKey(database,permissionTemplate);
-            final SqlStatement getPermissionId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select PERM_ID from KRIM_PERM_T where nm = '%s' and NMSPC_CD = '%s' and perm_tmpl_id = '%s'", permissionName, permissionNameSpace, permissionTemplateId))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getPermissionId, String.class);
+            return queryForReference(database, new BoundQuery("select PERM_ID from KRIM_PERM_T where NM = ? and NMSPC_CD = ? and PERM_TMPL_ID = ?",
+                                                              permissionName, permissionNameSpace, permissionTemplateId),
+                                     Reference.TEMPLATED_PERMISSION, permissionName, permissionNameSpace, permissionTemplateId);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retreive foreign key reference for 'Permission' (name: %s, namespace: %s)", permissionName, permissionNameSpace));
         }
@@ -213,29 +411,37 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getRoleForeignKey(Database database, final String roleName, final String namespaceCode) {
         try {
-            final SqlStatement getRoleId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[] {
-                            new UnparsedSql(String.format("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = '%s' and NMSPC_CD = '%s'", roleName, namespaceCode))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getRoleId, String.class);
+            return queryForReference(database, new BoundQuery("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = ? and NMSPC_CD = ?", roleName, namespaceCode),
+                                     Reference.ROLE, roleName, namespaceCode);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Role' (role: %s, namespace: %s)", roleName, namespaceCode), e);
         }
     }
 
+    /**
+     * Queue principal names with the {@link PrincipalResolver} so that they are resolved together with the next
+     * principal lookup instead of one query each.
+     *
+     * @param database the {@link Database} principals are resolved against
+     * @param memberNames principal names
+     */
+    protected void requestPrincipals(final Database database, final Collection<String> memberNames) {
+        final PrincipalResolver resolver = PrincipalResolver.getInstance(database);
+        if (resolver != null) {
+            resolver.request(memberNames);
+        }
+    }
+
     protected String getPrincipalForeignKey(Database database, final String memberName) {
+        final PrincipalResolver resolver = PrincipalResolver.getInstance(database);
+        if (resolver != null) {
+            return resolver.resolve(getLookupDatabase(database), memberName);
+        }
+
         try {
-            final SqlStatement getMemberId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[] {
-                            new UnparsedSql(String.format("select PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM = '%s'", memberName))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getMemberId, String.class);
+            KimLookupIndex.PRINCIPAL.served();
+            return new BoundQuery("select PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM = ?", memberName)
+                .queryForString(getLookupDatabase(database));
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Principal' (%s)", memberName), e);
         }
@@ -243,14 +449,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getResponsibilityForeignKey(Database database, final String responsibilityName) {
         try {
-            final SqlStatement getResponsibilityId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select rsp_id from krim_rsp_t where nm = '%s'", responsibilityName))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getResponsibilityId, String.class);
+            return queryForReference(database, new BoundQuery("select RSP_ID from KRIM_RSP_T where NM = ?", responsibilityName),
+                                     Reference.RESPONSIBILITY, responsibilityName);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Responsibility' (%s)", responsibilityName), e);
         }
@@ -261,14 +461,8 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
             return getResponsibilityForeignKey(database,responsibilityName);
         }
         try {
-            final SqlStatement getResponsibilityId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select rsp_id from krim_rsp_t where nm = '%s' and nmspc_cd = '%s'", responsibilityName, responsibilityNamespace))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getResponsibilityId, String.class);
+            return queryForReference(database, new BoundQuery("select RSP_ID from KRIM_RSP_T where NM = ? and NMSPC_CD = ?", responsibilityName, responsibilityNamespace),
+                                     Reference.NAMESPACED_RESPONSIBILITY, responsibilityName, responsibilityNamespace);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Responsibility' (nm: %s, space: %s)", responsibilityName, responsibilityNamespace), e);
         }
@@ -276,14 +470,9 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getRoleResponsibilityForeignKey(Database database, final String roleId , final String responsibilityId) {
         try {
-            final SqlStatement getRoleRespId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select role_rsp_id from krim_role_rsp_t where role_id = '%s' and rsp_id = '%s'", roleId, responsibilityId))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getRoleRespId, String.class);
+            KimLookupIndex.ROLE_RESPONSIBILITY.served();
+            return new BoundQuery("select ROLE_RSP_ID from KRIM_ROLE_RSP_T where ROLE_ID = ? and RSP_ID = ?", roleId, responsibilityId)
+                .queryForString(getLookupDatabase(database));
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Role Responsibility' (role_id: %s, resp_id: %s)", roleId, responsibilityId), e);
         }
@@ -291,39 +480,32 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
 
     protected String getRoleMemberForeignKey(Database database, final String roleId , final String memberId) {
         try {
-            final SqlStatement getRoleRespId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(String.format("select role_mbr_id from krim_role_mbr_t where role_id = '%s' and mbr_id = '%s'", roleId, memberId))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getRoleRespId, String.class);
+            KimLookupIndex.ROLE_MEMBER.served();
+            return new BoundQuery("select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = ? and MBR_ID = ?", roleId, memberId)
+                .queryForString(getLookupDatabase(database));
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Role Member' (role_id: %s, member_id: %s)", roleId, memberId), e);
         }
     }
 
-    protected String getRoleMemberForeignKey(Database database, final String roleId , final String memberId, final List<String> uniqueAttributeValues) {
-        if (uniqueAttributeValues == null){
+    /**
+     * Role member lookup narrowed by the values of its unique qualifiers. Attribute definition names are resolved first so
+     * that their ids can be bound; the member itself is then resolved in a single query (see {@link RoleMemberQuery}).
+     *
+     * @param uniqueAttributeValues attribute values keyed by attribute definition name
+     */
+    protected String getRoleMemberForeignKey(Database database, final String roleId , final String memberId, final Map<String, String> uniqueAttributeValues) {
+        if (uniqueAttributeValues == null || uniqueAttributeValues.isEmpty()){
             return getRoleMemberForeignKey(database,roleId,memberId);
         }
+        final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, String> uniqueAttributeValue : uniqueAttributeValues.entrySet()) {
+            attributes.put(getAttributeDefinitionForeignKey(database, uniqueAttributeValue.getKey()), uniqueAttributeValue.getValue());
+        }
         try {
-            final StringBuilder sql = new StringBuilder();
-            final String sqlTemplate = "select rm.role_mbr_id  from krim_role_mbr_t rm left join krim_role_mbr_attr_data_t rma on rma.ROLE_MBR_ID = rm.ROLE_MBR_ID  " +
-                "where rm.role_id = '%s' and rm.mbr_id = '%s' and rma.ATTR_VAL = '%s'";
-            for (String uniqueAttributeValue : uniqueAttributeValues){
-                sql.append(String.format(sqlTemplate, roleId, memberId, uniqueAttributeValue));
-                sql.append(" intersect ");
-            }
-            final SqlStatement getRoleRespId = new RuntimeStatement() {
-                    public Sql[] generate(Database database) {
-                        return new Sql[]{
-                            new UnparsedSql(StringUtils.removeEnd(sql.toString(),"intersect "))
-                        };
-                    }
-                };
-            return (String) ExecutorService.getInstance().getExecutor(database).queryForObject(getRoleRespId, String.class);
+            KimLookupIndex.ROLE_MEMBER.served();
+            KimLookupIndex.ROLE_MEMBER_ATTRIBUTE.served();
+            return RoleMemberQuery.toBoundQuery(roleId, memberId, attributes).queryForString(getLookupDatabase(database));
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Role Member' (role_id: %s, member_id: %s, attr. val: %s)", roleId, memberId, uniqueAttributeValues), e);
         }
@@ -338,7 +520,7 @@ public abstract class KimAbstractChange extends AbstractChange implements Custom
                         };
                     }
                 };
-            ExecutorService.getInstance().getExecutor(database).execute(incrementSequenceStatement);
+            ExecutorService.getInstance().getExecutor(getLookupDatabase(database)).execute(incrementSequenceStatement);
         } catch (DatabaseException e) {
             throw new UnexpectedLiquibaseException(String.format("Unable to increment sequence (%s)",getSequenceName()),e);
         }
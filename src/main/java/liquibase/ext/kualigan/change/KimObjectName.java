@@ -0,0 +1,149 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.parser.core.ParsedNode;
+import liquibase.parser.core.ParsedNodeException;
+import liquibase.resource.ResourceAccessor;
+import liquibase.serializer.AbstractLiquibaseSerializable;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.parser.KimChangeLogWriter;
+import liquibase.ext.kualigan.parser.NamespacedName;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A KIM role, permission or other namespaced object referred to by a change, written as an element with
+ * {@code namespace} and {@code name} attributes. Unlike a nested change it generates no statements; it is only part of
+ * the change that holds it, and counts in that change's checksum and serialized form.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class KimObjectName extends AbstractLiquibaseSerializable {
+    private NamespacedName key = NamespacedName.valueOf(null, null);
+
+    protected KimObjectName() {
+    }
+
+    protected KimObjectName(final String namespace, final String name) {
+        key = NamespacedName.valueOf(namespace, name);
+    }
+
+    public String getNamespace() {
+        return key.getNamespace();
+    }
+
+    public void setNamespace(final String namespace) {
+        key = key.withNamespace(namespace);
+    }
+
+    public String getName() {
+        return key.getName();
+    }
+
+    public void setName(final String name) {
+        key = key.withName(name);
+    }
+
+    public NamespacedName getKey() {
+        return key;
+    }
+
+    /**
+     * Binds this name from its parsed element. With {@code liquibase.kim.useStreamingParser=true} attributes go through
+     * {@link #bindAttribute(String, String)}, like {@link KimAbstractChange#load}; otherwise the reflective binding is
+     * used.
+     *
+     * @throws ParsedNodeException for an attribute or nested element this name does not have
+     */
+    @Override
+    public void load(final ParsedNode parsedNode, final ResourceAccessor resourceAccessor) throws ParsedNodeException {
+        if (!KimConfiguration.getInstance().getUseStreamingParser()) {
+            super.load(parsedNode, resourceAccessor);
+            return;
+        }
+        for (final ParsedNode child : parsedNode.getChildren()) {
+            if (!child.getChildren().isEmpty() || child.getValue() == null
+                || !bindAttribute(child.getName(), child.getValue().toString())) {
+                throw new ParsedNodeException(String.format("Unexpected attribute '%s' on %s", child.getName(), parsedNode.getName()));
+            }
+        }
+    }
+
+    /**
+     * Sets a property from an XML attribute.
+     *
+     * @param name attribute name
+     * @param value attribute value
+     * @return false if there is no such attribute
+     */
+    protected boolean bindAttribute(final String name, final String value) {
+        if ("namespace".equals(name)) {
+            setNamespace(value);
+        }
+        else if ("name".equals(name)) {
+            setName(value);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String getSerializedObjectNamespace() {
+        return KimChangeLogWriter.KIM_NAMESPACE;
+    }
+
+    @Override
+    public Set<String> getSerializableFields() {
+        return new LinkedHashSet<String>(Arrays.asList("namespace", "name"));
+    }
+
+    @Override
+    public Object getSerializableFieldValue(final String field) {
+        if ("namespace".equals(field)) {
+            return getNamespace();
+        }
+        else if ("name".equals(field)) {
+            return getName();
+        }
+        return super.getSerializableFieldValue(field);
+    }
+
+    @Override
+    public SerializationType getSerializableFieldType(final String field) {
+        return SerializationType.NAMED_FIELD;
+    }
+
+    @Override
+    public String toString() {
+        return key.toString();
+    }
+}
@@ -0,0 +1,224 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.AbstractChange;
+import liquibase.change.CheckSum;
+import liquibase.change.DatabaseChange;
+import liquibase.change.custom.CustomSqlChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.logging.LogFactory;
+import liquibase.parser.core.ParsedNodeException;
+import liquibase.resource.ResourceAccessor;
+import liquibase.statement.SqlStatement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import liquibase.ext.kualigan.sync.KimStateDiff;
+import liquibase.ext.kualigan.sync.KimStateSnapshot;
+import liquibase.ext.kualigan.sync.KimStateSpec;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Custom Liquibase Refactoring that brings the roles of a namespace to the state described by a YAML document (see
+ * {@link KimStateSpec}). The current rows are read with a handful of queries and compared in memory, so only the rows
+ * that differ are inserted, updated or deleted. Roles of the namespace missing from the document are deactivated,
+ * unless {@code prune="false"} in which case the document is only added to the current state.
+ *
+ * The checksum covers the document, so the change is meant to be used with {@code runOnChange="true"} or
+ * {@code runAlways="true"}.
+ *
+ * @author Leo Przybylski
+ */
+@DatabaseChange(name="syncKimState", description = "Synchronizes the roles of a KIM namespace with a YAML document", priority = EXTENSION_PRIORITY)
+public class SyncKimState extends AbstractChange implements CustomSqlChange {
+    protected String file;
+    protected Boolean relativeToChangelogFile = Boolean.FALSE;
+    protected String namespace;
+    protected Boolean prune = Boolean.TRUE;
+    private ResourceAccessor resourceAccessor;
+    private byte[] content;
+
+    public SyncKimState() {
+    }
+
+    @Override
+    public final String getConfirmationMessage() {
+        return String.format("KIM namespace %s synchronized with %s", getNamespace() != null ? getNamespace() : "", getFile());
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override 
+    public ValidationErrors validate(final Database database) {
+        final ValidationErrors retval = new ValidationErrors();
+        retval.checkRequiredField("file", getFile());
+        return retval;
+    }
+
+    @Override
+    public void setFileOpener(final ResourceAccessor resourceAccessor) {
+        this.resourceAccessor = resourceAccessor;
+    }
+
+    /**
+     * Statements depend on the current rows
+     */
+    @Override
+    public boolean generateStatementsVolatile(final Database database) {
+        return true;
+    }
+
+    /**
+     * Includes the document so that editing it changes the checksum
+     */
+    @Override
+    public CheckSum generateCheckSum() {
+        try {
+            return CheckSum.compute(super.generateCheckSum().toString() + ":" + new String(getContent(), "UTF-8"));
+        }
+        catch (IOException e) {
+            throw new UnexpectedLiquibaseException(e);
+        }
+    }
+
+    /**
+     * Generates the SQL statements required to run the change.
+     *
+     * @param database databasethe target {@link liquibase.database.Database} associated to this change's statements
+     * @return an array of {@link String}s with the statements
+     */
+    public SqlStatement[] generateStatements(final Database database) {
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            LogFactory.getLogger().warning("syncKimState needs a live JDBC connection to read the current state; skipping");
+            return new SqlStatement[0];
+        }
+
+        try {
+            final KimStateSpec spec = KimStateSpec.read(new ByteArrayInputStream(getContent()), getNamespace());
+            final KimStateSnapshot snapshot = KimStateSnapshot.load(database, spec);
+            final KimStateDiff diff = new KimStateDiff(spec, snapshot, !Boolean.FALSE.equals(getPrune()));
+            final List<SqlStatement> results = diff.toStatements(database);
+            LogFactory.getLogger().info(String.format("syncKimState %s: %s (%d queries)", spec.getNamespace(), diff.getSummary(),
+                                                      snapshot.getQueries()));
+            return results.toArray(new SqlStatement[results.size()]);
+        }
+        catch (ParsedNodeException e) {
+            throw new UnexpectedLiquibaseException(String.format("Unable to parse %s", getFile()), e);
+        }
+        catch (IOException e) {
+            throw new UnexpectedLiquibaseException(e);
+        }
+        catch (DatabaseException e) {
+            throw new UnexpectedLiquibaseException(e);
+        }
+    }
+
+    protected byte[] getContent() throws IOException {
+        if (content == null) {
+            final InputStream stream = openFile();
+            try {
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                final byte[] bytes = new byte[8192];
+                for (int read = stream.read(bytes); read != -1; read = stream.read(bytes)) {
+                    buffer.write(bytes, 0, read);
+                }
+                content = buffer.toByteArray();
+            }
+            finally {
+                stream.close();
+            }
+        }
+        return content;
+    }
+
+    protected InputStream openFile() throws IOException {
+        final ResourceAccessor accessor = resourceAccessor != null ? resourceAccessor : getResourceAccessor();
+        String path = getFile();
+        if (Boolean.TRUE.equals(getRelativeToChangelogFile()) && getChangeSet() != null) {
+            final String parent = new File(getChangeSet().getFilePath()).getParent();
+            if (parent != null) {
+                path = parent.replace('\\', '/') + "/" + path;
+            }
+        }
+        final InputStream retval = accessor != null ? accessor.getResourceAsStream(path) : null;
+        if (retval == null) {
+            throw new IOException(String.format("KIM state document %s was not found", path));
+        }
+        return retval;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(final String file) {
+        this.file = file;
+    }
+
+    public Boolean getRelativeToChangelogFile() {
+        return relativeToChangelogFile;
+    }
+
+    public void setRelativeToChangelogFile(final Boolean relativeToChangelogFile) {
+        this.relativeToChangelogFile = relativeToChangelogFile;
+    }
+
+    /**
+     * @return the namespace to synchronize when the document does not name one
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(final String namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * @return whether members, permissions and roles missing from the document are removed
+     */
+    public Boolean getPrune() {
+        return prune;
+    }
+
+    public void setPrune(final Boolean prune) {
+        this.prune = prune;
+    }
+}
@@ -0,0 +1,304 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.compaction;
+
+import liquibase.change.Change;
+import liquibase.logging.LogFactory;
+
+import liquibase.ext.kualigan.change.AddRoleMemberAttribute;
+import liquibase.ext.kualigan.change.AssignKimTypeAttribute;
+import liquibase.ext.kualigan.change.AssignRoleMember;
+import liquibase.ext.kualigan.change.AssignRolePermission;
+import liquibase.ext.kualigan.change.CreateRole;
+import liquibase.ext.kualigan.change.CreateType;
+import liquibase.ext.kualigan.change.DropKimTypeAttribute;
+import liquibase.ext.kualigan.change.NaturalKeyChange;
+import liquibase.ext.kualigan.execution.KimKey;
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.sync.KimStateSpec;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Net KIM state of a run of changesets. Changes are folded in changelog order into
+ * <ul>
+ *   <li>definitions: attribute definitions, types, permissions, responsibilities, parameters and their attributes,
+ *   once each; a type attribute dropped later in the run is never assigned</li>
+ *   <li>a {@link KimStateSpec} per namespace holding its roles, their principal and same-namespace role members and
+ *   their permissions; roles only referred to are left as they are</li>
+ *   <li>the rest (responsibility assignments and actions, other members, members qualified under another type than
+ *   their role's, member attributes) in their original order</li>
+ * </ul>
+ * Repeated identical definitions are kept once; conflicting ones are all kept so that the result stays the same.
+ *
+ * @author Leo Przybylski
+ */
+public class KimBaseline {
+    protected static final Set<KimKey.Kind> DEFINITIONS = EnumSet.of(KimKey.Kind.ATTRIBUTE_DEFINITION, KimKey.Kind.TYPE,
+                                                                     KimKey.Kind.TYPE_ATTRIBUTE, KimKey.Kind.PERMISSION,
+                                                                     KimKey.Kind.PERMISSION_ATTRIBUTE, KimKey.Kind.RESPONSIBILITY,
+                                                                     KimKey.Kind.RESPONSIBILITY_ATTRIBUTE, KimKey.Kind.PARAMETER);
+
+    private final List<Change> definitions = new ArrayList<Change>();
+    private final Map<KimKey, NaturalKeyChange> defined = new HashMap<KimKey, NaturalKeyChange>();
+    private final Map<KimKey, List<? extends Change>> typeAttributeOwners = new HashMap<KimKey, List<? extends Change>>();
+    private final Map<String, KimStateSpec> specs = new LinkedHashMap<String, KimStateSpec>();
+    private final Set<KimKey> folded = new HashSet<KimKey>();
+    private final List<Change> remaining = new ArrayList<Change>();
+    private int changes;
+    private int dropped;
+
+    /**
+     * Fold the next change of the run
+     */
+    public void add(final Change change) {
+        changes++;
+        if (change instanceof CreateRole) {
+            addRole((CreateRole) change);
+        }
+        else if (change instanceof AssignRoleMember) {
+            addMember((AssignRoleMember) change);
+        }
+        else if (change instanceof AssignRolePermission) {
+            addPermission((AssignRolePermission) change);
+        }
+        else if (change instanceof DropKimTypeAttribute) {
+            dropTypeAttribute((DropKimTypeAttribute) change);
+        }
+        else if (change instanceof NaturalKeyChange && ((NaturalKeyChange) change).getNaturalKey() != null
+                 && DEFINITIONS.contains(((NaturalKeyChange) change).getNaturalKey().getKind())) {
+            define((NaturalKeyChange) change, definitions);
+        }
+        else if (!(change instanceof NaturalKeyChange) || isNew((NaturalKeyChange) change)) {
+            remaining.add(change);
+        }
+    }
+
+    protected void addRole(final CreateRole change) {
+        String type = change.getType();
+        String typeNamespace = change.getTypeNamespace();
+        for (final CreateType nested : change.getTypes()) {
+            define(nested, definitions);
+            type = nested.getName();
+            typeNamespace = nested.getNamespace();
+        }
+
+        final KimStateSpec spec = getSpec(change.getNamespace());
+        final KimStateSpec.Role existing = spec.getRoles().get(change.getName());
+        if (existing != null && existing.getType() != null) {
+            LogFactory.getLogger().warning(String.format("Role %s:%s is created more than once; keeping the first definition",
+                                                         change.getNamespace(), change.getName()));
+        }
+        else {
+            final KimStateSpec.Role role = new KimStateSpec.Role(change.getName(), type, typeNamespace, change.getDescription(),
+                                                                 change.getActive() != null ? change.getActive() : "Y");
+            if (existing != null) {
+                role.getMembers().addAll(existing.getMembers());
+                role.getPermissions().addAll(existing.getPermissions());
+            }
+            spec.addRole(role);
+        }
+
+        for (final AssignRoleMember member : change.getMembers()) {
+            if (member.getNamespace() == null) {
+                member.setNamespace(change.getNamespace());
+            }
+            if (member.getRole() == null) {
+                member.setRole(change.getName());
+            }
+            addMember(member);
+        }
+    }
+
+    /**
+     * Principals and roles of the same namespace without actions become members in the spec. The spec stores
+     * qualifiers under the type of their role, so a member is only folded when every qualifier names the type of a
+     * role created earlier in the run.
+     */
+    protected void addMember(final AssignRoleMember change) {
+        final boolean foldable = change.getActions().isEmpty() && isActive(change.getActive())
+            && ("P".equals(change.getType())
+                || ("R".equals(change.getType()) && (change.getMemberNamespace() == null || change.getMemberNamespace().equals(change.getNamespace()))));
+        final KimStateSpec.Role role = getSpec(change.getNamespace()).getRoles().get(change.getRole());
+        final String roleType = role != null ? role.getType() : null;
+        final Map<String, String> attributes = new TreeMap<String, String>();
+        for (final AddRoleMemberAttribute attribute : change.getAttributes()) {
+            if (attribute.getAttributeDef() == null || attribute.getType() == null || !attribute.getType().equals(roleType)) {
+                remaining.add(change);
+                return;
+            }
+            attributes.put(attribute.getAttributeDef(), attribute.getValue());
+        }
+        if (!foldable) {
+            remaining.add(change);
+            return;
+        }
+        if (!folded.add(change.getNaturalKey())) {
+            dropped++;
+            return;
+        }
+        getRole(change.getNamespace(), change.getRole()).getMembers()
+            .add(new KimStateSpec.Member(change.getType(), "R".equals(change.getType()) ? change.getNamespace() : null, change.getMember(), attributes));
+    }
+
+    protected void addPermission(final AssignRolePermission change) {
+        if (!isActive(change.getActive())) {
+            remaining.add(change);
+            return;
+        }
+        if (!folded.add(change.getNaturalKey())) {
+            dropped++;
+            return;
+        }
+        getRole(change.getRoleNamespace(), change.getRole()).getPermissions()
+            .add(NamespacedName.valueOf(change.getPermissionNamespace(), change.getPermission()));
+    }
+
+    /**
+     * A drop cancels the assignment of the same type attribute earlier in the run, or is kept if there is none
+     */
+    protected void dropTypeAttribute(final DropKimTypeAttribute change) {
+        final KimKey key = KimKey.typeAttribute(change.getType(), change.getAttribute());
+        final List<? extends Change> owner = typeAttributeOwners.remove(key);
+        if (owner != null) {
+            owner.remove(defined.remove(key));
+            dropped += 2;
+        }
+        else {
+            definitions.add(change);
+        }
+    }
+
+    protected void define(final NaturalKeyChange change, final List<Change> into) {
+        if (!isNew(change)) {
+            return;
+        }
+        into.add(change);
+        if (change instanceof AssignKimTypeAttribute) {
+            typeAttributeOwners.put(change.getNaturalKey(), into);
+        }
+        else if (change instanceof CreateType) {
+            for (final AssignKimTypeAttribute attribute : ((CreateType) change).getAttributes()) {
+                if (attribute.getType() == null) {
+                    attribute.setType(((CreateType) change).getName());
+                }
+                defined.put(attribute.getNaturalKey(), attribute);
+                typeAttributeOwners.put(attribute.getNaturalKey(), ((CreateType) change).getAttributes());
+            }
+        }
+    }
+
+    /**
+     * @return false for an exact repeat of an earlier definition
+     */
+    protected boolean isNew(final NaturalKeyChange change) {
+        final KimKey key = change.getNaturalKey();
+        if (key == null) {
+            return true;
+        }
+        final NaturalKeyChange first = defined.get(key);
+        if (first == null) {
+            defined.put(key, change);
+            return true;
+        }
+        if (first.generateCheckSum().equals(change.generateCheckSum())) {
+            dropped++;
+            return false;
+        }
+        LogFactory.getLogger().warning(String.format("Conflicting definitions of %s are kept as they are", key));
+        return true;
+    }
+
+    protected KimStateSpec.Role getRole(final String namespace, final String name) {
+        final KimStateSpec spec = getSpec(namespace);
+        KimStateSpec.Role retval = spec.getRoles().get(name);
+        if (retval == null) {
+            retval = new KimStateSpec.Role(name, null, null, null, "Y");
+            spec.addRole(retval);
+        }
+        return retval;
+    }
+
+    protected KimStateSpec getSpec(final String namespace) {
+        KimStateSpec retval = specs.get(namespace);
+        if (retval == null) {
+            retval = new KimStateSpec(namespace);
+            specs.put(namespace, retval);
+        }
+        return retval;
+    }
+
+    protected static boolean isActive(final String active) {
+        return active == null || "Y".equals(active);
+    }
+
+    public boolean isEmpty() {
+        return changes == 0;
+    }
+
+    /**
+     * @return definitions to apply before the roles
+     */
+    public List<Change> getDefinitions() {
+        return definitions;
+    }
+
+    /**
+     * @return role state keyed by namespace
+     */
+    public Map<String, KimStateSpec> getSpecs() {
+        return specs;
+    }
+
+    /**
+     * @return changes to apply after the roles, in changelog order
+     */
+    public List<Change> getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * @return number of changes folded
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return number of changes that cancelled out or repeated an earlier one
+     */
+    public int getDropped() {
+        return dropped;
+    }
+}
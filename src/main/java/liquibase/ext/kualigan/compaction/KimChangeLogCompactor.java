@@ -0,0 +1,196 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.compaction;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.exception.LiquibaseException;
+import liquibase.logging.LogFactory;
+import liquibase.parser.ChangeLogParserFactory;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.resource.CompositeResourceAccessor;
+import liquibase.resource.FileSystemResourceAccessor;
+import liquibase.resource.ResourceAccessor;
+
+import liquibase.ext.kualigan.change.NaturalKeyChange;
+import liquibase.ext.kualigan.change.SyncKimState;
+import liquibase.ext.kualigan.parser.KimChangeLogWriter;
+import liquibase.ext.kualigan.sync.KimStateSpec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Rewrites a changelog into a baseline with the same resulting data. Consecutive changesets made only of KIM changes
+ * (without preconditions, contexts, dbms or run conditions) are folded into a {@link KimBaseline}, which is written as
+ * <ol>
+ *   <li>one changeset with the net definitions,</li>
+ *   <li>one {@code syncKimState} changeset per namespace, adding its roles, members and permission assignments in
+ *   a few set-based statements (the state documents are written next to the changelog),</li>
+ *   <li>one changeset with the remaining KIM changes.</li>
+ * </ol>
+ * Every other changeset is copied as it is, in its position.
+ *
+ * <pre>
+ * java -cp ... liquibase.ext.kualigan.compaction.KimChangeLogCompactor kfs/master.xml baseline [author]
+ * </pre>
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogCompactor {
+    public static final String CHANGELOG_NAME = "baseline.xml";
+    public static final String STATE_DIRECTORY = "kim-state";
+
+    private final File directory;
+    private final String author;
+
+    /**
+     * @param directory where the baseline changelog and its state documents are written
+     * @param author author of the new changesets
+     */
+    public KimChangeLogCompactor(final File directory, final String author) {
+        this.directory = directory;
+        this.author = author;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: KimChangeLogCompactor <changelog> <output directory> [author]");
+            System.exit(1);
+        }
+        final ResourceAccessor resourceAccessor = new CompositeResourceAccessor(new FileSystemResourceAccessor(),
+                                                                                new ClassLoaderResourceAccessor());
+        new KimChangeLogCompactor(new File(args[1]), args.length > 2 ? args[2] : "baseline").compact(args[0], resourceAccessor);
+    }
+
+    /**
+     * Read a changelog and write its baseline
+     *
+     * @return the baseline changelog
+     */
+    public File compact(final String changeLogFile, final ResourceAccessor resourceAccessor) throws LiquibaseException, IOException {
+        final DatabaseChangeLog changeLog = ChangeLogParserFactory.getInstance().getParser(changeLogFile, resourceAccessor)
+            .parse(changeLogFile, new ChangeLogParameters(), resourceAccessor);
+
+        final File stateDirectory = new File(directory, STATE_DIRECTORY);
+        if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+            throw new IOException(String.format("Unable to create %s", stateDirectory));
+        }
+        final File retval = new File(directory, CHANGELOG_NAME);
+        final Writer output = new OutputStreamWriter(new FileOutputStream(retval), "UTF-8");
+        try {
+            final KimChangeLogWriter writer = new KimChangeLogWriter(output);
+            writer.start();
+            int segment = 0;
+            int copied = 0;
+            int folded = 0;
+            int dropped = 0;
+            KimBaseline baseline = new KimBaseline();
+            for (final ChangeSet changeSet : changeLog.getChangeSets()) {
+                if (isFoldable(changeSet)) {
+                    for (final Change change : changeSet.getChanges()) {
+                        baseline.add(change);
+                    }
+                    continue;
+                }
+                if (!baseline.isEmpty()) {
+                    write(writer, baseline, ++segment);
+                    folded += baseline.getChanges();
+                    dropped += baseline.getDropped();
+                    baseline = new KimBaseline();
+                }
+                writer.writeChangeSet(changeSet);
+                copied++;
+            }
+            if (!baseline.isEmpty()) {
+                write(writer, baseline, ++segment);
+                folded += baseline.getChanges();
+                dropped += baseline.getDropped();
+            }
+            writer.finish();
+            LogFactory.getLogger().info(String.format("%s: folded %d KIM changes into %d segments (%d cancelled or repeated), copied %d changesets to %s",
+                                                      changeLogFile, folded, segment, dropped, copied, retval));
+        }
+        finally {
+            output.close();
+        }
+        return retval;
+    }
+
+    /**
+     * Only plain KIM changesets are folded; anything whose execution depends on more than its changes is copied
+     */
+    protected boolean isFoldable(final ChangeSet changeSet) {
+        if (changeSet.getPreconditions() != null || changeSet.isAlwaysRun() || changeSet.isRunOnChange()
+            || !isEmpty(changeSet.getContexts()) || !isEmpty(changeSet.getDbmsSet()) || changeSet.getChanges().isEmpty()) {
+            return false;
+        }
+        for (final Change change : changeSet.getChanges()) {
+            if (!(change instanceof NaturalKeyChange)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void write(final KimChangeLogWriter writer, final KimBaseline baseline, final int segment) throws IOException {
+        if (!baseline.getDefinitions().isEmpty()) {
+            writer.writeChangeSet(String.format("kim-baseline-%d-definitions", segment), author, baseline.getDefinitions());
+        }
+        for (final Map.Entry<String, KimStateSpec> spec : baseline.getSpecs().entrySet()) {
+            final String fileName = String.format("%d-%s.yml", segment, spec.getKey().replaceAll("[^A-Za-z0-9_.-]", "_"));
+            final Writer state = new OutputStreamWriter(new FileOutputStream(new File(new File(directory, STATE_DIRECTORY), fileName)), "UTF-8");
+            try {
+                spec.getValue().write(state);
+            }
+            finally {
+                state.close();
+            }
+
+            final SyncKimState sync = new SyncKimState();
+            sync.setFile(STATE_DIRECTORY + "/" + fileName);
+            sync.setRelativeToChangelogFile(Boolean.TRUE);
+            sync.setNamespace(spec.getKey());
+            sync.setPrune(Boolean.FALSE);
+            writer.writeChangeSet(String.format("kim-baseline-%d-%s", segment, spec.getKey()), author, Collections.singletonList(sync));
+        }
+        if (!baseline.getRemaining().isEmpty()) {
+            writer.writeChangeSet(String.format("kim-baseline-%d-remaining", segment), author, baseline.getRemaining());
+        }
+    }
+
+    protected static boolean isEmpty(final Object values) {
+        return values == null || (values instanceof Collection && ((Collection<?>) values).isEmpty()) || values.toString().trim().length() == 0;
+    }
+}
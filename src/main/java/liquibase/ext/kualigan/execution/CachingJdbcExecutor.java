@@ -0,0 +1,142 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.executor.jvm.JdbcExecutor;
+import liquibase.sql.Sql;
+import liquibase.sql.visitor.SqlVisitor;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.ExecutablePreparedStatement;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.InsertStatement;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.BoundSql;
+import liquibase.ext.kualigan.lookup.StatementCache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * {@link JdbcExecutor} running single-row {@link InsertStatement}s through the connection's {@link StatementCache}.
+ * Column values are bound; database functions (ids from sequences, object id functions) stay in the SQL, and lookups
+ * nested as {@link liquibase.ext.kualigan.lookup.BoundFunction}s have their parameters bound as well. The statements of
+ * this extension are generated once and their {@link BoundSql} run the same way, the rest of their SQL as is. Inserts
+ * of the same shape into the same table therefore share one prepared statement for the whole run. Anything else, and
+ * any statement when SQL visitors apply, is executed as usual.
+ * <p>
+ * Installed by the {@link ParallelChangeLogExecutor} on every connection it updates, which also opens and closes their
+ * caches; elsewhere it can be set with {@code ExecutorService.getInstance().setExecutor(database, new
+ * CachingJdbcExecutor())} between {@link StatementCache#open(liquibase.database.Database)} and
+ * {@link StatementCache#close(liquibase.database.Database)}. Without an open cache it runs everything as usual.
+ *
+ * @author Leo Przybylski
+ */
+public class CachingJdbcExecutor extends JdbcExecutor {
+    protected static final String EXTENSION_PACKAGE = "liquibase.ext.kualigan.";
+
+    @Override
+    public void execute(final SqlStatement sql, final List<SqlVisitor> sqlVisitors) throws DatabaseException {
+        final Connection connection = database.getConnection() instanceof JdbcConnection
+            ? ((JdbcConnection) database.getConnection()).getUnderlyingConnection()
+            : null;
+        final StatementCache cache = connection != null ? StatementCache.getInstance(connection) : null;
+        if (cache == null || sql instanceof ExecutablePreparedStatement || (sqlVisitors != null && !sqlVisitors.isEmpty())) {
+            super.execute(sql, sqlVisitors);
+            return;
+        }
+
+        if (sql.getClass() == InsertStatement.class) {
+            execute(cache, BoundSql.forInsert(database, (InsertStatement) sql));
+            return;
+        }
+        if (!sql.getClass().getName().startsWith(EXTENSION_PACKAGE)) {
+            super.execute(sql, sqlVisitors);
+            return;
+        }
+        for (final Sql each : SqlGeneratorFactory.getInstance().generateSql(sql, database)) {
+            if (each instanceof BoundSql) {
+                execute(cache, ((BoundSql) each).getQuery());
+                continue;
+            }
+            try {
+                final Statement statement = connection.createStatement();
+                try {
+                    statement.execute(each.toSql());
+                }
+                finally {
+                    statement.close();
+                }
+            }
+            catch (SQLException e) {
+                throw new DatabaseException(String.format("Error executing SQL %s", each.toSql()), e);
+            }
+        }
+    }
+
+    /**
+     * Runs an insert or update as a cached prepared statement
+     */
+    protected void execute(final StatementCache cache, final BoundQuery query) throws DatabaseException {
+        try {
+            final PreparedStatement statement = cache.prepare(query.getSql());
+            try {
+                synchronized (statement) {
+                    final Object[] parameters = query.getParameters();
+                    for (int i = 0; i < parameters.length; i++) {
+                        statement.setObject(i + 1, toJdbc(parameters[i]));
+                    }
+                    statement.executeUpdate();
+                }
+            }
+            finally {
+                cache.release(statement);
+            }
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Error executing SQL %s", query), e);
+        }
+    }
+
+    protected Object toJdbc(final Object value) {
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime());
+        }
+        return value;
+    }
+}
@@ -0,0 +1,196 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeSet;
+
+import liquibase.ext.kualigan.change.KimAbstractChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph over a changelog's changesets. A changeset depends on every earlier changeset that writes a
+ * {@link KimKey} it reads or writes, and on every earlier changeset that reads a key it writes. Changesets whose keys
+ * are not known (changes other than KIM changes, or changesets with preconditions) are barriers: they depend on
+ * everything before them and everything after them depends on them, so they keep their changelog position.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetGraph {
+
+    /**
+     * A changeset with its place in the changelog and its edges
+     */
+    public static class Node {
+        private final ChangeSet changeSet;
+        private final int index;
+        private final boolean barrier;
+        private final Set<Node> dependencies = new LinkedHashSet<Node>();
+        private final List<Node> dependents = new ArrayList<Node>();
+
+        protected Node(final ChangeSet changeSet, final int index, final boolean barrier) {
+            this.changeSet = changeSet;
+            this.index = index;
+            this.barrier = barrier;
+        }
+
+        public ChangeSet getChangeSet() {
+            return changeSet;
+        }
+
+        /**
+         * Position in the changelog
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isBarrier() {
+            return barrier;
+        }
+
+        public Set<Node> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        public List<Node> getDependents() {
+            return Collections.unmodifiableList(dependents);
+        }
+
+        protected void dependsOn(final Node node) {
+            if (node != null && node != this && dependencies.add(node)) {
+                node.dependents.add(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return changeSet.toString(false);
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    public ChangeSetGraph(final List<ChangeSet> changeSets) {
+        final Map<KimKey, Node> writers = new HashMap<KimKey, Node>();
+        final Map<KimKey, List<Node>> readers = new HashMap<KimKey, List<Node>>();
+        List<Node> sinceBarrier = new ArrayList<Node>();
+        Node lastBarrier = null;
+
+        for (final ChangeSet changeSet : changeSets) {
+            final Set<KimKey> reads = new HashSet<KimKey>();
+            final Set<KimKey> writes = new HashSet<KimKey>();
+            final boolean known = collectKeys(changeSet, reads, writes);
+            final Node node = new Node(changeSet, nodes.size(), !known);
+            nodes.add(node);
+
+            if (!known) {
+                node.dependsOn(lastBarrier);
+                for (final Node previous : sinceBarrier) {
+                    node.dependsOn(previous);
+                }
+                lastBarrier = node;
+                sinceBarrier = new ArrayList<Node>();
+                writers.clear();
+                readers.clear();
+                continue;
+            }
+
+            node.dependsOn(lastBarrier);
+            for (final KimKey key : reads) {
+                node.dependsOn(writers.get(key));
+            }
+            for (final KimKey key : writes) {
+                node.dependsOn(writers.get(key));
+                final List<Node> keyReaders = readers.remove(key);
+                if (keyReaders != null) {
+                    for (final Node reader : keyReaders) {
+                        node.dependsOn(reader);
+                    }
+                }
+            }
+            for (final KimKey key : reads) {
+                if (!writes.contains(key)) {
+                    List<Node> keyReaders = readers.get(key);
+                    if (keyReaders == null) {
+                        keyReaders = new ArrayList<Node>();
+                        readers.put(key, keyReaders);
+                    }
+                    keyReaders.add(node);
+                }
+            }
+            for (final KimKey key : writes) {
+                writers.put(key, node);
+            }
+            sinceBarrier.add(node);
+        }
+    }
+
+    /**
+     * Collects the keys of every change in a changeset.
+     *
+     * @return false if any of them is unknown
+     */
+    protected static boolean collectKeys(final ChangeSet changeSet, final Set<KimKey> reads, final Set<KimKey> writes) {
+        if (changeSet.getPreconditions() != null || changeSet.getChanges().isEmpty()) {
+            return false;
+        }
+        for (final Change change : changeSet.getChanges()) {
+            if (!(change instanceof KimAbstractChange) || !((KimAbstractChange) change).collectKeys(reads, writes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * All nodes in changelog order
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Nodes with no dependencies, in changelog order
+     */
+    public List<Node> getRoots() {
+        final List<Node> retval = new ArrayList<Node>();
+        for (final Node node : nodes) {
+            if (node.getDependencies().isEmpty()) {
+                retval.add(node);
+            }
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.MigrationFailedException;
+import liquibase.executor.Executor;
+import liquibase.executor.ExecutorService;
+import liquibase.logging.LogFactory;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.core.MarkChangeSetRanStatement;
+import liquibase.statement.core.RawSqlStatement;
+
+import liquibase.ext.kualigan.change.KimAbstractChange;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies consecutive KIM changesets in one transaction and commits them together. The {@code DATABASECHANGELOG}
+ * rows of the group are written as one JDBC batch just before the commit, so a group of <code>size</code> changesets
+ * costs one commit instead of <code>size</code>.
+ * <p>
+ * When a changeset fails the whole group is rolled back, back to the last commit, and the failure names the changeset
+ * and the first changeset of the group. Rows inserted by the group are also dropped from the
+ * {@link KimReferenceSnapshot}. Lookups have to be sent over the migrating connection while commits are deferred, so
+ * no {@link LookupPool} may be registered for it.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetGroup {
+    private final DatabaseChangeLog changeLog;
+    private final Database database;
+    private final int size;
+    private final List<ChangeSet> changeSets = new ArrayList<ChangeSet>();
+    private final List<ChangeSet.ExecType> execTypes = new ArrayList<ChangeSet.ExecType>();
+    private final List<Sql> marks = new ArrayList<Sql>();
+
+    /**
+     * @param changeLog the changelog being applied
+     * @param database the database being migrated
+     * @param size number of changesets committed together
+     */
+    public ChangeSetGroup(final DatabaseChangeLog changeLog, final Database database, final int size) {
+        this.changeLog = changeLog;
+        this.database = database;
+        this.size = size;
+    }
+
+    /**
+     * Whether a changeset can join a group: it holds only KIM changes that generate no DDL, has no preconditions, runs
+     * in a transaction and stops the update when it fails
+     */
+    public static boolean accepts(final ChangeSet changeSet) {
+        if (changeSet.getPreconditions() != null
+            || changeSet.getChanges().isEmpty()
+            || !changeSet.isRunInTransaction()
+            || (changeSet.getFailOnError() != null && !changeSet.getFailOnError())) {
+            return false;
+        }
+        for (final Change change : changeSet.getChanges()) {
+            if (!(change instanceof KimAbstractChange) || ((KimAbstractChange) change).generatesDdl()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a changeset without committing it, and commits the group once it is full. A changeset that ran before
+     * (<code>runAlways</code> or <code>runOnChange</code>) is marked {@link ChangeSet.ExecType#RERAN}, which updates
+     * its {@code DATABASECHANGELOG} row instead of inserting another.
+     *
+     * @throws MigrationFailedException after rolling the group back
+     */
+    public void add(final ChangeSet changeSet) throws MigrationFailedException {
+        try {
+            final ChangeSet.ExecType execType = database.getRunStatus(changeSet) == ChangeSet.RunStatus.NOT_RAN
+                ? ChangeSet.ExecType.EXECUTED
+                : ChangeSet.ExecType.RERAN;
+            apply(changeSet);
+            final MarkChangeSetRanStatement mark = new MarkChangeSetRanStatement(changeSet, execType);
+            marks.addAll(Arrays.asList(SqlGeneratorFactory.getInstance().generateSql(mark, database)));
+            changeSets.add(changeSet);
+            execTypes.add(execType);
+        }
+        catch (Exception e) {
+            throw rollback(changeSet, e);
+        }
+
+        if (changeSets.size() >= size) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes the {@code DATABASECHANGELOG} rows of the changesets applied since the last commit and commits them
+     *
+     * @throws MigrationFailedException after rolling the group back
+     */
+    public void commit() throws MigrationFailedException {
+        if (changeSets.isEmpty()) {
+            return;
+        }
+        final ChangeSet last = changeSets.get(changeSets.size() - 1);
+        try {
+            writeMarks();
+            database.commit();
+        }
+        catch (Exception e) {
+            throw rollback(last, e);
+        }
+        for (int i = 0; i < changeSets.size(); i++) {
+            LogFactory.getLogger().info(String.format("%s %s", changeSets.get(i).toString(false), execTypes.get(i)));
+        }
+        LogFactory.getLogger().info(String.format("Committed %d changesets", changeSets.size()));
+        changeSets.clear();
+        execTypes.clear();
+        marks.clear();
+    }
+
+    protected void apply(final ChangeSet changeSet) throws Exception {
+        final Executor executor = ExecutorService.getInstance().getExecutor(database);
+        database.setObjectQuotingStrategy(changeSet.getObjectQuotingStrategy());
+        if (database.supportsDDLInTransaction()) {
+            database.setAutoCommit(false);
+        }
+        executor.comment("Changeset " + changeSet.toString(false));
+        for (final Change change : changeSet.getChanges()) {
+            database.executeStatements(change, changeLog, changeSet.getSqlVisitors());
+        }
+    }
+
+    /**
+     * Sends the changelog rows in one batch, or one at a time when the connection is not a JDBC one
+     */
+    protected void writeMarks() throws DatabaseException, SQLException {
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            final Executor executor = ExecutorService.getInstance().getExecutor(database);
+            for (final Sql mark : marks) {
+                executor.execute(new RawSqlStatement(mark.toSql(), mark.getEndDelimiter()));
+            }
+            return;
+        }
+
+        final Statement statement = ((JdbcConnection) database.getConnection()).getUnderlyingConnection().createStatement();
+        try {
+            for (final Sql mark : marks) {
+                statement.addBatch(mark.toSql());
+            }
+            statement.executeBatch();
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    protected MigrationFailedException rollback(final ChangeSet failed, final Exception cause) {
+        final String first = changeSets.isEmpty() ? failed.toString(false) : changeSets.get(0).toString(false);
+        try {
+            database.rollback();
+        }
+        catch (DatabaseException e) {
+            LogFactory.getLogger().warning("Unable to roll back changesets since " + first, e);
+        }
+        KimReferenceSnapshot.reset(database);
+        changeSets.clear();
+        execTypes.clear();
+        marks.clear();
+        return new MigrationFailedException(failed, String.format("%s failed; changesets since %s were rolled back",
+                                                                  failed.toString(false), first), cause);
+    }
+}
@@ -0,0 +1,251 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.logging.LogFactory;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.InsertStatement;
+import liquibase.statement.core.RawSqlStatement;
+
+import liquibase.ext.kualigan.change.KimAbstractChange;
+import liquibase.ext.kualigan.execution.ChangeSetGraph.Node;
+import liquibase.ext.kualigan.lookup.StatementCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+/**
+ * Prepares the changesets of a {@link ChangeSetGraph} on a background thread while an earlier one executes. Preparing
+ * generates the statements of the first change of a changeset and renders them to SQL, so its foreign key lookups and
+ * id allocations are sent over a connection of the pipeline's own. Prepared changesets are handed over in changelog
+ * order through a queue holding at most <code>depth</code> of them.
+ * <p>
+ * A changeset is only prepared once every changeset it depends on has committed, because the lookup connection only
+ * sees committed rows. Later changes of a changeset may depend on rows its first change has not committed yet, so they
+ * are generated when the changeset executes. Barriers are never prepared; neither are changesets that do not run in a
+ * transaction or may fail, which {@link ChangeSet#execute} has to handle. A changeset that cannot be prepared for any
+ * other reason is handed over unprepared as well.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetPipeline {
+
+    /**
+     * A changeset taken from the pipeline
+     */
+    public static class Prepared {
+        private final Node node;
+        private final List<SqlStatement> statements;
+
+        protected Prepared(final Node node, final List<SqlStatement> statements) {
+            this.node = node;
+            this.statements = statements;
+        }
+
+        public ChangeSet getChangeSet() {
+            return node.getChangeSet();
+        }
+
+        /**
+         * @return the statements of the first change, or <code>null</code> when the changeset was not prepared and
+         * has to be executed as usual
+         */
+        public List<SqlStatement> getStatements() {
+            return statements;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Database database;
+    private final DatabaseSource source;
+    private final BlockingQueue<Prepared> queue;
+    private final Object lock = new Object();
+    private int committed;
+    private Thread thread;
+
+    /**
+     * @param graph the pending changesets
+     * @param database the database being migrated
+     * @param source opens the connection lookups are sent over while preparing
+     * @param depth number of changesets prepared ahead
+     */
+    public ChangeSetPipeline(final ChangeSetGraph graph, final Database database, final DatabaseSource source, final int depth) {
+        this.nodes = graph.getNodes();
+        this.database = database;
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<Prepared>(Math.max(depth, 1));
+    }
+
+    /**
+     * Starts preparing on a daemon thread
+     */
+    public void start() throws DatabaseException {
+        final Database lookup = source.open();
+        lookup.getConnection().setAutoCommit(true);
+        StatementCache.open(lookup);
+        thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (final Node node : nodes) {
+                            queue.put(new Prepared(node, prepareOrSkip(lookup, node)));
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        StatementCache.close(lookup);
+                        try {
+                            lookup.close();
+                        }
+                        catch (DatabaseException e) {
+                            LogFactory.getLogger().warning("Unable to close pipeline connection", e);
+                        }
+                    }
+                }
+            }, "kim-pipeline");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits for the next changeset in changelog order
+     */
+    public Prepared take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /**
+     * Records that the changeset taken last has committed
+     */
+    public void committed() {
+        synchronized (lock) {
+            committed++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops preparing. Changesets already prepared are discarded.
+     */
+    public void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        queue.clear();
+    }
+
+    protected boolean isPreparable(final Node node) {
+        final ChangeSet changeSet = node.getChangeSet();
+        return !node.isBarrier()
+            && !changeSet.getChanges().isEmpty()
+            && changeSet.isRunInTransaction()
+            && (changeSet.getFailOnError() == null || changeSet.getFailOnError())
+            && changeSet.getChanges().get(0) instanceof KimAbstractChange;
+    }
+
+    /**
+     * Prepares a changeset, handing it over unprepared if anything goes wrong so that the executing thread is never
+     * left waiting for it
+     *
+     * @return the statements, or <code>null</code> when the changeset is executed as usual
+     */
+    protected List<SqlStatement> prepareOrSkip(final Database lookup, final Node node) throws InterruptedException {
+        try {
+            return prepare(lookup, node);
+        }
+        catch (InterruptedException e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            LogFactory.getLogger().debug(String.format("Unable to prepare %s, it is executed as usual", node), e);
+            return null;
+        }
+    }
+
+    /**
+     * Generates the statements of the first change of a changeset once its dependencies have committed
+     *
+     * @return the statements, or <code>null</code> when the changeset is executed as usual
+     */
+    protected List<SqlStatement> prepare(final Database lookup, final Node node) throws InterruptedException {
+        if (!isPreparable(node)) {
+            return null;
+        }
+
+        int last = -1;
+        for (final Node dependency : node.getDependencies()) {
+            last = Math.max(last, dependency.getIndex());
+        }
+        synchronized (lock) {
+            while (committed <= last) {
+                lock.wait();
+            }
+        }
+
+        final Change change = node.getChangeSet().getChanges().get(0);
+        try {
+            return LookupPool.call(lookup, new Callable<List<SqlStatement>>() {
+                    public List<SqlStatement> call() {
+                        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
+                        for (final SqlStatement statement : change.generateStatements(database)) {
+                            retval.addAll(render(lookup, statement));
+                        }
+                        return retval;
+                    }
+                });
+        }
+        catch (Exception e) {
+            LogFactory.getLogger().debug(String.format("Unable to prepare %s, it is executed as usual", node), e);
+            return null;
+        }
+    }
+
+    /**
+     * Renders a statement to SQL on the lookup connection, which runs the lookups its generator makes. Inserts hold
+     * their values already and are kept as they are, so that they still share prepared statements.
+     */
+    protected List<SqlStatement> render(final Database lookup, final SqlStatement statement) {
+        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
+        if (statement instanceof InsertStatement) {
+            retval.add(statement);
+            return retval;
+        }
+        for (final Sql sql : SqlGeneratorFactory.getInstance().generateSql(statement, lookup)) {
+            retval.add(new RawSqlStatement(sql.toSql(), sql.getEndDelimiter()));
+        }
+        return retval;
+    }
+}
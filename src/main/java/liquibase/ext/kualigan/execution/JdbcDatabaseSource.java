@@ -0,0 +1,73 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * {@link DatabaseSource} opening JDBC connections through the {@link DriverManager}.
+ *
+ * @author Leo Przybylski
+ */
+public class JdbcDatabaseSource implements DatabaseSource {
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String defaultSchemaName;
+
+    public JdbcDatabaseSource(final String url, final String username, final String password) {
+        this(url, username, password, null);
+    }
+
+    public JdbcDatabaseSource(final String url, final String username, final String password, final String defaultSchemaName) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.defaultSchemaName = defaultSchemaName;
+    }
+
+    public Database open() throws DatabaseException {
+        try {
+            final Connection connection = DriverManager.getConnection(url, username, password);
+            connection.setAutoCommit(false);
+            final Database retval = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            if (defaultSchemaName != null) {
+                retval.setDefaultSchemaName(defaultSchemaName);
+            }
+            return retval;
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to connect to %s", url), e);
+        }
+    }
+}
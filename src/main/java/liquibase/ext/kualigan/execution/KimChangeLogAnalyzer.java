@@ -0,0 +1,302 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.exception.ChangeLogParseException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.logging.LogFactory;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.change.DropKimTypeAttribute;
+import liquibase.ext.kualigan.change.KimAbstractChange;
+import liquibase.ext.kualigan.change.NaturalKeyChange;
+import liquibase.ext.kualigan.change.SyncKimState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds KIM rows and parameters defined more than once across a changelog before it runs. Every change is hashed by
+ * the natural key and table of the row it defines (see {@link NaturalKeyChange#getNaturalKey()}), so the pass is linear
+ * in the number of changes. Checksums are only computed for keys seen twice: equal ones are duplicates, different
+ * ones are conflicting definitions. Changesets with different contexts or dbms are compared separately.
+ *
+ * With {@link Mode#COLLAPSE} later duplicates become no-ops, unless the first definition is guarded by preconditions.
+ * Conflicts are never collapsed. A change removing rows ({@code dropKimTypeAttribute}, or {@code syncKimState} with
+ * pruning) forgets the definitions of those rows, so a later definition is not taken for a repeat of one made before
+ * the removal.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogAnalyzer {
+
+    public enum Mode {
+        IGNORE,
+        WARN,
+        COLLAPSE,
+        FAIL
+    }
+
+    /**
+     * Rows of its namespace {@code syncKimState} may delete or deactivate
+     */
+    protected static final Set<KimKey.Kind> PRUNED = Collections.unmodifiableSet(EnumSet.of(
+        KimKey.Kind.ROLE, KimKey.Kind.ROLE_MEMBER, KimKey.Kind.ROLE_MEMBER_ATTRIBUTE, KimKey.Kind.ROLE_PERMISSION));
+
+    private final Mode mode;
+    private final Map<Scope, Definition> definitions = new HashMap<Scope, Definition>();
+    private final List<Finding> findings = new ArrayList<Finding>();
+
+    public KimChangeLogAnalyzer(final Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return an analyzer in the mode set by {@code liquibase.kim.duplicateChanges}
+     */
+    public static KimChangeLogAnalyzer fromConfiguration() {
+        final String mode = KimConfiguration.getInstance().getDuplicateChanges();
+        try {
+            return new KimChangeLogAnalyzer(Mode.valueOf(mode.trim().toUpperCase()));
+        }
+        catch (IllegalArgumentException e) {
+            throw new UnexpectedLiquibaseException(String.format("Unknown liquibase.kim.duplicateChanges setting '%s'", mode));
+        }
+    }
+
+    /**
+     * Analyze a parsed changelog, logging what is found and acting on it according to the mode
+     *
+     * @return duplicates and conflicts, in changelog order
+     */
+    public List<Finding> analyze(final DatabaseChangeLog changeLog) throws ChangeLogParseException {
+        if (mode == Mode.IGNORE) {
+            return findings;
+        }
+        for (final ChangeSet changeSet : changeLog.getChangeSets()) {
+            for (final Change change : changeSet.getChanges()) {
+                visit(changeSet, change);
+            }
+        }
+
+        int duplicates = 0;
+        for (final Finding finding : findings) {
+            if (finding.isConflict()) {
+                LogFactory.getLogger().warning(finding.toString());
+            }
+            else {
+                duplicates++;
+                if (mode != Mode.COLLAPSE || !finding.isCollapsed()) {
+                    LogFactory.getLogger().warning(finding.toString());
+                }
+            }
+        }
+        if (!findings.isEmpty()) {
+            LogFactory.getLogger().info(String.format("%s: %d duplicate and %d conflicting KIM definitions%s", changeLog.getPhysicalFilePath(),
+                                                      duplicates, findings.size() - duplicates,
+                                                      mode == Mode.COLLAPSE ? " (duplicates skipped)" : ""));
+        }
+        if (mode == Mode.FAIL && !findings.isEmpty()) {
+            throw new ChangeLogParseException(String.format("%s defines %d KIM rows more than once, first: %s", changeLog.getPhysicalFilePath(),
+                                                            findings.size(), findings.get(0)));
+        }
+        return findings;
+    }
+
+    protected void visit(final ChangeSet changeSet, final Change change) {
+        if (change instanceof DropKimTypeAttribute) {
+            final DropKimTypeAttribute drop = (DropKimTypeAttribute) change;
+            forget(KimKey.typeAttribute(drop.getType(), drop.getAttribute()));
+            return;
+        }
+        if (change instanceof SyncKimState) {
+            final SyncKimState sync = (SyncKimState) change;
+            if (!Boolean.FALSE.equals(sync.getPrune())) {
+                forget(sync.getNamespace(), PRUNED);
+            }
+            return;
+        }
+        if (!(change instanceof NaturalKeyChange)) {
+            return;
+        }
+        final NaturalKeyChange keyed = (NaturalKeyChange) change;
+        final KimKey key = keyed.getNaturalKey();
+        if (key != null) {
+            final Scope scope = new Scope(key, String.valueOf(changeSet.getContexts()) + "|" + String.valueOf(changeSet.getDbmsSet()));
+            final Definition first = definitions.get(scope);
+            if (first == null) {
+                definitions.put(scope, new Definition(changeSet, keyed));
+            }
+            else {
+                final boolean conflict = !first.getCheckSum().equals(keyed.generateCheckSum().toString());
+                final boolean collapsed = !conflict && mode == Mode.COLLAPSE && first.getChangeSet().getPreconditions() == null;
+                if (collapsed) {
+                    keyed.markDuplicate();
+                }
+                findings.add(new Finding(key, first.getChangeSet(), changeSet, conflict, collapsed));
+                if (!conflict) {
+                    return;
+                }
+            }
+        }
+        if (change instanceof KimAbstractChange) {
+            for (final KimAbstractChange nested : ((KimAbstractChange) change).getNestedChanges()) {
+                visit(changeSet, nested);
+            }
+        }
+    }
+
+    /**
+     * Forget the definitions of a row that was removed, in every scope
+     */
+    protected void forget(final KimKey key) {
+        for (final Iterator<Scope> scopes = definitions.keySet().iterator(); scopes.hasNext();) {
+            if (scopes.next().key.equals(key)) {
+                scopes.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget the definitions of every row of the given kinds in a namespace
+     *
+     * @param namespace the namespace, or <code>null</code> when it is not known, in which case every namespace
+     */
+    protected void forget(final String namespace, final Set<KimKey.Kind> kinds) {
+        for (final Iterator<Scope> scopes = definitions.keySet().iterator(); scopes.hasNext();) {
+            final KimKey key = scopes.next().key;
+            if (kinds.contains(key.getKind()) && (namespace == null || namespace.equals(key.getNamespace()))) {
+                scopes.remove();
+            }
+        }
+    }
+
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * A row defined more than once
+     */
+    public static class Finding {
+        private final KimKey key;
+        private final ChangeSet first;
+        private final ChangeSet repeated;
+        private final boolean conflict;
+        private final boolean collapsed;
+
+        public Finding(final KimKey key, final ChangeSet first, final ChangeSet repeated, final boolean conflict, final boolean collapsed) {
+            this.key = key;
+            this.first = first;
+            this.repeated = repeated;
+            this.conflict = conflict;
+            this.collapsed = collapsed;
+        }
+
+        public KimKey getKey() {
+            return key;
+        }
+
+        public ChangeSet getFirst() {
+            return first;
+        }
+
+        public ChangeSet getRepeated() {
+            return repeated;
+        }
+
+        /**
+         * @return <code>true</code> if the definitions differ, <code>false</code> for an exact duplicate
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+
+        public boolean isCollapsed() {
+            return collapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s in %s: %s already defined in %s", conflict ? "Conflicting definition of" : "Duplicate",
+                                 key, key.getKind().getTableName(), repeated.toString(false), first.toString(false));
+        }
+    }
+
+    private static class Definition {
+        private final ChangeSet changeSet;
+        private final NaturalKeyChange change;
+        private String checkSum;
+
+        Definition(final ChangeSet changeSet, final NaturalKeyChange change) {
+            this.changeSet = changeSet;
+            this.change = change;
+        }
+
+        ChangeSet getChangeSet() {
+            return changeSet;
+        }
+
+        String getCheckSum() {
+            if (checkSum == null) {
+                checkSum = change.generateCheckSum().toString();
+            }
+            return checkSum;
+        }
+    }
+
+    private static class Scope {
+        private final KimKey key;
+        private final String filter;
+
+        Scope(final KimKey key, final String filter) {
+            this.key = key;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Scope)) {
+                return false;
+            }
+            return key.equals(((Scope) other).key) && filter.equals(((Scope) other).filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + filter.hashCode();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+/**
+ * Natural key of a KIM row a change reads or writes, used to order changesets that touch the same rows and to find
+ * rows defined more than once (see {@link KimChangeLogAnalyzer}). Types, responsibilities and attribute definitions
+ * are keyed by name alone because some lookups resolve them without a namespace; roles and permissions are keyed by
+ * namespace and name.
+ *
+ * @author Leo Przybylski
+ */
+public class KimKey {
+
+    public enum Kind {
+        ATTRIBUTE_DEFINITION("KRIM_ATTR_DEFN_T"),
+        TYPE("KRIM_TYP_T"),
+        TYPE_ATTRIBUTE("KRIM_TYP_ATTR_T"),
+        ROLE("KRIM_ROLE_T"),
+        ROLE_MEMBER("KRIM_ROLE_MBR_T"),
+        ROLE_MEMBER_ATTRIBUTE("KRIM_ROLE_MBR_ATTR_DATA_T"),
+        PERMISSION("KRIM_PERM_T"),
+        PERMISSION_ATTRIBUTE("KRIM_PERM_ATTR_DATA_T"),
+        ROLE_PERMISSION("KRIM_ROLE_PERM_T"),
+        RESPONSIBILITY("KRIM_RSP_T"),
+        RESPONSIBILITY_ATTRIBUTE("KRIM_RSP_ATTR_DATA_T"),
+        ROLE_RESPONSIBILITY("KRIM_ROLE_RSP_T"),
+        ROLE_RESPONSIBILITY_ACTION("KRIM_ROLE_RSP_ACTN_T"),
+        PARAMETER("KRCR_PARM_T");
+
+        private final String tableName;
+
+        Kind(final String tableName) {
+            this.tableName = tableName;
+        }
+
+        /**
+         * @return the table holding rows of this kind
+         */
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    private final Kind kind;
+    private final String namespace;
+    private final String name;
+
+    public KimKey(final Kind kind, final String namespace, final String name) {
+        this.kind = kind;
+        this.namespace = namespace;
+        this.name = name;
+    }
+
+    public static KimKey attributeDefinition(final String name) {
+        return new KimKey(Kind.ATTRIBUTE_DEFINITION, null, name);
+    }
+
+    public static KimKey type(final String name) {
+        return new KimKey(Kind.TYPE, null, name);
+    }
+
+    public static KimKey role(final String namespace, final String name) {
+        return new KimKey(Kind.ROLE, namespace, name);
+    }
+
+    public static KimKey roleMember(final String roleNamespace, final String roleName, final String member) {
+        return new KimKey(Kind.ROLE_MEMBER, roleNamespace, roleName + "/" + member);
+    }
+
+    public static KimKey permission(final String namespace, final String name) {
+        return new KimKey(Kind.PERMISSION, namespace, name);
+    }
+
+    public static KimKey responsibility(final String name) {
+        return new KimKey(Kind.RESPONSIBILITY, null, name);
+    }
+
+    public static KimKey roleResponsibility(final String roleNamespace, final String roleName, final String responsibility) {
+        return new KimKey(Kind.ROLE_RESPONSIBILITY, roleNamespace, roleName + "/" + responsibility);
+    }
+
+    public static KimKey typeAttribute(final String type, final String attribute) {
+        return new KimKey(Kind.TYPE_ATTRIBUTE, null, type + "/" + attribute);
+    }
+
+    public static KimKey roleMemberAttribute(final String roleNamespace, final String roleName, final String member,
+                                             final String attribute, final String value) {
+        return new KimKey(Kind.ROLE_MEMBER_ATTRIBUTE, roleNamespace, roleName + "/" + member + "/" + attribute + "=" + value);
+    }
+
+    public static KimKey permissionAttribute(final String namespace, final String permission, final String attribute) {
+        return new KimKey(Kind.PERMISSION_ATTRIBUTE, namespace, permission + "/" + attribute);
+    }
+
+    public static KimKey rolePermission(final String roleNamespace, final String roleName, final String permissionNamespace,
+                                        final String permission) {
+        return new KimKey(Kind.ROLE_PERMISSION, roleNamespace, roleName + "/" + permissionNamespace + ":" + permission);
+    }
+
+    public static KimKey responsibilityAttribute(final String responsibility, final String attribute) {
+        return new KimKey(Kind.RESPONSIBILITY_ATTRIBUTE, null, responsibility + "/" + attribute);
+    }
+
+    public static KimKey roleResponsibilityAction(final String roleNamespace, final String roleName, final String responsibility,
+                                                  final String member) {
+        return new KimKey(Kind.ROLE_RESPONSIBILITY_ACTION, roleNamespace, roleName + "/" + responsibility + "/" + member);
+    }
+
+    public static KimKey parameter(final String application, final String namespace, final String component, final String name) {
+        return new KimKey(Kind.PARAMETER, namespace, application + "/" + component + "/" + name);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof KimKey)) {
+            return false;
+        }
+        final KimKey key = (KimKey) other;
+        return kind == key.kind 
+            && (namespace == null ? key.namespace == null : namespace.equals(key.namespace))
+            && (name == null ? key.name == null : name.equals(key.name));
+    }
+
+    @Override
+    public int hashCode() {
+        int retval = kind.hashCode();
+        retval = 31 * retval + (namespace != null ? namespace.hashCode() : 0);
+        retval = 31 * retval + (name != null ? name.hashCode() : 0);
+        return retval;
+    }
+
+    @Override
+    public String toString() {
+        return namespace != null ? String.format("%s(%s:%s)", kind, namespace, name) : String.format("%s(%s)", kind, name);
+    }
+}
@@ -0,0 +1,262 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.logging.LogFactory;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.lookup.StatementCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs lookups on behalf of a {@link Database} concurrently, each task on an auto-commit connection of its own opened
+ * through a {@link DatabaseSource}. While a task runs, {@link #getLookupDatabase(Database)} answers its connection, so
+ * the lookups of a change are sent over it while caches stay keyed by the database being migrated.
+ * <p>
+ * Lookup connections only see committed rows. Callers are responsible for not resolving anything the migrating
+ * connection has written but not committed yet.
+ *
+ * @author Leo Przybylski
+ */
+public class LookupPool {
+    private static final Map<Database, LookupPool> pools = new WeakHashMap<Database, LookupPool>();
+    private static final ThreadLocal<Database> current = new ThreadLocal<Database>();
+
+    private final DatabaseSource source;
+    private final BlockingQueue<Database> idle = new LinkedBlockingQueue<Database>();
+    private final List<Database> opened = new ArrayList<Database>();
+    private final ExecutorService executor;
+
+    protected LookupPool(final DatabaseSource source, final int size) {
+        this.source = source;
+        this.executor = Executors.newFixedThreadPool(size, new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    final Thread retval = new Thread(runnable, "kim-lookup");
+                    retval.setDaemon(true);
+                    return retval;
+                }
+            });
+    }
+
+    /**
+     * Resolve lookups for a {@link Database} over connections opened by the given source. Replaces (and closes) any
+     * pool registered before; nothing is registered when {@code liquibase.kim.lookupConnections} is 1 or less.
+     *
+     * @param database the database being migrated
+     * @param source opens the lookup connections
+     */
+    public static void register(final Database database, final DatabaseSource source) {
+        final int size = KimConfiguration.getInstance().getLookupConnections();
+        final LookupPool previous;
+        synchronized (pools) {
+            previous = size > 1 ? pools.put(database, new LookupPool(source, size)) : pools.remove(database);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stop resolving lookups for a {@link Database} concurrently and close its lookup connections.
+     *
+     * @param database the database being migrated
+     */
+    public static void unregister(final Database database) {
+        final LookupPool previous;
+        synchronized (pools) {
+            previous = pools.remove(database);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Get the pool registered for a {@link Database}
+     *
+     * @param database the database being migrated
+     * @return the {@link LookupPool} or <code>null</code> when none is registered or the database has no sequences
+     * (ids are then allocated on the migrating connection)
+     */
+    public static LookupPool getInstance(final Database database) {
+        if (database == null || !database.supportsSequences()) {
+            return null;
+        }
+        synchronized (pools) {
+            return pools.get(database);
+        }
+    }
+
+    /**
+     * The {@link Database} lookups should be sent to from the current thread
+     *
+     * @param database the database being migrated
+     * @return the lookup connection of the task running on this thread, otherwise <code>database</code>
+     */
+    public static Database getLookupDatabase(final Database database) {
+        final Database retval = current.get();
+        return retval != null ? retval : database;
+    }
+
+    /**
+     * Runs a task on the current thread with its lookups sent to the given connection instead of the migrating one
+     *
+     * @param lookup an auto-commit connection to the database being migrated
+     * @param task the task to run
+     * @return the result of <code>task</code>
+     */
+    public static <T> T call(final Database lookup, final Callable<T> task) throws Exception {
+        final Database previous = current.get();
+        current.set(lookup);
+        try {
+            return task.call();
+        }
+        finally {
+            if (previous != null) {
+                current.set(previous);
+            }
+            else {
+                current.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs every task and waits for all of them. Tasks submitted from within a task of this pool run inline on the
+     * caller's connection, so nested changes never wait for a connection their parent holds.
+     *
+     * @param tasks the tasks to run
+     * @return the results in the order of <code>tasks</code>
+     * @throws UnexpectedLiquibaseException wrapping the first failure
+     */
+    public <T> List<T> invokeAll(final List<Callable<T>> tasks) {
+        final List<T> retval = new ArrayList<T>(tasks.size());
+        if (isPooled(current.get())) {
+            for (final Callable<T> task : tasks) {
+                try {
+                    retval.add(task.call());
+                }
+                catch (RuntimeException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    throw new UnexpectedLiquibaseException(e);
+                }
+            }
+            return retval;
+        }
+
+        final List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        for (final Callable<T> task : tasks) {
+            futures.add(executor.submit(new Callable<T>() {
+                    public T call() throws Exception {
+                        final Database lookup = borrow();
+                        current.set(lookup);
+                        try {
+                            return task.call();
+                        }
+                        finally {
+                            current.remove();
+                            idle.add(lookup);
+                        }
+                    }
+                }));
+        }
+
+        try {
+            for (final Future<T> future : futures) {
+                retval.add(future.get());
+            }
+            return retval;
+        }
+        catch (ExecutionException e) {
+            for (final Future<T> future : futures) {
+                future.cancel(false);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnexpectedLiquibaseException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedLiquibaseException(e);
+        }
+    }
+
+    protected boolean isPooled(final Database lookup) {
+        if (lookup == null) {
+            return false;
+        }
+        synchronized (opened) {
+            return opened.contains(lookup);
+        }
+    }
+
+    protected Database borrow() throws DatabaseException {
+        Database retval = idle.poll();
+        if (retval == null) {
+            retval = source.open();
+            retval.getConnection().setAutoCommit(true);
+            StatementCache.open(retval);
+            synchronized (opened) {
+                opened.add(retval);
+            }
+        }
+        return retval;
+    }
+
+    protected void close() {
+        executor.shutdown();
+        synchronized (opened) {
+            for (final Database lookup : opened) {
+                StatementCache.close(lookup);
+                try {
+                    lookup.close();
+                }
+                catch (DatabaseException e) {
+                    LogFactory.getLogger().warning("Unable to close lookup connection", e);
+                }
+            }
+            opened.clear();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.change.Change;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.changelog.filter.ContextChangeSetFilter;
+import liquibase.changelog.filter.DbmsChangeSetFilter;
+import liquibase.changelog.filter.ShouldRunChangeSetFilter;
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.exception.MigrationFailedException;
+import liquibase.executor.Executor;
+import liquibase.lockservice.LockService;
+import liquibase.lockservice.LockServiceFactory;
+import liquibase.logging.LogFactory;
+import liquibase.parser.ChangeLogParser;
+import liquibase.parser.ChangeLogParserFactory;
+import liquibase.resource.ResourceAccessor;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.UpdateStatement;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.execution.ChangeSetGraph.Node;
+import liquibase.ext.kualigan.lookup.StatementCache;
+import liquibase.ext.kualigan.parser.KimChangeLogParser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in replacement for {@link Liquibase#update(Contexts)} that applies changesets touching unrelated KIM rows
+ * concurrently. Pending changesets are ordered by a {@link ChangeSetGraph}; each is executed and marked ran on one of
+ * a small pool of connections, in the same transaction, as soon as the changesets it depends on are done. Anything
+ * that is not a KIM change keeps its changelog position.
+ * <p>
+ * Databases without sequences allocate KIM ids with {@code max(id)} and are always updated serially. Every connection
+ * used also gets a {@link LookupPool}, so the nested changes of a KIM change are resolved concurrently as well. With a
+ * single connection and {@code liquibase.kim.pipelineDepth} above 0, a {@link ChangeSetPipeline} prepares upcoming
+ * changesets while the current one executes. With {@code liquibase.kim.commitInterval} above 1 changesets are applied
+ * serially instead, and consecutive KIM changesets are committed together by a {@link ChangeSetGroup}.
+ *
+ * @author Leo Przybylski
+ */
+public class ParallelChangeLogExecutor {
+    private final Database database;
+    private final DatabaseSource source;
+    private final int connections;
+    private final Map<ChangeSet, ChangeSet.RunStatus> runStatuses = new HashMap<ChangeSet, ChangeSet.RunStatus>();
+    private final AtomicInteger orderExecuted = new AtomicInteger();
+
+    /**
+     * @param database the database being migrated; it holds the changelog lock
+     * @param source opens the additional connections
+     */
+    public ParallelChangeLogExecutor(final Database database, final DatabaseSource source) {
+        this(database, source, KimConfiguration.getInstance().getParallelConnections());
+    }
+
+    public ParallelChangeLogExecutor(final Database database, final DatabaseSource source, final int connections) {
+        this.database = database;
+        this.source = source;
+        this.connections = connections;
+    }
+
+    public void update(final String changeLogFile, final ResourceAccessor resourceAccessor, final String contexts) throws LiquibaseException {
+        final Contexts runContexts = new Contexts(contexts);
+        final LockService lockService = LockServiceFactory.getInstance().getLockService(database);
+        lockService.waitForLock();
+        final int commitInterval = KimConfiguration.getInstance().getCommitInterval();
+        useStatementCache(database);
+        if (commitInterval <= 1) {
+            LookupPool.register(database, source);
+        }
+        try {
+            final ChangeLogParameters changeLogParameters = new ChangeLogParameters(database);
+            changeLogParameters.setContexts(runContexts);
+            final ChangeLogParser parser = ChangeLogParserFactory.getInstance().getParser(changeLogFile, resourceAccessor);
+            final DatabaseChangeLog changeLog = parser.parse(changeLogFile, changeLogParameters, resourceAccessor);
+            if (!(parser instanceof KimChangeLogParser)) {
+                KimChangeLogAnalyzer.fromConfiguration().analyze(changeLog);
+            }
+            new Liquibase(changeLogFile, resourceAccessor, database).checkLiquibaseTables(true, changeLog, runContexts);
+            changeLog.validate(database, runContexts);
+
+            final List<ChangeSet> pending = getPendingChangeSets(changeLog, runContexts);
+            final int depth = KimConfiguration.getInstance().getPipelineDepth();
+            if (commitInterval > 1) {
+                executeInGroups(changeLog, new ChangeSetGroup(changeLog, database, commitInterval), pending);
+            }
+            else if (connections <= 1 && depth > 0 && database.supportsSequences()) {
+                execute(changeLog, new ChangeSetPipeline(new ChangeSetGraph(pending), database, source, depth), pending.size());
+            }
+            else if (connections <= 1 || !database.supportsSequences()) {
+                for (final ChangeSet changeSet : pending) {
+                    execute(changeLog, changeSet, database);
+                }
+            }
+            else {
+                execute(changeLog, new ChangeSetGraph(pending));
+            }
+        }
+        finally {
+            LookupPool.unregister(database);
+            StatementCache.close(database);
+            lockService.releaseLock();
+        }
+    }
+
+    protected List<ChangeSet> getPendingChangeSets(final DatabaseChangeLog changeLog, final Contexts contexts) throws DatabaseException {
+        final ShouldRunChangeSetFilter shouldRun = new ShouldRunChangeSetFilter(database);
+        final ContextChangeSetFilter contextFilter = new ContextChangeSetFilter(contexts);
+        final DbmsChangeSetFilter dbmsFilter = new DbmsChangeSetFilter(database);
+
+        final List<ChangeSet> retval = new ArrayList<ChangeSet>();
+        for (final ChangeSet changeSet : changeLog.getChangeSets()) {
+            if (shouldRun.accepts(changeSet) && contextFilter.accepts(changeSet) && dbmsFilter.accepts(changeSet)) {
+                retval.add(changeSet);
+                runStatuses.put(changeSet, database.getRunStatus(changeSet));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Runs the graph, starting every node whose dependencies are done; ready nodes start in changelog order. After a
+     * failure no new changesets are started, running ones are allowed to finish and the first failure is rethrown.
+     */
+    protected void execute(final DatabaseChangeLog changeLog, final ChangeSetGraph graph) throws LiquibaseException {
+        final BlockingQueue<Database> pool = new LinkedBlockingQueue<Database>();
+        final ExecutorService executor = Executors.newFixedThreadPool(connections);
+        orderExecuted.set(database.getNextChangeSetSequenceValue());
+        try {
+            for (int i = 0; i < connections; i++) {
+                final Database worker = source.open();
+                useStatementCache(worker);
+                LookupPool.register(worker, source);
+                pool.add(worker);
+            }
+
+            final CompletionService<Node> completion = new ExecutorCompletionService<Node>(executor);
+            final Map<Node, Integer> remaining = new HashMap<Node, Integer>();
+            final PriorityQueue<Node> ready = new PriorityQueue<Node>(16, new Comparator<Node>() {
+                    public int compare(final Node a, final Node b) {
+                        return a.getIndex() - b.getIndex();
+                    }
+                });
+            for (final Node node : graph.getNodes()) {
+                remaining.put(node, node.getDependencies().size());
+            }
+            ready.addAll(graph.getRoots());
+
+            Throwable failure = null;
+            int running = 0;
+            while (running > 0 || (failure == null && !ready.isEmpty())) {
+                while (failure == null && !ready.isEmpty()) {
+                    final Node node = ready.poll();
+                    completion.submit(new Callable<Node>() {
+                            public Node call() throws Exception {
+                                final Database worker = pool.take();
+                                try {
+                                    execute(changeLog, node.getChangeSet(), worker);
+                                }
+                                finally {
+                                    pool.add(worker);
+                                }
+                                return node;
+                            }
+                        });
+                    running++;
+                }
+
+                try {
+                    final Node done = completion.take().get();
+                    for (final Node dependent : done.getDependents()) {
+                        final int left = remaining.get(dependent) - 1;
+                        remaining.put(dependent, left);
+                        if (left == 0) {
+                            ready.add(dependent);
+                        }
+                    }
+                }
+                catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                running--;
+            }
+
+            if (failure instanceof LiquibaseException) {
+                throw (LiquibaseException) failure;
+            }
+            if (failure != null) {
+                throw new LiquibaseException(failure);
+            }
+        }
+        finally {
+            executor.shutdown();
+            for (final Database worker : pool) {
+                LookupPool.unregister(worker);
+                StatementCache.close(worker);
+                try {
+                    worker.close();
+                }
+                catch (DatabaseException e) {
+                    LogFactory.getLogger().warning("Unable to close connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes changesets one at a time, in changelog order, committing KIM changesets in groups. Any other changeset
+     * commits the group before it and then runs on its own.
+     */
+    protected void executeInGroups(final DatabaseChangeLog changeLog, final ChangeSetGroup group, final List<ChangeSet> pending) throws LiquibaseException {
+        for (final ChangeSet changeSet : pending) {
+            if (ChangeSetGroup.accepts(changeSet)) {
+                group.add(changeSet);
+            }
+            else {
+                group.commit();
+                execute(changeLog, changeSet, database);
+            }
+        }
+        group.commit();
+    }
+
+    /**
+     * Executes changesets one at a time, in changelog order, while the {@link ChangeSetPipeline} prepares the next ones
+     */
+    protected void execute(final DatabaseChangeLog changeLog, final ChangeSetPipeline pipeline, final int count) throws LiquibaseException {
+        pipeline.start();
+        try {
+            for (int i = 0; i < count; i++) {
+                final ChangeSetPipeline.Prepared next = pipeline.take();
+                if (next.getStatements() != null) {
+                    execute(changeLog, next.getChangeSet(), next.getStatements(), database);
+                }
+                else {
+                    execute(changeLog, next.getChangeSet(), database);
+                }
+                pipeline.committed();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LiquibaseException(e);
+        }
+        finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Opens a {@link StatementCache} for a connection and sends its inserts through it (see
+     * {@link CachingJdbcExecutor}). The cache is closed with the connection, or at the end of the run.
+     */
+    protected void useStatementCache(final Database target) {
+        StatementCache.open(target);
+        final CachingJdbcExecutor executor = new CachingJdbcExecutor();
+        executor.setDatabase(target);
+        liquibase.executor.ExecutorService.getInstance().setExecutor(target, executor);
+    }
+
+    /**
+     * Executes a changeset and marks it ran in the same transaction.
+     */
+    protected void execute(final DatabaseChangeLog changeLog, final ChangeSet changeSet, final Database target) throws MigrationFailedException, DatabaseException {
+        final ChangeSet.ExecType execType = getExecType(changeSet, changeSet.execute(changeLog, target));
+        markChangeSetExecStatus(changeSet, execType, target);
+        target.commit();
+        LogFactory.getLogger().info(String.format("%s %s", changeSet.toString(false), execType));
+    }
+
+    /**
+     * Like {@link liquibase.changelog.visitor.UpdateVisitor}, a changeset that ran before (runAlways or runOnChange)
+     * is marked {@link ChangeSet.ExecType#RERAN}, which updates its DATABASECHANGELOG row instead of adding another.
+     *
+     * @param changeSet the changeset executed
+     * @param execType what executing it returned
+     * @return the status to mark it with
+     */
+    protected ChangeSet.ExecType getExecType(final ChangeSet changeSet, final ChangeSet.ExecType execType) {
+        final ChangeSet.RunStatus runStatus = runStatuses.get(changeSet);
+        if (runStatus != null && runStatus != ChangeSet.RunStatus.NOT_RAN) {
+            return ChangeSet.ExecType.RERAN;
+        }
+        return execType;
+    }
+
+    /**
+     * Marks a changeset ran on the connection that executed it. Every {@link Database} allocates ORDEREXECUTED from a
+     * counter of its own, seeded from DATABASECHANGELOG when first used, so the worker connections of a concurrent run
+     * would hand out the same values. Rows they insert are given the next value of one counter shared by the run
+     * instead.
+     */
+    protected void markChangeSetExecStatus(final ChangeSet changeSet, final ChangeSet.ExecType execType, final Database target) throws DatabaseException {
+        target.markChangeSetExecStatus(changeSet, execType);
+        if (target == database
+            || execType == ChangeSet.ExecType.RERAN
+            || execType == ChangeSet.ExecType.FAILED
+            || execType == ChangeSet.ExecType.SKIPPED) {
+            return;
+        }
+        liquibase.executor.ExecutorService.getInstance().getExecutor(target).execute(
+            new UpdateStatement(target.getLiquibaseCatalogName(), target.getLiquibaseSchemaName(), target.getDatabaseChangeLogTableName())
+                .addNewColumnValue("ORDEREXECUTED", orderExecuted.getAndIncrement())
+                .setWhereClause("ID=? AND AUTHOR=? AND FILENAME=?")
+                .addWhereParameters(changeSet.getId(), changeSet.getAuthor(), changeSet.getFilePath()));
+    }
+
+    /**
+     * Executes a changeset whose first change was prepared by a {@link ChangeSetPipeline}, and marks it ran in the
+     * same transaction. The remaining changes are generated as usual.
+     */
+    protected void execute(final DatabaseChangeLog changeLog, final ChangeSet changeSet, final List<SqlStatement> prepared, final Database target) throws MigrationFailedException, DatabaseException {
+        final Executor executor = liquibase.executor.ExecutorService.getInstance().getExecutor(target);
+        final ChangeSet.ExecType execType;
+        try {
+            target.setObjectQuotingStrategy(changeSet.getObjectQuotingStrategy());
+            if (target.supportsDDLInTransaction()) {
+                target.setAutoCommit(false);
+            }
+            executor.comment("Changeset " + changeSet.toString(false));
+            for (final SqlStatement statement : prepared) {
+                executor.execute(statement, changeSet.getSqlVisitors());
+            }
+            final List<Change> changes = changeSet.getChanges();
+            for (int i = 1; i < changes.size(); i++) {
+                target.executeStatements(changes.get(i), changeLog, changeSet.getSqlVisitors());
+            }
+            execType = getExecType(changeSet, ChangeSet.ExecType.EXECUTED);
+            markChangeSetExecStatus(changeSet, execType, target);
+            target.commit();
+        }
+        catch (Exception e) {
+            try {
+                target.rollback();
+            }
+            catch (DatabaseException rollbackFailure) {
+                LogFactory.getLogger().warning("Unable to roll back " + changeSet.toString(false), rollbackFailure);
+            }
+            if (e instanceof MigrationFailedException) {
+                throw (MigrationFailedException) e;
+            }
+            throw new MigrationFailedException(changeSet, e);
+        }
+        LogFactory.getLogger().info(String.format("%s %s", changeSet.toString(false), execType));
+    }
+}
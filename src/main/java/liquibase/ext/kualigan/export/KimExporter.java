@@ -0,0 +1,216 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.export;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.execution.DatabaseSource;
+import liquibase.ext.kualigan.execution.JdbcDatabaseSource;
+import liquibase.ext.kualigan.parser.KimChangeLogWriter;
+import liquibase.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the KIM data of a live database as a changelog of {@code kim:} changes. Each table is read by its own
+ * connection on a forward-only cursor, rows are written as they arrive to a part file, and the parts are joined in
+ * dependency order at the end, so memory use does not grow with the size of the tables.
+ *
+ * <pre>
+ * java -cp ... liquibase.ext.kualigan.export.KimExporter jdbc:oracle:thin:@host:1521:kfs user password kim.xml [KFS-%]
+ * </pre>
+ *
+ * @author Leo Przybylski
+ */
+public class KimExporter {
+    private final DatabaseSource source;
+    private final String namespacePattern;
+    private final String author;
+    private final int readers;
+    private final int fetchSize;
+
+    /**
+     * @param namespacePattern SQL <code>like</code> pattern of the namespaces to export, or <code>null</code> for all
+     * @param author author of the exported changesets
+     */
+    public KimExporter(final DatabaseSource source, final String namespacePattern, final String author) {
+        this(source, namespacePattern, author, KimConfiguration.getInstance().getParallelConnections(),
+             KimConfiguration.getInstance().getExportFetchSize());
+    }
+
+    public KimExporter(final DatabaseSource source, final String namespacePattern, final String author, final int readers, final int fetchSize) {
+        this.source = source;
+        this.namespacePattern = namespacePattern;
+        this.author = author;
+        this.readers = Math.max(1, readers);
+        this.fetchSize = fetchSize;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: KimExporter <url> <username> <password> <changelog> [namespace pattern]");
+            System.exit(1);
+        }
+        new KimExporter(new JdbcDatabaseSource(args[0], args[1], args[2]), args.length > 4 ? args[4] : null, "kim-export")
+            .export(new File(args[3]));
+    }
+
+    /**
+     * Write the changelog. Parts are read concurrently; the first failure is rethrown once every reader has stopped.
+     */
+    public void export(final File changeLog) throws LiquibaseException, IOException {
+        final List<KimTableReader> tables = KimTableReader.getReaders();
+        final List<File> parts = new ArrayList<File>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(readers, tables.size()));
+        try {
+            final List<Future<File>> futures = new ArrayList<Future<File>>();
+            for (final KimTableReader table : tables) {
+                futures.add(executor.submit(new Callable<File>() {
+                    public File call() throws Exception {
+                        return read(table);
+                    }
+                }));
+            }
+
+            Throwable failure = null;
+            for (final Future<File> future : futures) {
+                try {
+                    parts.add(future.get());
+                }
+                catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure instanceof LiquibaseException) {
+                throw (LiquibaseException) failure;
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new LiquibaseException(failure);
+            }
+
+            join(parts, changeLog);
+            for (final KimTableReader table : tables) {
+                LogFactory.getLogger().info(String.format("%s: exported %d changes, skipped %d rows",
+                                                          table.getName(), table.getWritten(), table.getSkipped()));
+            }
+        }
+        finally {
+            executor.shutdown();
+            for (final File part : parts) {
+                if (!part.delete()) {
+                    part.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read one table into its own part file. The part is deleted if the table cannot be read.
+     */
+    protected File read(final KimTableReader table) throws LiquibaseException, IOException {
+        final File retval = File.createTempFile("kim-export-" + table.getName(), ".xml");
+        boolean read = false;
+        try {
+            final Database database = source.open();
+            try {
+                final Writer output = new OutputStreamWriter(new FileOutputStream(retval), "UTF-8");
+                try {
+                    table.read(((JdbcConnection) database.getConnection()).getUnderlyingConnection(),
+                               new KimChangeLogWriter(output), author, namespacePattern, fetchSize);
+                }
+                catch (SQLException e) {
+                    throw new DatabaseException(String.format("Unable to export %s", table.getName()), e);
+                }
+                finally {
+                    output.close();
+                }
+            }
+            finally {
+                database.close();
+            }
+            read = true;
+        }
+        finally {
+            if (!read && !retval.delete()) {
+                retval.deleteOnExit();
+            }
+        }
+        return retval;
+    }
+
+    protected void join(final List<File> parts, final File changeLog) throws IOException {
+        final Writer output = new OutputStreamWriter(new FileOutputStream(changeLog), "UTF-8");
+        try {
+            final KimChangeLogWriter writer = new KimChangeLogWriter(output);
+            writer.start();
+            final char[] buffer = new char[8192];
+            for (final File part : parts) {
+                final Reader input = new InputStreamReader(new FileInputStream(part), "UTF-8");
+                try {
+                    for (int read = input.read(buffer); read > -1; read = input.read(buffer)) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+                finally {
+                    input.close();
+                }
+            }
+            writer.finish();
+        }
+        finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,557 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.export;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.executor.ExecutorService;
+import liquibase.logging.LogFactory;
+import liquibase.statement.DatabaseFunction;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.execution.JdbcDatabaseSource;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot;
+import liquibase.ext.kualigan.lookup.PrincipalResolver;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.lookup.SequenceAllocator;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+import liquibase.ext.kualigan.statement.BatchInsertStatement;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies the KIM data of one namespace from a source database straight into a target database. Source rows are
+ * streamed table by table in dependency order. Every foreign key is mapped to the target by the natural key of the
+ * row it refers to (namespace and name, principal name, and so on), resolved with the same snapshot and resolvers the
+ * KIM changes use. Rows are inserted with ids taken from the target sequences in blocks, {@value #ROWS_PER_BATCH} to a
+ * {@link BatchInsertStatement}.
+ * <p>
+ * The copy only adds. A role, type, permission, responsibility or attribute definition that already exists in the
+ * target is kept as it is, and so are its attributes. A member, permission or responsibility already assigned to a role
+ * in the target is not assigned again. Rows referring to something missing from the target (a principal, a template,
+ * a type in another namespace) are left out and counted. The target is committed once every table is copied, after
+ * the role membership closure is refreshed if the target keeps one.
+ *
+ * <pre>
+ * java -cp ... liquibase.ext.kualigan.export.KimNamespaceCopier &lt;source url&gt; &lt;user&gt; &lt;password&gt; &lt;target url&gt; &lt;user&gt; &lt;password&gt; KFS-SYS [...]
+ * </pre>
+ *
+ * @author Leo Przybylski
+ */
+public class KimNamespaceCopier {
+    public static final int ROWS_PER_BATCH = 500;
+
+    protected static final String ROLES = "select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = ?";
+
+    /**
+     * A table rows can be found in by natural key, in either database
+     */
+    protected static class Reference {
+        final String table;
+        final String id;
+        final String[] key;
+        final KimReferenceSnapshot.Reference snapshot;
+
+        Reference(final String table, final String id, final KimReferenceSnapshot.Reference snapshot, final String... key) {
+            this.table = table;
+            this.id = id;
+            this.key = key;
+            this.snapshot = snapshot;
+        }
+
+        String getKeySql() {
+            return String.format("select %s from %s where %s = ?", join(key, ", "), table, id);
+        }
+
+        String getIdSql() {
+            return String.format("select %s from %s where %s = ?", id, table, join(key, " = ? and "));
+        }
+    }
+
+    /**
+     * A copied table
+     */
+    protected static class Table {
+        final String name;
+        final String id;
+        final String sequence;
+        final String filter;
+        final Map<String, String> foreignKeys = new LinkedHashMap<String, String>();
+        String parent;
+        String[] key;
+
+        /**
+         * @param filter condition on the source rows, binding the namespace once
+         */
+        Table(final String name, final String id, final String sequence, final String filter) {
+            this.name = name;
+            this.id = id;
+            this.sequence = sequence;
+            this.filter = filter;
+        }
+
+        /**
+         * The column refers to a row of another table
+         */
+        Table references(final String column, final String table) {
+            foreignKeys.put(column, table);
+            return this;
+        }
+
+        /**
+         * Rows are copied only along with their parent row
+         */
+        Table childOf(final String column, final String table) {
+            parent = column;
+            return references(column, table);
+        }
+
+        /**
+         * Columns, after mapping, that find the same row in the target
+         */
+        Table identifiedBy(final String... columns) {
+            key = columns;
+            return this;
+        }
+    }
+
+    protected static final Map<String, Reference> REFERENCES = new HashMap<String, Reference>();
+    protected static final List<Table> TABLES = new ArrayList<Table>();
+
+    static {
+        reference(new Reference("KRIM_ATTR_DEFN_T", "KIM_ATTR_DEFN_ID", null, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_TYP_T", "KIM_TYP_ID", KimReferenceSnapshot.Reference.NAMESPACED_TYPE, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_PERM_TMPL_T", "PERM_TMPL_ID", null, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_RSP_TMPL_T", "RSP_TMPL_ID", null, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_PERM_T", "PERM_ID", KimReferenceSnapshot.Reference.PERMISSION, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_RSP_T", "RSP_ID", KimReferenceSnapshot.Reference.NAMESPACED_RESPONSIBILITY, "NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_ROLE_T", "ROLE_ID", KimReferenceSnapshot.Reference.ROLE, "ROLE_NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_GRP_T", "GRP_ID", null, "GRP_NM", "NMSPC_CD"));
+        reference(new Reference("KRIM_PRNCPL_T", "PRNCPL_ID", null, "PRNCPL_NM"));
+
+        TABLES.add(new Table("KRIM_ATTR_DEFN_T", "KIM_ATTR_DEFN_ID", "krim_attr_defn_id_s", "NMSPC_CD = ?")
+                   .identifiedBy("NM", "NMSPC_CD"));
+        TABLES.add(new Table("KRIM_TYP_T", "KIM_TYP_ID", "krim_typ_id_s", "NMSPC_CD = ?")
+                   .identifiedBy("NM", "NMSPC_CD"));
+        TABLES.add(new Table("KRIM_TYP_ATTR_T", "KIM_TYP_ATTR_ID", "KRIM_TYP_ATTR_ID_S",
+                             "KIM_TYP_ID in (select KIM_TYP_ID from KRIM_TYP_T where NMSPC_CD = ?)")
+                   .childOf("KIM_TYP_ID", "KRIM_TYP_T").references("KIM_ATTR_DEFN_ID", "KRIM_ATTR_DEFN_T"));
+        TABLES.add(new Table("KRIM_PERM_T", "PERM_ID", "KRIM_PERM_ID_S", "NMSPC_CD = ?")
+                   .references("PERM_TMPL_ID", "KRIM_PERM_TMPL_T").identifiedBy("NM", "NMSPC_CD"));
+        TABLES.add(new Table("KRIM_PERM_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S",
+                             "PERM_ID in (select PERM_ID from KRIM_PERM_T where NMSPC_CD = ?)")
+                   .childOf("PERM_ID", "KRIM_PERM_T").references("KIM_TYP_ID", "KRIM_TYP_T")
+                   .references("KIM_ATTR_DEFN_ID", "KRIM_ATTR_DEFN_T"));
+        TABLES.add(new Table("KRIM_RSP_T", "RSP_ID", "krim_rsp_id_s", "NMSPC_CD = ?")
+                   .references("RSP_TMPL_ID", "KRIM_RSP_TMPL_T").identifiedBy("NM", "NMSPC_CD"));
+        TABLES.add(new Table("KRIM_RSP_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S",
+                             "RSP_ID in (select RSP_ID from KRIM_RSP_T where NMSPC_CD = ?)")
+                   .childOf("RSP_ID", "KRIM_RSP_T").references("KIM_TYP_ID", "KRIM_TYP_T")
+                   .references("KIM_ATTR_DEFN_ID", "KRIM_ATTR_DEFN_T"));
+        TABLES.add(new Table("KRIM_ROLE_T", "ROLE_ID", "krim_role_id_s", "NMSPC_CD = ?")
+                   .references("KIM_TYP_ID", "KRIM_TYP_T").identifiedBy("ROLE_NM", "NMSPC_CD"));
+        TABLES.add(new Table("KRIM_ROLE_MBR_T", "ROLE_MBR_ID", "KRIM_ROLE_MBR_ID_S", "ROLE_ID in (" + ROLES + ")")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("MBR_ID", null).identifiedBy("ROLE_ID", "MBR_ID", "MBR_TYP_CD"));
+        TABLES.add(new Table("KRIM_ROLE_MBR_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S",
+                             "ROLE_MBR_ID in (select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID in (" + ROLES + "))")
+                   .childOf("ROLE_MBR_ID", "KRIM_ROLE_MBR_T").references("KIM_TYP_ID", "KRIM_TYP_T")
+                   .references("KIM_ATTR_DEFN_ID", "KRIM_ATTR_DEFN_T"));
+        TABLES.add(new Table("KRIM_ROLE_PERM_T", "ROLE_PERM_ID", "krim_role_perm_id_s", "ROLE_ID in (" + ROLES + ")")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("PERM_ID", "KRIM_PERM_T").identifiedBy("ROLE_ID", "PERM_ID"));
+        TABLES.add(new Table("KRIM_ROLE_RSP_T", "ROLE_RSP_ID", "krim_role_rsp_id_s", "ROLE_ID in (" + ROLES + ")")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("RSP_ID", "KRIM_RSP_T").identifiedBy("ROLE_ID", "RSP_ID"));
+        TABLES.add(new Table("KRIM_ROLE_RSP_ACTN_T", "ROLE_RSP_ACTN_ID", "krim_role_rsp_actn_id_s",
+                             "ROLE_RSP_ID in (select ROLE_RSP_ID from KRIM_ROLE_RSP_T where ROLE_ID in (" + ROLES + "))")
+                   .references("ROLE_RSP_ID", "KRIM_ROLE_RSP_T").references("ROLE_MBR_ID", "KRIM_ROLE_MBR_T")
+                   .identifiedBy("ROLE_RSP_ID", "ROLE_MBR_ID"));
+    }
+
+    private final Database source;
+    private final Database target;
+    private final int fetchSize;
+    private final SequenceAllocator allocator;
+    private final Map<String, Map<String, String>> ids = new HashMap<String, Map<String, String>>();
+    private final Map<String, Set<String>> inserted = new HashMap<String, Set<String>>();
+    private final Map<String, Iterator<String>> sequences = new HashMap<String, Iterator<String>>();
+    private int copied;
+    private int kept;
+    private int unresolved;
+
+    public KimNamespaceCopier(final Database source, final Database target) {
+        this.source = source;
+        this.target = target;
+        this.fetchSize = KimConfiguration.getInstance().getExportFetchSize();
+        this.allocator = new SequenceAllocator(target);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 7) {
+            System.err.println("Usage: KimNamespaceCopier <source url> <username> <password> <target url> <username> <password> <namespace> [...]");
+            System.exit(1);
+        }
+        final Database source = new JdbcDatabaseSource(args[0], args[1], args[2]).open();
+        try {
+            final Database target = new JdbcDatabaseSource(args[3], args[4], args[5]).open();
+            try {
+                final KimNamespaceCopier copier = new KimNamespaceCopier(source, target);
+                for (final String namespace : Arrays.asList(args).subList(6, args.length)) {
+                    copier.copy(namespace);
+                }
+            }
+            finally {
+                target.close();
+            }
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    protected static void reference(final Reference reference) {
+        REFERENCES.put(reference.table, reference);
+    }
+
+    /**
+     * Copy a namespace and commit the target. Nothing is committed if any table fails.
+     */
+    public void copy(final String namespace) throws LiquibaseException {
+        final int copiedBefore = copied;
+        final int keptBefore = kept;
+        final int unresolvedBefore = unresolved;
+        final int membersBefore = getInserted("KRIM_ROLE_MBR_T").size();
+        try {
+            for (final Table table : TABLES) {
+                copy(table, namespace);
+            }
+            if (getInserted("KRIM_ROLE_MBR_T").size() > membersBefore && RoleMemberClosure.isMaintained(target)) {
+                ExecutorService.getInstance().getExecutor(target)
+                    .execute(new RoleMemberClosureStatement("select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = " + BoundQuery.toLiteral(namespace)));
+                RoleMemberClosure.checkDepth(target);
+            }
+            target.commit();
+        }
+        catch (LiquibaseException e) {
+            target.rollback();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            target.rollback();
+            throw e;
+        }
+        LogFactory.getLogger().info(String.format("%s: copied %d rows, kept %d existing rows, left out %d rows with unresolved references",
+                                                  namespace, copied - copiedBefore, kept - keptBefore, unresolved - unresolvedBefore));
+    }
+
+    protected void copy(final Table table, final String namespace) throws LiquibaseException {
+        final Connection connection = getConnection(source);
+        try {
+            final PreparedStatement statement = connection.prepareStatement(String.format("select * from %s where %s", table.name, table.filter),
+                                                                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, namespace);
+                final ResultSet results = statement.executeQuery();
+                try {
+                    final ResultSetMetaData metaData = results.getMetaData();
+                    final String[] columns = new String[metaData.getColumnCount()];
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i] = metaData.getColumnName(i + 1).toUpperCase();
+                    }
+                    BatchInsertStatement batch = new BatchInsertStatement(null, table.name, columns);
+                    final Map<String, Object> row = new HashMap<String, Object>();
+                    while (results.next()) {
+                        row.clear();
+                        for (int i = 0; i < columns.length; i++) {
+                            row.put(columns[i], results.getObject(i + 1));
+                        }
+                        if (copy(table, row)) {
+                            final Object[] values = new Object[columns.length];
+                            for (int i = 0; i < columns.length; i++) {
+                                values[i] = toValue(row.get(columns[i]));
+                            }
+                            batch.addRow(values);
+                            if (batch.getRows().size() >= ROWS_PER_BATCH) {
+                                ExecutorService.getInstance().getExecutor(target).execute(batch);
+                                batch = new BatchInsertStatement(null, table.name, columns);
+                            }
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        ExecutorService.getInstance().getExecutor(target).execute(batch);
+                    }
+                }
+                finally {
+                    results.close();
+                }
+            }
+            finally {
+                statement.close();
+            }
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to copy %s", table.name), e);
+        }
+    }
+
+    /**
+     * Map a source row to the target in place
+     *
+     * @return true if the row is to be inserted
+     */
+    protected boolean copy(final Table table, final Map<String, Object> row) throws DatabaseException {
+        final String sourceId = toString(row.get(table.id));
+        if (table.parent != null) {
+            final String parentId = getIds(table.foreignKeys.get(table.parent)).get(toString(row.get(table.parent)));
+            if (parentId == null || !getInserted(table.foreignKeys.get(table.parent)).contains(parentId)) {
+                kept++;
+                return false;
+            }
+        }
+        for (final Map.Entry<String, String> foreignKey : table.foreignKeys.entrySet()) {
+            final String value = toString(row.get(foreignKey.getKey()));
+            if (value == null || "*".equals(value)) {
+                continue;
+            }
+            final String referenced = foreignKey.getValue() != null ? foreignKey.getValue() : getMemberTable(toString(row.get("MBR_TYP_CD")));
+            final String mapped = referenced != null ? resolve(referenced, value) : null;
+            if (mapped == null) {
+                unresolved++;
+                return false;
+            }
+            row.put(foreignKey.getKey(), mapped);
+        }
+
+        if (table.key != null) {
+            final Object[] key = new Object[table.key.length];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = row.get(table.key[i]);
+            }
+            final String existing = query(target, new BoundQuery(String.format("select %s from %s where %s = ?", table.id, table.name,
+                                                                               join(table.key, " = ? and ")), key));
+            if (existing != null && !getInserted(table.name).contains(existing)) {
+                getIds(table.name).put(sourceId, existing);
+                kept++;
+                return false;
+            }
+        }
+
+        final String targetId = nextId(table.sequence);
+        getIds(table.name).put(sourceId, targetId);
+        getInserted(table.name).add(targetId);
+        row.put(table.id, targetId);
+        if (row.containsKey("OBJ_ID")) {
+            row.put("OBJ_ID", ObjectIdFactory.getInstance().nextObjectId(target));
+        }
+        copied++;
+        return true;
+    }
+
+    /**
+     * Find the target id of a source row, by the ids copied so far or else by natural key
+     *
+     * @return the target id, or <code>null</code> if the row does not exist in the target
+     */
+    protected String resolve(final String table, final String sourceId) throws DatabaseException {
+        final Map<String, String> mapped = getIds(table);
+        if (mapped.containsKey(sourceId)) {
+            return mapped.get(sourceId);
+        }
+        final Reference reference = REFERENCES.get(table);
+        String retval = null;
+        if (reference != null) {
+            final String[] key = queryRow(source, new BoundQuery(reference.getKeySql(), sourceId), reference.key.length);
+            if (key != null) {
+                retval = lookup(reference, key);
+            }
+        }
+        mapped.put(sourceId, retval);
+        return retval;
+    }
+
+    /**
+     * Find a row of the target by natural key, from the reference snapshot and principal resolver where they apply
+     */
+    protected String lookup(final Reference reference, final String[] key) throws DatabaseException {
+        final KimReferenceSnapshot snapshot = reference.snapshot != null ? KimReferenceSnapshot.getInstance(target) : null;
+        if (snapshot != null) {
+            final String retval = snapshot.lookup(reference.snapshot, key);
+            if (retval != null) {
+                return retval;
+            }
+        }
+        if ("KRIM_PRNCPL_T".equals(reference.table) && PrincipalResolver.getInstance(target) != null) {
+            try {
+                return PrincipalResolver.getInstance(target).resolve(target, key[0]);
+            }
+            catch (UnexpectedLiquibaseException e) {
+                return null;
+            }
+        }
+        return query(target, new BoundQuery(reference.getIdSql(), (Object[]) key));
+    }
+
+    protected String getMemberTable(final String memberTypeCode) {
+        if ("P".equals(memberTypeCode)) {
+            return "KRIM_PRNCPL_T";
+        }
+        if ("G".equals(memberTypeCode)) {
+            return "KRIM_GRP_T";
+        }
+        if ("R".equals(memberTypeCode)) {
+            return "KRIM_ROLE_T";
+        }
+        return null;
+    }
+
+    /**
+     * Take an id from a block of the target sequence, allocating the next block when the current one runs out
+     */
+    protected String nextId(final String sequence) throws DatabaseException {
+        Iterator<String> block = sequences.get(sequence);
+        if (block == null || !block.hasNext()) {
+            block = allocator.allocate(sequence, ROWS_PER_BATCH).iterator();
+            sequences.put(sequence, block);
+        }
+        return block.next();
+    }
+
+    protected Object toValue(final Object value) {
+        if (value instanceof Timestamp) {
+            return new DatabaseFunction(target.getDateTimeLiteral((Timestamp) value));
+        }
+        if (value instanceof java.sql.Date) {
+            return new DatabaseFunction(target.getDateLiteral((java.sql.Date) value));
+        }
+        return value instanceof Number || value == null ? value : value.toString();
+    }
+
+    protected String query(final Database database, final BoundQuery query) throws DatabaseException {
+        final String[] retval = queryRow(database, query, 1);
+        return retval != null ? retval[0] : null;
+    }
+
+    /**
+     * @return the first columns of the first row, or <code>null</code> if there is none
+     */
+    protected String[] queryRow(final Database database, final BoundQuery query, final int columns) throws DatabaseException {
+        try {
+            final PreparedStatement statement = getConnection(database).prepareStatement(query.getSql());
+            try {
+                for (int i = 0; i < query.getParameters().length; i++) {
+                    statement.setObject(i + 1, query.getParameters()[i]);
+                }
+                final ResultSet results = statement.executeQuery();
+                try {
+                    if (!results.next()) {
+                        return null;
+                    }
+                    final String[] retval = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        retval[i] = results.getString(i + 1);
+                    }
+                    return retval;
+                }
+                finally {
+                    results.close();
+                }
+            }
+            finally {
+                statement.close();
+            }
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to execute %s", query), e);
+        }
+    }
+
+    protected Map<String, String> getIds(final String table) {
+        Map<String, String> retval = ids.get(table);
+        if (retval == null) {
+            retval = new HashMap<String, String>();
+            ids.put(table, retval);
+        }
+        return retval;
+    }
+
+    protected Set<String> getInserted(final String table) {
+        Set<String> retval = inserted.get(table);
+        if (retval == null) {
+            retval = new HashSet<String>();
+            inserted.put(table, retval);
+        }
+        return retval;
+    }
+
+    protected static Connection getConnection(final Database database) {
+        return ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+    }
+
+    protected static String toString(final Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    protected static String join(final String[] values, final String separator) {
+        final StringBuilder retval = new StringBuilder();
+        for (final String value : values) {
+            if (retval.length() > 0) {
+                retval.append(separator);
+            }
+            retval.append(value);
+        }
+        return retval.toString();
+    }
+
+    public int getCopied() {
+        return copied;
+    }
+
+    public int getKept() {
+        return kept;
+    }
+
+    public int getUnresolved() {
+        return unresolved;
+    }
+}
@@ -0,0 +1,456 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.export;
+
+import liquibase.ext.kualigan.parser.KimChangeLogWriter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads one KIM table with a forward-only cursor and writes its rows as {@code kim:} elements that refer to other rows
+ * by natural key. Surrogate ids are resolved to names by joins in the query itself, and rows of a parent with
+ * children (such as a member and its qualifiers) arrive together, so only the current row is held in memory. Children
+ * are written as changes of their own after their parent rather than nested in it, since a nested change looks up its
+ * parent before the parent is inserted.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class KimTableReader {
+    public static final int CHANGES_PER_CHANGESET = 500;
+    protected static final String INDENT = "    ";
+
+    private final String name;
+    private int written;
+    private int skipped;
+
+    protected KimTableReader(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return readers of every exported table, in the order their changes must be applied
+     */
+    public static List<KimTableReader> getReaders() {
+        return Arrays.<KimTableReader>asList(new AttributeDefinitions(), new Types(), new Permissions(), new Responsibilities(),
+                                             new Roles(), new RoleMembers(), new RolePermissions(), new RoleResponsibilities(),
+                                             new ResponsibilityActions());
+    }
+
+    /**
+     * @return the query, with a <code>%s</code> where the namespace condition goes
+     */
+    protected abstract String getSql();
+
+    /**
+     * @return the namespace column the export can be limited by
+     */
+    protected abstract String getNamespaceColumn();
+
+    /**
+     * @return the id of the parent the current row belongs to, or <code>null</code> if every row stands alone
+     */
+    protected Object getGroup(final ResultSet results) throws SQLException {
+        return null;
+    }
+
+    /**
+     * @return false if the current row cannot be expressed by natural keys and is left out
+     */
+    protected boolean accept(final ResultSet results) throws SQLException {
+        return true;
+    }
+
+    protected abstract void startGroup(KimChangeLogWriter writer, ResultSet results) throws SQLException, IOException;
+
+    protected void writeChild(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+    }
+
+    /**
+     * Write the table in changesets of {@value #CHANGES_PER_CHANGESET} changes
+     *
+     * @param namespacePattern SQL <code>like</code> pattern of the namespaces to export, or <code>null</code> for all
+     */
+    public void read(final Connection connection, final KimChangeLogWriter writer, final String author, final String namespacePattern,
+                     final int fetchSize) throws SQLException, IOException {
+        final String sql = String.format(getSql(), namespacePattern != null ? " and " + getNamespaceColumn() + " like ?" : "");
+        final PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(fetchSize);
+            if (namespacePattern != null) {
+                statement.setString(1, namespacePattern);
+            }
+            final ResultSet results = statement.executeQuery();
+            try {
+                Object current = null;
+                boolean open = false;
+                while (results.next()) {
+                    final Object group = getGroup(results);
+                    if (group == null || !group.equals(current)) {
+                        current = group;
+                        open = false;
+                        if (!accept(results)) {
+                            skipped++;
+                            continue;
+                        }
+                        if (written % CHANGES_PER_CHANGESET == 0) {
+                            if (written > 0) {
+                                writer.endChangeSet();
+                            }
+                            writer.startChangeSet(String.format("kim-export-%s-%d", name, written / CHANGES_PER_CHANGESET + 1), author);
+                        }
+                        startGroup(writer, results);
+                        written++;
+                        open = true;
+                    }
+                    else if (!open) {
+                        // the rest of a group that was left out
+                        continue;
+                    }
+                    writeChild(writer, results);
+                }
+                if (written > 0) {
+                    writer.endChangeSet();
+                }
+            }
+            finally {
+                results.close();
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of changes written
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of rows left out
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    static class AttributeDefinitions extends KimTableReader {
+        AttributeDefinitions() {
+            super("attribute-definitions");
+        }
+
+        protected String getSql() {
+            return "select NMSPC_CD, NM, LBL, CMPNT_NM, ACTV_IND from KRIM_ATTR_DEFN_T where 1 = 1%s order by NMSPC_CD, NM";
+        }
+
+        protected String getNamespaceColumn() {
+            return "NMSPC_CD";
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("createAttributeDefinition", INDENT, true,
+                                "namespace", results.getString(1), "name", results.getString(2), "label", results.getString(3),
+                                "component", results.getString(4), "active", results.getString(5));
+        }
+    }
+
+    static class Types extends KimTableReader {
+        Types() {
+            super("types");
+        }
+
+        protected String getSql() {
+            return "select t.KIM_TYP_ID, t.NMSPC_CD, t.NM, t.SRVC_NM, t.ACTV_IND, d.NM, ta.ACTV_IND from KRIM_TYP_T t "
+                + "left outer join KRIM_TYP_ATTR_T ta on ta.KIM_TYP_ID = t.KIM_TYP_ID "
+                + "left outer join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = ta.KIM_ATTR_DEFN_ID "
+                + "where 1 = 1%s order by t.KIM_TYP_ID, ta.SORT_CD";
+        }
+
+        protected String getNamespaceColumn() {
+            return "t.NMSPC_CD";
+        }
+
+        protected Object getGroup(final ResultSet results) throws SQLException {
+            return results.getString(1);
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("type", INDENT, true,
+                                "namespace", results.getString(2), "name", results.getString(3), "service", results.getString(4),
+                                "active", results.getString(5));
+        }
+
+        protected void writeChild(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            if (results.getString(6) != null) {
+                writer.startElement("assignKimTypeAttribute", INDENT, true,
+                                    "namespace", results.getString(2), "type", results.getString(3), "attribute", results.getString(6),
+                                    "active", results.getString(7));
+            }
+        }
+    }
+
+    static class Permissions extends KimTableReader {
+        Permissions() {
+            super("permissions");
+        }
+
+        protected String getSql() {
+            return "select p.PERM_ID, p.NMSPC_CD, p.NM, p.DESC_TXT, p.ACTV_IND, tm.NM, d.NM, kt.NM, a.ATTR_VAL from KRIM_PERM_T p "
+                + "left outer join KRIM_PERM_TMPL_T tm on tm.PERM_TMPL_ID = p.PERM_TMPL_ID "
+                + "left outer join KRIM_PERM_ATTR_DATA_T a on a.PERM_ID = p.PERM_ID "
+                + "left outer join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = a.KIM_ATTR_DEFN_ID "
+                + "left outer join KRIM_TYP_T kt on kt.KIM_TYP_ID = a.KIM_TYP_ID "
+                + "where 1 = 1%s order by p.PERM_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "p.NMSPC_CD";
+        }
+
+        protected Object getGroup(final ResultSet results) throws SQLException {
+            return results.getString(1);
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("CreatePermission", INDENT, true,
+                                "template", results.getString(6), "namespace", results.getString(2), "name", results.getString(3),
+                                "description", results.getString(4), "active", results.getString(5));
+        }
+
+        protected void writeChild(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            if (results.getString(7) != null) {
+                writer.startElement("addPermissionAttribute", INDENT, true,
+                                    "namespace", results.getString(2), "permission", results.getString(3),
+                                    "attributeDef", results.getString(7), "type", results.getString(8), "value", results.getString(9));
+            }
+        }
+    }
+
+    static class Responsibilities extends KimTableReader {
+        Responsibilities() {
+            super("responsibilities");
+        }
+
+        protected String getSql() {
+            return "select s.RSP_ID, s.NMSPC_CD, s.NM, s.DESC_TXT, s.ACTV_IND, tm.NM, d.NM, kt.NM, a.ATTR_VAL from KRIM_RSP_T s "
+                + "left outer join KRIM_RSP_TMPL_T tm on tm.RSP_TMPL_ID = s.RSP_TMPL_ID "
+                + "left outer join KRIM_RSP_ATTR_DATA_T a on a.RSP_ID = s.RSP_ID "
+                + "left outer join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = a.KIM_ATTR_DEFN_ID "
+                + "left outer join KRIM_TYP_T kt on kt.KIM_TYP_ID = a.KIM_TYP_ID "
+                + "where 1 = 1%s order by s.RSP_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "s.NMSPC_CD";
+        }
+
+        protected Object getGroup(final ResultSet results) throws SQLException {
+            return results.getString(1);
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("createResponsibility", INDENT, true,
+                                "template", results.getString(6), "namespace", results.getString(2), "name", results.getString(3),
+                                "description", results.getString(4), "active", results.getString(5));
+        }
+
+        protected void writeChild(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            if (results.getString(7) != null) {
+                writer.startElement("addResponsibilityAttribute", INDENT, true,
+                                    "namespace", results.getString(2), "responsibility", results.getString(3),
+                                    "attributeDef", results.getString(7), "type", results.getString(8), "value", results.getString(9));
+            }
+        }
+    }
+
+    static class Roles extends KimTableReader {
+        Roles() {
+            super("roles");
+        }
+
+        protected String getSql() {
+            return "select r.NMSPC_CD, r.ROLE_NM, r.DESC_TXT, r.ACTV_IND, t.NMSPC_CD, t.NM from KRIM_ROLE_T r "
+                + "left outer join KRIM_TYP_T t on t.KIM_TYP_ID = r.KIM_TYP_ID "
+                + "where 1 = 1%s order by r.NMSPC_CD, r.ROLE_NM";
+        }
+
+        protected String getNamespaceColumn() {
+            return "r.NMSPC_CD";
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("createRole", INDENT, true,
+                                "namespace", results.getString(1), "name", results.getString(2), "description", results.getString(3),
+                                "active", results.getString(4), "typeNamespace", results.getString(5), "type", results.getString(6));
+        }
+    }
+
+    /**
+     * Principal and role members with their qualifiers. Group members cannot be expressed by this extension, and neither
+     * can the qualifiers of role members, since {@code addRoleMemberAttribute} finds the member by principal name; such
+     * members are left out.
+     */
+    static class RoleMembers extends KimTableReader {
+        RoleMembers() {
+            super("role-members");
+        }
+
+        protected String getSql() {
+            return "select m.ROLE_MBR_ID, r.NMSPC_CD, r.ROLE_NM, m.MBR_TYP_CD, p.PRNCPL_NM, mr.NMSPC_CD, mr.ROLE_NM, d.NM, kt.NM, a.ATTR_VAL "
+                + "from KRIM_ROLE_MBR_T m "
+                + "join KRIM_ROLE_T r on r.ROLE_ID = m.ROLE_ID "
+                + "left outer join KRIM_PRNCPL_T p on m.MBR_TYP_CD = 'P' and p.PRNCPL_ID = m.MBR_ID "
+                + "left outer join KRIM_ROLE_T mr on m.MBR_TYP_CD = 'R' and mr.ROLE_ID = m.MBR_ID "
+                + "left outer join KRIM_ROLE_MBR_ATTR_DATA_T a on a.ROLE_MBR_ID = m.ROLE_MBR_ID "
+                + "left outer join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = a.KIM_ATTR_DEFN_ID "
+                + "left outer join KRIM_TYP_T kt on kt.KIM_TYP_ID = a.KIM_TYP_ID "
+                + "where 1 = 1%s order by m.ROLE_MBR_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "r.NMSPC_CD";
+        }
+
+        protected Object getGroup(final ResultSet results) throws SQLException {
+            return results.getString(1);
+        }
+
+        protected boolean accept(final ResultSet results) throws SQLException {
+            return "P".equals(results.getString(4)) ? results.getString(5) != null
+                : "R".equals(results.getString(4)) && results.getString(7) != null && results.getString(8) == null;
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            final boolean role = "R".equals(results.getString(4));
+            writer.startElement("assignRoleMember", INDENT, true,
+                                "namespace", results.getString(2), "role", results.getString(3), "type", results.getString(4),
+                                "member", role ? results.getString(7) : results.getString(5),
+                                "memberNamespace", role ? results.getString(6) : null);
+        }
+
+        protected void writeChild(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            if (results.getString(8) != null) {
+                writer.startElement("addRoleMemberAttribute", INDENT, true,
+                                    "roleNamespace", results.getString(2), "roleName", results.getString(3), "member", results.getString(5),
+                                    "attributeDef", results.getString(8), "type", results.getString(9), "value", results.getString(10));
+            }
+        }
+    }
+
+    static class RolePermissions extends KimTableReader {
+        RolePermissions() {
+            super("role-permissions");
+        }
+
+        protected String getSql() {
+            return "select r.NMSPC_CD, r.ROLE_NM, p.NMSPC_CD, p.NM, rp.ACTV_IND from KRIM_ROLE_PERM_T rp "
+                + "join KRIM_ROLE_T r on r.ROLE_ID = rp.ROLE_ID "
+                + "join KRIM_PERM_T p on p.PERM_ID = rp.PERM_ID "
+                + "where 1 = 1%s order by rp.ROLE_PERM_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "r.NMSPC_CD";
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("assignPermission", INDENT, true,
+                                "roleNamespace", results.getString(1), "role", results.getString(2),
+                                "permissionNamespace", results.getString(3), "permission", results.getString(4),
+                                "active", results.getString(5));
+        }
+    }
+
+    static class RoleResponsibilities extends KimTableReader {
+        RoleResponsibilities() {
+            super("role-responsibilities");
+        }
+
+        protected String getSql() {
+            return "select r.NMSPC_CD, r.ROLE_NM, s.NM, rr.ACTV_IND from KRIM_ROLE_RSP_T rr "
+                + "join KRIM_ROLE_T r on r.ROLE_ID = rr.ROLE_ID "
+                + "join KRIM_RSP_T s on s.RSP_ID = rr.RSP_ID "
+                + "where 1 = 1%s order by rr.ROLE_RSP_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "r.NMSPC_CD";
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("assignRoleResponsibility", INDENT, true,
+                                "namespace", results.getString(1), "role", results.getString(2),
+                                "responsibility", results.getString(3), "active", results.getString(4));
+        }
+    }
+
+    /**
+     * Actions of principal members; actions for all members of a role refer to no member row and are left out
+     */
+    static class ResponsibilityActions extends KimTableReader {
+        ResponsibilityActions() {
+            super("responsibility-actions");
+        }
+
+        protected String getSql() {
+            return "select r.NMSPC_CD, r.ROLE_NM, s.NM, p.PRNCPL_NM, ac.ACTN_TYP_CD, ac.ACTN_PLCY_CD, ac.PRIORITY_NBR, ac.FRC_ACTN "
+                + "from KRIM_ROLE_RSP_ACTN_T ac "
+                + "join KRIM_ROLE_RSP_T rr on rr.ROLE_RSP_ID = ac.ROLE_RSP_ID "
+                + "join KRIM_ROLE_T r on r.ROLE_ID = rr.ROLE_ID "
+                + "join KRIM_RSP_T s on s.RSP_ID = rr.RSP_ID "
+                + "left outer join KRIM_ROLE_MBR_T m on m.ROLE_MBR_ID = ac.ROLE_MBR_ID "
+                + "left outer join KRIM_PRNCPL_T p on m.MBR_TYP_CD = 'P' and p.PRNCPL_ID = m.MBR_ID "
+                + "where 1 = 1%s order by ac.ROLE_RSP_ACTN_ID";
+        }
+
+        protected String getNamespaceColumn() {
+            return "r.NMSPC_CD";
+        }
+
+        protected boolean accept(final ResultSet results) throws SQLException {
+            return results.getString(4) != null;
+        }
+
+        protected void startGroup(final KimChangeLogWriter writer, final ResultSet results) throws SQLException, IOException {
+            writer.startElement("AddRoleResponsibilityAction", INDENT, true,
+                                "roleNamespace", results.getString(1), "roleName", results.getString(2),
+                                "responsibilityName", results.getString(3), "member", results.getString(4),
+                                "actionTypeCode", results.getString(5), "actionPolicyCode", results.getString(6),
+                                "priority", results.getString(7), "force", results.getString(8));
+        }
+    }
+}
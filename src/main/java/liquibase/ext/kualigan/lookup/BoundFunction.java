@@ -0,0 +1,89 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.statement.DatabaseFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lookup nested into generated SQL as a scalar subquery. Its value is the subquery with the parameters inlined as
+ * literals, which is what offline output ({@code updateSQL}) shows. {@link #getQuery()} keeps the placeholders and
+ * parameters, so that an executor can bind them instead (see {@link BoundSql}).
+ * <p>
+ * Parameters may themselves be {@link BoundFunction}s, which are nested with their own parameters, or other
+ * {@link DatabaseFunction}s, which are inlined.
+ *
+ * @author Leo Przybylski
+ */
+public class BoundFunction extends DatabaseFunction {
+    private final BoundQuery query;
+
+    public BoundFunction(final String sql, final Object... parameters) {
+        this(nest(sql, parameters));
+    }
+
+    protected BoundFunction(final BoundQuery query) {
+        super("(" + query.toLiteralSql() + ")");
+        this.query = query;
+    }
+
+    /**
+     * @return the subquery without parentheses, with placeholders for its parameters
+     */
+    public BoundQuery getQuery() {
+        return query;
+    }
+
+    protected static BoundQuery nest(final String sql, final Object... parameters) {
+        final StringBuilder text = new StringBuilder();
+        final List<Object> values = new ArrayList<Object>();
+        int parameter = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (c != '?' || parameter >= parameters.length) {
+                text.append(c);
+                continue;
+            }
+            final Object value = parameters[parameter++];
+            if (value instanceof BoundFunction) {
+                final BoundQuery nested = ((BoundFunction) value).getQuery();
+                text.append('(').append(nested.getSql()).append(')');
+                values.addAll(Arrays.asList(nested.getParameters()));
+            }
+            else if (value instanceof DatabaseFunction) {
+                text.append(((DatabaseFunction) value).getValue());
+            }
+            else {
+                text.append('?');
+                values.add(value);
+            }
+        }
+        return new BoundQuery(text.toString(), values.toArray());
+    }
+}
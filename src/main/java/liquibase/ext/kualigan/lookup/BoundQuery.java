@@ -0,0 +1,169 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.executor.ExecutorService;
+import liquibase.statement.core.RawSqlStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * A single-value lookup query with bind variables. On a JDBC connection the query is prepared (or taken from the
+ * connection's {@link StatementCache}) and its parameters bound; otherwise it falls back to the Liquibase executor with
+ * the parameters inlined as literals.
+ *
+ * @author Leo Przybylski
+ */
+public class BoundQuery {
+
+    private final String sql;
+    private final Object[] parameters;
+
+    public BoundQuery(final String sql, final Object... parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Runs the query, expecting exactly one row with one column.
+     *
+     * @param database the {@link Database} to query
+     * @return the value of the first column as a {@link String}
+     * @throws DatabaseException when the query fails or does not return exactly one row
+     */
+    public String queryForString(final Database database) throws DatabaseException {
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            return (String) ExecutorService.getInstance().getExecutor(database)
+                .queryForObject(new RawSqlStatement(toLiteralSql()), String.class);
+        }
+
+        final Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        final StatementCache cache = StatementCache.getInstance(connection);
+        try {
+            if (cache == null) {
+                final PreparedStatement statement = connection.prepareStatement(getSql());
+                try {
+                    return queryForString(statement);
+                }
+                finally {
+                    statement.close();
+                }
+            }
+            final PreparedStatement statement = cache.prepare(getSql());
+            try {
+                synchronized (statement) {
+                    return queryForString(statement);
+                }
+            }
+            finally {
+                cache.release(statement);
+            }
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to execute %s", this), e);
+        }
+    }
+
+    protected String queryForString(final PreparedStatement statement) throws SQLException, DatabaseException {
+        bind(statement);
+        final ResultSet results = statement.executeQuery();
+        try {
+            if (!results.next()) {
+                throw new DatabaseException(String.format("Empty result set, expected one row (%s)", this));
+            }
+            final String retval = results.getString(1);
+            if (results.next()) {
+                throw new DatabaseException(String.format("Result set larger than one row (%s)", this));
+            }
+            return retval;
+        }
+        finally {
+            results.close();
+        }
+    }
+
+    protected void bind(final PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+
+    /**
+     * The query with every placeholder replaced by its parameter as a SQL literal.
+     *
+     * @return literal SQL
+     */
+    public String toLiteralSql() {
+        final StringBuilder retval = new StringBuilder();
+        int parameter = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            final char c = sql.charAt(i);
+            if (c == '?' && parameter < parameters.length) {
+                retval.append(toLiteral(parameters[parameter++]));
+            }
+            else {
+                retval.append(c);
+            }
+        }
+        return retval.toString();
+    }
+
+    /**
+     * Quote a value as a SQL literal, doubling embedded quotes.
+     *
+     * @param value the value to quote
+     * @return the literal
+     */
+    public static String toLiteral(final Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s", sql, Arrays.asList(parameters));
+    }
+}
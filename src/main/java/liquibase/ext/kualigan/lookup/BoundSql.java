@@ -0,0 +1,97 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.sql.UnparsedSql;
+import liquibase.statement.DatabaseFunction;
+import liquibase.statement.core.InsertStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generated SQL that can also be run as a prepared statement. {@link #toSql()} is the SQL with every value inlined as a
+ * literal, as Liquibase writes and runs it. {@link #getQuery()} is the same statement with bind variables, which the
+ * {@link liquibase.ext.kualigan.execution.CachingJdbcExecutor} prepares once per connection and binds.
+ *
+ * @author Leo Przybylski
+ */
+public class BoundSql extends UnparsedSql {
+    private final BoundQuery query;
+
+    public BoundSql(final String sql, final BoundQuery query) {
+        super(sql);
+        this.query = query;
+    }
+
+    public BoundQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * The single-row insert with its column values bound. Values of {@link BoundFunction}s are nested as subqueries
+     * with their parameters bound; other database functions (ids from sequences, object id functions) stay in the SQL.
+     *
+     * @param database the {@link Database} the insert runs on
+     * @param insert the insert
+     * @return the {@link BoundQuery}
+     */
+    public static BoundQuery forInsert(final Database database, final InsertStatement insert) {
+        final StringBuilder columns = new StringBuilder();
+        final StringBuilder values = new StringBuilder();
+        final List<Object> parameters = new ArrayList<Object>();
+        for (final Map.Entry<String, Object> column : insert.getColumnValues().entrySet()) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            columns.append(database.escapeColumnName(insert.getCatalogName(), insert.getSchemaName(), insert.getTableName(), column.getKey()));
+            final Object value = column.getValue();
+            if (value == null) {
+                values.append("NULL");
+            }
+            else if (value instanceof BoundFunction) {
+                final BoundQuery nested = ((BoundFunction) value).getQuery();
+                values.append('(').append(nested.getSql()).append(')');
+                parameters.addAll(Arrays.asList(nested.getParameters()));
+            }
+            else if (value instanceof DatabaseFunction) {
+                values.append(database.generateDatabaseFunctionValue((DatabaseFunction) value));
+            }
+            else {
+                values.append('?');
+                parameters.add(value);
+            }
+        }
+        return new BoundQuery(String.format("insert into %s (%s) values (%s)",
+                                            database.escapeTableName(insert.getCatalogName(), insert.getSchemaName(), insert.getTableName()),
+                                            columns, values),
+                              parameters.toArray());
+    }
+}
@@ -0,0 +1,162 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes supporting the natural key lookups the KIM refactorings resolve foreign keys with. Each index counts the
+ * lookups issued against its table for the life of the JVM, both those the changes resolve themselves and those the
+ * generators nest into the generated SQL, so that after a migration it is visible which indexes were actually
+ * exercised.
+ *
+ * @author Leo Przybylski
+ */
+public enum KimLookupIndex {
+    PRINCIPAL("KRIM_PRNCPL_T", "KRIM_PRNCPL_KLX1", "PRNCPL_NM"),
+    ATTRIBUTE_DEFINITION("KRIM_ATTR_DEFN_T", "KRIM_ATTR_DEFN_KLX1", "NM"),
+    TYPE("KRIM_TYP_T", "KRIM_TYP_KLX1", "NM", "NMSPC_CD"),
+    PERMISSION_TEMPLATE("KRIM_PERM_TMPL_T", "KRIM_PERM_TMPL_KLX1", "NM"),
+    RESPONSIBILITY_TEMPLATE("KRIM_RSP_TMPL_T", "KRIM_RSP_TMPL_KLX1", "NM"),
+    ROLE("KRIM_ROLE_T", "KRIM_ROLE_KLX1", "ROLE_NM", "NMSPC_CD"),
+    PERMISSION("KRIM_PERM_T", "KRIM_PERM_KLX1", "NM", "NMSPC_CD", "PERM_TMPL_ID"),
+    RESPONSIBILITY("KRIM_RSP_T", "KRIM_RSP_KLX1", "NM", "NMSPC_CD"),
+    ROLE_RESPONSIBILITY("KRIM_ROLE_RSP_T", "KRIM_ROLE_RSP_KLX1", "ROLE_ID", "RSP_ID"),
+    ROLE_MEMBER("KRIM_ROLE_MBR_T", "KRIM_ROLE_MBR_KLX1", "ROLE_ID", "MBR_ID"),
+    ROLE_MEMBER_ATTRIBUTE("KRIM_ROLE_MBR_ATTR_DATA_T", "KRIM_ROLE_MBR_ATTR_DATA_KLX1", "ROLE_MBR_ID", "KIM_ATTR_DEFN_ID");
+
+    private final String tableName;
+    private final String indexName;
+    private final List<String> columnNames;
+    private final AtomicLong lookups = new AtomicLong();
+
+    private KimLookupIndex(final String tableName, final String indexName, final String... columnNames) {
+        this.tableName = tableName;
+        this.indexName = indexName;
+        this.columnNames = Collections.unmodifiableList(Arrays.asList(columnNames));
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Name used when the index is created by {@code ensureKimLookupIndexes}. The {@code _KLX} suffix is reserved for
+     * these indexes, so that dropping them never touches an index created by any other changeset.
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * Lookup columns in the order of the index created for them
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Whether an existing index with the given columns supports this lookup, i.e. its leading columns are the first
+     * lookup columns in any order. An index on a leading part of the lookup columns, such as Rice's unique
+     * {@code (NM, NMSPC_CD)} index on {@code KRIM_PERM_T}, narrows the lookup to a row or two, so it is enough.
+     *
+     * @param indexColumns upper case column names of an existing index in index order
+     * @return true if the index covers the lookup
+     */
+    public boolean isCoveredBy(final List<String> indexColumns) {
+        for (int leading = Math.min(indexColumns.size(), columnNames.size()); leading > 0; leading--) {
+            if (indexColumns.subList(0, leading).containsAll(columnNames.subList(0, leading))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count a lookup against this index' table
+     */
+    public void served() {
+        lookups.incrementAndGet();
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * The index supporting lookups through the given snapshot {@link Reference}
+     *
+     * @param reference a {@link KimReferenceSnapshot} index
+     * @return the matching {@link KimLookupIndex}
+     */
+    public static KimLookupIndex forReference(final Reference reference) {
+        switch (reference) {
+        case PERMISSION_TEMPLATE:
+            return PERMISSION_TEMPLATE;
+        case RESPONSIBILITY_TEMPLATE:
+            return RESPONSIBILITY_TEMPLATE;
+        case ATTRIBUTE_DEFINITION:
+            return ATTRIBUTE_DEFINITION;
+        case TYPE:
+        case NAMESPACED_TYPE:
+            return TYPE;
+        case ROLE:
+            return ROLE;
+        case PERMISSION:
+        case TEMPLATED_PERMISSION:
+            return PERMISSION;
+        default:
+            return RESPONSIBILITY;
+        }
+    }
+
+    /**
+     * One line per index with the number of lookups it served
+     *
+     * @return the report
+     */
+    public static String report() {
+        final StringBuilder retval = new StringBuilder("KIM lookups served per index:");
+        for (final KimLookupIndex index : values()) {
+            retval.append(String.format("%n  %-28s %-25s %d", index.getIndexName(), index.getTableName(), index.getLookups()));
+        }
+        return retval.toString();
+    }
+
+    /**
+     * Zero all lookup counters
+     */
+    public static void resetCounters() {
+        for (final KimLookupIndex index : values()) {
+            index.lookups.set(0);
+        }
+    }
+}
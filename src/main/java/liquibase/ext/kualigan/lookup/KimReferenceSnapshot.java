@@ -0,0 +1,266 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseConnection;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.UnexpectedLiquibaseException;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * In-memory copy of the KIM reference tables ({@code KRIM_TYP_T}, {@code KRIM_ATTR_DEFN_T}, {@code KRIM_PERM_TMPL_T},
+ * {@code KRIM_RSP_TMPL_T}, {@code KRIM_ROLE_T}, {@code KRIM_PERM_T} and {@code KRIM_RSP_T}). The tables are streamed
+ * once per {@link Database} and indexed by the natural keys the refactorings resolve foreign keys with. A key that is
+ * not found (or matches more than one row) is left to the caller to query, and the answer can be registered back into
+ * the snapshot.
+ *
+ * @author Leo Przybylski
+ */
+public class KimReferenceSnapshot {
+
+    /**
+     * The natural key indexes held by the snapshot. Each carries the number of columns making up its key.
+     */
+    public enum Reference {
+        PERMISSION_TEMPLATE(1),
+        RESPONSIBILITY_TEMPLATE(1),
+        ATTRIBUTE_DEFINITION(1),
+        TYPE(1),
+        NAMESPACED_TYPE(2),
+        ROLE(2),
+        PERMISSION(2),
+        TEMPLATED_PERMISSION(3),
+        RESPONSIBILITY(1),
+        NAMESPACED_RESPONSIBILITY(2);
+
+        private final int keySize;
+
+        private Reference(final int keySize) {
+            this.keySize = keySize;
+        }
+
+        public int getKeySize() {
+            return keySize;
+        }
+    }
+
+    private static final char KEY_SEPARATOR = '\u001f';
+
+    /** Marks a natural key shared by more than one row. Lookups for it always go to the database. */
+    private static final String AMBIGUOUS = new String("<ambiguous>");
+
+    private static final Map<Database, KimReferenceSnapshot> snapshots = new WeakHashMap<Database, KimReferenceSnapshot>();
+
+    private final Map<Reference, Map<String, String>> indexes = new EnumMap<Reference, Map<String, String>>(Reference.class);
+
+    protected KimReferenceSnapshot() {
+        for (final Reference reference : Reference.values()) {
+            indexes.put(reference, new HashMap<String, String>());
+        }
+    }
+
+    /**
+     * Get the snapshot for the given {@link Database}, loading it on first use.
+     *
+     * @param database the {@link Database} lookups are resolved against
+     * @return the loaded {@link KimReferenceSnapshot} or <code>null</code> when snapshots are disabled or the database
+     * is not backed by a JDBC connection
+     */
+    public static KimReferenceSnapshot getInstance(final Database database) {
+        if (database == null || !KimConfiguration.getInstance().getUseReferenceSnapshot()) {
+            return null;
+        }
+        if (!(database.getConnection() instanceof JdbcConnection)) {
+            return null;
+        }
+
+        synchronized (snapshots) {
+            KimReferenceSnapshot retval = snapshots.get(database);
+            if (retval == null) {
+                retval = new KimReferenceSnapshot();
+                retval.load(database);
+                snapshots.put(database, retval);
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Discard the snapshot held for a {@link Database}. The next {@link #getInstance(Database)} reloads it.
+     *
+     * @param database the {@link Database} to discard the snapshot for
+     */
+    public static void reset(final Database database) {
+        synchronized (snapshots) {
+            snapshots.remove(database);
+        }
+    }
+
+    /**
+     * Streams the reference tables into the indexes.
+     *
+     * @param database the {@link Database} to read from
+     */
+    protected void load(final Database database) {
+        final DatabaseConnection connection = database.getConnection();
+        final Connection jdbc = ((JdbcConnection) connection).getUnderlyingConnection();
+        final int fetchSize = KimConfiguration.getInstance().getSnapshotFetchSize();
+
+        try {
+            load(jdbc, fetchSize, "select PERM_TMPL_ID, NM from KRIM_PERM_TMPL_T", 
+                 Reference.PERMISSION_TEMPLATE);
+            load(jdbc, fetchSize, "select RSP_TMPL_ID, NM from KRIM_RSP_TMPL_T", 
+                 Reference.RESPONSIBILITY_TEMPLATE);
+            load(jdbc, fetchSize, "select KIM_ATTR_DEFN_ID, NM from KRIM_ATTR_DEFN_T", 
+                 Reference.ATTRIBUTE_DEFINITION);
+            load(jdbc, fetchSize, "select KIM_TYP_ID, NM, NMSPC_CD from KRIM_TYP_T", 
+                 Reference.TYPE, Reference.NAMESPACED_TYPE);
+            load(jdbc, fetchSize, "select ROLE_ID, ROLE_NM, NMSPC_CD from KRIM_ROLE_T", 
+                 Reference.ROLE);
+            load(jdbc, fetchSize, "select PERM_ID, NM, NMSPC_CD, PERM_TMPL_ID from KRIM_PERM_T", 
+                 Reference.PERMISSION, Reference.TEMPLATED_PERMISSION);
+            load(jdbc, fetchSize, "select RSP_ID, NM, NMSPC_CD from KRIM_RSP_T", 
+                 Reference.RESPONSIBILITY, Reference.NAMESPACED_RESPONSIBILITY);
+        }
+        catch (SQLException e) {
+            throw new UnexpectedLiquibaseException("Unable to load the KIM reference snapshot", e);
+        }
+    }
+
+    /**
+     * Runs a forward-only query whose first column is the id and whose remaining columns are the natural key. Every
+     * {@link Reference} given is fed the leading columns of the key it needs.
+     */
+    private void load(final Connection connection, 
+                      final int fetchSize, 
+                      final String query, 
+                      final Reference... references) throws SQLException {
+        final Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            statement.setFetchSize(fetchSize);
+            final ResultSet results = statement.executeQuery(query);
+            try {
+                final String[] key = new String[results.getMetaData().getColumnCount() - 1];
+                while (results.next()) {
+                    final String id = results.getString(1);
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = results.getString(i + 2);
+                    }
+                    for (final Reference reference : references) {
+                        index(reference, id, key);
+                    }
+                }
+            }
+            finally {
+                results.close();
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private void index(final Reference reference, final String id, final String[] key) {
+        final Map<String, String> index = indexes.get(reference);
+        final String indexKey = toKey(reference, key);
+        final String existing = index.get(indexKey);
+        if (existing == null) {
+            index.put(indexKey, id);
+        }
+        else if (!existing.equals(id)) {
+            index.put(indexKey, AMBIGUOUS);
+        }
+    }
+
+    /**
+     * Find the id for a natural key.
+     *
+     * @param reference the index to search
+     * @param key natural key values, in the order of the index
+     * @return the id, or <code>null</code> when the key is unknown or not unique
+     */
+    public synchronized String lookup(final Reference reference, final String... key) {
+        final String retval = indexes.get(reference).get(toKey(reference, key));
+        return retval == AMBIGUOUS ? null : retval;
+    }
+
+    /**
+     * Record the id for a natural key, typically after it was queried or inserted.
+     *
+     * @param reference the index to update
+     * @param id the id of the row
+     * @param key natural key values, in the order of the index
+     */
+    public synchronized void register(final Reference reference, final String id, final String... key) {
+        if (id == null) {
+            return;
+        }
+        index(reference, id, key);
+    }
+
+    /**
+     * Forget a natural key so that the next lookup goes to the database. Used when a row is inserted without a known
+     * id or removed.
+     *
+     * @param reference the index to update
+     * @param key natural key values, in the order of the index
+     */
+    public synchronized void evict(final Reference reference, final String... key) {
+        indexes.get(reference).remove(toKey(reference, key));
+    }
+
+    /**
+     * Number of keys held by an index
+     *
+     * @param reference the index to count
+     * @return the number of keys held
+     */
+    public synchronized int size(final Reference reference) {
+        return indexes.get(reference).size();
+    }
+
+    private String toKey(final Reference reference, final String[] key) {
+        final StringBuilder retval = new StringBuilder();
+        for (int i = 0; i < reference.getKeySize(); i++) {
+            if (i > 0) {
+                retval.append(KEY_SEPARATOR);
+            }
+            retval.append(i < key.length && key[i] != null ? key[i] : "");
+        }
+        return retval.toString();
+    }
+}
@@ -0,0 +1,196 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.UnexpectedLiquibaseException;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Resolves principal names to {@code PRNCPL_ID}s in batches. Names are queued with {@link #request(String...)} and the
+ * whole queue is resolved the first time any queued name is needed, using {@code PRNCPL_NM IN (?, ?, ...)} queries of
+ * a fixed chunk size. Resolved names are cached for the life of the {@link Database}; names that are not found are not
+ * cached, so they are queried again on the next request.
+ *
+ * @author Leo Przybylski
+ */
+public class PrincipalResolver {
+
+    protected static final String QUERY = "select PRNCPL_NM, PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM in (%s)";
+
+    private static final Map<Database, PrincipalResolver> resolvers = new WeakHashMap<Database, PrincipalResolver>();
+
+    private final Map<String, String> principals = new HashMap<String, String>();
+    private final Set<String> pending = new LinkedHashSet<String>();
+    private final int chunkSize;
+
+    protected PrincipalResolver(final int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Get the resolver for the given {@link Database}
+     *
+     * @param database the {@link Database} principals are resolved against
+     * @return the {@link PrincipalResolver} or <code>null</code> when the database is not backed by a JDBC connection
+     */
+    public static PrincipalResolver getInstance(final Database database) {
+        if (database == null || !(database.getConnection() instanceof JdbcConnection)) {
+            return null;
+        }
+
+        synchronized (resolvers) {
+            PrincipalResolver retval = resolvers.get(database);
+            if (retval == null) {
+                retval = new PrincipalResolver(KimConfiguration.getInstance().getPrincipalChunkSize());
+                resolvers.put(database, retval);
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Queue principal names to be resolved with the next batch
+     *
+     * @param names principal names; <code>null</code> values are ignored
+     */
+    public synchronized void request(final String... names) {
+        for (final String name : names) {
+            if (name != null && !principals.containsKey(name)) {
+                pending.add(name);
+            }
+        }
+    }
+
+    /**
+     * Queue principal names to be resolved with the next batch
+     *
+     * @param names principal names; <code>null</code> values are ignored
+     */
+    public void request(final Collection<String> names) {
+        request(names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Get the {@code PRNCPL_ID} for a principal name, resolving everything queued so far if it is not cached yet.
+     *
+     * @param database the {@link Database} to query
+     * @param name the principal name
+     * @return the principal id
+     * @throws UnexpectedLiquibaseException when the principal does not exist
+     */
+    public synchronized String resolve(final Database database, final String name) {
+        if (!principals.containsKey(name)) {
+            pending.add(name);
+            flush(database);
+        }
+
+        final String retval = principals.get(name);
+        if (retval == null) {
+            throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign key for 'Principal' (%s)", name));
+        }
+        return retval;
+    }
+
+    /**
+     * Resolves every queued name. Each chunk is padded to the chunk size by repeating its last name so that every
+     * query has the same shape.
+     */
+    protected void flush(final Database database) {
+        final Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        final List<String> names = new ArrayList<String>(pending);
+        pending.clear();
+
+        final StatementCache cache = StatementCache.getInstance(connection);
+        final String sql = String.format(QUERY, placeholders(chunkSize));
+        try {
+            for (int start = 0; start < names.size(); start += chunkSize) {
+                final List<String> chunk = names.subList(start, Math.min(start + chunkSize, names.size()));
+                if (cache != null) {
+                    final PreparedStatement statement = cache.prepare(sql);
+                    try {
+                        synchronized (statement) {
+                            resolve(statement, chunk);
+                        }
+                    }
+                    finally {
+                        cache.release(statement);
+                    }
+                    continue;
+                }
+                final PreparedStatement statement = connection.prepareStatement(sql);
+                try {
+                    resolve(statement, chunk);
+                }
+                finally {
+                    statement.close();
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new UnexpectedLiquibaseException(String.format("Unable to retrieve foreign keys for 'Principal' (%s)", names), e);
+        }
+    }
+
+    private void resolve(final PreparedStatement statement, final List<String> chunk) throws SQLException {
+        for (int i = 0; i < chunkSize; i++) {
+            statement.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+        }
+        KimLookupIndex.PRINCIPAL.served();
+        final ResultSet results = statement.executeQuery();
+        try {
+            while (results.next()) {
+                principals.put(results.getString(1), results.getString(2));
+            }
+        }
+        finally {
+            results.close();
+        }
+    }
+
+    protected static String placeholders(final int count) {
+        final StringBuilder retval = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            retval.append(i == 0 ? "?" : ", ?");
+        }
+        return retval.toString();
+    }
+}
@@ -0,0 +1,169 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.executor.Executor;
+import liquibase.executor.ExecutorService;
+import liquibase.executor.jvm.JdbcExecutor;
+import liquibase.logging.LogFactory;
+import liquibase.sql.Sql;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import liquibase.statement.core.RuntimeStatement;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The flattened role membership table {@code KRIM_ROLE_MBR_CLOSURE_T}. It holds one row per role and every member
+ * reachable from it through role members ({@code MBR_TYP_CD = 'R'}), with the depth of the shortest path. Whether
+ * someone is a member of a role, directly or through nested roles, becomes one indexed lookup:
+ * <pre>
+ * select 1 from KRIM_ROLE_MBR_CLOSURE_T where ANCSTR_ROLE_ID = ? and MBR_ID = ? and MBR_TYP_CD = 'P'
+ * </pre>
+ * The table is created by the {@code createRoleMemberClosure} change. From then on every member this extension
+ * assigns or removes also refreshes the closure, as long as the table exists.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberClosure {
+    public static final String TABLE_NAME = "KRIM_ROLE_MBR_CLOSURE_T";
+
+    private static final Map<Database, Boolean> maintained = new WeakHashMap<Database, Boolean>();
+
+    private RoleMemberClosure() {
+    }
+
+    /**
+     * Whether the closure table exists and has to be refreshed. Checked once per {@link Database}.
+     *
+     * @return false when the database is not backed by a JDBC connection
+     */
+    public static boolean isMaintained(final Database database) {
+        if (database == null || !(database.getConnection() instanceof JdbcConnection)) {
+            return false;
+        }
+
+        synchronized (maintained) {
+            Boolean retval = maintained.get(database);
+            if (retval == null) {
+                retval = exists(database);
+                maintained.put(database, retval);
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Record that the closure table was created or dropped
+     */
+    public static void setMaintained(final Database database, final boolean value) {
+        synchronized (maintained) {
+            maintained.put(database, value);
+        }
+    }
+
+    /**
+     * Members the generic expansion did not reach because roles are nested deeper than
+     * {@link KimConfiguration#getRoleClosureDepth()}: those the next level would still add
+     *
+     * @return the number of missing rows one level further down, 0 on Oracle where the expansion has no limit
+     */
+    public static int countBeyondDepth(final Database database) throws DatabaseException {
+        if (database instanceof OracleDatabase) {
+            return 0;
+        }
+        return ExecutorService.getInstance().getExecutor(database).queryForInt(new RawSqlStatement(String.format(
+            "select count(*) from %1$s c join KRIM_ROLE_MBR_T m on m.ROLE_ID = c.MBR_ID"
+            + " where c.MBR_TYP_CD = 'R' and c.DPTH = %2$d"
+            + " and not exists (select 1 from %1$s x where x.ANCSTR_ROLE_ID = c.ANCSTR_ROLE_ID and x.MBR_ID = m.MBR_ID"
+            + " and x.MBR_TYP_CD = m.MBR_TYP_CD)",
+            TABLE_NAME, KimConfiguration.getInstance().getRoleClosureDepth())));
+    }
+
+    /**
+     * Warn when the closure stops short of the deepest nesting (see {@link #countBeyondDepth(Database)})
+     */
+    public static void checkDepth(final Database database) throws DatabaseException {
+        final int missing = countBeyondDepth(database);
+        if (missing > 0) {
+            LogFactory.getLogger().warning(String.format("Roles are nested deeper than liquibase.kim.roleClosureDepth (%d); %s lacks at least %d rows",
+                                                         KimConfiguration.getInstance().getRoleClosureDepth(), TABLE_NAME, missing));
+        }
+    }
+
+    /**
+     * A statement running {@link #checkDepth(Database)} when it is executed, after the statements refreshing the
+     * closure before it. It generates no SQL, and checks nothing unless it runs against the database.
+     */
+    public static SqlStatement getDepthCheck() {
+        return new RuntimeStatement() {
+            public Sql[] generate(final Database database) {
+                final Executor executor = ExecutorService.getInstance().getExecutor(database);
+                if (executor instanceof JdbcExecutor && isMaintained(database)) {
+                    try {
+                        checkDepth(database);
+                    }
+                    catch (DatabaseException e) {
+                        throw new UnexpectedLiquibaseException(String.format("Unable to check the depth of %s", TABLE_NAME), e);
+                    }
+                }
+                return new Sql[0];
+            }
+        };
+    }
+
+    protected static boolean exists(final Database database) {
+        try {
+            final DatabaseMetaData metaData = ((JdbcConnection) database.getConnection()).getUnderlyingConnection().getMetaData();
+            for (final String candidate : new String[] { TABLE_NAME, TABLE_NAME.toLowerCase() }) {
+                final ResultSet tables = metaData.getTables(database.getDefaultCatalogName(), database.getDefaultSchemaName(), candidate, null);
+                try {
+                    if (tables.next()) {
+                        return true;
+                    }
+                }
+                finally {
+                    tables.close();
+                }
+            }
+            return false;
+        }
+        catch (SQLException e) {
+            throw new UnexpectedLiquibaseException(String.format("Unable to look for %s", TABLE_NAME), e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the lookup of a role member identified by its role, its member and the values of its unique qualifiers.
+ * Qualifying attribute rows are matched in one pass and grouped by member; a member qualifies when every attribute
+ * definition matched:
+ * <pre>
+ * select rm.role_mbr_id from krim_role_mbr_t rm
+ *   join krim_role_mbr_attr_data_t rma on rma.role_mbr_id = rm.role_mbr_id
+ *  where rm.role_id = ? and rm.mbr_id = ?
+ *    and ((rma.kim_attr_defn_id = ? and rma.attr_val = ?) or ...)
+ *  group by rm.role_mbr_id
+ * having count(distinct rma.kim_attr_defn_id) = n
+ * </pre>
+ * Both the change classes (bound ids) and the sql generators (nested {@link BoundFunction}s) use this form.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberQuery {
+
+    protected static final String TEMPLATE = 
+        "select rm.role_mbr_id from krim_role_mbr_t rm"
+        + " join krim_role_mbr_attr_data_t rma on rma.role_mbr_id = rm.role_mbr_id"
+        + " where rm.role_id = %s and rm.mbr_id = %s and (%s)"
+        + " group by rm.role_mbr_id having count(distinct rma.kim_attr_defn_id) = %d";
+
+    protected static final String ATTRIBUTE_TEMPLATE = "(rma.kim_attr_defn_id = %s and rma.attr_val = %s)";
+
+    private RoleMemberQuery() {
+    }
+
+    /**
+     * Lookup with bind variables. Ids are resolved values, or {@link BoundFunction}s that look them up.
+     *
+     * @param roleId the {@code ROLE_ID}
+     * @param memberId the {@code MBR_ID}
+     * @param attributes attribute values keyed by {@code KIM_ATTR_DEFN_ID}
+     * @return the {@link BoundQuery}
+     */
+    public static BoundQuery toBoundQuery(final Object roleId, final Object memberId, final Map<?, String> attributes) {
+        final List<Object> parameters = new ArrayList<Object>();
+        parameters.add(roleId);
+        parameters.add(memberId);
+        for (final Map.Entry<?, String> attribute : attributes.entrySet()) {
+            parameters.add(attribute.getKey());
+            parameters.add(attribute.getValue());
+        }
+        return new BoundQuery(toSql("?", "?", attributes.size()), parameters.toArray());
+    }
+
+    protected static String toSql(final String roleIdExpression, final String memberIdExpression, final int attributeCount) {
+        final StringBuilder predicate = new StringBuilder();
+        for (int i = 0; i < attributeCount; i++) {
+            if (i > 0) {
+                predicate.append(" or ");
+            }
+            predicate.append(String.format(ATTRIBUTE_TEMPLATE, "?", "?"));
+        }
+        return String.format(TEMPLATE, roleIdExpression, memberIdExpression, predicate, attributeCount);
+    }
+}
@@ -0,0 +1,141 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.OracleDatabase;
+import liquibase.database.core.PostgresDatabase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Takes a block of values from a KIM id sequence in one query where the database can do so ({@code CONNECT BY} on
+ * Oracle, {@code SYSTEM_RANGE} on H2, {@code GENERATE_SERIES} on PostgreSQL). Elsewhere values are taken one at a
+ * time, from the sequence or, on databases without sequences, from the {@code max(id)} table KIM uses instead.
+ *
+ * @author Leo Przybylski
+ */
+public class SequenceAllocator {
+
+    private final Database database;
+
+    public SequenceAllocator(final Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Allocate ids
+     *
+     * @param sequenceName the KIM sequence (or sequence table) name
+     * @param count number of ids wanted
+     * @return <code>count</code> ids, in the order the sequence returned them
+     */
+    public List<String> allocate(final String sequenceName, final int count) throws DatabaseException {
+        final List<String> retval = new ArrayList<String>(count);
+        if (count == 0) {
+            return retval;
+        }
+
+        final Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            final String block = getBlockQuery(sequenceName);
+            if (block != null) {
+                final PreparedStatement statement = connection.prepareStatement(block);
+                try {
+                    statement.setInt(1, count);
+                    final ResultSet results = statement.executeQuery();
+                    try {
+                        while (results.next()) {
+                            retval.add(results.getString(1));
+                        }
+                    }
+                    finally {
+                        results.close();
+                    }
+                }
+                finally {
+                    statement.close();
+                }
+                return retval;
+            }
+
+            final Statement statement = connection.createStatement();
+            try {
+                for (int i = 0; i < count; i++) {
+                    final String next;
+                    if (database.supportsSequences()) {
+                        next = String.format("select %s.NEXTVAL from dual", sequenceName);
+                    }
+                    else {
+                        statement.executeUpdate(String.format("insert into %s values(null)", sequenceName));
+                        next = String.format("select max(id) from %s", sequenceName);
+                    }
+                    final ResultSet results = statement.executeQuery(next);
+                    try {
+                        results.next();
+                        retval.add(results.getString(1));
+                    }
+                    finally {
+                        results.close();
+                    }
+                }
+            }
+            finally {
+                statement.close();
+            }
+            return retval;
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to allocate %d ids from %s", count, sequenceName), e);
+        }
+    }
+
+    /**
+     * A query returning as many sequence values as its one parameter asks for, or <code>null</code> when the database
+     * has no way to do so
+     */
+    protected String getBlockQuery(final String sequenceName) {
+        if (database instanceof OracleDatabase) {
+            return String.format("select %s.NEXTVAL from dual connect by level <= ?", sequenceName);
+        }
+        if (database instanceof H2Database) {
+            return String.format("select %s.NEXTVAL from system_range(1, ?)", sequenceName);
+        }
+        if (database instanceof PostgresDatabase) {
+            return String.format("select nextval('%s') from generate_series(1, ?)", sequenceName);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,244 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.logging.LogFactory;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prepared statements of one JDBC connection, kept open and keyed by their SQL so that every KIM lookup or insert of
+ * the same shape reuses one statement for the whole run. A connection only has a cache between {@link #open(Database)}
+ * and {@link #close(Database)}, which the {@link liquibase.ext.kualigan.execution.ParallelChangeLogExecutor} and the
+ * lookup connections it opens call around a run; on any other connection statements are prepared and closed as usual.
+ * <p>
+ * At most {@code liquibase.kim.statementCacheSize} statements are kept; the least recently used one is dropped to
+ * make room, and closed once no caller holds it. Every {@link #prepare(String)} must be followed by a
+ * {@link #release(PreparedStatement)}. Callers must not use a cached statement from more than one thread at a time,
+ * and must not close it.
+ *
+ * @author Leo Przybylski
+ */
+public class StatementCache {
+
+    private static final Map<Connection, StatementCache> caches = new HashMap<Connection, StatementCache>();
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private final Map<PreparedStatement, Integer> used = new HashMap<PreparedStatement, Integer>();
+    private final Set<PreparedStatement> dropped = new HashSet<PreparedStatement>();
+    private int hits;
+    private int created;
+
+    protected StatementCache(final Connection connection, final int size) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= size) {
+                    return false;
+                }
+                drop(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the cache of a connection
+     *
+     * @param connection the JDBC connection statements are prepared on
+     * @return the {@link StatementCache} or <code>null</code> when the connection has none open
+     */
+    public static StatementCache getInstance(final Connection connection) {
+        if (connection == null) {
+            return null;
+        }
+        synchronized (caches) {
+            return caches.get(connection);
+        }
+    }
+
+    /**
+     * Open a cache for the JDBC connection of a {@link Database}, if it has one. Must be paired with
+     * {@link #close(Database)}.
+     *
+     * @param database the {@link Database}
+     */
+    public static void open(final Database database) {
+        if (database.getConnection() instanceof JdbcConnection) {
+            open(((JdbcConnection) database.getConnection()).getUnderlyingConnection());
+        }
+    }
+
+    /**
+     * Open a cache for a connection unless it has one or {@code liquibase.kim.statementCacheSize} is 0. Must be paired
+     * with {@link #close(Connection)}.
+     *
+     * @param connection the JDBC connection
+     */
+    public static void open(final Connection connection) {
+        final int size = KimConfiguration.getInstance().getStatementCacheSize();
+        if (connection == null || size <= 0) {
+            return;
+        }
+        synchronized (caches) {
+            if (!caches.containsKey(connection)) {
+                caches.put(connection, new StatementCache(connection, size));
+            }
+        }
+    }
+
+    /**
+     * Close the statements cached for the JDBC connection of a {@link Database}, if it has one
+     *
+     * @param database the {@link Database}
+     */
+    public static void close(final Database database) {
+        if (database.getConnection() instanceof JdbcConnection) {
+            close(((JdbcConnection) database.getConnection()).getUnderlyingConnection());
+        }
+    }
+
+    /**
+     * Close the statements cached for a connection and forget them. The connection itself stays open.
+     *
+     * @param connection the JDBC connection
+     */
+    public static void close(final Connection connection) {
+        final StatementCache cache;
+        synchronized (caches) {
+            cache = caches.remove(connection);
+        }
+        if (cache != null) {
+            cache.close();
+            LogFactory.getLogger().debug(String.format("KIM statement cache: %d statements prepared, %d reused", cache.getCreated(), cache.getHits()));
+        }
+    }
+
+    /**
+     * Get the statement prepared for the SQL, preparing it if it is not cached. The statement stays open until it is
+     * released, even if the cache drops it meanwhile.
+     *
+     * @param sql the statement text
+     * @return an open {@link PreparedStatement}; parameters left from a previous use are cleared when it is bound again
+     */
+    public synchronized PreparedStatement prepare(final String sql) throws SQLException {
+        PreparedStatement retval = statements.get(sql);
+        if (retval != null) {
+            hits++;
+        }
+        else {
+            retval = connection.prepareStatement(sql);
+            statements.put(sql, retval);
+            created++;
+        }
+        final Integer uses = used.get(retval);
+        used.put(retval, uses == null ? 1 : uses + 1);
+        return retval;
+    }
+
+    /**
+     * Hand back a statement obtained from {@link #prepare(String)}, closing it if the cache dropped it and no other
+     * caller holds it
+     *
+     * @param statement the statement
+     */
+    public synchronized void release(final PreparedStatement statement) {
+        final Integer uses = used.get(statement);
+        if (uses == null) {
+            return;
+        }
+        if (uses > 1) {
+            used.put(statement, uses - 1);
+            return;
+        }
+        used.remove(statement);
+        if (dropped.remove(statement)) {
+            close(statement);
+        }
+    }
+
+    /**
+     * Close every cached statement; those still held are closed when released
+     */
+    public synchronized void close() {
+        final List<PreparedStatement> open = new ArrayList<PreparedStatement>(statements.values());
+        statements.clear();
+        for (final PreparedStatement statement : open) {
+            drop(statement);
+        }
+    }
+
+    /**
+     * @return the number of times a cached statement was reused
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of statements prepared
+     */
+    public synchronized int getCreated() {
+        return created;
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    private void drop(final PreparedStatement statement) {
+        if (used.containsKey(statement)) {
+            dropped.add(statement);
+        }
+        else {
+            close(statement);
+        }
+    }
+
+    private static void close(final PreparedStatement statement) {
+        try {
+            statement.close();
+        }
+        catch (SQLException e) {
+            LogFactory.getLogger().debug("Unable to close cached statement", e);
+        }
+    }
+}
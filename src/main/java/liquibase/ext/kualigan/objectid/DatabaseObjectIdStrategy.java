@@ -0,0 +1,69 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.objectid;
+
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.MSSQLDatabase;
+import liquibase.database.core.MySQLDatabase;
+import liquibase.database.core.OracleDatabase;
+import liquibase.database.core.PostgresDatabase;
+import liquibase.statement.DatabaseFunction;
+
+/**
+ * Leaves {@code OBJ_ID} to the database ({@code SYS_GUID()} on Oracle, {@code RANDOM_UUID()} on H2 and so on), so no
+ * id is generated or sent by the client. Databases without a known function fall back to
+ * {@link TimeOrderedObjectIdStrategy}.
+ *
+ * @author Leo Przybylski
+ */
+public class DatabaseObjectIdStrategy implements ObjectIdStrategy {
+    private final ObjectIdStrategy fallback = new TimeOrderedObjectIdStrategy();
+
+    public Object nextObjectId(final Database database) {
+        final String function = getFunction(database);
+        return function != null ? new DatabaseFunction(function) : fallback.nextObjectId(database);
+    }
+
+    public String getFunction(final Database database) {
+        if (database instanceof OracleDatabase) {
+            return "SYS_GUID()";
+        }
+        if (database instanceof H2Database) {
+            return "RANDOM_UUID()";
+        }
+        if (database instanceof MySQLDatabase) {
+            return "UUID()";
+        }
+        if (database instanceof PostgresDatabase) {
+            return "gen_random_uuid()";
+        }
+        if (database instanceof MSSQLDatabase) {
+            return "NEWID()";
+        }
+        return null;
+    }
+}
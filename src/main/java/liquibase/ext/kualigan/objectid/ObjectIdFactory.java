@@ -0,0 +1,105 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.objectid;
+
+import liquibase.database.Database;
+import liquibase.exception.UnexpectedLiquibaseException;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+/**
+ * Hands out {@code OBJ_ID} values using the {@link ObjectIdStrategy} named by {@code liquibase.kim.objectIdStrategy}:
+ * {@value #RANDOM}, {@value #TIME_ORDERED}, {@value #DATABASE} or the name of a class implementing
+ * {@link ObjectIdStrategy}.
+ *
+ * @author Leo Przybylski
+ */
+public class ObjectIdFactory {
+    public static final String RANDOM       = "random";
+    public static final String TIME_ORDERED = "timeOrdered";
+    public static final String DATABASE     = "database";
+
+    private static final ObjectIdFactory instance = new ObjectIdFactory();
+
+    private volatile Selection selection;
+
+    public static ObjectIdFactory getInstance() {
+        return instance;
+    }
+
+    /**
+     * The value of {@code OBJ_ID} for the next inserted row
+     *
+     * @param database the target {@link Database}
+     * @return a {@link String} or a {@link liquibase.statement.DatabaseFunction}
+     */
+    public Object nextObjectId(final Database database) {
+        return getStrategy().nextObjectId(database);
+    }
+
+    /**
+     * The configured strategy, created again whenever the configuration names a different one. Ids are requested for
+     * every inserted row, so this does not lock.
+     */
+    public ObjectIdStrategy getStrategy() {
+        final String configured = KimConfiguration.getInstance().getObjectIdStrategy();
+        Selection retval = selection;
+        if (retval == null || !retval.name.equals(configured)) {
+            retval = new Selection(configured, createStrategy(configured));
+            selection = retval;
+        }
+        return retval.strategy;
+    }
+
+    protected ObjectIdStrategy createStrategy(final String name) {
+        if (RANDOM.equals(name)) {
+            return new RandomObjectIdStrategy();
+        }
+        if (TIME_ORDERED.equals(name)) {
+            return new TimeOrderedObjectIdStrategy();
+        }
+        if (DATABASE.equals(name)) {
+            return new DatabaseObjectIdStrategy();
+        }
+
+        try {
+            return (ObjectIdStrategy) Class.forName(name).newInstance();
+        }
+        catch (Exception e) {
+            throw new UnexpectedLiquibaseException(String.format("Unable to create OBJ_ID strategy '%s'", name), e);
+        }
+    }
+
+    private static class Selection {
+        private final String name;
+        private final ObjectIdStrategy strategy;
+
+        private Selection(final String name, final ObjectIdStrategy strategy) {
+            this.name = name;
+            this.strategy = strategy;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.objectid;
+
+import liquibase.database.Database;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Time-ordered (version 7 layout) {@link UUID}s: 48 bits of epoch milliseconds, a 12 bit per-thread sequence and 62
+ * pseudo-random bits. Each thread draws from its own {@link Random}, seeded once from a {@link SecureRandom}, so
+ * generation does not contend. Ids of one run share a prefix and grow over time, so they are appended to the right of
+ * the {@code OBJ_ID} index instead of splitting pages all over it.
+ * <p>
+ * {@link Random} has 48 bits of state, so the 62 bits hold at most 48 bits of entropy per thread, and anyone who sees
+ * one id of a thread can predict the next ones. Uniqueness rests on the timestamp and sequence plus the per-thread
+ * seed. Use {@link RandomObjectIdStrategy}, the default, where ids must not be guessable.
+ *
+ * @author Leo Przybylski
+ */
+public class TimeOrderedObjectIdStrategy implements ObjectIdStrategy {
+    private static final SecureRandom seeds = new SecureRandom();
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            synchronized (seeds) {
+                return new State(new Random(seeds.nextLong()));
+            }
+        }
+    };
+
+    public Object nextObjectId(final Database database) {
+        return next().toString();
+    }
+
+    /**
+     * The next id of the current thread
+     */
+    public UUID next() {
+        final State current = state.get();
+        final long now = currentTimeMillis();
+        if (now > current.millis) {
+            current.millis = now;
+            current.sequence = current.random.nextInt(0x800);
+        }
+        else if (++current.sequence > 0xfff) {
+            // sequence exhausted within a millisecond; borrow the next one to stay ordered
+            current.millis++;
+            current.sequence = 0;
+        }
+
+        final long msb = (current.millis << 16) | 0x7000L | current.sequence;
+        final long lsb = (current.random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * The clock ids are ordered by
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class State {
+        private final Random random;
+        private long millis;
+        private int sequence;
+
+        private State(final Random random) {
+            this.random = random;
+        }
+    }
+}
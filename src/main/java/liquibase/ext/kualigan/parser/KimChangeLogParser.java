@@ -0,0 +1,140 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.exception.ChangeLogParseException;
+import liquibase.parser.ChangeLogParser;
+import liquibase.parser.core.ParsedNode;
+import liquibase.parser.core.xml.XMLChangeLogSAXParser;
+import liquibase.resource.ResourceAccessor;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.execution.KimChangeLogAnalyzer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * XML changelog parser for changelogs dominated by {@code rice-lb-ext} elements. The document is read with
+ * {@link KimChangeLogReader} (StAX, no schema validation) and KIM changes bind themselves from the resulting nodes
+ * without reflection (see {@link liquibase.ext.kualigan.change.KimAbstractChange#load}). Enabled with
+ * {@code liquibase.kim.useStreamingParser=true}; otherwise parsing is left to the Liquibase SAX parser. Either way,
+ * once the root changelog and its includes are loaded, KIM rows defined more than once are reported (see
+ * {@link KimChangeLogAnalyzer}).
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogParser implements ChangeLogParser {
+    /**
+     * Depth of nested parses on this thread; included changelogs are parsed while their parent loads
+     */
+    private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    public int getPriority() {
+        return PRIORITY_DEFAULT + 1;
+    }
+
+    public boolean supports(final String changeLogFile, final ResourceAccessor resourceAccessor) {
+        return changeLogFile.toLowerCase().endsWith("xml");
+    }
+
+    public DatabaseChangeLog parse(final String physicalChangeLogLocation, 
+                                   final ChangeLogParameters changeLogParameters, 
+                                   final ResourceAccessor resourceAccessor) throws ChangeLogParseException {
+        final int[] nesting = depth.get();
+        final DatabaseChangeLog changeLog;
+        nesting[0]++;
+        try {
+            changeLog = KimConfiguration.getInstance().getUseStreamingParser()
+                ? read(physicalChangeLogLocation, changeLogParameters, resourceAccessor)
+                : new XMLChangeLogSAXParser().parse(physicalChangeLogLocation, changeLogParameters, resourceAccessor);
+        }
+        finally {
+            nesting[0]--;
+        }
+        if (nesting[0] == 0 && changeLog != null) {
+            KimChangeLogAnalyzer.fromConfiguration().analyze(changeLog);
+        }
+        return changeLog;
+    }
+
+    /**
+     * Reads a changelog with the {@link KimChangeLogReader}
+     */
+    protected DatabaseChangeLog read(final String physicalChangeLogLocation, 
+                                     final ChangeLogParameters changeLogParameters, 
+                                     final ResourceAccessor resourceAccessor) throws ChangeLogParseException {
+        final ParsedNode parsedNode;
+        InputStream stream = null;
+        try {
+            stream = resourceAccessor.getResourceAsStream(physicalChangeLogLocation);
+            if (stream == null) {
+                throw new ChangeLogParseException(physicalChangeLogLocation + " does not exist");
+            }
+            parsedNode = new KimChangeLogReader(changeLogParameters).read(stream);
+        }
+        catch (ChangeLogParseException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new ChangeLogParseException(String.format("Error parsing %s", physicalChangeLogLocation), e);
+        }
+        finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                }
+                catch (IOException e) {
+                    // nothing left to do
+                }
+            }
+        }
+
+        if (parsedNode == null) {
+            return null;
+        }
+        if (!"databaseChangeLog".equals(parsedNode.getName())) {
+            throw new ChangeLogParseException(String.format("%s is not a changelog (root element %s)", physicalChangeLogLocation, parsedNode.getName()));
+        }
+
+        final DatabaseChangeLog changeLog = new DatabaseChangeLog(physicalChangeLogLocation);
+        changeLog.setChangeLogParameters(changeLogParameters);
+        try {
+            changeLog.load(parsedNode, resourceAccessor);
+        }
+        catch (Exception e) {
+            throw new ChangeLogParseException(e);
+        }
+        return changeLog;
+    }
+}
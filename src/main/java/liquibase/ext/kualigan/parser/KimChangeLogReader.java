@@ -0,0 +1,144 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.parser.core.ParsedNode;
+import liquibase.parser.core.ParsedNodeException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a changelog into a {@link ParsedNode} tree with a StAX cursor. Elements become nodes, attributes become valued
+ * child nodes and text becomes the node value, the same shape the Liquibase SAX handler produces. Changelog parameters
+ * are expanded and repeated attribute values are pooled with {@link StringPool} as they are read.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogReader {
+    private static final XMLInputFactory factory;
+
+    static {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    private final ChangeLogParameters changeLogParameters;
+    private final StringPool pool;
+
+    public KimChangeLogReader(final ChangeLogParameters changeLogParameters) {
+        this(changeLogParameters, StringPool.getInstance());
+    }
+
+    public KimChangeLogReader(final ChangeLogParameters changeLogParameters, final StringPool pool) {
+        this.changeLogParameters = changeLogParameters;
+        this.pool = pool;
+    }
+
+    /**
+     * Reads a whole document
+     *
+     * @param stream the changelog
+     * @return the root node
+     */
+    public ParsedNode read(final InputStream stream) throws XMLStreamException, ParsedNodeException {
+        final XMLStreamReader reader = factory.createXMLStreamReader(stream);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return readElement(reader);
+                }
+            }
+            return null;
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the element the cursor is positioned on, including everything nested in it. The cursor is left on the
+     * matching end element.
+     *
+     * @param reader a {@link XMLStreamReader} positioned on a start element
+     * @return the element as a {@link ParsedNode}
+     */
+    public ParsedNode readElement(final XMLStreamReader reader) throws XMLStreamException, ParsedNodeException {
+        final List<ParsedNode> nodes = new ArrayList<ParsedNode>();
+        final List<StringBuilder> texts = new ArrayList<StringBuilder>();
+        ParsedNode root = null;
+
+        int event = reader.getEventType();
+        while (true) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final ParsedNode node = new ParsedNode(null, pool.intern(reader.getLocalName()));
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    final String name = reader.getAttributeLocalName(i);
+                    node.addChild(null, pool.intern(name), pool.intern(name, expand(reader.getAttributeValue(i))));
+                }
+                if (nodes.isEmpty()) {
+                    root = node;
+                }
+                else {
+                    nodes.get(nodes.size() - 1).addChild(node);
+                }
+                nodes.add(node);
+                texts.add(new StringBuilder());
+            }
+            else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (!texts.isEmpty()) {
+                    texts.get(texts.size() - 1).append(reader.getText());
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                final ParsedNode node = nodes.remove(nodes.size() - 1);
+                final String text = texts.remove(texts.size() - 1).toString().trim();
+                if (text.length() > 0) {
+                    node.setValue(expand(text));
+                }
+                if (nodes.isEmpty()) {
+                    return root;
+                }
+            }
+            event = reader.next();
+        }
+    }
+
+    protected String expand(final String value) {
+        if (changeLogParameters == null) {
+            return value;
+        }
+        return changeLogParameters.expandExpressions(value);
+    }
+}
@@ -0,0 +1,268 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import liquibase.change.Change;
+import liquibase.change.ChangeFactory;
+import liquibase.change.ChangeMetaData;
+import liquibase.change.ChangeParameterMetaData;
+import liquibase.changelog.ChangeSet;
+import liquibase.serializer.LiquibaseSerializable;
+import liquibase.serializer.core.xml.XMLChangeLogSerializer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes an XML changelog. Changes of this extension are written as {@code kim:} elements from their change metadata,
+ * with nested changes as nested elements; any other change is written with the Liquibase
+ * {@link XMLChangeLogSerializer}.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogWriter {
+    public static final String CHANGELOG_NAMESPACE = "http://www.liquibase.org/xml/ns/dbchangelog";
+    public static final String KIM_NAMESPACE = "http://www.liquibase.org/xml/ns/rice-lb-ext";
+    protected static final String EXTENSION_PACKAGE = "liquibase.ext.kualigan.";
+
+    private final Writer writer;
+    private final Set<String> ids = new HashSet<String>();
+    private final XMLChangeLogSerializer serializer = new XMLChangeLogSerializer();
+
+    public KimChangeLogWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    public void start() throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<databaseChangeLog xmlns=\"" + CHANGELOG_NAMESPACE + "\"\n");
+        writer.write("                   xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
+        writer.write("                   xmlns:kim=\"" + KIM_NAMESPACE + "\"\n");
+        writer.write("                   xsi:schemaLocation=\"" + CHANGELOG_NAMESPACE + "\n");
+        writer.write("                   " + CHANGELOG_NAMESPACE + "/dbchangelog-3.1.xsd\">\n");
+    }
+
+    public void finish() throws IOException {
+        writer.write("</databaseChangeLog>\n");
+        writer.flush();
+    }
+
+    /**
+     * Write a new changeset. Its id is made unique within this changelog.
+     */
+    public void writeChangeSet(final String id, final String author, final List<? extends Change> changes) throws IOException {
+        startChangeSet(id, author);
+        for (final Change change : changes) {
+            writeChange(change, "    ");
+        }
+        endChangeSet();
+    }
+
+    public void startChangeSet(final String id, final String author) throws IOException {
+        writer.write("\n  <changeSet id=\"" + escape(getUniqueId(id, author)) + "\" author=\"" + escape(author) + "\">\n");
+    }
+
+    public void endChangeSet() throws IOException {
+        writer.write("  </changeSet>\n");
+    }
+
+    /**
+     * Write the start of a {@code kim:} element
+     *
+     * @param empty whether the element is closed right away
+     * @param attributes attribute names and values, alternating; attributes with <code>null</code> values are left out
+     */
+    public void startElement(final String name, final String indent, final boolean empty, final String... attributes) throws IOException {
+        writer.write(indent + "<kim:" + name);
+        for (int i = 0; i + 1 < attributes.length; i += 2) {
+            if (attributes[i + 1] != null) {
+                writer.write(" " + attributes[i] + "=\"" + escape(attributes[i + 1]) + "\"");
+            }
+        }
+        writer.write(empty ? "/>\n" : ">\n");
+    }
+
+    public void endElement(final String name, final String indent) throws IOException {
+        writer.write(indent + "</kim:" + name + ">\n");
+    }
+
+    /**
+     * Write a changeset as it was read, with its preconditions, filters and rollback
+     */
+    public void writeChangeSet(final ChangeSet changeSet) throws IOException {
+        writer.write("\n  <changeSet id=\"" + escape(getUniqueId(changeSet.getId(), changeSet.getAuthor()))
+                     + "\" author=\"" + escape(changeSet.getAuthor()) + "\"");
+        final String contexts = join(changeSet.getContexts());
+        if (contexts.length() > 0) {
+            writer.write(" context=\"" + escape(contexts) + "\"");
+        }
+        final String dbms = join(changeSet.getDbmsSet());
+        if (dbms.length() > 0) {
+            writer.write(" dbms=\"" + escape(dbms) + "\"");
+        }
+        if (changeSet.isAlwaysRun()) {
+            writer.write(" runAlways=\"true\"");
+        }
+        if (changeSet.isRunOnChange()) {
+            writer.write(" runOnChange=\"true\"");
+        }
+        if (Boolean.FALSE.equals(changeSet.getFailOnError())) {
+            writer.write(" failOnError=\"false\"");
+        }
+        writer.write(">\n");
+        if (changeSet.getComments() != null) {
+            writer.write("    <comment>" + escape(changeSet.getComments()) + "</comment>\n");
+        }
+        if (changeSet.getPreconditions() != null) {
+            writer.write("    " + serializer.serialize(changeSet.getPreconditions(), true) + "\n");
+        }
+        for (final Change change : changeSet.getChanges()) {
+            writeChange(change, "    ");
+        }
+        if (changeSet.getRollBackChanges() != null && changeSet.getRollBackChanges().length > 0) {
+            writer.write("    <rollback>\n");
+            for (final Change change : changeSet.getRollBackChanges()) {
+                writeChange(change, "      ");
+            }
+            writer.write("    </rollback>\n");
+        }
+        writer.write("  </changeSet>\n");
+    }
+
+    protected void writeChange(final Change change, final String indent) throws IOException {
+        if (change.getClass().getName().startsWith(EXTENSION_PACKAGE)) {
+            writeElement(change, ChangeFactory.getInstance().getChangeMetaData(change).getName(), indent);
+        }
+        else {
+            writer.write(indent + serializer.serialize(change, true) + "\n");
+        }
+    }
+
+    /**
+     * Writes a change of this extension. Simple properties become attributes and lists of changes nested elements named
+     * after the property, the names its {@code createChild} accepts. Other nested values are written with
+     * {@link #writeValue}.
+     */
+    protected void writeElement(final Change change, final String name, final String indent) throws IOException {
+        final ChangeMetaData metaData = ChangeFactory.getInstance().getChangeMetaData(change);
+        final Map<String, Object> attributes = new TreeMap<String, Object>();
+        final Map<String, Collection<?>> nested = new TreeMap<String, Collection<?>>();
+        for (final ChangeParameterMetaData parameter : metaData.getParameters().values()) {
+            final Object value = parameter.getCurrentValue(change);
+            if (value instanceof Collection) {
+                if (!((Collection<?>) value).isEmpty()) {
+                    nested.put(parameter.getParameterName(), (Collection<?>) value);
+                }
+            }
+            else if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+                attributes.put(parameter.getParameterName(), value);
+            }
+        }
+
+        writer.write(indent + "<kim:" + name);
+        for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            writer.write(" " + attribute.getKey() + "=\"" + escape(String.valueOf(attribute.getValue())) + "\"");
+        }
+        if (nested.isEmpty()) {
+            writer.write("/>\n");
+            return;
+        }
+        writer.write(">\n");
+        for (final Map.Entry<String, Collection<?>> children : nested.entrySet()) {
+            for (final Object child : children.getValue()) {
+                if (child instanceof Change) {
+                    writeElement((Change) child, children.getKey(), indent + "  ");
+                }
+                else if (child instanceof LiquibaseSerializable) {
+                    writeValue((LiquibaseSerializable) child, indent + "  ");
+                }
+            }
+        }
+        writer.write(indent + "</kim:" + name + ">\n");
+    }
+
+    /**
+     * Writes a value nested in a change, such as a {@link liquibase.ext.kualigan.change.KimObjectName}, as an empty
+     * element named after the value with its fields as attributes
+     */
+    protected void writeValue(final LiquibaseSerializable value, final String indent) throws IOException {
+        final List<String> attributes = new ArrayList<String>();
+        for (final String field : value.getSerializableFields()) {
+            final Object fieldValue = value.getSerializableFieldValue(field);
+            attributes.add(field);
+            attributes.add(fieldValue != null ? fieldValue.toString() : null);
+        }
+        startElement(value.getSerializedObjectName(), indent, true, attributes.toArray(new String[attributes.size()]));
+    }
+
+    protected String getUniqueId(final String id, final String author) {
+        String retval = id;
+        for (int i = 2; !ids.add(retval + "::" + author); i++) {
+            retval = id + "-" + i;
+        }
+        return retval;
+    }
+
+    protected static String join(final Object values) {
+        if (values == null) {
+            return "";
+        }
+        if (!(values instanceof Collection)) {
+            return values.toString();
+        }
+        final StringBuilder retval = new StringBuilder();
+        for (final Iterator<?> i = ((Collection<?>) values).iterator(); i.hasNext(); ) {
+            retval.append(i.next());
+            if (i.hasNext()) {
+                retval.append(',');
+            }
+        }
+        return retval.toString();
+    }
+
+    protected static String escape(final String value) {
+        final StringBuilder retval = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&': retval.append("&amp;"); break;
+                case '<': retval.append("&lt;"); break;
+                case '>': retval.append("&gt;"); break;
+                case '"': retval.append("&quot;"); break;
+                default: retval.append(c);
+            }
+        }
+        return retval.toString();
+    }
+}
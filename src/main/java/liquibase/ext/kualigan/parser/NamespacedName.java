@@ -0,0 +1,141 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable (namespace, name) key of a KIM role, permission or other namespaced object. Instances are canonical: equal
+ * keys obtained through {@link #valueOf(String, String)} are the same object and hold {@link StringPool} strings, so
+ * changes and statements referring to the same role share one key instead of two strings each. Like the
+ * {@link StringPool}, the canonical instances are only held weakly.
+ *
+ * @author Leo Przybylski
+ */
+public final class NamespacedName {
+    private static final Map<NamespacedName, WeakReference<NamespacedName>> instances = new WeakHashMap<NamespacedName, WeakReference<NamespacedName>>();
+
+    private final String namespace;
+    private final String name;
+    private final int hash;
+
+    private NamespacedName(final String namespace, final String name) {
+        this.namespace = namespace;
+        this.name = name;
+        this.hash = 31 * (namespace != null ? namespace.hashCode() : 0) + (name != null ? name.hashCode() : 0);
+    }
+
+    /**
+     * The canonical key for a namespace and name
+     *
+     * @param namespace namespace code (may be <code>null</code>)
+     * @param name object name (may be <code>null</code>)
+     * @return the shared {@link NamespacedName}
+     */
+    public static NamespacedName valueOf(final String namespace, final String name) {
+        final StringPool pool = StringPool.getInstance();
+        final NamespacedName candidate = new NamespacedName(pool.intern(namespace), pool.intern(name));
+        synchronized (instances) {
+            final WeakReference<NamespacedName> existing = instances.get(candidate);
+            final NamespacedName retval = existing != null ? existing.get() : null;
+            if (retval != null) {
+                return retval;
+            }
+            instances.put(candidate, new WeakReference<NamespacedName>(candidate));
+            return candidate;
+        }
+    }
+
+    /**
+     * @return the key with the same name in another namespace; canonical once both parts are set
+     */
+    public NamespacedName withNamespace(final String namespace) {
+        return with(namespace, name);
+    }
+
+    /**
+     * @return the key with another name in the same namespace; canonical once both parts are set
+     */
+    public NamespacedName withName(final String name) {
+        return with(namespace, name);
+    }
+
+    /**
+     * Setters fill in a key one part at a time. The half-built keys in between are not pooled.
+     */
+    private static NamespacedName with(final String namespace, final String name) {
+        if (namespace == null || name == null) {
+            return new NamespacedName(namespace, name);
+        }
+        return valueOf(namespace, name);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static int size() {
+        synchronized (instances) {
+            return instances.size();
+        }
+    }
+
+    public static void clear() {
+        synchronized (instances) {
+            instances.clear();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof NamespacedName)) {
+            return false;
+        }
+        final NamespacedName key = (NamespacedName) other;
+        return hash == key.hash
+            && (namespace == null ? key.namespace == null : namespace.equals(key.namespace))
+            && (name == null ? key.name == null : name.equals(key.name));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return namespace != null ? String.format("%s:%s", namespace, name) : String.valueOf(name);
+    }
+}
@@ -0,0 +1,107 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical instances for attribute values that repeat across a changelog (namespaces, KIM types, templates and the
+ * like), so that hundreds of thousands of parsed elements share a handful of {@link String}s. The parser pools values
+ * as they are read, and KIM changes and statements pool them again when they are set, so objects built outside of a
+ * changelog share them as well. Unlike {@link String#intern()} the pool lives on the heap. It only holds its values
+ * weakly, so values no parsed change or statement refers to any more are collected once a run is over.
+ *
+ * @author Leo Przybylski
+ */
+public class StringPool {
+
+    /**
+     * Attributes whose values are pooled. Free text such as names, descriptions and values is left alone.
+     */
+    public static final Set<String> POOLED_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+        "namespace", "roleNamespace", "memberNamespace", "typeNamespace", "permissionNamespace",
+        "type", "template", "application", "component", "service", "active", "attributeDef",
+        "role", "roleName", "responsibility", "permission", "force", "actionTypeCode", "actionPolicyCode", "priority",
+        "unique")));
+
+    private static final StringPool instance = new StringPool();
+
+    private final Map<String, WeakReference<String>> values = new WeakHashMap<String, WeakReference<String>>();
+
+    public static StringPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * The canonical instance of a value
+     *
+     * @param value any string
+     * @return the pooled instance equal to value
+     */
+    public String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        synchronized (values) {
+            final WeakReference<String> existing = values.get(value);
+            final String retval = existing != null ? existing.get() : null;
+            if (retval != null) {
+                return retval;
+            }
+            values.put(value, new WeakReference<String>(value));
+            return value;
+        }
+    }
+
+    /**
+     * Pools the value if the attribute is one of {@link #POOLED_ATTRIBUTES}
+     *
+     * @param attribute attribute name
+     * @param value attribute value
+     * @return the value, pooled when appropriate
+     */
+    public String intern(final String attribute, final String value) {
+        return POOLED_ATTRIBUTES.contains(attribute) ? intern(value) : value;
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (values) {
+            values.clear();
+        }
+    }
+}
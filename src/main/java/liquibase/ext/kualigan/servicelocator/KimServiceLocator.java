@@ -0,0 +1,54 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.servicelocator;
+
+import liquibase.servicelocator.ServiceLocator;
+
+/**
+ * {@link ServiceLocator} that finds extension classes through the precomputed {@link ServiceRegistry} instead of
+ * scanning {@code liquibase.ext} across every jar on the classpath. It has to be installed before Liquibase first
+ * looks anything up, which is what {@link Main} does for the command line:
+ * <pre>
+ * java -cp ... liquibase.ext.kualigan.servicelocator.Main --changeLogFile=... update
+ * </pre>
+ * Only jars and directories that ship a registry are answered from it. Other extensions under {@code liquibase.ext}
+ * are scanned as usual.
+ *
+ * @author Leo Przybylski
+ */
+public class KimServiceLocator extends ServiceLocator {
+
+    public KimServiceLocator() {
+        super(new RegistryPackageScanClassResolver());
+    }
+
+    /**
+     * Replace the Liquibase {@link ServiceLocator} with a {@link KimServiceLocator}
+     */
+    public static void install() {
+        ServiceLocator.setInstance(new KimServiceLocator());
+    }
+}
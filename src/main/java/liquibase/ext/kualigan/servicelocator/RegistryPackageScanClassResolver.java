@@ -0,0 +1,133 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.servicelocator;
+
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.logging.LogFactory;
+import liquibase.servicelocator.DefaultPackageScanClassResolver;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class resolver that answers the {@code liquibase.ext} packages of jars and directories shipping a
+ * {@link ServiceRegistry} from the registry instead of scanning them. Only registered classes are loaded from those
+ * locations. The {@code liquibase.ext} packages of every other jar, for instance other extensions, and every other
+ * package are scanned as usual.
+ *
+ * @author Leo Przybylski
+ */
+public class RegistryPackageScanClassResolver extends DefaultPackageScanClassResolver {
+    protected static final String EXTENSION_PACKAGE = "liquibase.ext";
+
+    private ServiceRegistry registry;
+
+    public RegistryPackageScanClassResolver() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set findImplementations(final Class parent, final String... packageNames) {
+        final Set retval = new HashSet(super.findImplementations(parent, packageNames));
+        for (final String packageName : packageNames) {
+            if (isExtensionPackage(packageName)) {
+                retval.addAll(findRegistered(parent));
+                break;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Leaves out the locations of {@code liquibase.ext} packages the registry already covers
+     */
+    @Override
+    protected Enumeration<URL> getResources(final ClassLoader loader, final String packageName) throws IOException {
+        final Enumeration<URL> resources = super.getResources(loader, packageName);
+        if (!isExtensionPackage(packageName.replace('/', '.'))) {
+            return resources;
+        }
+        final List<URL> retval = new ArrayList<URL>();
+        while (resources.hasMoreElements()) {
+            final URL resource = resources.nextElement();
+            if (!getRegistry().isCovered(resource)) {
+                retval.add(resource);
+            }
+        }
+        return Collections.enumeration(retval);
+    }
+
+    protected boolean isExtensionPackage(final String packageName) {
+        return EXTENSION_PACKAGE.equals(packageName) || packageName.startsWith(EXTENSION_PACKAGE + ".");
+    }
+    /**
+     * Registered classes assignable to parent
+     */
+    protected Set<Class<?>> findRegistered(final Class<?> parent) {
+        final Set<Class<?>> retval = new HashSet<Class<?>>();
+        for (final String className : getRegistry().getClassNames()) {
+            final Class<?> clazz = loadClass(className);
+            if (clazz != null && parent.isAssignableFrom(clazz)) {
+                retval.add(clazz);
+            }
+        }
+        return retval;
+    }
+
+    protected Class<?> loadClass(final String className) {
+        for (final ClassLoader classLoader : getClassLoaders()) {
+            try {
+                return Class.forName(className, false, classLoader);
+            }
+            catch (ClassNotFoundException e) {
+                // try the next one
+            }
+            catch (NoClassDefFoundError e) {
+                // try the next one
+            }
+        }
+        LogFactory.getLogger().warning(String.format("Registered service %s could not be loaded", className));
+        return null;
+    }
+
+    protected synchronized ServiceRegistry getRegistry() {
+        if (registry == null) {
+            try {
+                registry = ServiceRegistry.load(getClassLoaders());
+            }
+            catch (IOException e) {
+                throw new UnexpectedLiquibaseException("Unable to read " + ServiceRegistry.LOCATION, e);
+            }
+        }
+        return registry;
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.servicelocator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The precomputed list of Liquibase service classes (changes, sql generators, changelog parsers, ...) a jar ships
+ * in {@value #LOCATION}, one class name per line. Written at build time by {@link ServiceRegistryGenerator} and read
+ * by {@link KimServiceLocator} in place of scanning the {@code liquibase.ext} packages.
+ *
+ * @author Leo Przybylski
+ */
+public class ServiceRegistry {
+    public static final String LOCATION = "META-INF/rice-lb-ext/services.list";
+
+    private final Set<String> classNames = new LinkedHashSet<String>();
+    private final Set<String> locations = new LinkedHashSet<String>();
+
+    /**
+     * Reads every registry visible to the given class loaders
+     *
+     * @param classLoaders class loaders to search
+     * @return the combined registry
+     */
+    public static ServiceRegistry load(final Collection<ClassLoader> classLoaders) throws IOException {
+        final ServiceRegistry retval = new ServiceRegistry();
+        final Set<URL> seen = new LinkedHashSet<URL>();
+        for (final ClassLoader classLoader : classLoaders) {
+            final Enumeration<URL> resources = classLoader.getResources(LOCATION);
+            while (resources.hasMoreElements()) {
+                final URL resource = resources.nextElement();
+                if (seen.add(resource)) {
+                    retval.read(resource.openStream());
+                    retval.locations.add(getLocation(resource));
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * The jar or directory a registry was read from, e.g. {@code jar:file:/lib/rice-lb-extensions.jar!/}
+     */
+    protected static String getLocation(final URL resource) {
+        final String url = resource.toExternalForm();
+        return url.substring(0, url.length() - LOCATION.length());
+    }
+
+    protected void read(final InputStream stream) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public Set<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * @return the jars and directories whose services the registry lists, as URL prefixes
+     */
+    public Set<String> getLocations() {
+        return locations;
+    }
+
+    /**
+     * Whether a resource lies in a jar or directory that ships a registry
+     */
+    public boolean isCovered(final URL resource) {
+        final String url = resource.toExternalForm();
+        for (final String location : locations) {
+            if (url.startsWith(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return classNames.isEmpty();
+    }
+}
@@ -0,0 +1,141 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.servicelocator;
+
+import liquibase.change.Change;
+import liquibase.parser.ChangeLogParser;
+import liquibase.precondition.Precondition;
+import liquibase.serializer.ChangeLogSerializer;
+import liquibase.sqlgenerator.SqlGenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Build time generator of the {@link ServiceRegistry}. Walks a compiled classes directory and lists every class
+ * Liquibase would pick up as a service: public, concrete, with a public no-arg constructor and implementing one of
+ * {@link #SERVICES}. Run by the build in {@code process-classes}:
+ * <pre>
+ * java liquibase.ext.kualigan.servicelocator.ServiceRegistryGenerator target/classes
+ * </pre>
+ *
+ * @author Leo Przybylski
+ */
+public class ServiceRegistryGenerator {
+    protected static final Class<?>[] SERVICES = {
+        Change.class, SqlGenerator.class, ChangeLogParser.class, ChangeLogSerializer.class, Precondition.class
+    };
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ServiceRegistryGenerator <classes directory>");
+            System.exit(1);
+        }
+        final File classes = new File(args[0]);
+        final List<String> services = new ServiceRegistryGenerator().findServices(classes);
+        write(new File(classes, ServiceRegistry.LOCATION), services);
+        System.out.println(String.format("Registered %d services in %s", services.size(), ServiceRegistry.LOCATION));
+    }
+
+    /**
+     * Service classes found under a classes directory
+     *
+     * @param classes the root of the compiled classes
+     * @return sorted class names
+     */
+    public List<String> findServices(final File classes) throws IOException {
+        final List<String> retval = new ArrayList<String>();
+        collect(classes, "", retval);
+        Collections.sort(retval);
+        return retval;
+    }
+
+    protected void collect(final File directory, final String packageName, final List<String> services) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                collect(file, packageName + file.getName() + ".", services);
+            }
+            else if (file.getName().endsWith(".class") && file.getName().indexOf('$') < 0) {
+                final String className = packageName + file.getName().substring(0, file.getName().length() - ".class".length());
+                if (isService(className)) {
+                    services.add(className);
+                }
+            }
+        }
+    }
+
+    protected boolean isService(final String className) {
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName(className, false, getClass().getClassLoader());
+        }
+        catch (Throwable t) {
+            return false;
+        }
+        final int modifiers = clazz.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers) || Modifier.isInterface(modifiers)) {
+            return false;
+        }
+        try {
+            clazz.getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+        for (final Class<?> service : SERVICES) {
+            if (service.isAssignableFrom(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static void write(final File registry, final List<String> services) throws IOException {
+        registry.getParentFile().mkdirs();
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(registry), "UTF-8");
+        try {
+            writer.write("# Generated by " + ServiceRegistryGenerator.class.getName() + "\n");
+            for (final String service : services) {
+                writer.write(service);
+                writer.write("\n");
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -38,8 +38,8 @@ import org.apache.commons.lang.StringUtils;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.AddRoleResponsibilityActionStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -84,7 +84,7 @@ public abstract class AbstractAddResponsibilityActionGenerator extends AbstractK
 	insertAction.addColumnValue("priority_nbr", statement.getPriority());
 	insertAction.addColumnValue("role_mbr_id", StringUtils.isBlank(statement.getMember()) ? "*" : resolveRoleMember(database, statement));
 	insertAction.addColumnValue("ver_nbr", 1);
-	insertAction.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertAction.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	return SqlGeneratorFactory.getInstance().generateSql(insertAction, database);
     }
@@ -0,0 +1,157 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.statement.AddRoleResponsibilityActionsStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generic base class for generators mapped to the {@link AddRoleResponsibilityActionsStatement}. Every selected member
+ * of the role gets its action in one INSERT ... SELECT joining the role's members to the role responsibility, so ids
+ * and object ids have to come from the database row by row.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractAddResponsibilityActionsGenerator extends AbstractKimSqlGenerator<AddRoleResponsibilityActionsStatement> {
+
+    @Override
+    protected String getSequenceName() {
+        return "krim_role_rsp_actn_id_s";
+    }
+
+    @Override
+    public ValidationErrors validate(final AddRoleResponsibilityActionsStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        retval.checkRequiredField("roleNamespace", statement.getRoleNamespace());
+        retval.checkRequiredField("role", statement.getRole());
+        retval.checkRequiredField("responsibility", statement.getResponsibility());
+        retval.checkRequiredField("action", statement.getActionTypeCode());
+        retval.checkRequiredField("priority", statement.getPriority());
+        if (statement.getAttributeDef() != null) {
+            retval.checkRequiredField("attributeValue", statement.getAttributeValue());
+        }
+        if (!statement.isRemove()) {
+            validateRowGeneration(database, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final AddRoleResponsibilityActionsStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final String roleId = getRoleForeignKey(database, statement.getRole(), statement.getRoleNamespace()).getValue();
+        final String responsibilityId = getResponsibilityForeignKey(database, statement.getResponsibility(),
+                                                                    statement.getResponsibilityNamespace()).getValue();
+        final String filter = getFilter(database, statement);
+
+        final List<String> sql = new ArrayList<String>();
+        if (statement.isRemove()) {
+            sql.add(getDelete(roleId, responsibilityId, filter)
+                    + " and ver_nbr = 1"
+                    + matches("actn_typ_cd", statement.getActionTypeCode())
+                    + matches("priority_nbr", statement.getPriority())
+                    + matches("actn_plcy_cd", statement.getActionPolicyCode())
+                    + matches("frc_actn", statement.getForce()));
+        }
+        else {
+            if (statement.isReplace()) {
+                sql.add(getDelete(roleId, responsibilityId, filter));
+            }
+            sql.add(String.format("insert into krim_role_rsp_actn_t"
+                                  + " (role_rsp_actn_id, obj_id, ver_nbr, actn_typ_cd, priority_nbr, actn_plcy_cd, role_mbr_id, role_rsp_id, frc_actn)"
+                                  + " select %s, %s, 1, %s, %s, %s, m.role_mbr_id, rr.role_rsp_id, %s"
+                                  + " from krim_role_mbr_t m join krim_role_rsp_t rr on rr.role_id = m.role_id"
+                                  + " where m.role_id = %s and rr.rsp_id = %s%s"
+                                  + " and not exists (select 1 from krim_role_rsp_actn_t a"
+                                  + " where a.role_rsp_id = rr.role_rsp_id and a.role_mbr_id = m.role_mbr_id)",
+                                  getNextId(database), getObjectIdFunction(database),
+                                  BoundQuery.toLiteral(statement.getActionTypeCode()),
+                                  BoundQuery.toLiteral(statement.getPriority()),
+                                  BoundQuery.toLiteral(statement.getActionPolicyCode()),
+                                  BoundQuery.toLiteral(statement.getForce()),
+                                  roleId, responsibilityId, filter));
+        }
+
+        final List<Sql> retval = new ArrayList<Sql>();
+        for (final String each : sql) {
+            retval.add(new UnparsedSql(each));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * Removes the actions of the selected members for the role responsibility
+     */
+    protected String getDelete(final String roleId, final String responsibilityId, final String filter) {
+        return String.format("delete from krim_role_rsp_actn_t"
+                             + " where role_rsp_id in (select rr.role_rsp_id from krim_role_rsp_t rr where rr.role_id = %1$s and rr.rsp_id = %2$s)"
+                             + " and role_mbr_id in (select m.role_mbr_id from krim_role_mbr_t m where m.role_id = %1$s%3$s)",
+                             roleId, responsibilityId, filter);
+    }
+
+    /**
+     * Condition on a column of {@code krim_role_rsp_actn_t} holding the given value, which may be <code>null</code>
+     */
+    protected String matches(final String column, final Object value) {
+        if (value == null) {
+            return String.format(" and %s is null", column);
+        }
+        return String.format(" and %s = %s", column, BoundQuery.toLiteral(value));
+    }
+
+    /**
+     * Conditions on the role member alias {@code m} limiting the members the actions are given to
+     */
+    protected String getFilter(final Database database, final AddRoleResponsibilityActionsStatement statement) {
+        final StringBuilder retval = new StringBuilder();
+        if (statement.getMemberType() != null) {
+            retval.append(" and m.mbr_typ_cd = ").append(BoundQuery.toLiteral(statement.getMemberType()));
+        }
+        if (statement.getAttributeDef() != null) {
+            retval.append(String.format(" and exists (select 1 from krim_role_mbr_attr_data_t q where q.role_mbr_id = m.role_mbr_id"
+                                        + " and q.kim_attr_defn_id = %s and q.attr_val = %s)",
+                                        getAttributeDefinitionForeignKey(database, statement.getAttributeDef()).getValue(),
+                                        BoundQuery.toLiteral(statement.getAttributeValue())));
+        }
+        return retval.toString();
+    }
+}
@@ -35,8 +35,8 @@ import liquibase.statement.core.InsertStatement;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.AddResponsibilityAttributeStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -81,7 +81,7 @@ public abstract class AbstractAddResponsibilityAttributeGenerator extends Abstra
 	insertAttribute.addColumnValue("kim_attr_defn_id", getAttributeDefinitionForeignKey(database, statement.getName()));
 	insertAttribute.addColumnValue("attr_val", statement.getValue());
 	insertAttribute.addColumnValue("ver_nbr", 1);
-	insertAttribute.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertAttribute.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	return SqlGeneratorFactory.getInstance().generateSql(insertAttribute, database);
     }
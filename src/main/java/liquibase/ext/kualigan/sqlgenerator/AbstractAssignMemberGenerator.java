@@ -31,16 +31,15 @@ import liquibase.sqlgenerator.SqlGeneratorChain;
 import liquibase.sqlgenerator.SqlGeneratorFactory;
 import liquibase.sqlgenerator.core.AbstractSqlGenerator;
 import liquibase.statement.DatabaseFunction;
-import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.AssignMemberStatement;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -76,20 +75,26 @@ public abstract class AbstractAssignMemberGenerator extends AbstractKimSqlGenera
                              final Database database, 
                              final SqlGeneratorChain chain) {
         final InsertStatement assignRole = new InsertStatement(null, database.getDefaultSchemaName(), "krim_role_mbr_t");
+        final DatabaseFunction roleId = getRoleForeignKey(database, statement.getRole(), statement.getNamespace());
+        final DatabaseFunction memberId = getMemberId(database, statement);
 
         assignRole.addColumnValue("role_mbr_id", getPrimaryKey(database));
-        assignRole.addColumnValue("role_id", getRoleForeignKey(database, statement.getRole(), statement.getNamespace()));
-        assignRole.addColumnValue("mbr_id", getMemberId(database, statement));
+        assignRole.addColumnValue("role_id", roleId);
+        assignRole.addColumnValue("mbr_id", memberId);
         assignRole.addColumnValue("mbr_typ_cd", statement.getType());
         assignRole.addColumnValue("ver_nbr", 1);
-        assignRole.addColumnValue("obj_id", UUID.randomUUID().toString());
+        assignRole.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
-        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
-        retval.add(assignRole);
-        retval.addAll(statement.getAttributes());
-        retval.addAll(statement.getActions());
-	
-        return SqlGeneratorFactory.getInstance().generateSql(retval.toArray(new SqlStatement[retval.size()]), database);
+        final Sql[] retval = generateSql(database, assignRole, statement.getAttributes(), statement.getActions());
+        if (!RoleMemberClosure.isMaintained(database)) {
+            return retval;
+        }
+        final Sql[] closure = SqlGeneratorFactory.getInstance()
+            .generateSql(new RoleMemberClosureStatement(roleId.getValue(), memberId.getValue(), statement.getType()), database);
+        final Sql[] withClosure = new Sql[retval.length + closure.length];
+        System.arraycopy(retval, 0, withClosure, 0, retval.length);
+        System.arraycopy(closure, 0, withClosure, retval.length, closure.length);
+        return withClosure;
     }
 
     protected DatabaseFunction getMemberId(final Database database, final AssignMemberStatement statement) {
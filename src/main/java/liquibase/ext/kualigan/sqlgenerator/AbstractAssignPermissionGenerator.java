@@ -35,8 +35,8 @@ import liquibase.statement.core.InsertStatement;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.AssignPermissionStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -79,7 +79,7 @@ public abstract class AbstractAssignPermissionGenerator extends AbstractKimSqlGe
 	assignPermission.addColumnValue("perm_id", getPermissionForeignKey(database, statement.getPermission(), statement.getPermissionNamespace()));
 	assignPermission.addColumnValue("actv_ind", statement.getActive());
 	assignPermission.addColumnValue("ver_nbr", 1);
-	assignPermission.addColumnValue("obj_id", UUID.randomUUID().toString());
+	assignPermission.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 
 	return SqlGeneratorFactory.getInstance().generateSql(assignPermission, database);
@@ -0,0 +1,124 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.statement.AssignPermissionsStatement;
+import liquibase.ext.kualigan.statement.AssignPermissionsStatement.Name;
+
+import java.util.List;
+
+/**
+ * Generic base class for generators mapped to the {@link AssignPermissionsStatement}. The roles are crossed with the
+ * permissions in one INSERT ... SELECT, and pairs already granted are skipped by an anti-join.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractAssignPermissionsGenerator extends AbstractKimSqlGenerator<AssignPermissionsStatement> {
+
+    @Override
+    protected String getSequenceName() {
+        return "krim_role_perm_id_s";
+    }
+
+    @Override
+    public ValidationErrors validate(final AssignPermissionsStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        if (statement.getRoles().isEmpty()) {
+            retval.addError("At least one role is required");
+        }
+        if (statement.getPermissions().isEmpty()) {
+            retval.checkRequiredField("permissionNamespace", statement.getPermissionNamespace());
+        }
+        validateRowGeneration(database, retval);
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final AssignPermissionsStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final String roles = getNames(statement.getRoles(), "r.nmspc_cd", "r.role_nm");
+        final String permissions = getPermissionFilter(statement);
+
+        return new Sql[] {
+            new UnparsedSql(String.format("insert into krim_role_perm_t (role_perm_id, obj_id, ver_nbr, role_id, perm_id, actv_ind)"
+                                          + " select %s, %s, 1, r.role_id, p.perm_id, %s"
+                                          + " from krim_role_t r, krim_perm_t p"
+                                          + " where (%s) and (%s)"
+                                          + " and not exists (select 1 from krim_role_perm_t x where x.role_id = r.role_id and x.perm_id = p.perm_id)",
+                                          getNextId(database), getObjectIdFunction(database),
+                                          BoundQuery.toLiteral(statement.getActive()), roles, permissions))
+        };
+    }
+
+    /**
+     * Conditions on the permission alias {@code p}: the listed permissions, or the active permissions of the namespace
+     * (and template, if given)
+     */
+    protected String getPermissionFilter(final AssignPermissionsStatement statement) {
+        if (!statement.getPermissions().isEmpty()) {
+            return getNames(statement.getPermissions(), "p.nmspc_cd", "p.nm");
+        }
+        final StringBuilder retval = new StringBuilder("p.nmspc_cd = ")
+            .append(BoundQuery.toLiteral(statement.getPermissionNamespace()))
+            .append(" and p.actv_ind = 'Y'");
+        if (statement.getPermissionTemplate() != null) {
+            retval.append(" and p.perm_tmpl_id in (select perm_tmpl_id from krim_perm_tmpl_t where nm = ")
+                .append(BoundQuery.toLiteral(statement.getPermissionTemplate()))
+                .append(')');
+        }
+        return retval.toString();
+    }
+
+    /**
+     * One namespace and name condition per entry, joined with {@code or}
+     */
+    protected String getNames(final List<Name> names, final String namespaceColumn, final String nameColumn) {
+        final StringBuilder retval = new StringBuilder();
+        for (final Name name : names) {
+            if (retval.length() > 0) {
+                retval.append(" or ");
+            }
+            retval.append(String.format("%s = %s and %s = %s",
+                                        namespaceColumn, BoundQuery.toLiteral(name.getNamespace()),
+                                        nameColumn, BoundQuery.toLiteral(name.getName())));
+        }
+        return retval.toString();
+    }
+}
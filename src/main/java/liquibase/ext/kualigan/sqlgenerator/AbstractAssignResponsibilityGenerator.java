@@ -35,8 +35,8 @@ import liquibase.statement.core.InsertStatement;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.AssignResponsibilityStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -80,7 +80,7 @@ public abstract class AbstractAssignResponsibilityGenerator extends AbstractKimS
 	assignResponsibility.addColumnValue("rsp_id", getResponsibilityForeignKey(database, statement.getResponsibility()));
 	assignResponsibility.addColumnValue("actv_ind", statement.getActive());
 	assignResponsibility.addColumnValue("ver_nbr", 1);
-	assignResponsibility.addColumnValue("obj_id", UUID.randomUUID().toString());
+	assignResponsibility.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	return SqlGeneratorFactory.getInstance().generateSql(assignResponsibility, database);
     }
@@ -0,0 +1,114 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.core.AbstractSqlGenerator;
+import liquibase.statement.DatabaseFunction;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.statement.BatchInsertStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Generic base class for generators mapped to the {@link BatchInsertStatement}. Rows are written
+ * {@value #ROWS_PER_STATEMENT} to a statement, with their values inlined.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractBatchInsertGenerator extends AbstractSqlGenerator<BatchInsertStatement> {
+    public static final int ROWS_PER_STATEMENT = 100;
+
+    @Override
+    public int getPriority() {
+        return EXTENSION_PRIORITY;
+    }
+
+    @Override
+    public ValidationErrors validate(final BatchInsertStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        retval.checkRequiredField("tableName", statement.getTableName());
+        retval.checkRequiredField("columns", statement.getColumns());
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final BatchInsertStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final List<Sql> retval = new ArrayList<Sql>();
+        final List<Object[]> rows = statement.getRows();
+        for (int start = 0; start < rows.size(); start += ROWS_PER_STATEMENT) {
+            retval.add(new UnparsedSql(generateInsert(statement, database, rows.subList(start, Math.min(start + ROWS_PER_STATEMENT, rows.size())))));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * One statement inserting the given rows
+     */
+    protected abstract String generateInsert(BatchInsertStatement statement, Database database, List<Object[]> rows);
+
+    protected String getTable(final BatchInsertStatement statement, final Database database) {
+        return database.escapeTableName(null, statement.getSchemaName() != null ? statement.getSchemaName() : database.getDefaultSchemaName(), statement.getTableName());
+    }
+
+    protected String getColumns(final BatchInsertStatement statement, final Database database) {
+        final StringBuilder retval = new StringBuilder();
+        for (final String column : statement.getColumns()) {
+            if (retval.length() > 0) {
+                retval.append(", ");
+            }
+            retval.append(column);
+        }
+        return retval.toString();
+    }
+
+    protected String getValues(final Object[] row) {
+        final StringBuilder retval = new StringBuilder();
+        for (final Object value : row) {
+            if (retval.length() > 0) {
+                retval.append(", ");
+            }
+            retval.append(value instanceof DatabaseFunction ? ((DatabaseFunction) value).getValue() : BoundQuery.toLiteral(value));
+        }
+        return retval.toString();
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement.Member;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generic base class for generators mapped to the {@link BulkAssignMembersStatement}. Members are generated
+ * {@value #MEMBERS_PER_BLOCK} at a time; the role member closure (if maintained) is refreshed once at the end.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractBulkAssignMembersGenerator extends AbstractKimSqlGenerator<BulkAssignMembersStatement> {
+    public static final int MEMBERS_PER_BLOCK = 1000;
+
+    @Override
+    protected String getSequenceName() {
+        return "KRIM_ROLE_MBR_ID_S";
+    }
+
+    @Override
+    public ValidationErrors validate(final BulkAssignMembersStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        retval.checkRequiredField("namespace", statement.getNamespace());
+        retval.checkRequiredField("role", statement.getRole());
+        for (final Member member : statement.getMembers()) {
+            if (!"P".equals(member.getType()) && !"R".equals(member.getType())) {
+                retval.addError(String.format("Role type '%s' not supported!", member.getType()));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final BulkAssignMembersStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final List<Sql> retval = new ArrayList<Sql>();
+        final List<Member> members = statement.getMembers();
+        for (int start = 0; start < members.size(); start += MEMBERS_PER_BLOCK) {
+            retval.addAll(Arrays.asList(generateMembers(statement, database, members.subList(start, Math.min(start + MEMBERS_PER_BLOCK, members.size())))));
+        }
+        if (!members.isEmpty()) {
+            retval.addAll(Arrays.asList(generateClosure(statement, database)));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * Inserts the given members of the role and their qualifiers
+     */
+    protected abstract Sql[] generateMembers(BulkAssignMembersStatement statement, Database database, List<Member> members);
+
+    /**
+     * Adds the new members to the role member closure, if it is maintained
+     */
+    protected Sql[] generateClosure(final BulkAssignMembersStatement statement, final Database database) {
+        if (!RoleMemberClosure.isMaintained(database)) {
+            return new Sql[0];
+        }
+        return SqlGeneratorFactory.getInstance().generateSql(
+            new RoleMemberClosureStatement(new BoundQuery("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = ? and NMSPC_CD = ?",
+                                                          statement.getRole(), statement.getNamespace()).toLiteralSql()), database);
+    }
+}
@@ -0,0 +1,273 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.statement.CloneNamespaceStatement;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic base class for generators mapped to the {@link CloneNamespaceStatement}. Tables are copied in dependency
+ * order, two statements each. The first draws a new id from the table's sequence for every source row and records the
+ * pair in {@value #ID_MAP}. The second inserts the copies, moving namespace columns to the target namespace and
+ * replacing every foreign key to a copied row with the copy's id. Foreign keys to rows outside the namespace (templates
+ * or principals shared with other namespaces) are kept. The id map is created before the copy and dropped after it.
+ * <p>
+ * Types and attribute definitions are not copied; the copies refer to those of the source namespace. Both are also
+ * looked up by name alone, which a second row with the same name would make ambiguous.
+ * <p>
+ * Removing a copy deletes the permissions, responsibilities and roles of the target namespace, children first.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractCloneNamespaceGenerator extends AbstractKimSqlGenerator<CloneNamespaceStatement> {
+    public static final String ID_MAP = "KRIM_CLONE_ID_MAP_T";
+
+    protected static final String ROLES = "select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = %1$s";
+
+    /**
+     * A copied table
+     */
+    protected static class Table {
+        final String name;
+        final String id;
+        final String sequence;
+        final String scope;
+        final Map<String, String> columns = new LinkedHashMap<String, String>();
+
+        /**
+         * @param scope condition on the source rows (alias {@code t}); {@code %1$s} is the source namespace
+         */
+        Table(final String name, final String id, final String sequence, final String scope, final String... columns) {
+            this.name = name;
+            this.id = id;
+            this.sequence = sequence;
+            this.scope = scope;
+            for (final String column : columns) {
+                this.columns.put(column, "t." + column);
+            }
+        }
+
+        /**
+         * The column holds the namespace code
+         */
+        Table namespace(final String column) {
+            columns.put(column, "%2$s");
+            return this;
+        }
+
+        /**
+         * The column refers to a row of a copied table
+         */
+        Table references(final String column, final String table) {
+            columns.put(column, getCopyId(table, "t." + column));
+            return this;
+        }
+
+        /**
+         * The column refers to a row of a copied table when the condition holds
+         */
+        Table references(final String column, final String table, final String condition) {
+            columns.put(column, String.format("case when %s then %s else t.%s end", condition, getCopyId(table, "t." + column), column));
+            return this;
+        }
+    }
+
+    protected static final List<Table> TABLES = new ArrayList<Table>();
+
+    static {
+        TABLES.add(new Table("KRIM_PERM_T", "PERM_ID", "KRIM_PERM_ID_S", "t.NMSPC_CD = %1$s",
+                             "PERM_TMPL_ID", "NM", "DESC_TXT", "ACTV_IND")
+                   .namespace("NMSPC_CD"));
+        TABLES.add(new Table("KRIM_PERM_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S", copiedFrom("t.PERM_ID", "KRIM_PERM_T"),
+                             "KIM_TYP_ID", "KIM_ATTR_DEFN_ID", "ATTR_VAL")
+                   .references("PERM_ID", "KRIM_PERM_T"));
+        TABLES.add(new Table("KRIM_RSP_T", "RSP_ID", "krim_rsp_id_s", "t.NMSPC_CD = %1$s",
+                             "RSP_TMPL_ID", "NM", "DESC_TXT", "ACTV_IND")
+                   .namespace("NMSPC_CD"));
+        TABLES.add(new Table("KRIM_RSP_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S", copiedFrom("t.RSP_ID", "KRIM_RSP_T"),
+                             "KIM_TYP_ID", "KIM_ATTR_DEFN_ID", "ATTR_VAL")
+                   .references("RSP_ID", "KRIM_RSP_T"));
+        TABLES.add(new Table("KRIM_ROLE_T", "ROLE_ID", "krim_role_id_s", "t.NMSPC_CD = %1$s",
+                             "ROLE_NM", "KIM_TYP_ID", "DESC_TXT", "ACTV_IND", "LAST_UPDT_DT")
+                   .namespace("NMSPC_CD"));
+        TABLES.add(new Table("KRIM_ROLE_MBR_T", "ROLE_MBR_ID", "KRIM_ROLE_MBR_ID_S", copiedFrom("t.ROLE_ID", "KRIM_ROLE_T"),
+                             "MBR_TYP_CD", "ACTV_FRM_DT", "ACTV_TO_DT", "LAST_UPDT_DT")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("MBR_ID", "KRIM_ROLE_T", "t.MBR_TYP_CD = 'R'"));
+        TABLES.add(new Table("KRIM_ROLE_MBR_ATTR_DATA_T", "ATTR_DATA_ID", "KRIM_ATTR_DATA_ID_S",
+                             copiedFrom("t.ROLE_MBR_ID", "KRIM_ROLE_MBR_T"), "KIM_TYP_ID", "KIM_ATTR_DEFN_ID", "ATTR_VAL")
+                   .references("ROLE_MBR_ID", "KRIM_ROLE_MBR_T"));
+        TABLES.add(new Table("KRIM_ROLE_PERM_T", "ROLE_PERM_ID", "krim_role_perm_id_s", copiedFrom("t.ROLE_ID", "KRIM_ROLE_T"),
+                             "ACTV_IND")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("PERM_ID", "KRIM_PERM_T"));
+        TABLES.add(new Table("KRIM_ROLE_RSP_T", "ROLE_RSP_ID", "krim_role_rsp_id_s", copiedFrom("t.ROLE_ID", "KRIM_ROLE_T"),
+                             "ACTV_IND")
+                   .references("ROLE_ID", "KRIM_ROLE_T").references("RSP_ID", "KRIM_RSP_T"));
+        TABLES.add(new Table("KRIM_ROLE_RSP_ACTN_T", "ROLE_RSP_ACTN_ID", "krim_role_rsp_actn_id_s",
+                             copiedFrom("t.ROLE_RSP_ID", "KRIM_ROLE_RSP_T"),
+                             "ACTN_TYP_CD", "PRIORITY_NBR", "ACTN_PLCY_CD", "FRC_ACTN")
+                   .references("ROLE_RSP_ID", "KRIM_ROLE_RSP_T").references("ROLE_MBR_ID", "KRIM_ROLE_MBR_T"));
+    }
+
+    /**
+     * Condition holding for rows whose column refers to a row being copied
+     */
+    protected static String copiedFrom(final String column, final String table) {
+        return String.format("%s in (select OLD_ID from %s where TBL_NM = '%s')", column, ID_MAP, table);
+    }
+
+    /**
+     * The id of the copy of the referenced row, or the reference itself when that row is not copied
+     */
+    protected static String getCopyId(final String table, final String column) {
+        return String.format("coalesce((select m.NEW_ID from %s m where m.TBL_NM = '%s' and m.OLD_ID = %s), %s)",
+                             ID_MAP, table, column, column);
+    }
+
+    /**
+     * Each table is numbered from its own sequence
+     */
+    @Override
+    protected String getSequenceName() {
+        return null;
+    }
+
+    @Override
+    public ValidationErrors validate(final CloneNamespaceStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        retval.checkRequiredField("targetNamespace", statement.getTargetNamespace());
+        if (!statement.isRemove()) {
+            retval.checkRequiredField("sourceNamespace", statement.getSourceNamespace());
+            if (statement.getTargetNamespace() != null && statement.getTargetNamespace().equals(statement.getSourceNamespace())) {
+                retval.addError("The target namespace must differ from the source namespace");
+            }
+            validateRowGeneration(database, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final CloneNamespaceStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final List<Sql> retval = new ArrayList<Sql>();
+        if (statement.isRemove()) {
+            for (final String each : getRemoval(statement, database)) {
+                retval.add(new UnparsedSql(each));
+            }
+            return retval.toArray(new Sql[retval.size()]);
+        }
+
+        final String source = BoundQuery.toLiteral(statement.getSourceNamespace());
+        final String target = BoundQuery.toLiteral(statement.getTargetNamespace());
+        for (final String each : getCreateIdMap()) {
+            retval.add(new UnparsedSql(each));
+        }
+        for (final Table table : TABLES) {
+            retval.add(new UnparsedSql(String.format("insert into %s (TBL_NM, OLD_ID, NEW_ID) select '%s', t.%s, %s from %s t where %s",
+                                                     ID_MAP, table.name, table.id, getNextId(database, table.sequence),
+                                                     table.name, String.format(table.scope, source))));
+            final StringBuilder columns = new StringBuilder();
+            final StringBuilder values = new StringBuilder();
+            for (final Map.Entry<String, String> column : table.columns.entrySet()) {
+                columns.append(", ").append(column.getKey());
+                values.append(", ").append(String.format(column.getValue(), source, target));
+            }
+            retval.add(new UnparsedSql(String.format("insert into %1$s (%2$s, OBJ_ID, VER_NBR%3$s) select m.NEW_ID, %4$s, 1%5$s"
+                                                     + " from %1$s t join %6$s m on m.TBL_NM = '%1$s' and m.OLD_ID = t.%2$s",
+                                                     table.name, table.id, columns, getObjectIdFunction(database), values, ID_MAP)));
+        }
+        for (final String each : getDropIdMap()) {
+            retval.add(new UnparsedSql(each));
+        }
+        if (RoleMemberClosure.isMaintained(database)) {
+            retval.addAll(Arrays.asList(SqlGeneratorFactory.getInstance()
+                                        .generateSql(new RoleMemberClosureStatement(String.format(ROLES, target)), database)));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * Deletes the rows of the target namespace, children first. Role members go before the role membership closure
+     * is refreshed, the roles after.
+     */
+    protected List<String> getRemoval(final CloneNamespaceStatement statement, final Database database) {
+        final String roles = String.format(ROLES, BoundQuery.toLiteral(statement.getTargetNamespace()));
+        final String namespace = "NMSPC_CD = " + BoundQuery.toLiteral(statement.getTargetNamespace());
+        final List<String> retval = new ArrayList<String>();
+        retval.add(String.format("delete from KRIM_ROLE_RSP_ACTN_T where ROLE_RSP_ID in (select ROLE_RSP_ID from KRIM_ROLE_RSP_T where ROLE_ID in (%s))", roles));
+        retval.add(String.format("delete from KRIM_ROLE_MBR_ATTR_DATA_T where ROLE_MBR_ID in (select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID in (%s))", roles));
+        retval.add(String.format("delete from KRIM_ROLE_MBR_T where ROLE_ID in (%s)", roles));
+        if (RoleMemberClosure.isMaintained(database)) {
+            for (final Sql sql : SqlGeneratorFactory.getInstance().generateSql(new RoleMemberClosureStatement(roles), database)) {
+                retval.add(sql.toSql());
+            }
+        }
+        retval.add(String.format("delete from KRIM_ROLE_RSP_T where ROLE_ID in (%s)", roles));
+        retval.add(String.format("delete from KRIM_ROLE_PERM_T where ROLE_ID in (%s)", roles));
+        retval.add(String.format("delete from KRIM_RSP_ATTR_DATA_T where RSP_ID in (select RSP_ID from KRIM_RSP_T where %s)", namespace));
+        retval.add(String.format("delete from KRIM_RSP_T where %s", namespace));
+        retval.add(String.format("delete from KRIM_PERM_ATTR_DATA_T where PERM_ID in (select PERM_ID from KRIM_PERM_T where %s)", namespace));
+        retval.add(String.format("delete from KRIM_PERM_T where %s", namespace));
+        retval.add(String.format("delete from KRIM_ROLE_T where %s", namespace));
+        return retval;
+    }
+
+    /**
+     * Statements creating the (empty) id map
+     */
+    protected List<String> getCreateIdMap() {
+        return Arrays.asList(String.format("create table %s (TBL_NM varchar(30) not null, OLD_ID varchar(40) not null, NEW_ID varchar(40) not null,"
+                                           + " primary key (TBL_NM, OLD_ID))", ID_MAP));
+    }
+
+    /**
+     * Statements dropping the id map
+     */
+    protected List<String> getDropIdMap() {
+        return Arrays.asList("drop table " + ID_MAP);
+    }
+}
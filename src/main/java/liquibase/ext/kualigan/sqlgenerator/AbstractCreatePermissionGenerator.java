@@ -28,18 +28,14 @@ package liquibase.ext.kualigan.sqlgenerator;
 import liquibase.database.Database;
 import liquibase.exception.ValidationErrors;
 import liquibase.sqlgenerator.SqlGeneratorChain;
-import liquibase.sqlgenerator.SqlGeneratorFactory;
 import liquibase.sqlgenerator.core.AbstractSqlGenerator;
-import liquibase.statement.SqlStatement;
 import liquibase.statement.core.InsertStatement;
 
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.CreatePermissionStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -83,12 +79,8 @@ public abstract class AbstractCreatePermissionGenerator extends AbstractKimSqlGe
 	insertPermission.addColumnValue("actv_ind", statement.getActive());
 	insertPermission.addColumnValue("perm_tmpl_id", getPermissionTemplateForeignKey(database, statement.getTemplate()));
 	insertPermission.addColumnValue("ver_nbr", 1);
-	insertPermission.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertPermission.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
-	final List<SqlStatement> retval = new ArrayList<SqlStatement>();
-	retval.add(insertPermission);
-	retval.addAll(statement.getAttributes());
-
-	return SqlGeneratorFactory.getInstance().generateSql(retval.toArray(new SqlStatement[retval.size()]), database);
+	return generateSql(database, insertPermission, statement.getAttributes());
     }
 }
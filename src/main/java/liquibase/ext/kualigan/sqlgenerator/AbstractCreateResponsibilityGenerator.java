@@ -36,10 +36,10 @@ import liquibase.statement.core.InsertStatement;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.CreateResponsibilityStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -83,7 +83,7 @@ public abstract class AbstractCreateResponsibilityGenerator extends AbstractKimS
 	insertResponsibility.addColumnValue("desc_txt", statement.getDescription());
 	insertResponsibility.addColumnValue("actv_ind", statement.getActive());
 	insertResponsibility.addColumnValue("ver_nbr", 1);
-	insertResponsibility.addColumnValue("obj_id", UUID.randomUUID().toString());
+	insertResponsibility.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
 	final List<SqlStatement> retval = new ArrayList<SqlStatement>();
 	retval.add(insertResponsibility);
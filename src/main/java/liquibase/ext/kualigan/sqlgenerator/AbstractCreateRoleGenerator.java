@@ -37,9 +37,9 @@ import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.CreateRoleStatement;
 import liquibase.ext.kualigan.statement.CreateTypeStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
 import java.util.List;
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -81,8 +81,8 @@ public abstract class AbstractCreateRoleGenerator extends AbstractKimSqlGenerato
                              final Database database, 
                              final SqlGeneratorChain chain) {
         
-        String type = "";
-        String typeNamespace = "";
+        String type = statement.getType();
+        String typeNamespace = statement.getTypeNamespace();
         for (final SqlStatement stmt : statement.getTypes()) {
             final CreateTypeStatement createTypeStatement = (CreateTypeStatement) stmt;
             type = createTypeStatement.getName();
@@ -101,7 +101,7 @@ public abstract class AbstractCreateRoleGenerator extends AbstractKimSqlGenerato
         if (statement.getLastUpdated() != null) {
             insertRole.addColumnValue("LAST_UPDT_DT", statement.getLastUpdated());
         }
-        insertRole.addColumnValue("obj_id", UUID.randomUUID().toString());
+        insertRole.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
         return SqlGeneratorFactory.getInstance().generateSql(insertRole, database);
     }
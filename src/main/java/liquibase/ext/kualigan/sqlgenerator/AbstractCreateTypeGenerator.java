@@ -35,8 +35,8 @@ import liquibase.statement.core.InsertStatement;
 import liquibase.sql.Sql;
 
 import liquibase.ext.kualigan.statement.CreateTypeStatement;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
 
-import java.util.UUID;
 
 import static liquibase.ext.Constants.EXTENSION_PRIORITY;
 
@@ -79,7 +79,7 @@ public abstract class AbstractCreateTypeGenerator extends AbstractKimSqlGenerato
         insertType.addColumnValue("srvc_nm", statement.getService());
         insertType.addColumnValue("actv_ind", statement.getActive());
         insertType.addColumnValue("ver_nbr", 1);
-        insertType.addColumnValue("obj_id", UUID.randomUUID().toString());
+        insertType.addColumnValue("obj_id", ObjectIdFactory.getInstance().nextObjectId(database));
 
         return SqlGeneratorFactory.getInstance().generateSql(insertType, database);
     }
@@ -26,19 +26,30 @@
 package liquibase.ext.kualigan.sqlgenerator;
 
 import liquibase.database.Database;
+import liquibase.database.core.PostgresDatabase;
 import liquibase.exception.*;
 import liquibase.executor.ExecutorService;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
 import liquibase.sqlgenerator.core.AbstractSqlGenerator;
 import liquibase.statement.core.RuntimeStatement;
 import liquibase.statement.DatabaseFunction;
 import liquibase.statement.SqlStatement;
-import org.apache.commons.lang.StringUtils;
+
+import liquibase.ext.kualigan.lookup.BoundFunction;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.KimLookupIndex;
+import liquibase.ext.kualigan.lookup.RoleMemberQuery;
+import liquibase.ext.kualigan.objectid.DatabaseObjectIdStrategy;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Generic base class for generators mapped to the {@link CreateTypeStatement}
@@ -64,31 +75,102 @@ public abstract class AbstractKimSqlGenerator<T extends SqlStatement> extends Ab
         return new DatabaseFunction(subQuery);
     }
 
+    /**
+     * Expression drawing the next id from the sequence, evaluated once per row of a set-based INSERT ... SELECT. Only
+     * databases with sequences can number rows this way.
+     */
+    protected String getNextId(final Database database) {
+        return getNextId(database, getSequenceName());
+    }
+
+    protected String getNextId(final Database database, final String sequence) {
+        if (database instanceof PostgresDatabase) {
+            return String.format("nextval('%s')", sequence);
+        }
+        return String.format("%s.NEXTVAL", sequence);
+    }
+
+    /**
+     * Expression generating an object id, evaluated once per row of a set-based INSERT ... SELECT
+     *
+     * @return the expression or <code>null</code> if the database has no function to generate one
+     */
+    protected String getObjectIdFunction(final Database database) {
+        return new DatabaseObjectIdStrategy().getFunction(database);
+    }
+
+    /**
+     * Checks the database can number and identify the rows of a set-based INSERT ... SELECT
+     */
+    protected void validateRowGeneration(final Database database, final ValidationErrors errors) {
+        if (!database.supportsSequences()) {
+            errors.addError(String.format("%s has no sequences to number rows from", database.getShortName()));
+        }
+        if (getObjectIdFunction(database) == null) {
+            errors.addError(String.format("%s has no function to generate object ids from", database.getShortName()));
+        }
+    }
+
+    /**
+     * Generates the given statement followed by its nested statements. Each nested {@link Iterable} is consumed once,
+     * so nested statements are not held beyond the {@link Sql} generated for them.
+     *
+     * @param database the target {@link Database}
+     * @param statement the parent statement
+     * @param children nested statements of the parent, in order
+     * @return the generated {@link Sql}
+     */
+    protected Sql[] generateSql(final Database database, final SqlStatement statement, final Iterable<SqlStatement>... children) {
+        final List<Sql> retval = new ArrayList<Sql>();
+        retval.addAll(Arrays.asList(SqlGeneratorFactory.getInstance().generateSql(statement, database)));
+        for (final Iterable<SqlStatement> nested : children) {
+            if (nested == null) {
+                continue;
+            }
+            for (final SqlStatement child : nested) {
+                retval.addAll(Arrays.asList(SqlGeneratorFactory.getInstance().generateSql(child, database)));
+            }
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * A lookup nested into the generated SQL as a {@link BoundFunction}. Offline output shows it with its parameters
+     * inlined as escaped literals; inserts run by the {@link liquibase.ext.kualigan.execution.CachingJdbcExecutor} bind
+     * them (see {@link BoundInsertGenerator}). The lookup is counted against the {@link KimLookupIndex} serving it.
+     *
+     * @param parameters values to bind, or nested {@link DatabaseFunction}s
+     */
+    protected DatabaseFunction toSubquery(final KimLookupIndex index, final String sql, final Object... parameters) {
+        index.served();
+        return new BoundFunction(sql, parameters);
+    }
+
     protected DatabaseFunction getPermissionTemplateForeignKey(final Database database, final String templateName) {
-        return new DatabaseFunction(String.format("select PERM_TMPL_ID from KRIM_PERM_TMPL_T where NM = '%s'", templateName));
+        return toSubquery(KimLookupIndex.PERMISSION_TEMPLATE, "select PERM_TMPL_ID from KRIM_PERM_TMPL_T where NM = ?", templateName);
     }
 
     protected DatabaseFunction getResponsibilityTemplateForeignKey(final Database database, final String templateName) {
-        return new DatabaseFunction(String.format("select RSP_TMPL_ID from KRIM_RSP_TMPL_T where nm = '%s'", templateName));
+        return toSubquery(KimLookupIndex.RESPONSIBILITY_TEMPLATE, "select RSP_TMPL_ID from KRIM_RSP_TMPL_T where NM = ?", templateName);
     }
 
     protected DatabaseFunction getAttributeDefinitionForeignKey(final Database database, final String attributeDef){
-        return new DatabaseFunction(String.format("(select KIM_ATTR_DEFN_ID from krim_attr_defn_t where nm = '%s')", attributeDef));
+        return toSubquery(KimLookupIndex.ATTRIBUTE_DEFINITION, "select KIM_ATTR_DEFN_ID from KRIM_ATTR_DEFN_T where NM = ?", attributeDef);
     }
 
     protected DatabaseFunction getTypeForeignKey(final Database database, final String kimType) {
-        return new DatabaseFunction(String.format("(select kim_typ_id from krim_typ_t where nm = '%s')", kimType));
+        return toSubquery(KimLookupIndex.TYPE, "select KIM_TYP_ID from KRIM_TYP_T where NM = ?", kimType);
     }
 
     protected DatabaseFunction getTypeForeignKey(final Database database, final String kimType, final String kimTypeNamespace) {
         if (kimTypeNamespace == null){
             return getTypeForeignKey(database, kimType);
         }
-        return new DatabaseFunction(String.format("(select kim_typ_id from krim_typ_t where nm = '%s' and nmspc_cd = '%s')", kimType, kimTypeNamespace));
+        return toSubquery(KimLookupIndex.TYPE, "select KIM_TYP_ID from KRIM_TYP_T where NM = ? and NMSPC_CD = ?", kimType, kimTypeNamespace);
     }
 
     protected DatabaseFunction getPermissionForeignKey(final Database database, final String permissionName, final String permissionNameSpace){
-        return new DatabaseFunction(String.format("(select PERM_ID from KRIM_PERM_T where nm = '%s' and NMSPC_CD = '%s')", permissionName, permissionNameSpace));
+        return toSubquery(KimLookupIndex.PERMISSION, "select PERM_ID from KRIM_PERM_T where NM = ? and NMSPC_CD = ?", permissionName, permissionNameSpace);
     }
 
     protected DatabaseFunction getPermissionForeignKey(final Database database, final String permissionName, final String permissionNameSpace, final String permissionTemplate){
@@ -97,50 +179,65 @@ public abstract class AbstractKimSqlGenerator<T extends SqlStatement> extends Ab
         }
 
         final DatabaseFunction permissionTemplateId = getPermissionTemplateForeignKey(database,permissionTemplate);
-        return new DatabaseFunction(String.format("(select PERM_ID from KRIM_PERM_T where nm = '%s' and NMSPC_CD = '%s' and perm_tmpl_id IN '%s')", permissionName, permissionNameSpace, permissionTemplateId));
+        return toSubquery(KimLookupIndex.PERMISSION, "select PERM_ID from KRIM_PERM_T where NM = ? and NMSPC_CD = ? and PERM_TMPL_ID = ?",
+                          permissionName, permissionNameSpace, permissionTemplateId);
     }
 
 
     protected DatabaseFunction getRoleForeignKey(final Database database, final String roleName, final String namespaceCode) {
-        return new DatabaseFunction(String.format("(select ROLE_ID from KRIM_ROLE_T where ROLE_NM = '%s' and NMSPC_CD = '%s')", roleName, namespaceCode));
+        return toSubquery(KimLookupIndex.ROLE, "select ROLE_ID from KRIM_ROLE_T where ROLE_NM = ? and NMSPC_CD = ?", roleName, namespaceCode);
     }
 
     protected DatabaseFunction getPrincipalForeignKey(final Database database, final String memberName) {
-        return new DatabaseFunction(String.format("(select PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM = '%s')", memberName));
+        return toSubquery(KimLookupIndex.PRINCIPAL, "select PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM = ?", memberName);
     }
 
     protected DatabaseFunction getResponsibilityForeignKey(final Database database, final String responsibilityName) {
-        return new DatabaseFunction(String.format("(select rsp_id from krim_rsp_t where nm = '%s')", responsibilityName));
+        return toSubquery(KimLookupIndex.RESPONSIBILITY, "select RSP_ID from KRIM_RSP_T where NM = ?", responsibilityName);
     }
     
     protected DatabaseFunction getResponsibilityForeignKey(final Database database, final String responsibilityName, final String responsibilityNamespace) {
         if (responsibilityNamespace == null){
             return getResponsibilityForeignKey(database,responsibilityName);
         }
-        return new DatabaseFunction(String.format("(select rsp_id from krim_rsp_t where nm = '%s' and nmspc_cd = '%s')", responsibilityName, responsibilityNamespace));
+        return toSubquery(KimLookupIndex.RESPONSIBILITY, "select RSP_ID from KRIM_RSP_T where NM = ? and NMSPC_CD = ?", responsibilityName, responsibilityNamespace);
     }
 
     protected DatabaseFunction getRoleResponsibilityForeignKey(final Database database, final String roleId , final String responsibilityId) {
-        return new DatabaseFunction(String.format("(select role_rsp_id from krim_role_rsp_t where role_id = '%s' and rsp_id = '%s')", roleId, responsibilityId));
+        return toSubquery(KimLookupIndex.ROLE_RESPONSIBILITY, "select ROLE_RSP_ID from KRIM_ROLE_RSP_T where ROLE_ID = ? and RSP_ID = ?", roleId, responsibilityId);
     }
 
     protected DatabaseFunction getRoleResponsibilityForeignKey(final Database database, final DatabaseFunction roleId , final DatabaseFunction responsibilityId) {
-        return new DatabaseFunction(String.format("(select role_rsp_id from krim_role_rsp_t where role_id IN '%s' and rsp_id IN '%s')", roleId, responsibilityId));
+        return toSubquery(KimLookupIndex.ROLE_RESPONSIBILITY, "select ROLE_RSP_ID from KRIM_ROLE_RSP_T where ROLE_ID = ? and RSP_ID = ?",
+                          roleId, responsibilityId);
     }
 
     protected DatabaseFunction getRoleMemberForeignKey(final Database database, final String roleId , final String memberId) {
-        return new DatabaseFunction(String.format("(select role_mbr_id from krim_role_mbr_t where role_id = '%s' and mbr_id = '%s')", roleId, memberId));
+        return toSubquery(KimLookupIndex.ROLE_MEMBER, "select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = ? and MBR_ID = ?", roleId, memberId);
     }
 
     protected DatabaseFunction getRoleMemberForeignKey(final Database database, final DatabaseFunction roleId , final DatabaseFunction memberId) {
-        return new DatabaseFunction(String.format("(select role_mbr_id from krim_role_mbr_t where role_id IN '%s' and mbr_id IN '%s')", roleId, memberId));
+        return toSubquery(KimLookupIndex.ROLE_MEMBER, "select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = ? and MBR_ID = ?",
+                          roleId, memberId);
     }
 
-    protected DatabaseFunction getRoleMemberForeignKey(final Database database, final String roleId , final String memberId, final List<String> uniqueAttributeValues) {
-        if (uniqueAttributeValues == null){
+    /**
+     * Role member lookup narrowed by the values of its unique qualifiers, in the same form the changes use (see
+     * {@link RoleMemberQuery}). Attribute definition ids are nested as subqueries.
+     *
+     * @param uniqueAttributeValues attribute values keyed by attribute definition name
+     */
+    protected DatabaseFunction getRoleMemberForeignKey(final Database database, final String roleId , final String memberId, final Map<String, String> uniqueAttributeValues) {
+        if (uniqueAttributeValues == null || uniqueAttributeValues.isEmpty()){
             return getRoleMemberForeignKey(database,roleId,memberId);
         }
-        return new DatabaseFunction(String.format("(select rm.role_mbr_id  from krim_role_mbr_t rm left join krim_role_mbr_attr_data_t rma on rma.ROLE_MBR_ID = rm.ROLE_MBR_ID where rm.role_id = '%s' and rm.mbr_id = '%s' and rma.ATTR_VAL IN ('%s'))", roleId, memberId, StringUtils.join(uniqueAttributeValues, "', '")));
+        final Map<DatabaseFunction, String> attributes = new LinkedHashMap<DatabaseFunction, String>();
+        for (final Map.Entry<String, String> uniqueAttributeValue : uniqueAttributeValues.entrySet()) {
+            attributes.put(getAttributeDefinitionForeignKey(database, uniqueAttributeValue.getKey()), uniqueAttributeValue.getValue());
+        }
+        final BoundQuery query = RoleMemberQuery.toBoundQuery(roleId, memberId, attributes);
+        KimLookupIndex.ROLE_MEMBER_ATTRIBUTE.served();
+        return toSubquery(KimLookupIndex.ROLE_MEMBER, query.getSql(), query.getParameters());
     }
 
     protected void incrementSequence(final Database database) {
@@ -0,0 +1,166 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.core.AbstractSqlGenerator;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static liquibase.ext.kualigan.lookup.RoleMemberClosure.TABLE_NAME;
+
+/**
+ * Generic base class for generators mapped to the {@link RoleMemberClosureStatement}. A new member is joined to the
+ * closure rows already leading to its role in one statement. Any other change marks the closure rows of the affected
+ * roles and of every role above them (by negating their depth), expands those roles again level by level, and drops
+ * the marked rows.
+ *
+ * @author Leo Przybylski
+ */
+public abstract class AbstractRoleMemberClosureGenerator extends AbstractSqlGenerator<RoleMemberClosureStatement> {
+    protected static final String COLUMNS = "(ANCSTR_ROLE_ID, MBR_ID, MBR_TYP_CD, DPTH)";
+
+    @Override
+    public int getPriority() {
+        return EXTENSION_PRIORITY;
+    }
+
+    @Override
+    public ValidationErrors validate(final RoleMemberClosureStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = new ValidationErrors();
+        if (statement.getRoleId() != null) {
+            retval.checkRequiredField("memberId", statement.getMemberId());
+            retval.checkRequiredField("memberType", statement.getMemberType());
+        }
+        return retval;
+    }
+
+    /**
+     * Generate the actual Sql for the given statement and database.
+     *
+     * @see liquibase.sqlgenerator#generateSql(StatementType, Database, SqlGeneratorChain)
+     */
+    public Sql[] generateSql(final RoleMemberClosureStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final List<String> sql = new ArrayList<String>();
+        if (statement.getRoleId() != null) {
+            sql.addAll(getAddition(statement));
+        }
+        else if (statement.isRebuild()) {
+            sql.add("delete from " + TABLE_NAME);
+            sql.addAll(getExpansion(statement));
+        }
+        else {
+            sql.add(String.format("update %s set DPTH = -DPTH where 1 = 1%s", TABLE_NAME, getScope(statement, "ANCSTR_ROLE_ID")));
+            sql.addAll(getExpansion(statement));
+            sql.add(String.format("delete from %s where DPTH < 0", TABLE_NAME));
+        }
+
+        final List<Sql> retval = new ArrayList<Sql>();
+        for (final String each : sql) {
+            retval.add(new UnparsedSql(each));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * Every role the new member's role is reachable from (the role itself at depth 0), crossed with the new member
+     * (depth 1) and, for a role member, everything below it. Pairs already in the closure take the new depth when it
+     * is shorter; the others are inserted.
+     */
+    protected List<String> getAddition(final RoleMemberClosureStatement statement) {
+        final String type = BoundQuery.toLiteral(statement.getMemberType());
+        final String ancestors = String.format("(select ROLE_ID ANCSTR_ROLE_ID, 0 DPTH from KRIM_ROLE_T where ROLE_ID = %2$s"
+                                               + " union all select ANCSTR_ROLE_ID, DPTH from %1$s where MBR_ID = %2$s and MBR_TYP_CD = 'R') a",
+                                               TABLE_NAME, statement.getRoleId());
+        final String descendants = String.format("(select MBR_ID, MBR_TYP_CD, 1 DPTH from KRIM_ROLE_MBR_T where ROLE_ID = %2$s and MBR_ID = %3$s and MBR_TYP_CD = %4$s"
+                                                 + " union all select MBR_ID, MBR_TYP_CD, DPTH + 1 from %1$s where ANCSTR_ROLE_ID = %3$s and %4$s = 'R') d",
+                                                 TABLE_NAME, statement.getRoleId(), statement.getMemberId(), type);
+        final String shortest = String.format("(select min(a.DPTH + d.DPTH) from %s, %s where a.ANCSTR_ROLE_ID = x.ANCSTR_ROLE_ID"
+                                              + " and d.MBR_ID = x.MBR_ID and d.MBR_TYP_CD = x.MBR_TYP_CD)",
+                                              ancestors, descendants);
+
+        final List<String> retval = new ArrayList<String>();
+        retval.add(String.format("update %1$s x set DPTH = %2$s where x.DPTH > %2$s", TABLE_NAME, shortest));
+        retval.add(String.format("insert into %1$s %2$s"
+                                 + " select a.ANCSTR_ROLE_ID, d.MBR_ID, d.MBR_TYP_CD, min(a.DPTH + d.DPTH) from %3$s, %4$s"
+                                 + " where not exists (select 1 from %1$s x where x.ANCSTR_ROLE_ID = a.ANCSTR_ROLE_ID and x.MBR_ID = d.MBR_ID"
+                                 + " and x.MBR_TYP_CD = d.MBR_TYP_CD)"
+                                 + " group by a.ANCSTR_ROLE_ID, d.MBR_ID, d.MBR_TYP_CD",
+                                 TABLE_NAME, COLUMNS, ancestors, descendants));
+        return retval;
+    }
+
+    /**
+     * Inserts expanding the roles in scope, one level per statement up to {@link KimConfiguration#getRoleClosureDepth()}.
+     * Each level adds only members not reached at a smaller depth, so cycles end. Members nested deeper are left out
+     * (see {@link liquibase.ext.kualigan.lookup.RoleMemberClosure#checkDepth}).
+     */
+    protected List<String> getExpansion(final RoleMemberClosureStatement statement) {
+        final List<String> retval = new ArrayList<String>();
+        retval.add(String.format("insert into %s %s select ROLE_ID, MBR_ID, MBR_TYP_CD, 1 from KRIM_ROLE_MBR_T where 1 = 1%s"
+                                 + " group by ROLE_ID, MBR_ID, MBR_TYP_CD",
+                                 TABLE_NAME, COLUMNS, getScope(statement, "ROLE_ID")));
+        for (int depth = 2; depth <= KimConfiguration.getInstance().getRoleClosureDepth(); depth++) {
+            retval.add(String.format("insert into %1$s %2$s select c.ANCSTR_ROLE_ID, m.MBR_ID, m.MBR_TYP_CD, %3$d"
+                                     + " from %1$s c join KRIM_ROLE_MBR_T m on m.ROLE_ID = c.MBR_ID"
+                                     + " where c.MBR_TYP_CD = 'R' and c.DPTH = %4$d%5$s"
+                                     + " and not exists (select 1 from %1$s x where x.ANCSTR_ROLE_ID = c.ANCSTR_ROLE_ID and x.MBR_ID = m.MBR_ID"
+                                     + " and x.MBR_TYP_CD = m.MBR_TYP_CD and x.DPTH > 0)"
+                                     + " group by c.ANCSTR_ROLE_ID, m.MBR_ID, m.MBR_TYP_CD",
+                                     TABLE_NAME, COLUMNS, depth, depth - 1, getScope(statement, "c.ANCSTR_ROLE_ID")));
+        }
+        return retval;
+    }
+
+    /**
+     * Condition limiting a role id column to the changed roles and every role they are nested in. The roles are read
+     * through a derived table so the closure table can be updated while it is queried.
+     *
+     * @return the condition, starting with {@code and}, or an empty string when every role is rebuilt
+     */
+    protected String getScope(final RoleMemberClosureStatement statement, final String column) {
+        if (statement.isRebuild()) {
+            return "";
+        }
+        return String.format(" and %1$s in (select ROLE_ID from (%2$s union select ANCSTR_ROLE_ID from %3$s"
+                             + " where MBR_TYP_CD = 'R' and MBR_ID in (%2$s)) s)",
+                             column, statement.getRoleQuery(), TABLE_NAME);
+    }
+}
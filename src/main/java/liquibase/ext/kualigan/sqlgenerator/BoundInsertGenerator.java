@@ -0,0 +1,86 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+import liquibase.sqlgenerator.core.AbstractSqlGenerator;
+import liquibase.statement.core.InsertStatement;
+
+import liquibase.ext.kualigan.lookup.BoundFunction;
+import liquibase.ext.kualigan.lookup.BoundSql;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+
+/**
+ * Generates the inserts the KIM generators build, those with a lookup nested as a {@link BoundFunction}, as
+ * {@link BoundSql}. The SQL is what the next generator in the chain produces, literals included; the bound form lets
+ * the {@link liquibase.ext.kualigan.execution.CachingJdbcExecutor} run the insert as a cached prepared statement.
+ *
+ * @author Leo Przybylski
+ */
+public class BoundInsertGenerator extends AbstractSqlGenerator<InsertStatement> {
+
+    @Override
+    public int getPriority() {
+        return EXTENSION_PRIORITY;
+    }
+
+    /**
+     * Only plain inserts; subclasses such as {@code InsertOrUpdateStatement} generate other SQL
+     */
+    @Override
+    public boolean supports(final InsertStatement statement, final Database database) {
+        if (statement.getClass() != InsertStatement.class) {
+            return false;
+        }
+        for (final Object value : statement.getColumnValues().values()) {
+            if (value instanceof BoundFunction) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ValidationErrors validate(final InsertStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        return generators.validate(statement, database);
+    }
+
+    public Sql[] generateSql(final InsertStatement statement,
+                             final Database database,
+                             final SqlGeneratorChain chain) {
+        final Sql[] retval = chain.generateSql(statement, database);
+        if (retval == null || retval.length != 1) {
+            return retval;
+        }
+        return new Sql[] { new BoundSql(retval[0].toSql(), BoundSql.forInsert(database, statement)) };
+    }
+}
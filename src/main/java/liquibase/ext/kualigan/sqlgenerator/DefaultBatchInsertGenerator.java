@@ -0,0 +1,59 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+
+import liquibase.ext.kualigan.statement.BatchInsertStatement;
+
+import java.util.List;
+
+/**
+ * Inserts batches with a multi-row {@code VALUES} list.
+ *
+ * @author Leo Przybylski
+ */
+public class DefaultBatchInsertGenerator extends AbstractBatchInsertGenerator {
+    @Override
+    public boolean supports(final BatchInsertStatement statement,
+                            final Database database) {
+        return !(database instanceof OracleDatabase);
+    }
+
+    protected String generateInsert(final BatchInsertStatement statement, final Database database, final List<Object[]> rows) {
+        final StringBuilder retval = new StringBuilder()
+            .append("INSERT INTO ").append(getTable(statement, database))
+            .append(" (").append(getColumns(statement, database)).append(") VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                retval.append(", ");
+            }
+            retval.append('(').append(getValues(rows.get(i))).append(')');
+        }
+        return retval.toString();
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.SqlStatement;
+
+import liquibase.ext.kualigan.statement.AddRoleMemberAttributeStatement;
+import liquibase.ext.kualigan.statement.AssignMemberStatement;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement.Attribute;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement.Member;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns members in bulk on databases other than Oracle, one {@link AssignMemberStatement} per member.
+ *
+ * @author Leo Przybylski
+ */
+public class DefaultBulkAssignMembersGenerator extends AbstractBulkAssignMembersGenerator {
+    @Override
+    public boolean supports(final BulkAssignMembersStatement statement,
+                            final Database database) {
+        return !(database instanceof OracleDatabase);
+    }
+
+    protected Sql[] generateMembers(final BulkAssignMembersStatement statement, final Database database, final List<Member> members) {
+        final List<Sql> retval = new ArrayList<Sql>();
+        for (final Member member : members) {
+            final List<SqlStatement> attributes = new ArrayList<SqlStatement>();
+            for (final Attribute attribute : member.getAttributes()) {
+                attributes.add(new AddRoleMemberAttributeStatement(attribute.getType(),
+                                                                   attribute.getAttributeDef(),
+                                                                   statement.getRole(),
+                                                                   statement.getNamespace(),
+                                                                   member.getName(),
+                                                                   attribute.getValue(),
+                                                                   "Y"));
+            }
+            final AssignMemberStatement assign = new AssignMemberStatement(statement.getNamespace(),
+                                                                           member.getType(),
+                                                                           member.getName(),
+                                                                           member.getNamespace(),
+                                                                           statement.getRole(),
+                                                                           "Y",
+                                                                           attributes,
+                                                                           null);
+            retval.addAll(Arrays.asList(SqlGeneratorFactory.getInstance().generateSql(assign, database)));
+        }
+        return retval.toArray(new Sql[retval.size()]);
+    }
+
+    /**
+     * Each {@link AssignMemberStatement} adds its member to the closure already
+     */
+    @Override
+    protected Sql[] generateClosure(final BulkAssignMembersStatement statement, final Database database) {
+        return new Sql[0];
+    }
+}
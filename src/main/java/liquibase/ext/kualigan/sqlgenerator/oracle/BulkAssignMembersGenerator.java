@@ -0,0 +1,146 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator.oracle;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+import liquibase.exception.ValidationErrors;
+import liquibase.sql.Sql;
+import liquibase.sql.UnparsedSql;
+import liquibase.sqlgenerator.SqlGeneratorChain;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.sqlgenerator.AbstractBulkAssignMembersGenerator;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement.Attribute;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns members in bulk on Oracle with one anonymous PL/SQL block per {@value #MEMBERS_PER_BLOCK} members. The
+ * member data is passed as collections; ids are taken from the sequences in the block and rows are inserted with
+ * {@code FORALL}, so a block costs one round trip. The block fails, naming the member, if a member cannot be found.
+ *
+ * @author Leo Przybylski
+ */
+public class BulkAssignMembersGenerator extends AbstractBulkAssignMembersGenerator {
+    @Override
+    public boolean supports(final BulkAssignMembersStatement statement,
+                            final Database database) {
+        return database instanceof OracleDatabase;
+    }
+
+    @Override
+    public ValidationErrors validate(final BulkAssignMembersStatement statement,
+                                     final Database database,
+                                     final SqlGeneratorChain generators) {
+        final ValidationErrors retval = super.validate(statement, database, generators);
+        validateRowGeneration(database, retval);
+        return retval;
+    }
+
+    protected Sql[] generateMembers(final BulkAssignMembersStatement statement, final Database database, final List<Member> members) {
+        final List<Object> types = new ArrayList<Object>();
+        final List<Object> names = new ArrayList<Object>();
+        final List<Object> namespaces = new ArrayList<Object>();
+        final List<Object> attributeMembers = new ArrayList<Object>();
+        final List<Object> attributeTypes = new ArrayList<Object>();
+        final List<Object> attributeDefs = new ArrayList<Object>();
+        final List<Object> attributeValues = new ArrayList<Object>();
+        for (final Member member : members) {
+            types.add(member.getType());
+            names.add(member.getName());
+            namespaces.add(member.getNamespace());
+            for (final Attribute attribute : member.getAttributes()) {
+                attributeMembers.add(names.size());
+                attributeTypes.add(attribute.getType());
+                attributeDefs.add(attribute.getAttributeDef());
+                attributeValues.add(attribute.getValue());
+            }
+        }
+
+        final String objectId = getObjectIdFunction(database);
+        final StringBuilder block = new StringBuilder()
+            .append("declare\n")
+            .append("  type names_t is table of varchar2(4000);\n")
+            .append("  type ids_t is table of krim_role_mbr_t.role_mbr_id%type;\n")
+            .append("  type indexes_t is table of pls_integer;\n")
+            .append("  v_mbr_typ names_t := ").append(toCollection("names_t", types)).append(";\n")
+            .append("  v_mbr_nm names_t := ").append(toCollection("names_t", names)).append(";\n")
+            .append("  v_mbr_ns names_t := ").append(toCollection("names_t", namespaces)).append(";\n")
+            .append("  v_attr_idx indexes_t := ").append(toCollection("indexes_t", attributeMembers)).append(";\n")
+            .append("  v_attr_typ names_t := ").append(toCollection("names_t", attributeTypes)).append(";\n")
+            .append("  v_attr_def names_t := ").append(toCollection("names_t", attributeDefs)).append(";\n")
+            .append("  v_attr_val names_t := ").append(toCollection("names_t", attributeValues)).append(";\n")
+            .append("  v_mbr_count pls_integer := v_mbr_nm.count;\n")
+            .append("  v_mbr_id ids_t;\n")
+            .append("  v_attr_mbr_id ids_t := ids_t();\n")
+            .append("  v_role_id krim_role_t.role_id%type;\n")
+            .append("begin\n")
+            .append("  select role_id into v_role_id from krim_role_t where role_nm = ").append(BoundQuery.toLiteral(statement.getRole()))
+            .append(" and nmspc_cd = ").append(BoundQuery.toLiteral(statement.getNamespace())).append(";\n")
+            .append("  select ").append(getNextId(database)).append(" bulk collect into v_mbr_id from dual connect by level <= v_mbr_count;\n")
+            .append("  forall i in 1 .. v_mbr_nm.count\n")
+            .append("    insert into krim_role_mbr_t (role_mbr_id, role_id, mbr_id, mbr_typ_cd, ver_nbr, obj_id)\n")
+            .append("    select v_mbr_id(i), v_role_id, m.id, v_mbr_typ(i), 1, ").append(objectId).append(" from (\n")
+            .append("      select prncpl_id id from krim_prncpl_t where v_mbr_typ(i) = 'P' and prncpl_nm = v_mbr_nm(i)\n")
+            .append("      union all\n")
+            .append("      select role_id id from krim_role_t where v_mbr_typ(i) = 'R' and role_nm = v_mbr_nm(i) and nmspc_cd = v_mbr_ns(i)) m;\n")
+            .append("  for i in 1 .. v_mbr_nm.count loop\n")
+            .append("    if sql%bulk_rowcount(i) = 0 then\n")
+            .append("      raise_application_error(-20001, 'KIM role member not found: ' || v_mbr_typ(i) || ' ' || v_mbr_nm(i));\n")
+            .append("    end if;\n")
+            .append("  end loop;\n")
+            .append("  v_attr_mbr_id.extend(v_attr_idx.count);\n")
+            .append("  for j in 1 .. v_attr_idx.count loop\n")
+            .append("    v_attr_mbr_id(j) := v_mbr_id(v_attr_idx(j));\n")
+            .append("  end loop;\n")
+            .append("  forall j in 1 .. v_attr_idx.count\n")
+            .append("    insert into krim_role_mbr_attr_data_t (attr_data_id, role_mbr_id, kim_typ_id, kim_attr_defn_id, attr_val, ver_nbr, obj_id)\n")
+            .append("    values (").append(getNextId(database, "KRIM_ATTR_DATA_ID_S")).append(", v_attr_mbr_id(j),")
+            .append(" (select kim_typ_id from krim_typ_t where nm = v_attr_typ(j)),")
+            .append(" (select kim_attr_defn_id from krim_attr_defn_t where nm = v_attr_def(j)),")
+            .append(" v_attr_val(j), 1, ").append(objectId).append(");\n")
+            .append("end;");
+        return new Sql[] { new UnparsedSql(block.toString(), "\n/") };
+    }
+
+    /**
+     * A collection constructor holding the given values as literals
+     */
+    protected String toCollection(final String type, final List<Object> values) {
+        final StringBuilder retval = new StringBuilder(type).append('(');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                retval.append(", ");
+            }
+            retval.append(BoundQuery.toLiteral(values.get(i)));
+        }
+        return retval.append(')').toString();
+    }
+}
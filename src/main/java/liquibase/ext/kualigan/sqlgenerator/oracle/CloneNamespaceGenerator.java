@@ -0,0 +1,60 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator.oracle;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+
+import liquibase.ext.kualigan.sqlgenerator.AbstractCloneNamespaceGenerator;
+import liquibase.ext.kualigan.statement.CloneNamespaceStatement;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clones namespaces on Oracle, keeping the id map in a global temporary table so its rows stay private to the session
+ * and are never logged.
+ *
+ * @author Leo Przybylski
+ */
+public class CloneNamespaceGenerator extends AbstractCloneNamespaceGenerator {
+    @Override
+    public boolean supports(final CloneNamespaceStatement statement,
+                            final Database database) {
+        return database instanceof OracleDatabase;
+    }
+
+    @Override
+    protected List<String> getCreateIdMap() {
+        return Arrays.asList(String.format("create global temporary table %s (TBL_NM varchar2(30) not null, OLD_ID varchar2(40) not null,"
+                                           + " NEW_ID varchar2(40) not null, primary key (TBL_NM, OLD_ID)) on commit preserve rows", ID_MAP));
+    }
+
+    @Override
+    protected List<String> getDropIdMap() {
+        return Arrays.asList("truncate table " + ID_MAP, "drop table " + ID_MAP);
+    }
+}
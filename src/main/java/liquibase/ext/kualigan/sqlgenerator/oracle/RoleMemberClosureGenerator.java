@@ -0,0 +1,60 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator.oracle;
+
+import liquibase.database.Database;
+import liquibase.database.core.OracleDatabase;
+
+import liquibase.ext.kualigan.sqlgenerator.AbstractRoleMemberClosureGenerator;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.util.Collections;
+import java.util.List;
+
+import static liquibase.ext.kualigan.lookup.RoleMemberClosure.TABLE_NAME;
+
+/**
+ * Expands role nesting with one hierarchical query, to any depth.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberClosureGenerator extends AbstractRoleMemberClosureGenerator {
+    @Override
+    public boolean supports(final RoleMemberClosureStatement statement,
+                            final Database database) {
+        return database instanceof OracleDatabase;
+    }
+
+    @Override
+    protected List<String> getExpansion(final RoleMemberClosureStatement statement) {
+        return Collections.singletonList(String.format(
+            "insert into %s %s select ANCSTR_ROLE_ID, MBR_ID, MBR_TYP_CD, min(DPTH)"
+            + " from (select connect_by_root ROLE_ID ANCSTR_ROLE_ID, MBR_ID, MBR_TYP_CD, level DPTH from KRIM_ROLE_MBR_T"
+            + " start with 1 = 1%s connect by nocycle prior MBR_ID = ROLE_ID and prior MBR_TYP_CD = 'R')"
+            + " group by ANCSTR_ROLE_ID, MBR_ID, MBR_TYP_CD",
+            TABLE_NAME, COLUMNS, getScope(statement, "ROLE_ID")));
+    }
+}
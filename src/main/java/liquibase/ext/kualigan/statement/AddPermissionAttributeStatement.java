@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -123,7 +125,7 @@ public class AddPermissionAttributeStatement extends AbstractSqlStatement {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -141,7 +143,7 @@ public class AddPermissionAttributeStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -159,7 +161,7 @@ public class AddPermissionAttributeStatement extends AbstractSqlStatement {
      * @param permission value to set
      */
     public void setPermission(final String permission) {
-        this.permission = permission;
+        this.permission = StringPool.getInstance().intern(permission);
     }
 
     /**
@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -82,7 +84,7 @@ public class AddResponsibilityAttributeStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -100,7 +102,7 @@ public class AddResponsibilityAttributeStatement extends AbstractSqlStatement {
      * @param responsibility value to set
      */
     public void setResponsibility(final String responsibility) {
-        this.responsibility = responsibility;
+        this.responsibility = StringPool.getInstance().intern(responsibility);
     }
 
     /**
@@ -118,7 +120,7 @@ public class AddResponsibilityAttributeStatement extends AbstractSqlStatement {
      * @param attributeDef value to set
      */
     public void setAttributeDef(final String attributeDef) {
-        this.attributeDef = attributeDef;
+        this.attributeDef = StringPool.getInstance().intern(attributeDef);
     }
 
     /**
@@ -172,7 +174,7 @@ public class AddResponsibilityAttributeStatement extends AbstractSqlStatement {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -75,7 +77,7 @@ public class AddRoleMemberAttributeStatement extends AbstractSqlStatement {
     }
 
     public void setType(String type) {
-	this.type = type;
+	this.type = StringPool.getInstance().intern(type);
     }
 
     public String getAttributeDef() {
@@ -83,7 +85,7 @@ public class AddRoleMemberAttributeStatement extends AbstractSqlStatement {
     }
 
     public void setAttributeDef(String attributeDef) {
-	this.attributeDef = attributeDef;
+	this.attributeDef = StringPool.getInstance().intern(attributeDef);
     }
 
     public String getRole() {
@@ -91,7 +93,7 @@ public class AddRoleMemberAttributeStatement extends AbstractSqlStatement {
     }
 
     public void setRole(String role) {
-	this.role = role;
+	this.role = StringPool.getInstance().intern(role);
     }
 
     public String getRoleNamespace() {
@@ -99,7 +101,7 @@ public class AddRoleMemberAttributeStatement extends AbstractSqlStatement {
     }
 
     public void setRoleNamespace(String roleNamespace) {
-	this.roleNamespace = roleNamespace;
+	this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
     }
 
     public String getMember() {
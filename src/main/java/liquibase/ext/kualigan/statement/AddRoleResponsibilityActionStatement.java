@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -89,7 +91,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param roleNamespace value to set
      */
     public void setRoleNamespace(final String roleNamespace) {
-        this.roleNamespace = roleNamespace;
+        this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
     }
 
     /**
@@ -107,7 +109,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param responsibility value to set
      */
     public void setResponsibility(final String responsibility) {
-        this.responsibility = responsibility;
+        this.responsibility = StringPool.getInstance().intern(responsibility);
     }
 
     /**
@@ -143,7 +145,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param actionPolicyCode value to set
      */
     public void setActionPolicyCode(final String actionPolicyCode) {
-        this.actionPolicyCode = actionPolicyCode;
+        this.actionPolicyCode = StringPool.getInstance().intern(actionPolicyCode);
     }
 
     /**
@@ -179,7 +181,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -197,7 +199,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
     /**
@@ -215,7 +217,7 @@ public class AddRoleResponsibilityActionStatement extends AbstractSqlStatement {
      * @param actionTypeCode value to set
      */
     public void setActionTypeCode(final String actionTypeCode) {
-        this.actionTypeCode = actionTypeCode;
+        this.actionTypeCode = StringPool.getInstance().intern(actionTypeCode);
     }
 
     public String getMember() {
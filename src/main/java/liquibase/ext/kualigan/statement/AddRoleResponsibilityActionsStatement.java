@@ -0,0 +1,170 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.statement;
+
+import liquibase.statement.AbstractSqlStatement;
+
+/**
+ * Attaches one action policy to every member of a role, or to the members matching a filter, for one of the role's
+ * responsibilities
+ *
+ * @author Leo Przybylski
+ */
+public class AddRoleResponsibilityActionsStatement extends AbstractSqlStatement {
+
+    protected String roleNamespace;
+    protected String role;
+    protected String responsibilityNamespace;
+    protected String responsibility;
+    protected String actionTypeCode;
+    protected String actionPolicyCode;
+    protected String priority;
+    protected String force;
+    protected String memberType;
+    protected String attributeDef;
+    protected String attributeValue;
+    protected boolean replace;
+    protected boolean remove;
+
+    public AddRoleResponsibilityActionsStatement() {
+    }
+
+    public String getRoleNamespace() {
+        return roleNamespace;
+    }
+
+    public void setRoleNamespace(final String roleNamespace) {
+        this.roleNamespace = roleNamespace;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(final String role) {
+        this.role = role;
+    }
+
+    public String getResponsibilityNamespace() {
+        return responsibilityNamespace;
+    }
+
+    public void setResponsibilityNamespace(final String responsibilityNamespace) {
+        this.responsibilityNamespace = responsibilityNamespace;
+    }
+
+    public String getResponsibility() {
+        return responsibility;
+    }
+
+    public void setResponsibility(final String responsibility) {
+        this.responsibility = responsibility;
+    }
+
+    public String getActionTypeCode() {
+        return actionTypeCode;
+    }
+
+    public void setActionTypeCode(final String actionTypeCode) {
+        this.actionTypeCode = actionTypeCode;
+    }
+
+    public String getActionPolicyCode() {
+        return actionPolicyCode;
+    }
+
+    public void setActionPolicyCode(final String actionPolicyCode) {
+        this.actionPolicyCode = actionPolicyCode;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(final String priority) {
+        this.priority = priority;
+    }
+
+    public String getForce() {
+        return force;
+    }
+
+    public void setForce(final String force) {
+        this.force = force;
+    }
+
+    /**
+     * @return the {@code MBR_TYP_CD} members are limited to, or <code>null</code> for every type
+     */
+    public String getMemberType() {
+        return memberType;
+    }
+
+    public void setMemberType(final String memberType) {
+        this.memberType = memberType;
+    }
+
+    /**
+     * @return the qualifier members are limited to, or <code>null</code> for every member
+     */
+    public String getAttributeDef() {
+        return attributeDef;
+    }
+
+    public void setAttributeDef(final String attributeDef) {
+        this.attributeDef = attributeDef;
+    }
+
+    public String getAttributeValue() {
+        return attributeValue;
+    }
+
+    public void setAttributeValue(final String attributeValue) {
+        this.attributeValue = attributeValue;
+    }
+
+    /**
+     * @return whether actions the selected members already have for the responsibility are replaced
+     */
+    public boolean isReplace() {
+        return replace;
+    }
+
+    public void setReplace(final boolean replace) {
+        this.replace = replace;
+    }
+
+    /**
+     * @return whether the actions are removed instead of added
+     */
+    public boolean isRemove() {
+        return remove;
+    }
+
+    public void setRemove(final boolean remove) {
+        this.remove = remove;
+    }
+}
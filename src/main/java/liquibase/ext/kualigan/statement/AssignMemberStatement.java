@@ -31,7 +31,7 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
-import java.util.List;
+import liquibase.ext.kualigan.parser.StringPool;
 
 /**
  * Statement basically exists solely to map and kick-off the sql generator chain
@@ -46,8 +46,8 @@ public class AssignMemberStatement extends AbstractSqlStatement {
     protected String memberNamespace;
     protected String role;
     protected String active = "Y";
-    protected List<SqlStatement> attributes;
-    protected List<SqlStatement> actions;
+    protected Iterable<SqlStatement> attributes;
+    protected Iterable<SqlStatement> actions;
     
     
     public AssignMemberStatement() {
@@ -59,8 +59,8 @@ public class AssignMemberStatement extends AbstractSqlStatement {
 				 final String memberNamespace,
 				 final String role,	
 				 final String active,
-				 final List<SqlStatement> attributes,
-				 final List<SqlStatement> actions) {
+				 final Iterable<SqlStatement> attributes,
+				 final Iterable<SqlStatement> actions) {
 	setNamespace(namespace);
 	setType(type);
 	setMember(member);
@@ -104,7 +104,7 @@ public class AssignMemberStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -122,7 +122,7 @@ public class AssignMemberStatement extends AbstractSqlStatement {
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
 
@@ -159,7 +159,7 @@ public class AssignMemberStatement extends AbstractSqlStatement {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     public String getMemberNamespace() {
@@ -167,21 +167,21 @@ public class AssignMemberStatement extends AbstractSqlStatement {
     }
 
     public void setMemberNamespace(String memberNamespace) {
-	this.memberNamespace = memberNamespace;
+	this.memberNamespace = StringPool.getInstance().intern(memberNamespace);
     }
 
-    public List<SqlStatement> getAttributes() {
+    public Iterable<SqlStatement> getAttributes() {
 	return attributes;
     }
 
-    public void setAttributes(final List<SqlStatement> attributes) {
+    public void setAttributes(final Iterable<SqlStatement> attributes) {
 	this.attributes = attributes;
     }
-    public List<SqlStatement> getActions() {
+    public Iterable<SqlStatement> getActions() {
 	return actions;
     }
 
-    public void setActions(final List<SqlStatement> actions) {
+    public void setActions(final Iterable<SqlStatement> actions) {
 	this.actions = actions;
     }
 }
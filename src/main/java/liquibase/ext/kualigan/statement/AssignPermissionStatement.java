@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -76,7 +78,7 @@ public class AssignPermissionStatement extends AbstractSqlStatement {
      * @param permission value to set
      */
     public void setPermission(final String permission) {
-        this.permission = permission;
+        this.permission = StringPool.getInstance().intern(permission);
     }
 
     /**
@@ -94,7 +96,7 @@ public class AssignPermissionStatement extends AbstractSqlStatement {
      * @param permissionNamespace value to set
      */
     public void setPermissionNamespace(final String permissionNamespace) {
-        this.permissionNamespace = permissionNamespace;
+        this.permissionNamespace = StringPool.getInstance().intern(permissionNamespace);
     }
 
     /**
@@ -112,7 +114,7 @@ public class AssignPermissionStatement extends AbstractSqlStatement {
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
     /**
@@ -138,6 +140,6 @@ public class AssignPermissionStatement extends AbstractSqlStatement {
     }
 
     public void setRoleNamespace(String roleNamespace) {
-	this.roleNamespace = roleNamespace;
+	this.roleNamespace = StringPool.getInstance().intern(roleNamespace);
     }
 }
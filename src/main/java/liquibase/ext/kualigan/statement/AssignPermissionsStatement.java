@@ -0,0 +1,113 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.statement;
+
+import liquibase.statement.AbstractSqlStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grants every listed permission, or every permission matching a namespace and template, to every listed role
+ *
+ * @author Leo Przybylski
+ */
+public class AssignPermissionsStatement extends AbstractSqlStatement {
+
+    /**
+     * A role or permission by namespace and name
+     */
+    public static class Name {
+        private final String namespace;
+        private final String name;
+
+        public Name(final String namespace, final String name) {
+            this.namespace = namespace;
+            this.name = name;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    protected final List<Name> roles = new ArrayList<Name>();
+    protected final List<Name> permissions = new ArrayList<Name>();
+    protected String permissionNamespace;
+    protected String permissionTemplate;
+    protected String active = "Y";
+
+    public AssignPermissionsStatement() {
+    }
+
+    public List<Name> getRoles() {
+        return roles;
+    }
+
+    public void addRole(final String namespace, final String name) {
+        roles.add(new Name(namespace, name));
+    }
+
+    /**
+     * @return the permissions granted; when empty, the permissions matching {@link #getPermissionNamespace()} and
+     * {@link #getPermissionTemplate()} are granted instead
+     */
+    public List<Name> getPermissions() {
+        return permissions;
+    }
+
+    public void addPermission(final String namespace, final String name) {
+        permissions.add(new Name(namespace, name));
+    }
+
+    public String getPermissionNamespace() {
+        return permissionNamespace;
+    }
+
+    public void setPermissionNamespace(final String permissionNamespace) {
+        this.permissionNamespace = permissionNamespace;
+    }
+
+    public String getPermissionTemplate() {
+        return permissionTemplate;
+    }
+
+    public void setPermissionTemplate(final String permissionTemplate) {
+        this.permissionTemplate = permissionTemplate;
+    }
+
+    public String getActive() {
+        return active;
+    }
+
+    public void setActive(final String active) {
+        this.active = active;
+    }
+}
@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -74,7 +76,7 @@ public class AssignResponsibilityStatement extends AbstractSqlStatement {
      * @param responsibility value to set
      */
     public void setResponsibility(final String responsibility) {
-        this.responsibility = responsibility;
+        this.responsibility = StringPool.getInstance().intern(responsibility);
     }
 
     /**
@@ -92,7 +94,7 @@ public class AssignResponsibilityStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -110,7 +112,7 @@ public class AssignResponsibilityStatement extends AbstractSqlStatement {
      * @param role value to set
      */
     public void setRole(final String role) {
-        this.role = role;
+        this.role = StringPool.getInstance().intern(role);
     }
 
     /**
@@ -0,0 +1,104 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.statement;
+
+import liquibase.statement.AbstractSqlStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Many rows for one table, inserted with as few statements as the database allows. Values are {@link String}s,
+ * {@link Number}s, {@link liquibase.statement.DatabaseFunction}s or <code>null</code>.
+ *
+ * @author Leo Przybylski
+ */
+public class BatchInsertStatement extends AbstractSqlStatement {
+    protected String schemaName;
+    protected String tableName;
+    protected List<String> columns;
+    protected List<Object[]> rows = new ArrayList<Object[]>();
+
+    public BatchInsertStatement() {
+    }
+
+    public BatchInsertStatement(final String schemaName, final String tableName, final String... columns) {
+        setSchemaName(schemaName);
+        setTableName(tableName);
+        setColumns(Arrays.asList(columns));
+    }
+
+    /**
+     * Add a row
+     *
+     * @param values one value per column, in column order
+     * @return this statement
+     */
+    public BatchInsertStatement addRow(final Object... values) {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException(String.format("Expected %d values for %s, got %d", columns.size(), columns, values.length));
+        }
+        rows.add(values);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public void setSchemaName(final String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(final String tableName) {
+        this.tableName = tableName;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(final List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public void setRows(final List<Object[]> rows) {
+        this.rows = rows;
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.statement;
+
+import liquibase.statement.AbstractSqlStatement;
+
+import liquibase.ext.kualigan.parser.StringPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Many members of one role, with their qualifiers, inserted with as few round trips as the database allows. Members
+ * and qualifiers are given by name and resolved by the generated SQL.
+ *
+ * @author Leo Przybylski
+ */
+public class BulkAssignMembersStatement extends AbstractSqlStatement {
+
+    /**
+     * A member of the role
+     */
+    public static class Member {
+        private final String type;
+        private final String name;
+        private final String namespace;
+        private final List<Attribute> attributes = new ArrayList<Attribute>();
+
+        protected Member(final String type, final String name, final String namespace) {
+            this.type = type;
+            this.name = name;
+            this.namespace = namespace;
+        }
+
+        /**
+         * @return the {@code MBR_TYP_CD}; <code>P</code> for principals, <code>R</code> for roles
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the principal or role name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the namespace of a role member
+         */
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public List<Attribute> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Add a qualifier
+         *
+         * @param type name of the KIM type
+         * @param attributeDef name of the attribute definition
+         * @param value the qualifier value
+         * @return this member
+         */
+        public Member addAttribute(final String type, final String attributeDef, final String value) {
+            attributes.add(new Attribute(type, attributeDef, value));
+            return this;
+        }
+    }
+
+    /**
+     * A qualifier of a member
+     */
+    public static class Attribute {
+        private final String type;
+        private final String attributeDef;
+        private final String value;
+
+        protected Attribute(final String type, final String attributeDef, final String value) {
+            this.type = StringPool.getInstance().intern(type);
+            this.attributeDef = StringPool.getInstance().intern(attributeDef);
+            this.value = value;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getAttributeDef() {
+            return attributeDef;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    protected String namespace;
+    protected String role;
+    protected final List<Member> members = new ArrayList<Member>();
+
+    public BulkAssignMembersStatement() {
+    }
+
+    public BulkAssignMembersStatement(final String namespace, final String role) {
+        setNamespace(namespace);
+        setRole(role);
+    }
+
+    /**
+     * Add a member
+     *
+     * @param type the {@code MBR_TYP_CD}
+     * @param name the principal or role name
+     * @param namespace namespace of a role member; <code>null</code> for the namespace of the role
+     * @return the member, to add qualifiers to
+     */
+    public Member addMember(final String type, final String name, final String namespace) {
+        final Member retval = new Member(StringPool.getInstance().intern(type),
+                                         name,
+                                         StringPool.getInstance().intern(namespace != null ? namespace : getNamespace()));
+        members.add(retval);
+        return retval;
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(final String namespace) {
+        this.namespace = StringPool.getInstance().intern(namespace);
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(final String role) {
+        this.role = StringPool.getInstance().intern(role);
+    }
+}
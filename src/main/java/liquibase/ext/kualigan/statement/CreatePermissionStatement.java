@@ -31,7 +31,7 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
-import java.util.List;
+import liquibase.ext.kualigan.parser.StringPool;
 
 /**
  * Statement basically exists solely to map and kick-off the sql generator chain
@@ -44,7 +44,7 @@ public class CreatePermissionStatement extends AbstractSqlStatement {
     protected String name;
     protected String description;
     protected String active = "Y";
-    protected List<SqlStatement> attributes;
+    protected Iterable<SqlStatement> attributes;
     protected String uniqueAttributeDefinitions;
     
     public CreatePermissionStatement() {
@@ -55,7 +55,7 @@ public class CreatePermissionStatement extends AbstractSqlStatement {
 				     final String name, 
 				     final String description,
 				     final String active,
-				     final List<SqlStatement> attributes) {
+				     final Iterable<SqlStatement> attributes) {
 	setTemplate(template);
 	setNamespace(namespace);
 	setName(name);
@@ -79,7 +79,7 @@ public class CreatePermissionStatement extends AbstractSqlStatement {
      * @param template value to set
      */
     public void setTemplate(final String template) {
-        this.template = template;
+        this.template = StringPool.getInstance().intern(template);
     }
 
     /**
@@ -97,7 +97,7 @@ public class CreatePermissionStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -152,11 +152,11 @@ public class CreatePermissionStatement extends AbstractSqlStatement {
 	this.uniqueAttributeDefinitions = uniqueAttributeDefinitions;
     }
 
-    public void setAttributes(final List<SqlStatement> attributes) {
+    public void setAttributes(final Iterable<SqlStatement> attributes) {
 	this.attributes = attributes;
     }
 
-    public List<SqlStatement> getAttributes() {
+    public Iterable<SqlStatement> getAttributes() {
 	return this.attributes;
     }
 }
@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -79,7 +81,7 @@ public class CreateResponsibilityStatement extends AbstractSqlStatement {
      * @param template value to set
      */
     public void setTemplate(final String template) {
-        this.template = template;
+        this.template = StringPool.getInstance().intern(template);
     }
 
     /**
@@ -97,7 +99,7 @@ public class CreateResponsibilityStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
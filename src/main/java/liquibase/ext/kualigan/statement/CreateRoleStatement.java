@@ -31,8 +31,9 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Statement basically exists solely to map and kick-off the sql generator chain
@@ -48,8 +49,8 @@ public class CreateRoleStatement extends AbstractSqlStatement {
     protected String lastUpdated;
     protected String active = "Y";
 
-    protected List<SqlStatement> members;
-    protected List<SqlStatement> types; // There's only one really
+    protected Iterable<SqlStatement> members;
+    protected Iterable<SqlStatement> types; // There's only one really
     
     public CreateRoleStatement() {
         types = new ArrayList<SqlStatement>();
@@ -61,8 +62,10 @@ public class CreateRoleStatement extends AbstractSqlStatement {
                                final String description,
                                final String lastUpdated,
                                final String active,
-                               final List<SqlStatement> members,
-                               final List<SqlStatement> types) {
+                               final String type,
+                               final String typeNamespace,
+                               final Iterable<SqlStatement> members,
+                               final Iterable<SqlStatement> types) {
         setNamespace(namespace);
         setName(name);
         setDescription(description);
@@ -89,7 +92,7 @@ public class CreateRoleStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -125,7 +128,7 @@ public class CreateRoleStatement extends AbstractSqlStatement {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -187,22 +190,22 @@ public class CreateRoleStatement extends AbstractSqlStatement {
     }
 
     public void setTypeNamespace(String typeNamespace) {
-        this.typeNamespace = typeNamespace;
+        this.typeNamespace = StringPool.getInstance().intern(typeNamespace);
     }
 
-    public List<SqlStatement> getTypes() {
+    public Iterable<SqlStatement> getTypes() {
         return types;
     }
 
-    public void setTypes(final List<SqlStatement> types) {
+    public void setTypes(final Iterable<SqlStatement> types) {
         this.types = types;
     }   
 
-    public List<SqlStatement> getMembers() {
+    public Iterable<SqlStatement> getMembers() {
         return members;
     }
 
-    public void setMembers(final List<SqlStatement> members) {
+    public void setMembers(final Iterable<SqlStatement> members) {
         this.members = members;
     }   
 }
@@ -31,6 +31,8 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
+import liquibase.ext.kualigan.parser.StringPool;
+
 import java.util.List;
 
 /**
@@ -88,7 +90,7 @@ public class CreateSystemParameterStatement extends AbstractSqlStatement {
      * @param application value to set
      */
     public void setApplication(final String application) {
-        this.application = application;
+        this.application = StringPool.getInstance().intern(application);
     }
 
     /**
@@ -106,7 +108,7 @@ public class CreateSystemParameterStatement extends AbstractSqlStatement {
      * @param component value to set
      */
     public void setComponent(final String component) {
-        this.component = component;
+        this.component = StringPool.getInstance().intern(component);
     }
 
     /**
@@ -124,7 +126,7 @@ public class CreateSystemParameterStatement extends AbstractSqlStatement {
      * @param type value to set
      */
     public void setType(final String type) {
-        this.type = type;
+        this.type = StringPool.getInstance().intern(type);
     }
 
     /**
@@ -178,7 +180,7 @@ public class CreateSystemParameterStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -31,7 +31,7 @@ import liquibase.statement.SqlStatement;
 import liquibase.sql.Sql;
 import liquibase.sql.UnparsedSql;
 
-import java.util.List;
+import liquibase.ext.kualigan.parser.StringPool;
 
 /**
  * Statement basically exists solely to map and kick-off the sql generator chain
@@ -44,7 +44,7 @@ public class CreateTypeStatement extends AbstractSqlStatement {
     protected String name;
     protected String service;
     protected String active = "Y";
-    protected List<SqlStatement> attributes;
+    protected Iterable<SqlStatement> attributes;
     protected String uniqueAttributeDefinitions;
     
     public CreateTypeStatement() {
@@ -54,7 +54,7 @@ public class CreateTypeStatement extends AbstractSqlStatement {
                                final String name, 
                                final String service,
                                final String active,
-                               final List<SqlStatement> attributes) {
+                               final Iterable<SqlStatement> attributes) {
         setNamespace(namespace);
         setName(name);
         setService(service);
@@ -78,7 +78,7 @@ public class CreateTypeStatement extends AbstractSqlStatement {
      * @param namespace value to set
      */
     public void setNamespace(final String namespace) {
-        this.namespace = namespace;
+        this.namespace = StringPool.getInstance().intern(namespace);
     }
 
     /**
@@ -114,7 +114,7 @@ public class CreateTypeStatement extends AbstractSqlStatement {
      * @param service value to set
      */
     public void setService(final String service) {
-        this.service = service;
+        this.service = StringPool.getInstance().intern(service);
     }
 
     /**
@@ -132,7 +132,7 @@ public class CreateTypeStatement extends AbstractSqlStatement {
      * @param application value to set
      */
     public void setApplication(final String application) {
-        this.application = application;
+        this.application = StringPool.getInstance().intern(application);
     }
 
     /**
@@ -162,11 +162,11 @@ public class CreateTypeStatement extends AbstractSqlStatement {
         this.uniqueAttributeDefinitions = uniqueAttributeDefinitions;
     }
 
-    public void setAttributes(final List<SqlStatement> attributes) {
+    public void setAttributes(final Iterable<SqlStatement> attributes) {
         this.attributes = attributes;
     }
 
-    public List<SqlStatement> getAttributes() {
+    public Iterable<SqlStatement> getAttributes() {
         return this.attributes;
     }
 }
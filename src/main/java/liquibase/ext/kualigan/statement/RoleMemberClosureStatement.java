@@ -0,0 +1,105 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.statement;
+
+import liquibase.statement.AbstractSqlStatement;
+
+/**
+ * Brings {@code KRIM_ROLE_MBR_CLOSURE_T} up to date in one of three ways: a member was added to a role, the members
+ * of some roles changed in any other way, or the whole table is rebuilt.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberClosureStatement extends AbstractSqlStatement {
+    protected String roleId;
+    protected String memberId;
+    protected String memberType;
+    protected String roleQuery;
+
+    /**
+     * Rebuild the closure of every role
+     */
+    public RoleMemberClosureStatement() {
+    }
+
+    /**
+     * Recompute the closure of some roles and of every role they are nested in
+     *
+     * @param roleQuery a query selecting the {@code ROLE_ID}s of the roles whose members changed
+     */
+    public RoleMemberClosureStatement(final String roleQuery) {
+        setRoleQuery(roleQuery);
+    }
+
+    /**
+     * Add a new member to the closure of its role and of every role that role is nested in
+     *
+     * @param roleId SQL expression for the {@code ROLE_ID}
+     * @param memberId SQL expression for the {@code MBR_ID}
+     * @param memberType the {@code MBR_TYP_CD}
+     */
+    public RoleMemberClosureStatement(final String roleId, final String memberId, final String memberType) {
+        setRoleId(roleId);
+        setMemberId(memberId);
+        setMemberType(memberType);
+    }
+
+    public boolean isRebuild() {
+        return roleId == null && roleQuery == null;
+    }
+
+    public String getRoleId() {
+        return roleId;
+    }
+
+    public void setRoleId(final String roleId) {
+        this.roleId = roleId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(final String memberId) {
+        this.memberId = memberId;
+    }
+
+    public String getMemberType() {
+        return memberType;
+    }
+
+    public void setMemberType(final String memberType) {
+        this.memberType = memberType;
+    }
+
+    public String getRoleQuery() {
+        return roleQuery;
+    }
+
+    public void setRoleQuery(final String roleQuery) {
+        this.roleQuery = roleQuery;
+    }
+}
@@ -0,0 +1,401 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sync;
+
+import liquibase.database.Database;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import liquibase.statement.core.UpdateStatement;
+
+import liquibase.ext.kualigan.lookup.BoundQuery;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.lookup.SequenceAllocator;
+import liquibase.ext.kualigan.objectid.ObjectIdFactory;
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.statement.BatchInsertStatement;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Difference between a {@link KimStateSpec} and the {@link KimStateSnapshot} of its namespace. Current members and
+ * permissions of each role are hashed by identity and probed with the desired ones, so computing the delta is linear in
+ * the number of rows. Only what differs becomes a statement; inserts are batched into multi-row statements and deletes
+ * into chunked <code>IN</code> lists.
+ *
+ * @author Leo Przybylski
+ */
+public class KimStateDiff {
+    protected static final int CHUNK_SIZE = 500;
+
+    private final KimStateSpec spec;
+    private final KimStateSnapshot snapshot;
+    private final boolean prune;
+
+    private final List<KimStateSpec.Role> insertedRoles = new ArrayList<KimStateSpec.Role>();
+    private final Map<String, String> roleTypeIds = new HashMap<String, String>();
+    private final List<KimStateSpec.Role> updatedRoles = new ArrayList<KimStateSpec.Role>();
+    private final List<String> deactivatedRoleIds = new ArrayList<String>();
+    private final List<PendingMember> insertedMembers = new ArrayList<PendingMember>();
+    private final List<String> deletedMemberIds = new ArrayList<String>();
+    private final List<PendingPermission> insertedPermissions = new ArrayList<PendingPermission>();
+    private final List<String> deletedPermissionIds = new ArrayList<String>();
+    private final List<String> activatedPermissionIds = new ArrayList<String>();
+
+    public KimStateDiff(final KimStateSpec spec, final KimStateSnapshot snapshot) {
+        this(spec, snapshot, true);
+    }
+
+    /**
+     * @param prune whether rows of the namespace missing from the spec are removed; otherwise the spec is only added
+     */
+    public KimStateDiff(final KimStateSpec spec, final KimStateSnapshot snapshot, final boolean prune) {
+        this.spec = spec;
+        this.snapshot = snapshot;
+        this.prune = prune;
+        compute();
+    }
+
+    protected void compute() {
+        for (final KimStateSpec.Role role : spec.getRoles().values()) {
+            final KimStateSnapshot.RoleRow current = snapshot.getRoles().get(role.getName());
+            final String typeId = getTypeId(role, current);
+            roleTypeIds.put(role.getName(), typeId);
+
+            if (current == null) {
+                insertedRoles.add(role);
+            }
+            // a role without a type only refers to the existing row
+            else if (role.getType() != null
+                     && (!equal(current.getTypeId(), typeId)
+                         || (role.getDescription() != null && !equal(current.getDescription(), role.getDescription()))
+                         || !equal(current.getActive(), role.getActive()))) {
+                updatedRoles.add(role);
+            }
+
+            final Map<String, KimStateSnapshot.MemberRow> currentMembers = current != null
+                ? new HashMap<String, KimStateSnapshot.MemberRow>(snapshot.getMembers(current.getId()))
+                : new HashMap<String, KimStateSnapshot.MemberRow>();
+            final Set<String> seen = new HashSet<String>();
+            for (final KimStateSpec.Member member : role.getMembers()) {
+                final String memberId = getMemberId(member);
+                final Map<String, String> attributes = getAttributes(role, member);
+                if (memberId != null) {
+                    final String key = KimStateSnapshot.getMemberKey(member.getTypeCode(), memberId, attributes);
+                    if (!seen.add(key) || currentMembers.remove(key) != null) {
+                        continue;
+                    }
+                }
+                insertedMembers.add(new PendingMember(role.getName(), member, memberId, attributes));
+            }
+            if (prune) {
+                for (final KimStateSnapshot.MemberRow stale : currentMembers.values()) {
+                    deletedMemberIds.add(stale.getId());
+                }
+            }
+
+            final Map<String, KimStateSnapshot.PermissionRow> currentPermissions = new HashMap<String, KimStateSnapshot.PermissionRow>();
+            if (current != null) {
+                for (final KimStateSnapshot.PermissionRow permission : snapshot.getPermissions(current.getId())) {
+                    if (currentPermissions.put(permission.getPermissionId(), permission) != null && prune) {
+                        deletedPermissionIds.add(permission.getId());
+                    }
+                }
+            }
+            final Set<String> granted = new HashSet<String>();
+            for (final NamespacedName permission : role.getPermissions()) {
+                final String permissionId = snapshot.getPermissionId(permission);
+                if (permissionId == null) {
+                    throw new UnexpectedLiquibaseException(String.format("Permission %s:%s granted to %s:%s does not exist",
+                                                                         permission.getNamespace(), permission.getName(),
+                                                                         spec.getNamespace(), role.getName()));
+                }
+                if (!granted.add(permissionId)) {
+                    continue;
+                }
+                final KimStateSnapshot.PermissionRow existing = currentPermissions.remove(permissionId);
+                if (existing == null) {
+                    insertedPermissions.add(new PendingPermission(role.getName(), permissionId));
+                }
+                else if (!"Y".equals(existing.getActive())) {
+                    activatedPermissionIds.add(existing.getId());
+                }
+            }
+            if (prune) {
+                for (final KimStateSnapshot.PermissionRow stale : currentPermissions.values()) {
+                    deletedPermissionIds.add(stale.getId());
+                }
+            }
+        }
+
+        if (!prune) {
+            return;
+        }
+        for (final KimStateSnapshot.RoleRow current : snapshot.getRoles().values()) {
+            if (!spec.getRoles().containsKey(current.getName()) && "Y".equals(current.getActive())) {
+                deactivatedRoleIds.add(current.getId());
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> when the database already matches the spec
+     */
+    public boolean isEmpty() {
+        return insertedRoles.isEmpty() && updatedRoles.isEmpty() && deactivatedRoleIds.isEmpty()
+            && insertedMembers.isEmpty() && deletedMemberIds.isEmpty()
+            && insertedPermissions.isEmpty() && deletedPermissionIds.isEmpty() && activatedPermissionIds.isEmpty();
+    }
+
+    /**
+     * Statements that bring the namespace to the desired state. Ids for new rows are allocated in blocks.
+     */
+    public List<SqlStatement> toStatements(final Database database) throws DatabaseException {
+        final List<SqlStatement> retval = new ArrayList<SqlStatement>();
+        if (isEmpty()) {
+            return retval;
+        }
+        final SequenceAllocator allocator = new SequenceAllocator(database);
+        final ObjectIdFactory objectIds = ObjectIdFactory.getInstance();
+        final String schemaName = database.getDefaultSchemaName();
+
+        final Map<String, String> roleIds = new HashMap<String, String>();
+        for (final KimStateSnapshot.RoleRow current : snapshot.getRoles().values()) {
+            roleIds.put(current.getName(), current.getId());
+        }
+
+        final Iterator<String> newRoleIds = allocator.allocate("krim_role_id_s", insertedRoles.size()).iterator();
+        final BatchInsertStatement roles = new BatchInsertStatement(schemaName, "KRIM_ROLE_T", "role_id", "obj_id", "ver_nbr", "role_nm",
+                                                                    "nmspc_cd", "desc_txt", "kim_typ_id", "actv_ind");
+        for (final KimStateSpec.Role role : insertedRoles) {
+            final String roleId = newRoleIds.next();
+            roleIds.put(role.getName(), roleId);
+            roles.addRow(roleId, objectIds.nextObjectId(database), 1, role.getName(), spec.getNamespace(), role.getDescription(),
+                         roleTypeIds.get(role.getName()), role.getActive());
+        }
+        addIfNotEmpty(retval, roles);
+
+        for (final KimStateSpec.Role role : updatedRoles) {
+            final UpdateStatement update = new UpdateStatement(null, schemaName, "KRIM_ROLE_T");
+            // a role without a description in the spec keeps the one it has
+            if (role.getDescription() != null) {
+                update.addNewColumnValue("desc_txt", role.getDescription());
+            }
+            update.addNewColumnValue("kim_typ_id", roleTypeIds.get(role.getName()));
+            update.addNewColumnValue("actv_ind", role.getActive());
+            update.setWhereClause("role_id = " + BoundQuery.toLiteral(roleIds.get(role.getName())));
+            retval.add(update);
+        }
+
+        inChunks(retval, "delete from KRIM_ROLE_RSP_ACTN_T where ROLE_MBR_ID in (%s)", deletedMemberIds);
+        inChunks(retval, "delete from KRIM_ROLE_MBR_ATTR_DATA_T where ROLE_MBR_ID in (%s)", deletedMemberIds);
+        inChunks(retval, "delete from KRIM_ROLE_MBR_T where ROLE_MBR_ID in (%s)", deletedMemberIds);
+        inChunks(retval, "delete from KRIM_ROLE_PERM_T where ROLE_PERM_ID in (%s)", deletedPermissionIds);
+        inChunks(retval, "update KRIM_ROLE_PERM_T set ACTV_IND = 'Y' where ROLE_PERM_ID in (%s)", activatedPermissionIds);
+
+        int attributeCount = 0;
+        for (final PendingMember member : insertedMembers) {
+            attributeCount += member.getAttributes().size();
+        }
+        final Iterator<String> memberIds = allocator.allocate("KRIM_ROLE_MBR_ID_S", insertedMembers.size()).iterator();
+        final Iterator<String> attributeIds = allocator.allocate("krim_attr_data_id_s", attributeCount).iterator();
+        final BatchInsertStatement members = new BatchInsertStatement(schemaName, "KRIM_ROLE_MBR_T", "role_mbr_id", "ver_nbr", "obj_id",
+                                                                      "role_id", "mbr_id", "mbr_typ_cd");
+        final BatchInsertStatement attributes = new BatchInsertStatement(schemaName, "KRIM_ROLE_MBR_ATTR_DATA_T", "attr_data_id", "obj_id",
+                                                                         "ver_nbr", "role_mbr_id", "kim_typ_id", "kim_attr_defn_id", "attr_val");
+        for (final PendingMember member : insertedMembers) {
+            final String memberRowId = memberIds.next();
+            String memberId = member.getMemberId();
+            if (memberId == null) {
+                memberId = roleIds.get(member.getMember().getName());
+            }
+            members.addRow(memberRowId, 1, objectIds.nextObjectId(database), roleIds.get(member.getRoleName()), memberId,
+                           member.getMember().getTypeCode());
+            for (final Map.Entry<String, String> attribute : member.getAttributes().entrySet()) {
+                attributes.addRow(attributeIds.next(), objectIds.nextObjectId(database), 1, memberRowId, roleTypeIds.get(member.getRoleName()),
+                                  attribute.getKey(), attribute.getValue());
+            }
+        }
+        addIfNotEmpty(retval, members);
+        addIfNotEmpty(retval, attributes);
+
+        final Iterator<String> rolePermissionIds = allocator.allocate("krim_role_perm_id_s", insertedPermissions.size()).iterator();
+        final BatchInsertStatement permissions = new BatchInsertStatement(schemaName, "KRIM_ROLE_PERM_T", "role_perm_id", "obj_id", "ver_nbr",
+                                                                          "role_id", "perm_id", "actv_ind");
+        for (final PendingPermission permission : insertedPermissions) {
+            permissions.addRow(rolePermissionIds.next(), objectIds.nextObjectId(database), 1, roleIds.get(permission.getRoleName()),
+                               permission.getPermissionId(), "Y");
+        }
+        addIfNotEmpty(retval, permissions);
+
+        if ((!insertedMembers.isEmpty() || !deletedMemberIds.isEmpty()) && RoleMemberClosure.isMaintained(database)) {
+            retval.add(new RoleMemberClosureStatement("select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = " + BoundQuery.toLiteral(spec.getNamespace())));
+            retval.add(RoleMemberClosure.getDepthCheck());
+        }
+
+        inChunks(retval, "update KRIM_ROLE_T set ACTV_IND = 'N' where ROLE_ID in (%s)", deactivatedRoleIds);
+        return retval;
+    }
+
+    /**
+     * @return a one line account of the changes for the log
+     */
+    public String getSummary() {
+        return String.format("roles +%d ~%d -%d, members +%d -%d, permissions +%d ~%d -%d",
+                             insertedRoles.size(), updatedRoles.size(), deactivatedRoleIds.size(),
+                             insertedMembers.size(), deletedMemberIds.size(),
+                             insertedPermissions.size(), activatedPermissionIds.size(), deletedPermissionIds.size());
+    }
+
+    protected String getTypeId(final KimStateSpec.Role role, final KimStateSnapshot.RoleRow current) {
+        if (role.getType() == null) {
+            if (current == null) {
+                throw new UnexpectedLiquibaseException(String.format("New role %s:%s needs a type", spec.getNamespace(), role.getName()));
+            }
+            return current.getTypeId();
+        }
+        final String retval = snapshot.getTypeId(role.getTypeNamespace(), role.getType());
+        if (retval == null) {
+            throw new UnexpectedLiquibaseException(String.format("Type %s of role %s:%s does not exist", role.getType(),
+                                                                 spec.getNamespace(), role.getName()));
+        }
+        return retval;
+    }
+
+    /**
+     * @return the member's id, or <code>null</code> for a role of this namespace that is about to be created
+     */
+    protected String getMemberId(final KimStateSpec.Member member) {
+        if ("P".equals(member.getTypeCode())) {
+            final String retval = snapshot.getPrincipalId(member.getName());
+            if (retval == null) {
+                throw new UnexpectedLiquibaseException(String.format("Principal %s does not exist", member.getName()));
+            }
+            return retval;
+        }
+        final String retval = snapshot.getRoleId(member.getNamespace(), member.getName());
+        if (retval == null && !(spec.getNamespace().equals(member.getNamespace()) && spec.getRoles().containsKey(member.getName()))) {
+            throw new UnexpectedLiquibaseException(String.format("Role %s:%s does not exist", member.getNamespace(), member.getName()));
+        }
+        return retval;
+    }
+
+    /**
+     * @return qualifier values of the member keyed by attribute definition id
+     */
+    protected Map<String, String> getAttributes(final KimStateSpec.Role role, final KimStateSpec.Member member) {
+        final Map<String, String> retval = new TreeMap<String, String>();
+        for (final Map.Entry<String, String> attribute : member.getAttributes().entrySet()) {
+            final String definitionId = snapshot.getAttributeDefinitionId(attribute.getKey());
+            if (definitionId == null) {
+                throw new UnexpectedLiquibaseException(String.format("Attribute %s of a member of %s:%s is not defined", attribute.getKey(),
+                                                                     spec.getNamespace(), role.getName()));
+            }
+            retval.put(definitionId, attribute.getValue());
+        }
+        return retval;
+    }
+
+    protected void inChunks(final List<SqlStatement> statements, final String sql, final List<String> ids) {
+        for (int start = 0; start < ids.size(); start += CHUNK_SIZE) {
+            final StringBuilder values = new StringBuilder();
+            for (final String id : ids.subList(start, Math.min(start + CHUNK_SIZE, ids.size()))) {
+                if (values.length() > 0) {
+                    values.append(", ");
+                }
+                values.append(BoundQuery.toLiteral(id));
+            }
+            statements.add(new RawSqlStatement(String.format(sql, values)));
+        }
+    }
+
+    protected void addIfNotEmpty(final List<SqlStatement> statements, final BatchInsertStatement statement) {
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+    }
+
+    protected static boolean equal(final String current, final String desired) {
+        return current == null ? desired == null : current.equals(desired);
+    }
+
+    protected static class PendingMember {
+        private final String roleName;
+        private final KimStateSpec.Member member;
+        private final String memberId;
+        private final Map<String, String> attributes;
+
+        PendingMember(final String roleName, final KimStateSpec.Member member, final String memberId, final Map<String, String> attributes) {
+            this.roleName = roleName;
+            this.member = member;
+            this.memberId = memberId;
+            this.attributes = attributes;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+
+        public KimStateSpec.Member getMember() {
+            return member;
+        }
+
+        public String getMemberId() {
+            return memberId;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+    }
+
+    protected static class PendingPermission {
+        private final String roleName;
+        private final String permissionId;
+
+        PendingPermission(final String roleName, final String permissionId) {
+            this.roleName = roleName;
+            this.permissionId = permissionId;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+
+        public String getPermissionId() {
+            return permissionId;
+        }
+    }
+}
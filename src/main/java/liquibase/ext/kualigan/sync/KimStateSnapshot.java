@@ -0,0 +1,409 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sync;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+
+import liquibase.ext.kualigan.parser.NamespacedName;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The current KIM rows of one namespace (roles, their members with qualifiers and their permissions) together with
+ * the ids of everything a {@link KimStateSpec} refers to. Each kind of row is read with a single set-based query.
+ *
+ * @author Leo Przybylski
+ */
+public class KimStateSnapshot {
+    protected static final String ROLES = "select ROLE_ID, ROLE_NM, KIM_TYP_ID, DESC_TXT, ACTV_IND from KRIM_ROLE_T where NMSPC_CD = ?";
+    protected static final String MEMBERS = "select m.ROLE_MBR_ID, m.ROLE_ID, m.MBR_ID, m.MBR_TYP_CD from KRIM_ROLE_MBR_T m, KRIM_ROLE_T r "
+        + "where r.ROLE_ID = m.ROLE_ID and r.NMSPC_CD = ?";
+    protected static final String MEMBER_ATTRIBUTES = "select a.ROLE_MBR_ID, a.KIM_ATTR_DEFN_ID, a.ATTR_VAL "
+        + "from KRIM_ROLE_MBR_ATTR_DATA_T a, KRIM_ROLE_MBR_T m, KRIM_ROLE_T r "
+        + "where m.ROLE_MBR_ID = a.ROLE_MBR_ID and r.ROLE_ID = m.ROLE_ID and r.NMSPC_CD = ?";
+    protected static final String ROLE_PERMISSIONS = "select rp.ROLE_PERM_ID, rp.ROLE_ID, rp.PERM_ID, rp.ACTV_IND from KRIM_ROLE_PERM_T rp, KRIM_ROLE_T r "
+        + "where r.ROLE_ID = rp.ROLE_ID and r.NMSPC_CD = ?";
+    protected static final String TYPES = "select KIM_TYP_ID, NMSPC_CD, NM from KRIM_TYP_T";
+    protected static final String ATTRIBUTE_DEFINITIONS = "select KIM_ATTR_DEFN_ID, NM from KRIM_ATTR_DEFN_T";
+    protected static final String PERMISSIONS = "select PERM_ID, NMSPC_CD, NM from KRIM_PERM_T where NMSPC_CD in (%s)";
+    protected static final String OTHER_ROLES = "select ROLE_ID, NMSPC_CD, ROLE_NM from KRIM_ROLE_T where NMSPC_CD in (%s)";
+    protected static final String PRINCIPALS = "select PRNCPL_NM, PRNCPL_ID from KRIM_PRNCPL_T where PRNCPL_NM in (%s)";
+    protected static final int CHUNK_SIZE = 500;
+
+    private final Map<String, RoleRow> roles = new LinkedHashMap<String, RoleRow>();
+    private final Map<String, Map<String, MemberRow>> members = new HashMap<String, Map<String, MemberRow>>();
+    private final Map<String, List<PermissionRow>> permissions = new HashMap<String, List<PermissionRow>>();
+    private final Map<NamespacedName, String> typeIds = new HashMap<NamespacedName, String>();
+    private final Map<String, String> attributeDefinitionIds = new HashMap<String, String>();
+    private final Map<NamespacedName, String> permissionIds = new HashMap<NamespacedName, String>();
+    private final Map<NamespacedName, String> roleIds = new HashMap<NamespacedName, String>();
+    private final Map<String, String> principalIds = new HashMap<String, String>();
+    private int queries;
+
+    protected KimStateSnapshot() {
+    }
+
+    /**
+     * Read the rows of the spec's namespace and the ids it refers to
+     *
+     * @param database the {@link Database} to read; it must be backed by a JDBC connection
+     * @param spec the desired state
+     */
+    public static KimStateSnapshot load(final Database database, final KimStateSpec spec) throws DatabaseException {
+        final KimStateSnapshot retval = new KimStateSnapshot();
+        try {
+            retval.load(((JdbcConnection) database.getConnection()).getUnderlyingConnection(), spec);
+        }
+        catch (SQLException e) {
+            throw new DatabaseException(String.format("Unable to read KIM state of namespace %s", spec.getNamespace()), e);
+        }
+        return retval;
+    }
+
+    protected void load(final Connection connection, final KimStateSpec spec) throws SQLException {
+        final String namespace = spec.getNamespace();
+        query(connection, ROLES, Collections.singletonList(namespace), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    final RoleRow role = new RoleRow(results.getString(1), results.getString(2), results.getString(3),
+                                                     results.getString(4), results.getString(5));
+                    roles.put(role.getName(), role);
+                    roleIds.put(NamespacedName.valueOf(namespace, role.getName()), role.getId());
+                }
+            });
+        if (!roles.isEmpty()) {
+            loadMembers(connection, namespace);
+        }
+
+        final Set<String> permissionNamespaces = new LinkedHashSet<String>();
+        final Set<String> roleNamespaces = new LinkedHashSet<String>();
+        final Set<String> principals = new LinkedHashSet<String>();
+        for (final KimStateSpec.Role role : spec.getRoles().values()) {
+            for (final NamespacedName permission : role.getPermissions()) {
+                permissionNamespaces.add(permission.getNamespace());
+            }
+            for (final KimStateSpec.Member member : role.getMembers()) {
+                if ("P".equals(member.getTypeCode())) {
+                    principals.add(member.getName());
+                }
+                else if (!namespace.equals(member.getNamespace())) {
+                    roleNamespaces.add(member.getNamespace());
+                }
+            }
+        }
+
+        query(connection, TYPES, Collections.<String>emptyList(), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    typeIds.put(NamespacedName.valueOf(results.getString(2), results.getString(3)), results.getString(1));
+                    final NamespacedName unqualified = NamespacedName.valueOf(null, results.getString(3));
+                    if (!typeIds.containsKey(unqualified)) {
+                        typeIds.put(unqualified, results.getString(1));
+                    }
+                }
+            });
+        query(connection, ATTRIBUTE_DEFINITIONS, Collections.<String>emptyList(), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    attributeDefinitionIds.put(results.getString(2), results.getString(1));
+                }
+            });
+        queryIn(connection, PERMISSIONS, permissionNamespaces, new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    permissionIds.put(NamespacedName.valueOf(results.getString(2), results.getString(3)), results.getString(1));
+                }
+            });
+        queryIn(connection, OTHER_ROLES, roleNamespaces, new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    roleIds.put(NamespacedName.valueOf(results.getString(2), results.getString(3)), results.getString(1));
+                }
+            });
+        queryIn(connection, PRINCIPALS, principals, new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    principalIds.put(results.getString(1), results.getString(2));
+                }
+            });
+    }
+
+    protected void loadMembers(final Connection connection, final String namespace) throws SQLException {
+        final Map<String, MemberRow> byId = new HashMap<String, MemberRow>();
+        query(connection, MEMBERS, Collections.singletonList(namespace), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    final MemberRow member = new MemberRow(results.getString(1), results.getString(2), results.getString(3), results.getString(4));
+                    byId.put(member.getId(), member);
+                }
+            });
+        query(connection, MEMBER_ATTRIBUTES, Collections.singletonList(namespace), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    final MemberRow member = byId.get(results.getString(1));
+                    if (member != null) {
+                        member.getAttributes().put(results.getString(2), results.getString(3));
+                    }
+                }
+            });
+        for (final MemberRow member : byId.values()) {
+            Map<String, MemberRow> roleMembers = members.get(member.getRoleId());
+            if (roleMembers == null) {
+                roleMembers = new HashMap<String, MemberRow>();
+                members.put(member.getRoleId(), roleMembers);
+            }
+            roleMembers.put(member.getKey(), member);
+        }
+
+        query(connection, ROLE_PERMISSIONS, Collections.singletonList(namespace), new RowHandler() {
+                public void row(final ResultSet results) throws SQLException {
+                    final PermissionRow permission = new PermissionRow(results.getString(1), results.getString(2), results.getString(3), results.getString(4));
+                    List<PermissionRow> rolePermissions = permissions.get(permission.getRoleId());
+                    if (rolePermissions == null) {
+                        rolePermissions = new ArrayList<PermissionRow>();
+                        permissions.put(permission.getRoleId(), rolePermissions);
+                    }
+                    rolePermissions.add(permission);
+                }
+            });
+    }
+
+    protected void queryIn(final Connection connection, final String sql, final Collection<String> values, final RowHandler handler) throws SQLException {
+        final List<String> all = new ArrayList<String>(values);
+        for (int start = 0; start < all.size(); start += CHUNK_SIZE) {
+            final List<String> chunk = all.subList(start, Math.min(start + CHUNK_SIZE, all.size()));
+            final StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < chunk.size(); i++) {
+                placeholders.append(i > 0 ? ", ?" : "?");
+            }
+            query(connection, String.format(sql, placeholders), chunk, handler);
+        }
+    }
+
+    protected void query(final Connection connection, final String sql, final List<String> parameters, final RowHandler handler) throws SQLException {
+        queries++;
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setString(i + 1, parameters.get(i));
+            }
+            final ResultSet results = statement.executeQuery();
+            try {
+                while (results.next()) {
+                    handler.row(results);
+                }
+            }
+            finally {
+                results.close();
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return current roles of the namespace keyed by name
+     */
+    public Map<String, RoleRow> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return current members of a role keyed by {@link MemberRow#getKey()}
+     */
+    public Map<String, MemberRow> getMembers(final String roleId) {
+        final Map<String, MemberRow> retval = members.get(roleId);
+        return retval != null ? retval : Collections.<String, MemberRow>emptyMap();
+    }
+
+    public List<PermissionRow> getPermissions(final String roleId) {
+        final List<PermissionRow> retval = permissions.get(roleId);
+        return retval != null ? retval : Collections.<PermissionRow>emptyList();
+    }
+
+    /**
+     * @param typeNamespace may be <code>null</code> to match the type by name alone
+     */
+    public String getTypeId(final String typeNamespace, final String type) {
+        return typeIds.get(NamespacedName.valueOf(typeNamespace, type));
+    }
+
+    public String getAttributeDefinitionId(final String name) {
+        return attributeDefinitionIds.get(name);
+    }
+
+    public String getPermissionId(final NamespacedName permission) {
+        return permissionIds.get(permission);
+    }
+
+    public String getRoleId(final String namespace, final String name) {
+        return roleIds.get(NamespacedName.valueOf(namespace, name));
+    }
+
+    public String getPrincipalId(final String name) {
+        return principalIds.get(name);
+    }
+
+    /**
+     * @return number of queries the snapshot took
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Identity of a role member for comparison: its type, member id and qualifiers
+     *
+     * @param attributes qualifier values keyed by attribute definition id
+     */
+    public static String getMemberKey(final String typeCode, final String memberId, final Map<String, String> attributes) {
+        final StringBuilder retval = new StringBuilder().append(typeCode).append('\u001f').append(memberId);
+        for (final Map.Entry<String, String> attribute : new TreeMap<String, String>(attributes).entrySet()) {
+            retval.append('\u001f').append(attribute.getKey()).append('=').append(attribute.getValue());
+        }
+        return retval.toString();
+    }
+
+    protected interface RowHandler {
+        void row(ResultSet results) throws SQLException;
+    }
+
+    public static class RoleRow {
+        private final String id;
+        private final String name;
+        private final String typeId;
+        private final String description;
+        private final String active;
+
+        public RoleRow(final String id, final String name, final String typeId, final String description, final String active) {
+            this.id = id;
+            this.name = name;
+            this.typeId = typeId;
+            this.description = description;
+            this.active = active;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTypeId() {
+            return typeId;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getActive() {
+            return active;
+        }
+    }
+
+    public static class MemberRow {
+        private final String id;
+        private final String roleId;
+        private final String memberId;
+        private final String typeCode;
+        private final Map<String, String> attributes = new TreeMap<String, String>();
+
+        public MemberRow(final String id, final String roleId, final String memberId, final String typeCode) {
+            this.id = id;
+            this.roleId = roleId;
+            this.memberId = memberId;
+            this.typeCode = typeCode;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRoleId() {
+            return roleId;
+        }
+
+        public String getMemberId() {
+            return memberId;
+        }
+
+        public String getTypeCode() {
+            return typeCode;
+        }
+
+        /**
+         * @return qualifier values keyed by attribute definition id
+         */
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public String getKey() {
+            return getMemberKey(typeCode, memberId, attributes);
+        }
+    }
+
+    public static class PermissionRow {
+        private final String id;
+        private final String roleId;
+        private final String permissionId;
+        private final String active;
+
+        public PermissionRow(final String id, final String roleId, final String permissionId, final String active) {
+            this.id = id;
+            this.roleId = roleId;
+            this.permissionId = permissionId;
+            this.active = active;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRoleId() {
+            return roleId;
+        }
+
+        public String getPermissionId() {
+            return permissionId;
+        }
+
+        public String getActive() {
+            return active;
+        }
+    }
+}
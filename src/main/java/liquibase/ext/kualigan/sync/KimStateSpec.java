@@ -0,0 +1,322 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sync;
+
+import liquibase.parser.core.ParsedNodeException;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import liquibase.ext.kualigan.parser.NamespacedName;
+import liquibase.ext.kualigan.parser.StringPool;
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Desired KIM state of one namespace: its roles with their members (and member qualifiers) and the permissions granted
+ * to them. Read from YAML such as
+ * <pre>
+ * namespace: KFS-SYS
+ * roles:
+ *   - name: Chart Manager
+ *     type: Chart
+ *     typeNamespace: KFS-COA
+ *     description: Manages a chart
+ *     members:
+ *       - principal: khuntley
+ *         attributes:
+ *           chartOfAccountsCode: BL
+ *       - role: Manager
+ *         namespace: KFS-SYS
+ *     permissions:
+ *       - namespace: KFS-COA
+ *         name: Maintain Chart
+ * </pre>
+ *
+ * @author Leo Przybylski
+ */
+public class KimStateSpec {
+    private final String namespace;
+    private final Map<String, Role> roles = new LinkedHashMap<String, Role>();
+
+    public KimStateSpec(final String namespace) {
+        this.namespace = StringPool.getInstance().intern(namespace);
+    }
+
+    /**
+     * Read a spec from a YAML document
+     *
+     * @param stream the document
+     * @param namespace the namespace to use when the document does not name one
+     */
+    public static KimStateSpec read(final InputStream stream, final String namespace) throws ParsedNodeException {
+        final Object document = new Yaml(new SafeConstructor()).load(stream);
+        if (!(document instanceof Map)) {
+            throw new ParsedNodeException("KIM state document must be a mapping");
+        }
+        final Map<?, ?> root = (Map<?, ?>) document;
+        final String documentNamespace = getString(root, "namespace");
+        if (namespace == null && documentNamespace == null) {
+            throw new ParsedNodeException("KIM state document does not name a namespace");
+        }
+
+        final KimStateSpec retval = new KimStateSpec(documentNamespace != null ? documentNamespace : namespace);
+        for (final Map<?, ?> role : getMaps(root, "roles")) {
+            retval.addRole(retval.readRole(role));
+        }
+        return retval;
+    }
+
+    protected Role readRole(final Map<?, ?> node) throws ParsedNodeException {
+        final String name = getString(node, "name");
+        if (name == null) {
+            throw new ParsedNodeException(String.format("Role without a name in namespace %s", namespace));
+        }
+        final String active = getString(node, "active");
+        final Role retval = new Role(name, getString(node, "type"), getString(node, "typeNamespace"), getString(node, "description"),
+                                     active != null ? active : "Y");
+
+        for (final Map<?, ?> member : getMaps(node, "members")) {
+            final String principal = getString(member, "principal");
+            final String role = getString(member, "role");
+            if ((principal == null) == (role == null)) {
+                throw new ParsedNodeException(String.format("Member of %s:%s must name either a principal or a role", namespace, name));
+            }
+            final Map<String, String> attributes = new TreeMap<String, String>();
+            final Object values = member.get("attributes");
+            if (values instanceof Map) {
+                for (final Map.Entry<?, ?> attribute : ((Map<?, ?>) values).entrySet()) {
+                    attributes.put(StringPool.getInstance().intern(String.valueOf(attribute.getKey())),
+                                   attribute.getValue() != null ? String.valueOf(attribute.getValue()) : null);
+                }
+            }
+            final String memberNamespace = getString(member, "namespace");
+            retval.getMembers().add(principal != null
+                                    ? new Member("P", null, String.valueOf(member.get("principal")), attributes)
+                                    : new Member("R", memberNamespace != null ? memberNamespace : namespace, role, attributes));
+        }
+
+        for (final Map<?, ?> permission : getMaps(node, "permissions")) {
+            final String permissionNamespace = getString(permission, "namespace");
+            retval.getPermissions().add(NamespacedName.valueOf(permissionNamespace != null ? permissionNamespace : namespace,
+                                                               getString(permission, "name")));
+        }
+        return retval;
+    }
+
+    protected static String getString(final Map<?, ?> node, final String key) {
+        final Object retval = node.get(key);
+        return retval != null ? StringPool.getInstance().intern(String.valueOf(retval)) : null;
+    }
+
+    protected static List<Map<?, ?>> getMaps(final Map<?, ?> node, final String key) throws ParsedNodeException {
+        final Object value = node.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw new ParsedNodeException(String.format("'%s' must be a list", key));
+        }
+        final List<Map<?, ?>> retval = new ArrayList<Map<?, ?>>();
+        for (final Object item : (List<?>) value) {
+            if (!(item instanceof Map)) {
+                throw new ParsedNodeException(String.format("Entries of '%s' must be mappings", key));
+            }
+            retval.add((Map<?, ?>) item);
+        }
+        return retval;
+    }
+
+    /**
+     * Write this spec as a YAML document {@link #read(InputStream, String)} accepts
+     */
+    public void write(final Writer writer) {
+        final Map<String, Object> root = new LinkedHashMap<String, Object>();
+        root.put("namespace", namespace);
+        final List<Object> roleNodes = new ArrayList<Object>();
+        for (final Role role : roles.values()) {
+            final Map<String, Object> roleNode = new LinkedHashMap<String, Object>();
+            roleNode.put("name", role.getName());
+            putIfNotNull(roleNode, "type", role.getType());
+            putIfNotNull(roleNode, "typeNamespace", role.getTypeNamespace());
+            putIfNotNull(roleNode, "description", role.getDescription());
+            if (!"Y".equals(role.getActive())) {
+                roleNode.put("active", role.getActive());
+            }
+            final List<Object> memberNodes = new ArrayList<Object>();
+            for (final Member member : role.getMembers()) {
+                final Map<String, Object> memberNode = new LinkedHashMap<String, Object>();
+                if ("P".equals(member.getTypeCode())) {
+                    memberNode.put("principal", member.getName());
+                }
+                else {
+                    memberNode.put("role", member.getName());
+                    if (!namespace.equals(member.getNamespace())) {
+                        memberNode.put("namespace", member.getNamespace());
+                    }
+                }
+                if (!member.getAttributes().isEmpty()) {
+                    memberNode.put("attributes", new LinkedHashMap<String, String>(member.getAttributes()));
+                }
+                memberNodes.add(memberNode);
+            }
+            if (!memberNodes.isEmpty()) {
+                roleNode.put("members", memberNodes);
+            }
+            final List<Object> permissionNodes = new ArrayList<Object>();
+            for (final NamespacedName permission : role.getPermissions()) {
+                final Map<String, Object> permissionNode = new LinkedHashMap<String, Object>();
+                permissionNode.put("namespace", permission.getNamespace());
+                permissionNode.put("name", permission.getName());
+                permissionNodes.add(permissionNode);
+            }
+            if (!permissionNodes.isEmpty()) {
+                roleNode.put("permissions", permissionNodes);
+            }
+            roleNodes.add(roleNode);
+        }
+        root.put("roles", roleNodes);
+
+        final DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        new Yaml(options).dump(root, writer);
+    }
+
+    protected static void putIfNotNull(final Map<String, Object> node, final String key, final Object value) {
+        if (value != null) {
+            node.put(key, value);
+        }
+    }
+
+    public void addRole(final Role role) {
+        roles.put(role.getName(), role);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * @return roles keyed by name
+     */
+    public Map<String, Role> getRoles() {
+        return roles;
+    }
+
+    /**
+     * A role of the namespace. A role without a type only refers to an existing role: its members and permissions are
+     * synchronized but the role row itself is left as it is.
+     */
+    public static class Role {
+        private final String name;
+        private final String type;
+        private final String typeNamespace;
+        private final String description;
+        private final String active;
+        private final List<Member> members = new ArrayList<Member>();
+        private final List<NamespacedName> permissions = new ArrayList<NamespacedName>();
+
+        public Role(final String name, final String type, final String typeNamespace, final String description, final String active) {
+            this.name = name;
+            this.type = type;
+            this.typeNamespace = typeNamespace;
+            this.description = description;
+            this.active = active;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTypeNamespace() {
+            return typeNamespace;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getActive() {
+            return active;
+        }
+
+        public List<Member> getMembers() {
+            return members;
+        }
+
+        public List<NamespacedName> getPermissions() {
+            return permissions;
+        }
+    }
+
+    public static class Member {
+        private final String typeCode;
+        private final String namespace;
+        private final String name;
+        private final Map<String, String> attributes;
+
+        /**
+         * @param typeCode {@code P} for principals, {@code R} for roles
+         * @param namespace role namespace (<code>null</code> for principals)
+         * @param name principal or role name
+         * @param attributes qualifier values keyed by attribute definition name
+         */
+        public Member(final String typeCode, final String namespace, final String name, final Map<String, String> attributes) {
+            this.typeCode = typeCode;
+            this.namespace = namespace;
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        public String getTypeCode() {
+            return typeCode;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.sql.Sql;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.sqlgenerator.oracle.AddResponsibilityActionsGenerator;
+import liquibase.ext.kualigan.statement.AddRoleResponsibilityActionsStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk responsibility actions with {@link AddRoleResponsibilityActions}, generated by the Oracle generator and run on
+ * H2. Member 101 already has an action for the responsibility.
+ *
+ * @author Leo Przybylski
+ */
+public class AddRoleResponsibilityActionsTest {
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:RSP_ACTIONS;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_RSP_T (RSP_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40))",
+                "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), NM varchar(100))",
+                "create table KRIM_ROLE_RSP_T (ROLE_RSP_ID varchar(40), ROLE_ID varchar(40), RSP_ID varchar(40))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+                "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), ROLE_MBR_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+                "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ACTN_TYP_CD varchar(40), PRIORITY_NBR decimal(3), ACTN_PLCY_CD varchar(40), ROLE_MBR_ID varchar(40), ROLE_RSP_ID varchar(40), FRC_ACTN varchar(1))",
+                "create sequence KRIM_ROLE_RSP_ACTN_ID_S start with 1000",
+                "insert into KRIM_ROLE_T values ('1', 'Fiscal Officer', 'KFS-SYS')",
+                "insert into KRIM_RSP_T values ('20', 'Review', 'KFS-SYS')",
+                "insert into KRIM_ATTR_DEFN_T values ('40', 'chartOfAccountsCode')",
+                "insert into KRIM_ROLE_RSP_T values ('30', '1', '20')",
+                "insert into KRIM_ROLE_MBR_T values ('100', '1', 'p1', 'P')",
+                "insert into KRIM_ROLE_MBR_T values ('101', '1', 'p2', 'P')",
+                "insert into KRIM_ROLE_MBR_T values ('102', '1', 'g1', 'G')",
+                "insert into KRIM_ROLE_MBR_T values ('103', '1', 'p3', 'P')",
+                "insert into KRIM_ROLE_MBR_ATTR_DATA_T values ('50', '103', '40', 'BL')",
+                "insert into KRIM_ROLE_RSP_ACTN_T values ('900', 'x', 1, 'F', 2, null, '101', '30', 'N')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testGenerateStatements() throws Exception {
+        run(newChange().generateStatements(database));
+
+        assertEquals("4", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("3", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ACTN_TYP_CD = 'A' and ACTN_PLCY_CD is null and ROLE_RSP_ID = '30'"));
+        assertEquals("F", queryForString("select ACTN_TYP_CD from KRIM_ROLE_RSP_ACTN_T where ROLE_MBR_ID = '101'"));
+    }
+
+    @Test
+    public void testGenerateStatements_memberType() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        change.setMemberType("G");
+        run(change.generateStatements(database));
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ROLE_MBR_ID = '102'"));
+    }
+
+    @Test
+    public void testGenerateStatements_qualifier() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        change.setAttributeDef("chartOfAccountsCode");
+        change.setAttributeValue("BL");
+        run(change.generateStatements(database));
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ROLE_MBR_ID = '103'"));
+    }
+
+    @Test
+    public void testGenerateStatements_replace() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        change.setReplace("true");
+        run(change.generateStatements(database));
+
+        assertEquals("4", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ACTN_TYP_CD = 'A'"));
+        assertEquals("0", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ROLE_RSP_ACTN_ID = '900'"));
+    }
+
+    @Test
+    public void testGenerateRollbackStatements() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        run(change.generateStatements(database));
+        run(change.generateRollbackStatements(database));
+
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("900", queryForString("select ROLE_RSP_ACTN_ID from KRIM_ROLE_RSP_ACTN_T"));
+    }
+
+    @Test
+    public void testGenerateRollbackStatements_policy() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        change.setActionPolicyCode("F");
+        run(change.generateStatements(database));
+        execute("update KRIM_ROLE_RSP_ACTN_T set VER_NBR = 2 where ROLE_MBR_ID = '100'");
+        run(change.generateRollbackStatements(database));
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T where ROLE_MBR_ID = '100'"));
+    }
+
+    @Test(expected = RollbackImpossibleException.class)
+    public void testGenerateRollbackStatements_replace() throws Exception {
+        final AddRoleResponsibilityActions change = newChange();
+        change.setReplace("true");
+        change.generateRollbackStatements(database);
+    }
+
+    private AddRoleResponsibilityActions newChange() {
+        final AddRoleResponsibilityActions retval = new AddRoleResponsibilityActions();
+        retval.setRoleNamespace("KFS-SYS");
+        retval.setRoleName("Fiscal Officer");
+        retval.setResponsibilityNamespace("KFS-SYS");
+        retval.setResponsibilityName("Review");
+        retval.setActionTypeCode("A");
+        retval.setPriority("1");
+        retval.setForce("N");
+        return retval;
+    }
+
+    /**
+     * Generates with the Oracle generator, the only one there is; its SQL runs on H2 as well
+     */
+    private void run(final SqlStatement... statements) throws Exception {
+        for (final SqlStatement statement : statements) {
+            for (final Sql sql : new AddResponsibilityActionsGenerator().generateSql((AddRoleResponsibilityActionsStatement) statement, database, null)) {
+                execute(sql.toSql());
+            }
+        }
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.Change;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.RollbackImpossibleException;
+import liquibase.exception.UnexpectedLiquibaseException;
+import liquibase.executor.ExecutorService;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.parser.KimChangeLogWriter;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk grants with {@link AssignRolePermissions} on H2. Role User already has Edit, so only the missing grants are
+ * added.
+ *
+ * @author Leo Przybylski
+ */
+public class AssignRolePermissionsTest {
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:ASSIGN_PERMS;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_PERM_T (PERM_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40), PERM_TMPL_ID varchar(40), ACTV_IND varchar(1))",
+                "create table KRIM_PERM_TMPL_T (PERM_TMPL_ID varchar(40), NM varchar(100))",
+                "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+                "create sequence KRIM_ROLE_PERM_ID_S start with 100",
+                "insert into KRIM_ROLE_T values ('1', 'User', 'KFS-SYS')",
+                "insert into KRIM_ROLE_T values ('2', 'Manager', 'KFS-SYS')",
+                "insert into KRIM_PERM_T values ('10', 'Edit', 'KFS-FP', null, 'Y')",
+                "insert into KRIM_PERM_T values ('11', 'View', 'KFS-FP', null, 'Y')",
+                "insert into KRIM_ROLE_PERM_T values ('90', 'x', 1, '1', '10', 'Y')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testGenerateStatements() throws Exception {
+        final AssignRolePermissions change = newChange();
+
+        run(change.generateStatements(database));
+
+        assertEquals("4", queryForString("select count(*) from KRIM_ROLE_PERM_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_PERM_T where ROLE_ID = '1' and PERM_ID = '10'"));
+    }
+
+    @Test(expected = UnexpectedLiquibaseException.class)
+    public void testGenerateStatements_unknownRole() throws Exception {
+        final AssignRolePermissions change = newChange();
+        change.addRole("KFS-SYS", "Usr");
+
+        change.generateStatements(database);
+    }
+
+    @Test(expected = UnexpectedLiquibaseException.class)
+    public void testGenerateStatements_unknownPermission() throws Exception {
+        final AssignRolePermissions change = newChange();
+        change.addPermission("KFS-AR", "Edit");
+
+        change.generateStatements(database);
+    }
+
+    @Test(expected = RollbackImpossibleException.class)
+    public void testGenerateRollbackStatements() throws Exception {
+        newChange().generateRollbackStatements(database);
+    }
+
+    @Test
+    public void testGenerateCheckSum() throws Exception {
+        final AssignRolePermissions other = newChange();
+        other.getRoles().remove(1);
+
+        assertFalse(newChange().generateCheckSum().equals(other.generateCheckSum()));
+        assertEquals(newChange().generateCheckSum(), newChange().generateCheckSum());
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        final StringWriter output = new StringWriter();
+        final KimChangeLogWriter writer = new KimChangeLogWriter(output);
+        writer.writeChangeSet("grants", "me", Collections.<Change>singletonList(newChange()));
+
+        assertTrue(output.toString().contains("<kim:role namespace=\"KFS-SYS\" name=\"Manager\"/>"));
+        assertTrue(output.toString().contains("<kim:permission namespace=\"KFS-FP\" name=\"View\"/>"));
+    }
+
+    private AssignRolePermissions newChange() {
+        final AssignRolePermissions retval = new AssignRolePermissions();
+        retval.addRole("KFS-SYS", "User");
+        retval.addRole("KFS-SYS", "Manager");
+        retval.addPermission("KFS-FP", "Edit");
+        retval.addPermission("KFS-FP", "View");
+        return retval;
+    }
+
+    private void run(final SqlStatement... statements) throws Exception {
+        for (final SqlStatement statement : statements) {
+            ExecutorService.getInstance().getExecutor(database).execute(statement);
+        }
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
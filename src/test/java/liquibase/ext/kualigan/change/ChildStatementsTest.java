@@ -0,0 +1,164 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Statements of nested changes generated a batch at a time, in order, through {@link ChildStatements}.
+ *
+ * @author Leo Przybylski
+ */
+public class ChildStatementsTest {
+    private static final int CHILDREN = 2 * ChildStatements.BATCH_SIZE + 5;
+
+    @Test
+    public void testIterator_generatesBatchesInOrder() {
+        final StatementsChange parent = new StatementsChange(CHILDREN);
+        final Iterator<SqlStatement> statements = new ChildStatements(parent, null, parent.getChildren()).iterator();
+        assertEquals(0, parent.getGenerated());
+
+        for (int i = 0; i < CHILDREN; i++) {
+            assertTrue(statements.hasNext());
+            assertEquals("select " + i + " from dual", ((RawSqlStatement) statements.next()).getSql());
+            // nothing past the batch of the current child has been generated
+            final int batches = i / ChildStatements.BATCH_SIZE + 1;
+            assertEquals(batches, parent.getBatches().size());
+            assertEquals(Math.min(batches * ChildStatements.BATCH_SIZE, CHILDREN), parent.getGenerated());
+        }
+        assertFalse(statements.hasNext());
+        assertEquals(Arrays.asList(ChildStatements.BATCH_SIZE, ChildStatements.BATCH_SIZE, 5), parent.getBatches());
+
+        try {
+            statements.next();
+            fail("Expected NoSuchElementException");
+        }
+        catch (NoSuchElementException e) {
+        }
+    }
+
+    @Test
+    public void testIterator_singleUse() {
+        final StatementsChange parent = new StatementsChange(3);
+        final ChildStatements statements = new ChildStatements(parent, null, parent.getChildren());
+        int count = 0;
+        for (final SqlStatement statement : statements) {
+            count++;
+        }
+        assertEquals(3, count);
+
+        try {
+            statements.iterator();
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+        }
+        assertEquals(3, parent.getGenerated());
+    }
+
+    @Test
+    public void testIterator_noChildren() {
+        final StatementsChange parent = new StatementsChange(0);
+        assertFalse(new ChildStatements(parent, null, null).iterator().hasNext());
+        assertFalse(new ChildStatements(parent, null, parent.getChildren()).iterator().hasNext());
+        assertTrue(parent.getBatches().isEmpty());
+    }
+
+    /**
+     * Nests numbered children and records the size of every batch of them it generates
+     */
+    @DatabaseChange(name="childStatementsTest", description = "Generates numbered statements", priority = EXTENSION_PRIORITY)
+    public static class StatementsChange extends KimAbstractChange {
+        private final List<StatementsChange> children = new ArrayList<StatementsChange>();
+        private final List<Integer> batches = new ArrayList<Integer>();
+        private final int index;
+        private int generated;
+
+        public StatementsChange() {
+            this(0);
+        }
+
+        public StatementsChange(final int children) {
+            this(children, -1);
+        }
+
+        private StatementsChange(final int children, final int index) {
+            super("childStatementsTest", "Generates numbered statements", EXTENSION_PRIORITY);
+            this.index = index;
+            for (int i = 0; i < children; i++) {
+                this.children.add(new StatementsChange(0, i));
+            }
+        }
+
+        @Override
+        protected String getSequenceName() {
+            return null;
+        }
+
+        @Override
+        protected List<SqlStatement> generateChildStatements(final Database database, final List<? extends KimAbstractChange> children) {
+            batches.add(children.size());
+            generated += children.size();
+            return super.generateChildStatements(database, children);
+        }
+
+        public SqlStatement[] generateStatements(final Database database) {
+            return new SqlStatement[] { new RawSqlStatement("select " + index + " from dual") };
+        }
+
+        public SqlStatement[] generateRollbackStatements(final Database database) {
+            return new SqlStatement[0];
+        }
+
+        public List<StatementsChange> getChildren() {
+            return children;
+        }
+
+        public List<Integer> getBatches() {
+            return batches;
+        }
+
+        public int getGenerated() {
+            return generated;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.executor.ExecutorService;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cloning a namespace inside one H2 database with {@link CloneKimNamespace}. The namespace defines a type and an
+ * attribute definition, which the copies share instead of duplicating.
+ *
+ * @author Leo Przybylski
+ */
+public class CloneKimNamespaceTest {
+    private static final String[] DDL = {
+        "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), LBL varchar(40), ACTV_IND varchar(1), CMPNT_NM varchar(100))",
+        "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), SRVC_NM varchar(200), ACTV_IND varchar(1))",
+        "create table KRIM_TYP_ATTR_T (KIM_TYP_ATTR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), SORT_CD varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_T (PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), DESC_TXT varchar(400), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_RSP_T (RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), DESC_TXT varchar(400), ACTV_IND varchar(1))",
+        "create table KRIM_RSP_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_T (ROLE_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_NM varchar(80), NMSPC_CD varchar(40), DESC_TXT varchar(400), KIM_TYP_ID varchar(40), ACTV_IND varchar(1), LAST_UPDT_DT timestamp)",
+        "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1), ACTV_FRM_DT timestamp, ACTV_TO_DT timestamp, LAST_UPDT_DT timestamp)",
+        "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_T (ROLE_RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), RSP_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ACTN_TYP_CD varchar(40), PRIORITY_NBR decimal(3), ACTN_PLCY_CD varchar(40), FRC_ACTN varchar(1), ROLE_MBR_ID varchar(40), ROLE_RSP_ID varchar(40))"
+    };
+
+    private static final String[] SEQUENCES = {
+        "KRIM_PERM_ID_S", "KRIM_ATTR_DATA_ID_S", "krim_rsp_id_s", "krim_role_id_s", "KRIM_ROLE_MBR_ID_S", "krim_role_perm_id_s",
+        "krim_role_rsp_id_s", "krim_role_rsp_actn_id_s"
+    };
+
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:CLONE_NAMESPACE;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        execute(DDL);
+        for (final String sequence : SEQUENCES) {
+            execute(String.format("create sequence %s start with 1000", sequence));
+        }
+
+        execute("insert into KRIM_ATTR_DEFN_T values ('20', 'o1', 1, 'chartOfAccountsCode', 'KFS-SYS', 'Chart', 'Y', null)",
+                "insert into KRIM_TYP_T values ('30', 'o2', 1, 'Chart', 'KFS-SYS', 'chartRoleTypeService', 'Y')",
+                "insert into KRIM_TYP_ATTR_T values ('31', 'o3', 1, 'a', '30', '20', 'Y')",
+                "insert into KRIM_PERM_T values ('40', 'o4', 1, '10', 'KFS-SYS', 'Use Ledger Screen', null, 'Y')",
+                "insert into KRIM_PERM_ATTR_DATA_T values ('41', 'o5', 1, '40', '30', '20', 'BL')",
+                "insert into KRIM_RSP_T values ('45', 'o6', 1, '1', 'KFS-SYS', 'Review Ledger', null, 'Y')",
+                "insert into KRIM_ROLE_T values ('50', 'o7', 1, 'Chart Manager', 'KFS-SYS', null, '30', 'Y', null)",
+                "insert into KRIM_ROLE_T values ('55', 'o8', 1, 'Chart Reviewer', 'KFS-SYS', null, '30', 'Y', null)",
+                "insert into KRIM_ROLE_MBR_T values ('51', 'o9', 1, '50', '1', 'P', null, null, null)",
+                "insert into KRIM_ROLE_MBR_T values ('56', 'o10', 1, '55', '50', 'R', null, null, null)",
+                "insert into KRIM_ROLE_MBR_ATTR_DATA_T values ('52', 'o11', 1, '51', '30', '20', 'BL')",
+                "insert into KRIM_ROLE_PERM_T values ('53', 'o12', 1, '50', '40', 'Y')",
+                "insert into KRIM_ROLE_RSP_T values ('57', 'o13', 1, '55', '45', 'Y')",
+                "insert into KRIM_ROLE_RSP_ACTN_T values ('58', 'o14', 1, 'A', 1, 'F', 'N', '56', '57')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        run(newChange().generateStatements(database));
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_T where NMSPC_CD = 'KFS-CAMPUS2'"));
+        final String manager = queryForString("select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = 'KFS-CAMPUS2' and ROLE_NM = 'Chart Manager'");
+        final String reviewer = queryForString("select ROLE_ID from KRIM_ROLE_T where NMSPC_CD = 'KFS-CAMPUS2' and ROLE_NM = 'Chart Reviewer'");
+        final String permission = queryForString("select PERM_ID from KRIM_PERM_T where NMSPC_CD = 'KFS-CAMPUS2'");
+        assertFalse("50".equals(manager));
+        assertEquals(permission, queryForString(String.format("select PERM_ID from KRIM_ROLE_PERM_T where ROLE_ID = '%s'", manager)));
+        assertEquals(manager, queryForString(String.format("select MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = '%s'", reviewer)));
+
+        // the copies share the type and the attribute definition
+        assertEquals("1", queryForString("select count(*) from KRIM_TYP_T where NM = 'Chart'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ATTR_DEFN_T where NM = 'chartOfAccountsCode'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_TYP_ATTR_T"));
+        assertEquals("30", queryForString(String.format("select KIM_TYP_ID from KRIM_ROLE_T where ROLE_ID = '%s'", manager)));
+        assertEquals("30|20", queryForString(String.format("select KIM_TYP_ID || '|' || KIM_ATTR_DEFN_ID from KRIM_PERM_ATTR_DATA_T where PERM_ID = '%s'", permission)));
+        assertEquals("30|20", queryForString("select a.KIM_TYP_ID || '|' || a.KIM_ATTR_DEFN_ID from KRIM_ROLE_MBR_ATTR_DATA_T a"
+                                             + " join KRIM_ROLE_MBR_T m on m.ROLE_MBR_ID = a.ROLE_MBR_ID"
+                                             + String.format(" where m.ROLE_ID = '%s'", manager)));
+
+        final String action = queryForString("select a.ROLE_MBR_ID from KRIM_ROLE_RSP_ACTN_T a join KRIM_ROLE_RSP_T r on r.ROLE_RSP_ID = a.ROLE_RSP_ID"
+                                             + String.format(" where r.ROLE_ID = '%s'", reviewer));
+        assertEquals(queryForString(String.format("select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = '%s'", reviewer)), action);
+        assertFalse(tableExists("KRIM_CLONE_ID_MAP_T"));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        run(newChange().generateStatements(database));
+
+        run(newChange().generateRollbackStatements(database));
+
+        assertEquals("0", queryForString("select count(*) from KRIM_ROLE_T where NMSPC_CD = 'KFS-CAMPUS2'"));
+        assertEquals("0", queryForString("select count(*) from KRIM_PERM_T where NMSPC_CD = 'KFS-CAMPUS2'"));
+        assertEquals("0", queryForString("select count(*) from KRIM_RSP_T where NMSPC_CD = 'KFS-CAMPUS2'"));
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_MBR_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_ATTR_DATA_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_RSP_ACTN_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_TYP_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ATTR_DEFN_T"));
+    }
+
+    private CloneKimNamespace newChange() {
+        final CloneKimNamespace retval = new CloneKimNamespace();
+        retval.setSourceNamespace("KFS-SYS");
+        retval.setTargetNamespace("KFS-CAMPUS2");
+        return retval;
+    }
+
+    private boolean tableExists(final String table) throws Exception {
+        return !"0".equals(queryForString(String.format("select count(*) from INFORMATION_SCHEMA.TABLES where TABLE_NAME = '%s'", table)));
+    }
+
+    private void run(final SqlStatement... statements) throws Exception {
+        for (final SqlStatement statement : statements) {
+            ExecutorService.getInstance().getExecutor(database).execute(statement);
+        }
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.change;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.executor.ExecutorService;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.lookup.KimLookupIndex;
+import liquibase.ext.kualigan.statement.AssignPermissionStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookup indexes created and dropped by {@link EnsureKimLookupIndexes} next to an index the
+ * {@code krim_prncpl_nm_idx.xml} changelog created and indexes that cover part of a lookup, and the lookups counted
+ * against them.
+ *
+ * @author Leo Przybylski
+ */
+public class EnsureKimLookupIndexesTest {
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:LOOKUP_IDX;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))",
+                "create index KRIM_PRNCPL_LBX1 on KRIM_PRNCPL_T (PRNCPL_NM)",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create index KRIM_ROLE_TI1 on KRIM_ROLE_T (NMSPC_CD)",
+                "create table KRIM_PERM_T (PERM_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40), PERM_TMPL_ID varchar(40))",
+                "create unique index KRIM_PERM_TC1 on KRIM_PERM_T (NM, NMSPC_CD)");
+        KimLookupIndex.resetCounters();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testCreateAndDrop_keepsForeignIndexes() throws Exception {
+        final EnsureKimLookupIndexes ensure = new EnsureKimLookupIndexes();
+        run(ensure.generateStatements(database, false));
+
+        assertTrue(getIndexes("KRIM_ROLE_T").containsKey("KRIM_ROLE_KLX1"));
+        assertFalse(getIndexes("KRIM_PRNCPL_T").containsKey("KRIM_PRNCPL_KLX1"));
+        // the unique (NM, NMSPC_CD) index serves permission lookups by template as well
+        assertFalse(getIndexes("KRIM_PERM_T").containsKey("KRIM_PERM_KLX1"));
+
+        run(ensure.generateStatements(database, true));
+
+        assertFalse(getIndexes("KRIM_ROLE_T").containsKey("KRIM_ROLE_KLX1"));
+        assertTrue(getIndexes("KRIM_ROLE_T").containsKey("KRIM_ROLE_TI1"));
+        assertTrue(getIndexes("KRIM_PRNCPL_T").containsKey("KRIM_PRNCPL_LBX1"));
+        assertTrue(getIndexes("KRIM_PERM_T").containsKey("KRIM_PERM_TC1"));
+    }
+
+    @Test
+    public void testIsCoveredBy_leadingColumns() {
+        final KimLookupIndex index = KimLookupIndex.PERMISSION;
+        assertTrue(index.isCoveredBy(Arrays.asList("NM", "NMSPC_CD", "PERM_TMPL_ID")));
+        assertTrue(index.isCoveredBy(Arrays.asList("PERM_TMPL_ID", "NMSPC_CD", "NM", "ACTV_IND")));
+        assertTrue(index.isCoveredBy(Arrays.asList("NMSPC_CD", "NM")));
+        assertTrue(index.isCoveredBy(Arrays.asList("NM")));
+        assertTrue(index.isCoveredBy(Arrays.asList("NM", "PERM_TMPL_ID")));
+
+        assertFalse(index.isCoveredBy(Arrays.asList("NMSPC_CD")));
+        assertFalse(index.isCoveredBy(Arrays.asList("PERM_TMPL_ID", "NM")));
+        assertFalse(index.isCoveredBy(Arrays.asList("ACTV_IND", "NM", "NMSPC_CD")));
+        assertFalse(index.isCoveredBy(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testServed_countsGeneratorLookups() throws Exception {
+        final AssignPermissionStatement statement = new AssignPermissionStatement("Use Screen", "KR-SYS", "Manager", "KFS-SYS", "Y");
+        SqlGeneratorFactory.getInstance().generateSql(statement, database);
+
+        assertEquals(1, KimLookupIndex.ROLE.getLookups());
+        assertEquals(1, KimLookupIndex.PERMISSION.getLookups());
+        assertEquals(0, KimLookupIndex.PRINCIPAL.getLookups());
+    }
+
+    private Map<String, List<String>> getIndexes(final String tableName) throws Exception {
+        return new EnsureKimLookupIndexes().getIndexes(connection.getMetaData(), database, tableName);
+    }
+
+    private void run(final SqlStatement... statements) throws Exception {
+        for (final SqlStatement statement : statements) {
+            ExecutorService.getInstance().getExecutor(database).execute(statement);
+        }
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.compaction;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.resource.FileSystemResourceAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.change.AddRoleMemberAttribute;
+import liquibase.ext.kualigan.change.AssignRoleMember;
+import liquibase.ext.kualigan.change.CreateRole;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A changelog and its compacted baseline applied to two H2 databases leave the same KIM rows.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogCompactorTest {
+    private static final String[] TABLES = {
+        "select ROLE_NM, NMSPC_CD, DESC_TXT, KIM_TYP_ID, ACTV_IND from KRIM_ROLE_T order by ROLE_NM",
+        "select r.ROLE_NM, m.MBR_ID, m.MBR_TYP_CD from KRIM_ROLE_MBR_T m, KRIM_ROLE_T r where m.ROLE_ID = r.ROLE_ID order by 1, 2",
+        "select r.ROLE_NM, m.MBR_ID, a.KIM_TYP_ID, a.KIM_ATTR_DEFN_ID, a.ATTR_VAL from KRIM_ROLE_MBR_ATTR_DATA_T a, KRIM_ROLE_MBR_T m, KRIM_ROLE_T r "
+            + "where a.ROLE_MBR_ID = m.ROLE_MBR_ID and m.ROLE_ID = r.ROLE_ID order by 1, 2, 4",
+        "select r.ROLE_NM, p.PERM_ID, p.ACTV_IND from KRIM_ROLE_PERM_T p, KRIM_ROLE_T r where p.ROLE_ID = r.ROLE_ID order by 1, 2"
+    };
+
+    private boolean useStreamingParser;
+    private Connection original;
+    private Connection compacted;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        useStreamingParser = KimConfiguration.getInstance().getUseStreamingParser();
+        KimConfiguration.getInstance().setUseStreamingParser(true);
+        Class.forName("org.h2.Driver");
+        original = open("KIM_ORIGINAL");
+        compacted = open("KIM_COMPACTED");
+        directory = File.createTempFile("kim-baseline", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KimConfiguration.getInstance().setUseStreamingParser(useStreamingParser);
+        for (final Connection connection : new Connection[] { original, compacted }) {
+            execute(connection, "drop all objects");
+            connection.close();
+        }
+        delete(directory);
+    }
+
+    @Test
+    public void testSameRows() throws Exception {
+        final String changeLogFile = "liquibase/ext/kualigan/compaction/kim_changes.xml";
+        new Liquibase(changeLogFile, new ClassLoaderResourceAccessor(), database(original)).update("");
+
+        final File baseline = new KimChangeLogCompactor(directory, "test").compact(changeLogFile, new ClassLoaderResourceAccessor());
+        new Liquibase(baseline.getAbsolutePath(), new FileSystemResourceAccessor(), database(compacted)).update("");
+
+        for (final String sql : TABLES) {
+            assertEquals(sql, rows(original, sql), rows(compacted, sql));
+        }
+        // the roles were only referred to
+        assertEquals("[Chart Manager|KFS-SYS|Manages a chart|30|Y, Retired|KFS-SYS|No longer used|30|N]", rows(compacted, TABLES[0]).toString());
+        assertEquals(3, rows(compacted, TABLES[1]).size() + rows(compacted, TABLES[2]).size());
+    }
+
+    @Test
+    public void testMemberQualifiedUnderOtherType() {
+        final KimBaseline baseline = new KimBaseline();
+        final CreateRole role = new CreateRole();
+        role.setNamespace("KFS-SYS");
+        role.setName("Chart Manager");
+        role.setType("Chart");
+        role.setTypeNamespace("KFS-COA");
+        baseline.add(role);
+        final AssignRoleMember sameType = member("jdoe", "Chart");
+        final AssignRoleMember otherType = member("asmith", "Default");
+        baseline.add(sameType);
+        baseline.add(otherType);
+
+        assertEquals(1, baseline.getSpecs().get("KFS-SYS").getRoles().get("Chart Manager").getMembers().size());
+        assertEquals("jdoe", baseline.getSpecs().get("KFS-SYS").getRoles().get("Chart Manager").getMembers().get(0).getName());
+        assertEquals(1, baseline.getRemaining().size());
+        assertTrue(baseline.getRemaining().get(0) == otherType);
+    }
+
+    private AssignRoleMember member(final String principal, final String attributeType) {
+        final AssignRoleMember retval = new AssignRoleMember();
+        retval.setNamespace("KFS-SYS");
+        retval.setRole("Chart Manager");
+        retval.setType("P");
+        retval.setMember(principal);
+        final AddRoleMemberAttribute attribute = retval.createAttribute();
+        attribute.setType(attributeType);
+        attribute.setAttributeDef("chartOfAccountsCode");
+        attribute.setValue("BL");
+        return retval;
+    }
+
+    private Connection open(final String name) throws Exception {
+        final Connection retval = DriverManager.getConnection("jdbc:h2:mem:" + name + ";MODE=Oracle");
+        execute(retval,
+                "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100))",
+                "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), NM varchar(100))",
+                "create table KRIM_PERM_T (PERM_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100))",
+                "create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_NM varchar(80), NMSPC_CD varchar(40), DESC_TXT varchar(4000), KIM_TYP_ID varchar(40), ACTV_IND varchar(1))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), VER_NBR decimal(8), OBJ_ID varchar(36), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+                "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+                "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), ROLE_MBR_ID varchar(40))",
+                "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+                "create sequence KRIM_ROLE_ID_S start with 100",
+                "create sequence KRIM_ROLE_MBR_ID_S start with 200",
+                "create sequence KRIM_ATTR_DATA_ID_S start with 300",
+                "create sequence KRIM_ROLE_PERM_ID_S start with 400",
+                "insert into KRIM_TYP_T values ('30', 'KFS-COA', 'Chart')",
+                "insert into KRIM_TYP_T values ('31', 'KR-IDM', 'Default')",
+                "insert into KRIM_ATTR_DEFN_T values ('20', 'chartOfAccountsCode')",
+                "insert into KRIM_PERM_T values ('10', 'KFS-COA', 'Maintain Chart')",
+                "insert into KRIM_PRNCPL_T values ('1', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('2', 'asmith')",
+                "insert into KRIM_ROLE_T values ('50', 'obj-50', 1, 'Chart Manager', 'KFS-SYS', 'Manages a chart', '30', 'Y')",
+                "insert into KRIM_ROLE_T values ('60', 'obj-60', 1, 'Retired', 'KFS-SYS', 'No longer used', '30', 'N')");
+        return retval;
+    }
+
+    private Database database(final Connection connection) throws Exception {
+        return DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+    }
+
+    private void execute(final Connection connection, final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return each row as its column values joined by <code>|</code>
+     */
+    private List<String> rows(final Connection connection, final String sql) throws Exception {
+        final List<String> retval = new ArrayList<String>();
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            final ResultSetMetaData metaData = results.getMetaData();
+            while (results.next()) {
+                final StringBuilder row = new StringBuilder();
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    if (column > 1) {
+                        row.append('|');
+                    }
+                    row.append(results.getString(column));
+                }
+                retval.add(row.toString());
+            }
+        }
+        finally {
+            statement.close();
+        }
+        return retval;
+    }
+
+    private void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
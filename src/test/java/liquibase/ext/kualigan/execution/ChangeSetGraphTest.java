@@ -0,0 +1,153 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.change.core.RawSQLChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.precondition.core.PreconditionContainer;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.change.AssignRoleMember;
+import liquibase.ext.kualigan.change.CreateRole;
+import liquibase.ext.kualigan.execution.ChangeSetGraph.Node;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Edges of the {@link ChangeSetGraph}: dependencies between changesets touching the same KIM rows, and barriers for
+ * changesets whose rows are not known.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetGraphTest {
+
+    @Test
+    public void testDependencies() {
+        final ChangeSet roleA = changeSet("1", role("KFS-SYS", "A"));
+        final ChangeSet roleB = changeSet("2", role("KFS-SYS", "B"));
+        final ChangeSet memberOfA = changeSet("3", member("KFS-SYS", "A", "jdoe"));
+        final ChangeSet roleAAgain = changeSet("4", role("KFS-SYS", "A"));
+        final ChangeSet otherMember = changeSet("5", member("KFS-SYS", "B", "asmith"));
+
+        final List<Node> nodes = new ChangeSetGraph(Arrays.asList(roleA, roleB, memberOfA, roleAAgain, otherMember)).getNodes();
+
+        assertDependencies(nodes.get(0));
+        assertDependencies(nodes.get(1));
+        // reads a row written before it
+        assertDependencies(nodes.get(2), nodes.get(0));
+        // writes a row written and read before it
+        assertDependencies(nodes.get(3), nodes.get(0), nodes.get(2));
+        assertDependencies(nodes.get(4), nodes.get(1));
+        for (final Node node : nodes) {
+            assertFalse(node.isBarrier());
+        }
+    }
+
+    @Test
+    public void testRoots() {
+        final ChangeSetGraph graph = new ChangeSetGraph(Arrays.asList(changeSet("1", role("KFS-SYS", "A")),
+                                                                      changeSet("2", member("KFS-SYS", "A", "jdoe")),
+                                                                      changeSet("3", role("KFS-SYS", "B"))));
+
+        assertEquals(Arrays.asList(graph.getNodes().get(0), graph.getNodes().get(2)), graph.getRoots());
+    }
+
+    @Test
+    public void testBarrier_otherChange() {
+        final List<Node> nodes = new ChangeSetGraph(Arrays.asList(changeSet("1", role("KFS-SYS", "A")),
+                                                                  changeSet("2", role("KFS-SYS", "B")),
+                                                                  changeSet("3", new RawSQLChange("update KRCR_PARM_T set VAL = 'Y'")),
+                                                                  changeSet("4", role("KFS-SYS", "C")),
+                                                                  changeSet("5", member("KFS-SYS", "A", "jdoe")))).getNodes();
+
+        assertTrue(nodes.get(2).isBarrier());
+        assertDependencies(nodes.get(2), nodes.get(0), nodes.get(1));
+        assertDependencies(nodes.get(3), nodes.get(2));
+        // the writer of role A is behind the barrier
+        assertDependencies(nodes.get(4), nodes.get(2));
+    }
+
+    @Test
+    public void testBarrier_preconditions() {
+        final ChangeSet guarded = changeSet("2", role("KFS-SYS", "B"));
+        guarded.setPreconditions(new PreconditionContainer());
+
+        final List<Node> nodes = new ChangeSetGraph(Arrays.asList(changeSet("1", role("KFS-SYS", "A")),
+                                                                  guarded,
+                                                                  changeSet("3", role("KFS-SYS", "C")))).getNodes();
+
+        assertTrue(nodes.get(1).isBarrier());
+        assertDependencies(nodes.get(1), nodes.get(0));
+        assertDependencies(nodes.get(2), nodes.get(1));
+    }
+
+    @Test
+    public void testBarrier_consecutive() {
+        final List<Node> nodes = new ChangeSetGraph(Arrays.asList(changeSet("1", new RawSQLChange("select 1 from dual")),
+                                                                  changeSet("2", new RawSQLChange("select 2 from dual")),
+                                                                  changeSet("3", role("KFS-SYS", "A")))).getNodes();
+
+        assertDependencies(nodes.get(1), nodes.get(0));
+        assertDependencies(nodes.get(2), nodes.get(1));
+    }
+
+    private void assertDependencies(final Node node, final Node... dependencies) {
+        assertEquals(node.toString(), new HashSet<Node>(Arrays.asList(dependencies)), node.getDependencies());
+        for (final Node dependency : dependencies) {
+            assertTrue(dependency.getDependents().contains(node));
+        }
+    }
+
+    private ChangeSet changeSet(final String id, final Change change) {
+        final ChangeSet retval = new ChangeSet(id, "test", false, false, "changelog.xml", null, null, null);
+        retval.addChange(change);
+        return retval;
+    }
+
+    private CreateRole role(final String namespace, final String name) {
+        final CreateRole retval = new CreateRole();
+        retval.setNamespace(namespace);
+        retval.setName(name);
+        retval.setType("Default");
+        return retval;
+    }
+
+    private AssignRoleMember member(final String namespace, final String role, final String member) {
+        final AssignRoleMember retval = new AssignRoleMember();
+        retval.setNamespace(namespace);
+        retval.setRole(role);
+        retval.setType("P");
+        retval.setMember(member);
+        return retval;
+    }
+}
@@ -0,0 +1,214 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.change.DatabaseChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.MigrationFailedException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.change.CloneKimNamespace;
+import liquibase.ext.kualigan.change.KimAbstractChange;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * KIM changesets applied by a {@link ChangeSetGroup}: committed together, rolled back together, and marked in
+ * {@code DATABASECHANGELOG} as executed or reran.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetGroupTest {
+    private Connection connection;
+    private Database database;
+    private DatabaseChangeLog changeLog;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:CHANGESET_GROUP;MODE=Oracle");
+        connection.setAutoCommit(false);
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        changeLog = new DatabaseChangeLog("changelog.xml");
+
+        execute("create table KRIM_GROUP_TEST_T (NM varchar(40))");
+        new Liquibase("changelog.xml", new ClassLoaderResourceAccessor(), database).checkLiquibaseTables(false, changeLog, new Contexts());
+        database.commit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testAccepts() throws Exception {
+        assertTrue(ChangeSetGroup.accepts(changeSet("1", new GroupChange("a"))));
+        assertFalse(ChangeSetGroup.accepts(changeSet("2")));
+
+        final ChangeSet clone = changeSet("3");
+        clone.addChange(new CloneKimNamespace());
+        assertFalse(ChangeSetGroup.accepts(clone));
+    }
+
+    @Test
+    public void testAdd_commitsFullGroups() throws Exception {
+        final ChangeSetGroup group = new ChangeSetGroup(changeLog, database, 2);
+        group.add(changeSet("1", new GroupChange("a")));
+        group.add(changeSet("2", new GroupChange("b")));
+        group.add(changeSet("3", new GroupChange("c")));
+        database.rollback();
+
+        assertEquals("2", queryForString("select count(*) from KRIM_GROUP_TEST_T"));
+        assertEquals("2", queryForString("select count(*) from DATABASECHANGELOG"));
+        assertEquals("EXECUTED", queryForString("select EXECTYPE from DATABASECHANGELOG where ID = '2'"));
+    }
+
+    @Test
+    public void testAdd_failureRollsBackGroup() throws Exception {
+        final ChangeSetGroup group = new ChangeSetGroup(changeLog, database, 3);
+        group.add(changeSet("1", new GroupChange("a")));
+        try {
+            group.add(changeSet("2", new GroupChange(null)));
+            fail("Expected the second changeset to fail");
+        }
+        catch (MigrationFailedException e) {
+            assertTrue(e.getMessage().contains("changelog.xml::1::test"));
+        }
+
+        assertEquals("0", queryForString("select count(*) from KRIM_GROUP_TEST_T"));
+        assertEquals("0", queryForString("select count(*) from DATABASECHANGELOG"));
+    }
+
+    @Test
+    public void testAdd_reran() throws Exception {
+        final ChangeSet changeSet = changeSet("1", new GroupChange("a"));
+        database.markChangeSetExecStatus(changeSet, ChangeSet.ExecType.EXECUTED);
+        database.commit();
+
+        final ChangeSetGroup group = new ChangeSetGroup(changeLog, database, 2);
+        group.add(changeSet);
+        group.commit();
+
+        assertEquals("1", queryForString("select count(*) from DATABASECHANGELOG where ID = '1'"));
+        assertEquals("RERAN", queryForString("select EXECTYPE from DATABASECHANGELOG where ID = '1'"));
+    }
+
+    private ChangeSet changeSet(final String id, final GroupChange... changes) {
+        final ChangeSet retval = new ChangeSet(id, "test", false, false, "changelog.xml", null, null, changeLog);
+        for (final GroupChange change : changes) {
+            retval.addChange(change);
+            change.setChangeSet(retval);
+        }
+        return retval;
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Inserts one row, or fails when it has no name to insert
+     */
+    @DatabaseChange(name="changeSetGroupTest", description = "Inserts a test row", priority = EXTENSION_PRIORITY)
+    public static class GroupChange extends KimAbstractChange {
+        private String name;
+
+        public GroupChange() {
+            this(null);
+        }
+
+        public GroupChange(final String name) {
+            super("changeSetGroupTest", "Inserts a test row", EXTENSION_PRIORITY);
+            this.name = name;
+        }
+
+        @Override
+        protected String getSequenceName() {
+            return null;
+        }
+
+        public SqlStatement[] generateStatements(final Database database) {
+            if (name == null) {
+                return new SqlStatement[] { new RawSqlStatement("insert into KRIM_GROUP_MISSING_T values ('x')") };
+            }
+            return new SqlStatement[] { new RawSqlStatement(String.format("insert into KRIM_GROUP_TEST_T values ('%s')", name)) };
+        }
+
+        public SqlStatement[] generateRollbackStatements(final Database database) {
+            return new SqlStatement[0];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.DatabaseChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.change.KimAbstractChange;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Changesets handed over by a {@link ChangeSetPipeline}: prepared on its own connection, or unprepared when they
+ * cannot be, always in changelog order.
+ *
+ * @author Leo Przybylski
+ */
+public class ChangeSetPipelineTest {
+    private static final String URL = "jdbc:h2:mem:PIPELINE;MODE=Oracle";
+
+    private Connection connection;
+    private Database database;
+    private ChangeSetPipeline pipeline;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(URL);
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        connection.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testTake_prepared() throws Exception {
+        final PipelineChange change = new PipelineChange(false);
+        start(changeSet("1", change));
+
+        final ChangeSetPipeline.Prepared prepared = pipeline.take();
+        assertEquals("1", prepared.getChangeSet().getId());
+        assertNotNull(prepared.getStatements());
+        assertEquals(1, prepared.getStatements().size());
+        assertEquals("select 1 from dual", ((RawSqlStatement) prepared.getStatements().get(0)).getSql());
+        assertNotSame(database, change.getLookup());
+        pipeline.committed();
+    }
+
+    @Test(timeout = 10000)
+    public void testTake_failuresHandedOverUnprepared() throws Exception {
+        start(changeSet("1", new PipelineChange(true)),
+              changeSet("2"),
+              changeSet("3", new PipelineChange(false)));
+
+        final List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            final ChangeSetPipeline.Prepared prepared = pipeline.take();
+            ids.add(prepared.getChangeSet().getId());
+            if (i < 2) {
+                assertNull(prepared.getStatements());
+            }
+            else {
+                assertNotNull(prepared.getStatements());
+            }
+            pipeline.committed();
+        }
+        assertEquals("[1, 2, 3]", ids.toString());
+    }
+
+    @Test
+    public void testIsPreparable_emptyChangeSet() throws Exception {
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>();
+        changeSets.add(changeSet("1"));
+        final ChangeSetGraph graph = new ChangeSetGraph(changeSets);
+        pipeline = new ChangeSetPipeline(graph, database, null, 1);
+
+        assertFalse(pipeline.isPreparable(graph.getNodes().get(0)));
+    }
+
+    private void start(final ChangeSet... changeSets) throws Exception {
+        final List<ChangeSet> pending = new ArrayList<ChangeSet>();
+        for (final ChangeSet changeSet : changeSets) {
+            pending.add(changeSet);
+        }
+        pipeline = new ChangeSetPipeline(new ChangeSetGraph(pending), database, new DatabaseSource() {
+                public Database open() throws DatabaseException {
+                    try {
+                        final Connection retval = DriverManager.getConnection(URL);
+                        retval.setAutoCommit(false);
+                        return DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(retval));
+                    }
+                    catch (SQLException e) {
+                        throw new DatabaseException(e);
+                    }
+                }
+            }, 2);
+        pipeline.start();
+    }
+
+    private ChangeSet changeSet(final String id, final PipelineChange... changes) {
+        final ChangeSet retval = new ChangeSet(id, "test", false, false, "changelog.xml", null, null, null);
+        for (final PipelineChange change : changes) {
+            retval.addChange(change);
+            change.setChangeSet(retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Records the lookup {@link Database} it was generated with, or fails with an {@link Error}
+     */
+    @DatabaseChange(name="pipelineTest", description = "Records its lookup connection", priority = EXTENSION_PRIORITY)
+    public static class PipelineChange extends KimAbstractChange {
+        private final boolean failing;
+        private volatile Database lookup;
+
+        public PipelineChange() {
+            this(false);
+        }
+
+        public PipelineChange(final boolean failing) {
+            super("pipelineTest", "Records its lookup connection", EXTENSION_PRIORITY);
+            this.failing = failing;
+        }
+
+        @Override
+        protected String getSequenceName() {
+            return null;
+        }
+
+        @Override
+        public boolean collectKeys(final Set<KimKey> reads, final Set<KimKey> writes) {
+            return true;
+        }
+
+        public SqlStatement[] generateStatements(final Database database) {
+            if (failing) {
+                throw new AssertionError("generation failed");
+            }
+            lookup = getLookupDatabase(database);
+            return new SqlStatement[] { new RawSqlStatement("select 1 from dual") };
+        }
+
+        public SqlStatement[] generateRollbackStatements(final Database database) {
+            return new SqlStatement[0];
+        }
+
+        public Database getLookup() {
+            return lookup;
+        }
+    }
+}
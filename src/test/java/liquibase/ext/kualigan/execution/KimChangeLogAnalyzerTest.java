@@ -0,0 +1,172 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.exception.ChangeLogParseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.change.AssignKimTypeAttribute;
+import liquibase.ext.kualigan.change.CreateRole;
+import liquibase.ext.kualigan.change.DropKimTypeAttribute;
+import liquibase.ext.kualigan.change.SyncKimState;
+import liquibase.ext.kualigan.parser.KimChangeLogParser;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Duplicates found by the {@link KimChangeLogAnalyzer}, rows removed between two definitions, and the check running
+ * on changelogs read by the Liquibase SAX parser.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogAnalyzerTest {
+    private boolean useStreamingParser;
+    private String duplicateChanges;
+
+    @Before
+    public void setUp() {
+        useStreamingParser = KimConfiguration.getInstance().getUseStreamingParser();
+        duplicateChanges = KimConfiguration.getInstance().getDuplicateChanges();
+    }
+
+    @After
+    public void tearDown() {
+        KimConfiguration.getInstance().setUseStreamingParser(useStreamingParser);
+        KimConfiguration.getInstance().setDuplicateChanges(duplicateChanges);
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        final CreateRole repeated = role("KFS-SYS", "A");
+        final DatabaseChangeLog changeLog = changeLog(role("KFS-SYS", "A"), role("KFS-SYS", "B"), repeated);
+
+        final List<KimChangeLogAnalyzer.Finding> findings = new KimChangeLogAnalyzer(KimChangeLogAnalyzer.Mode.COLLAPSE).analyze(changeLog);
+
+        assertEquals(1, findings.size());
+        assertFalse(findings.get(0).isConflict());
+        assertTrue(findings.get(0).isCollapsed());
+        assertTrue(repeated.isDuplicate());
+    }
+
+    @Test
+    public void testCollapse_afterDrop() throws Exception {
+        final AssignKimTypeAttribute reassigned = typeAttribute("Default", "namespaceCode");
+        final DropKimTypeAttribute drop = new DropKimTypeAttribute();
+        drop.setType("Default");
+        drop.setAttribute("namespaceCode");
+        final DatabaseChangeLog changeLog = changeLog(typeAttribute("Default", "namespaceCode"), drop, reassigned);
+
+        assertTrue(new KimChangeLogAnalyzer(KimChangeLogAnalyzer.Mode.COLLAPSE).analyze(changeLog).isEmpty());
+        assertFalse(reassigned.isDuplicate());
+    }
+
+    @Test
+    public void testCollapse_afterSync() throws Exception {
+        final CreateRole recreated = role("KFS-SYS", "A");
+        final CreateRole otherNamespace = role("KFS-VND", "A");
+        final SyncKimState sync = new SyncKimState();
+        sync.setNamespace("KFS-SYS");
+        final DatabaseChangeLog changeLog = changeLog(role("KFS-SYS", "A"), role("KFS-VND", "A"), sync, recreated, otherNamespace);
+
+        final List<KimChangeLogAnalyzer.Finding> findings = new KimChangeLogAnalyzer(KimChangeLogAnalyzer.Mode.COLLAPSE).analyze(changeLog);
+
+        assertEquals(1, findings.size());
+        assertEquals("KFS-VND", findings.get(0).getKey().getNamespace());
+        assertFalse(recreated.isDuplicate());
+        assertTrue(otherNamespace.isDuplicate());
+    }
+
+    @Test
+    public void testCollapse_afterSyncWithoutPrune() throws Exception {
+        final CreateRole repeated = role("KFS-SYS", "A");
+        final SyncKimState sync = new SyncKimState();
+        sync.setNamespace("KFS-SYS");
+        sync.setPrune(false);
+
+        new KimChangeLogAnalyzer(KimChangeLogAnalyzer.Mode.COLLAPSE).analyze(changeLog(role("KFS-SYS", "A"), sync, repeated));
+
+        assertTrue(repeated.isDuplicate());
+    }
+
+    @Test
+    public void testSaxParsedChangeLog() throws Exception {
+        KimConfiguration.getInstance().setUseStreamingParser(false);
+        KimConfiguration.getInstance().setDuplicateChanges("fail");
+        final KimChangeLogParser parser = new KimChangeLogParser();
+        final ClassLoaderResourceAccessor resourceAccessor = new ClassLoaderResourceAccessor();
+        final String changeLogFile = "liquibase/ext/kualigan/execution/duplicate_roles.xml";
+
+        assertTrue(parser.supports(changeLogFile, resourceAccessor));
+        try {
+            parser.parse(changeLogFile, new ChangeLogParameters(), resourceAccessor);
+            fail("duplicate role not reported");
+        }
+        catch (ChangeLogParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("more than once"));
+        }
+    }
+
+    private DatabaseChangeLog changeLog(final Change... changes) {
+        final DatabaseChangeLog retval = new DatabaseChangeLog("changelog.xml");
+        for (int i = 0; i < changes.length; i++) {
+            final ChangeSet changeSet = new ChangeSet(String.valueOf(i + 1), "test", false, false, "changelog.xml", null, null, null);
+            changeSet.addChange(changes[i]);
+            retval.addChangeSet(changeSet);
+        }
+        return retval;
+    }
+
+    private CreateRole role(final String namespace, final String name) {
+        final CreateRole retval = new CreateRole();
+        retval.setNamespace(namespace);
+        retval.setName(name);
+        retval.setType("Default");
+        retval.setActive("Y");
+        return retval;
+    }
+
+    private AssignKimTypeAttribute typeAttribute(final String type, final String attribute) {
+        final AssignKimTypeAttribute retval = new AssignKimTypeAttribute();
+        retval.setNamespace("KFS-SYS");
+        retval.setType(type);
+        retval.setAttribute(attribute);
+        retval.setActive("Y");
+        return retval;
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.execution;
+
+import liquibase.change.DatabaseChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import liquibase.statement.SqlStatement;
+import liquibase.statement.core.RawSqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.change.KimAbstractChange;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Nested changes resolved concurrently through a {@link LookupPool}, and the lookup {@link Database} each thread
+ * sees.
+ *
+ * @author Leo Przybylski
+ */
+public class LookupPoolTest {
+    private static final String URL = "jdbc:h2:mem:LOOKUP_POOL;MODE=Oracle";
+
+    private Connection connection;
+    private Database database;
+    private int lookupConnections;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(URL);
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        lookupConnections = KimConfiguration.getInstance().getLookupConnections();
+        KimConfiguration.getInstance().setLookupConnections(2);
+        LookupPool.register(database, new DatabaseSource() {
+                public Database open() throws DatabaseException {
+                    try {
+                        final Connection retval = DriverManager.getConnection(URL);
+                        retval.setAutoCommit(false);
+                        return DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(retval));
+                    }
+                    catch (SQLException e) {
+                        throw new DatabaseException(e);
+                    }
+                }
+            });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LookupPool.unregister(database);
+        KimConfiguration.getInstance().setLookupConnections(lookupConnections);
+        connection.close();
+    }
+
+    @Test
+    public void testGenerateChildStatements_concurrent() throws Exception {
+        final LookupChange parent = new LookupChange();
+        for (int i = 0; i < 5; i++) {
+            final LookupChange child = new LookupChange();
+            child.getChildren().add(new LookupChange());
+            child.getChildren().add(new LookupChange());
+            parent.getChildren().add(child);
+        }
+        final ChangeSet changeSet = new ChangeSet("1", "test", false, false, "changelog.xml", null, null, null);
+        changeSet.addChange(parent);
+        parent.setChangeSet(changeSet);
+
+        assertEquals(10, parent.generateStatements(database).length);
+
+        final Set<Database> lookups = new HashSet<Database>();
+        for (final LookupChange child : parent.getChildren()) {
+            assertNotSame(database, child.getLookup());
+            assertTrue(child.getThread().getName().startsWith("kim-lookup"));
+            // grandchildren run inline on the connection of their parent
+            for (final LookupChange grandchild : child.getChildren()) {
+                assertSame(child.getLookup(), grandchild.getLookup());
+                assertSame(child.getThread(), grandchild.getThread());
+            }
+            lookups.add(child.getLookup());
+        }
+        assertTrue(lookups.size() <= 2);
+        assertSame(database, LookupPool.getLookupDatabase(database));
+    }
+
+    @Test
+    public void testGenerateChildStatements_laterChangeIsSerial() throws Exception {
+        final LookupChange parent = new LookupChange();
+        parent.getChildren().add(new LookupChange());
+        parent.getChildren().add(new LookupChange());
+        final ChangeSet changeSet = new ChangeSet("1", "test", false, false, "changelog.xml", null, null, null);
+        changeSet.addChange(new LookupChange());
+        changeSet.addChange(parent);
+        parent.setChangeSet(changeSet);
+
+        parent.generateStatements(database);
+
+        for (final LookupChange child : parent.getChildren()) {
+            assertSame(database, child.getLookup());
+            assertSame(Thread.currentThread(), child.getThread());
+        }
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        final Database lookup = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(DriverManager.getConnection(URL)));
+        try {
+            final Database seen = LookupPool.call(lookup, new Callable<Database>() {
+                    public Database call() {
+                        return LookupPool.getLookupDatabase(database);
+                    }
+                });
+
+            assertSame(lookup, seen);
+            assertSame(database, LookupPool.getLookupDatabase(database));
+        }
+        finally {
+            lookup.close();
+        }
+    }
+
+    /**
+     * Records the lookup {@link Database} and thread its statements were generated with
+     */
+    @DatabaseChange(name="lookupPoolTest", description = "Records its lookup connection", priority = EXTENSION_PRIORITY)
+    public static class LookupChange extends KimAbstractChange {
+        private final List<LookupChange> children = new ArrayList<LookupChange>();
+        private volatile Database lookup;
+        private volatile Thread thread;
+
+        public LookupChange() {
+            super("lookupPoolTest", "Records its lookup connection", EXTENSION_PRIORITY);
+        }
+
+        @Override
+        protected String getSequenceName() {
+            return null;
+        }
+
+        public SqlStatement[] generateStatements(final Database database) {
+            if (children.isEmpty()) {
+                lookup = getLookupDatabase(database);
+                thread = Thread.currentThread();
+                return new SqlStatement[] { new RawSqlStatement("select 1 from dual") };
+            }
+            lookup = getLookupDatabase(database);
+            thread = Thread.currentThread();
+            final List<SqlStatement> retval = generateChildStatements(database, children);
+            return retval.toArray(new SqlStatement[retval.size()]);
+        }
+
+        public SqlStatement[] generateRollbackStatements(final Database database) {
+            return new SqlStatement[0];
+        }
+
+        public List<LookupChange> getChildren() {
+            return children;
+        }
+
+        public Database getLookup() {
+            return lookup;
+        }
+
+        public Thread getThread() {
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.export;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.FileSystemResourceAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.execution.JdbcDatabaseSource;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Exports an H2 database with {@link KimExporter}, applies the changelog to an empty schema whose ids differ and
+ * compares the rows by natural key.
+ *
+ * @author Leo Przybylski
+ */
+public class KimExporterTest {
+    private static final String SOURCE_URL = "jdbc:h2:mem:EXPORT_SOURCE;MODE=Oracle";
+    private static final String TARGET_URL = "jdbc:h2:mem:EXPORT_TARGET;MODE=Oracle";
+
+    private static final String[] DDL = {
+        "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), LBL varchar(40), CMPNT_NM varchar(200), ACTV_IND varchar(1))",
+        "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), SRVC_NM varchar(200), ACTV_IND varchar(1))",
+        "create table KRIM_TYP_ATTR_T (KIM_TYP_ATTR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), SORT_CD varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_TMPL_T (PERM_TMPL_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40))",
+        "create table KRIM_PERM_T (PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), DESC_TXT varchar(400), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_RSP_TMPL_T (RSP_TMPL_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40))",
+        "create table KRIM_RSP_T (RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), DESC_TXT varchar(400), ACTV_IND varchar(1))",
+        "create table KRIM_RSP_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_T (ROLE_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_NM varchar(80), NMSPC_CD varchar(40), DESC_TXT varchar(4000), KIM_TYP_ID varchar(40), ACTV_IND varchar(1), LAST_UPDT_DT timestamp)",
+        "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+        "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_T (ROLE_RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), RSP_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ACTN_TYP_CD varchar(40), PRIORITY_NBR decimal(3), ACTN_PLCY_CD varchar(40), FRC_ACTN varchar(1), ROLE_MBR_ID varchar(40), ROLE_RSP_ID varchar(40))",
+        "create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))"
+    };
+
+    private static final String[] SEQUENCES = {
+        "krim_attr_defn_id_s", "krim_typ_id_s", "KRIM_TYP_ATTR_ID_S", "KRIM_PERM_ID_S", "KRIM_ATTR_DATA_ID_S", "krim_rsp_id_s",
+        "krim_role_id_s", "KRIM_ROLE_MBR_ID_S", "krim_role_perm_id_s", "krim_role_rsp_id_s", "krim_role_rsp_actn_id_s"
+    };
+
+    /**
+     * Every exported table by natural key, so that rows with different ids compare equal
+     */
+    private static final String[] TABLES = {
+        "select NMSPC_CD, NM, LBL, CMPNT_NM, ACTV_IND from KRIM_ATTR_DEFN_T order by NM",
+        "select NMSPC_CD, NM, SRVC_NM, ACTV_IND from KRIM_TYP_T order by NM",
+        "select t.NM, d.NM, ta.ACTV_IND from KRIM_TYP_ATTR_T ta "
+            + "join KRIM_TYP_T t on t.KIM_TYP_ID = ta.KIM_TYP_ID join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = ta.KIM_ATTR_DEFN_ID order by 1, 2",
+        "select p.NMSPC_CD, p.NM, p.DESC_TXT, p.ACTV_IND, tm.NM from KRIM_PERM_T p "
+            + "left outer join KRIM_PERM_TMPL_T tm on tm.PERM_TMPL_ID = p.PERM_TMPL_ID order by 2",
+        "select p.NM, t.NM, d.NM, a.ATTR_VAL from KRIM_PERM_ATTR_DATA_T a join KRIM_PERM_T p on p.PERM_ID = a.PERM_ID "
+            + "join KRIM_TYP_T t on t.KIM_TYP_ID = a.KIM_TYP_ID join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = a.KIM_ATTR_DEFN_ID order by 1, 3",
+        "select r.NMSPC_CD, r.ROLE_NM, r.DESC_TXT, r.ACTV_IND, t.NMSPC_CD, t.NM from KRIM_ROLE_T r "
+            + "left outer join KRIM_TYP_T t on t.KIM_TYP_ID = r.KIM_TYP_ID order by 2",
+        "select r.ROLE_NM, m.MBR_TYP_CD, p.PRNCPL_NM, mr.ROLE_NM from KRIM_ROLE_MBR_T m join KRIM_ROLE_T r on r.ROLE_ID = m.ROLE_ID "
+            + "left outer join KRIM_PRNCPL_T p on m.MBR_TYP_CD = 'P' and p.PRNCPL_ID = m.MBR_ID "
+            + "left outer join KRIM_ROLE_T mr on m.MBR_TYP_CD = 'R' and mr.ROLE_ID = m.MBR_ID order by 1, 2, 3, 4",
+        "select r.ROLE_NM, p.PRNCPL_NM, t.NM, d.NM, a.ATTR_VAL from KRIM_ROLE_MBR_ATTR_DATA_T a "
+            + "join KRIM_ROLE_MBR_T m on m.ROLE_MBR_ID = a.ROLE_MBR_ID join KRIM_ROLE_T r on r.ROLE_ID = m.ROLE_ID "
+            + "join KRIM_PRNCPL_T p on p.PRNCPL_ID = m.MBR_ID join KRIM_TYP_T t on t.KIM_TYP_ID = a.KIM_TYP_ID "
+            + "join KRIM_ATTR_DEFN_T d on d.KIM_ATTR_DEFN_ID = a.KIM_ATTR_DEFN_ID order by 1, 2, 4",
+        "select r.ROLE_NM, p.NMSPC_CD, p.NM, rp.ACTV_IND from KRIM_ROLE_PERM_T rp "
+            + "join KRIM_ROLE_T r on r.ROLE_ID = rp.ROLE_ID join KRIM_PERM_T p on p.PERM_ID = rp.PERM_ID order by 1, 3"
+    };
+
+    private Connection sourceConnection;
+    private Connection targetConnection;
+    private File changeLog;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        sourceConnection = DriverManager.getConnection(SOURCE_URL, "sa", "");
+        targetConnection = DriverManager.getConnection(TARGET_URL, "sa", "");
+        createSchema(sourceConnection, 100);
+        createSchema(targetConnection, 5000);
+        changeLog = File.createTempFile("kim-export", ".xml");
+
+        execute(sourceConnection,
+                "insert into KRIM_PRNCPL_T values ('1', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('2', 'asmith')",
+                "insert into KRIM_PERM_TMPL_T values ('10', 'o1', 1, 'Use Screen', 'KR-NS')",
+                "insert into KRIM_ATTR_DEFN_T values ('20', 'o2', 1, 'chartOfAccountsCode', 'KFS-SYS', 'Chart', 'org.kuali.kfs.sys.identity.KfsKimAttributes', 'Y')",
+                "insert into KRIM_ATTR_DEFN_T values ('21', 'o3', 1, 'organizationCode', 'KFS-SYS', 'Organization', 'org.kuali.kfs.sys.identity.KfsKimAttributes', 'Y')",
+                "insert into KRIM_TYP_T values ('30', 'o4', 1, 'Chart', 'KFS-SYS', 'chartRoleTypeService', 'Y')",
+                "insert into KRIM_TYP_T values ('31', 'o5', 1, 'Default', 'KUALI', 'kimTypeService', 'Y')",
+                "insert into KRIM_TYP_ATTR_T values ('32', 'o6', 1, 'a', '30', '20', 'Y')",
+                "insert into KRIM_TYP_ATTR_T values ('33', 'o7', 1, 'b', '30', '21', 'Y')",
+                "insert into KRIM_PERM_T values ('40', 'o8', 1, '10', 'KFS-SYS', 'Use Ledger Screen', 'Opens the ledger', 'Y')",
+                "insert into KRIM_PERM_ATTR_DATA_T values ('41', 'o9', 1, '40', '30', '20', 'BL')",
+                "insert into KRIM_ROLE_T values ('50', 'o10', 1, 'Chart Manager', 'KFS-SYS', 'Manages a chart', '30', 'Y', null)",
+                "insert into KRIM_ROLE_T values ('60', 'o11', 1, 'Chart Reviewer', 'KFS-SYS', 'Reviews charts', '31', 'N', null)",
+                "insert into KRIM_ROLE_MBR_T values ('51', 'o12', 1, '50', '1', 'P')",
+                "insert into KRIM_ROLE_MBR_ATTR_DATA_T values ('52', 'o13', 1, '51', '30', '20', 'BL')",
+                "insert into KRIM_ROLE_MBR_ATTR_DATA_T values ('53', 'o14', 1, '51', '30', '21', 'ACCT')",
+                "insert into KRIM_ROLE_MBR_T values ('54', 'o15', 1, '50', '2', 'P')",
+                "insert into KRIM_ROLE_MBR_T values ('55', 'o16', 1, '50', '60', 'R')",
+                "insert into KRIM_ROLE_PERM_T values ('56', 'o17', 1, '50', '40', 'Y')",
+                "insert into KRIM_ROLE_PERM_T values ('57', 'o18', 1, '60', '40', 'N')");
+
+        // Principals and templates are not exported; the target has them under other ids
+        execute(targetConnection,
+                "insert into KRIM_PRNCPL_T values ('9001', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('9002', 'asmith')",
+                "insert into KRIM_PERM_TMPL_T values ('9010', 'p1', 1, 'Use Screen', 'KR-NS')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(sourceConnection, "drop all objects");
+        execute(targetConnection, "drop all objects");
+        sourceConnection.close();
+        targetConnection.close();
+        changeLog.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        new KimExporter(new JdbcDatabaseSource(SOURCE_URL, "sa", ""), null, "test", 2, 10).export(changeLog);
+        new Liquibase(changeLog.getAbsolutePath(), new FileSystemResourceAccessor(), database(targetConnection)).update("");
+
+        for (final String sql : TABLES) {
+            final List<String> expected = rows(sourceConnection, sql);
+            assertTrue(sql, expected.size() > 0);
+            assertEquals(sql, expected, rows(targetConnection, sql));
+        }
+        assertEquals("[KFS-SYS|Chart Manager|Manages a chart|Y|KFS-SYS|Chart, KFS-SYS|Chart Reviewer|Reviews charts|N|KUALI|Default]",
+                     rows(targetConnection, TABLES[5]).toString());
+        assertEquals("9010", rows(targetConnection, "select PERM_TMPL_ID from KRIM_PERM_T").get(0));
+    }
+
+    private void createSchema(final Connection connection, final int firstId) throws Exception {
+        execute(connection, DDL);
+        for (final String sequence : SEQUENCES) {
+            execute(connection, String.format("create sequence %s start with %d", sequence, firstId));
+        }
+    }
+
+    private Database database(final Connection connection) throws Exception {
+        return DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+    }
+
+    private void execute(final Connection connection, final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return each row as its column values joined by <code>|</code>
+     */
+    private List<String> rows(final Connection connection, final String sql) throws Exception {
+        final List<String> retval = new ArrayList<String>();
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            final ResultSetMetaData metaData = results.getMetaData();
+            while (results.next()) {
+                final StringBuilder row = new StringBuilder();
+                for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                    if (column > 1) {
+                        row.append('|');
+                    }
+                    row.append(results.getString(column));
+                }
+                retval.add(row.toString());
+            }
+        }
+        finally {
+            statement.close();
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.export;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copying a namespace between two H2 databases whose ids differ, through {@link KimNamespaceCopier}.
+ *
+ * @author Leo Przybylski
+ */
+public class KimNamespaceCopierTest {
+    private static final String[] DDL = {
+        "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), LBL varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40), SRVC_NM varchar(200), ACTV_IND varchar(1))",
+        "create table KRIM_TYP_ATTR_T (KIM_TYP_ATTR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), SORT_CD varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_TMPL_T (PERM_TMPL_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40))",
+        "create table KRIM_PERM_T (PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), ACTV_IND varchar(1))",
+        "create table KRIM_PERM_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), PERM_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_RSP_TMPL_T (RSP_TMPL_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), NM varchar(100), NMSPC_CD varchar(40))",
+        "create table KRIM_RSP_T (RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_TMPL_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100), ACTV_IND varchar(1))",
+        "create table KRIM_RSP_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), RSP_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_T (ROLE_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_NM varchar(80), NMSPC_CD varchar(40), KIM_TYP_ID varchar(40), ACTV_IND varchar(1), LAST_UPDT_DT timestamp)",
+        "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+        "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+        "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_T (ROLE_RSP_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), RSP_ID varchar(40), ACTV_IND varchar(1))",
+        "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ACTN_TYP_CD varchar(40), PRIORITY_NBR decimal(3), ROLE_MBR_ID varchar(40), ROLE_RSP_ID varchar(40))",
+        "create table KRIM_GRP_T (GRP_ID varchar(40), GRP_NM varchar(80), NMSPC_CD varchar(40))",
+        "create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))"
+    };
+
+    private static final String[] SEQUENCES = {
+        "krim_attr_defn_id_s", "krim_typ_id_s", "KRIM_TYP_ATTR_ID_S", "KRIM_PERM_ID_S", "KRIM_ATTR_DATA_ID_S", "krim_rsp_id_s",
+        "krim_role_id_s", "KRIM_ROLE_MBR_ID_S", "krim_role_perm_id_s", "krim_role_rsp_id_s", "krim_role_rsp_actn_id_s"
+    };
+
+    private Connection sourceConnection;
+    private Connection targetConnection;
+    private Database source;
+    private Database target;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        sourceConnection = DriverManager.getConnection("jdbc:h2:mem:COPY_SOURCE;MODE=Oracle");
+        targetConnection = DriverManager.getConnection("jdbc:h2:mem:COPY_TARGET;MODE=Oracle");
+        source = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(sourceConnection));
+        target = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(targetConnection));
+        createSchema(sourceConnection, 100);
+        createSchema(targetConnection, 5000);
+
+        execute(sourceConnection,
+                "insert into KRIM_PRNCPL_T values ('1', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('2', 'gone')",
+                "insert into KRIM_PERM_TMPL_T values ('10', 'o1', 1, 'Use Screen', 'KR-NS')",
+                "insert into KRIM_ATTR_DEFN_T values ('20', 'o2', 1, 'chartOfAccountsCode', 'KFS-SYS', 'Chart', 'Y')",
+                "insert into KRIM_TYP_T values ('30', 'o3', 1, 'Chart', 'KFS-SYS', 'chartRoleTypeService', 'Y')",
+                "insert into KRIM_TYP_ATTR_T values ('31', 'o4', 1, 'a', '30', '20', 'Y')",
+                "insert into KRIM_PERM_T values ('40', 'o5', 1, '10', 'KFS-SYS', 'Use Ledger Screen', 'Y')",
+                "insert into KRIM_PERM_ATTR_DATA_T values ('41', 'o6', 1, '40', '30', '20', 'BL')",
+                "insert into KRIM_ROLE_T values ('50', 'o7', 1, 'Chart Manager', 'KFS-SYS', '30', 'Y', timestamp '2014-03-01 12:00:00')",
+                "insert into KRIM_ROLE_MBR_T values ('51', 'o8', 1, '50', '1', 'P')",
+                "insert into KRIM_ROLE_MBR_ATTR_DATA_T values ('52', 'o9', 1, '51', '30', '20', 'BL')",
+                "insert into KRIM_ROLE_MBR_T values ('53', 'o10', 1, '50', '2', 'P')",
+                "insert into KRIM_ROLE_PERM_T values ('54', 'o11', 1, '50', '40', 'Y')",
+                "insert into KRIM_ROLE_T values ('60', 'o12', 1, 'Other', 'KFS-AR', '30', 'Y', null)");
+
+        // Same principal and template under other ids; the other principal does not exist here
+        execute(targetConnection,
+                "insert into KRIM_PRNCPL_T values ('9001', 'jdoe')",
+                "insert into KRIM_PERM_TMPL_T values ('9010', 'p1', 1, 'Use Screen', 'KR-NS')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(sourceConnection, "drop all objects");
+        execute(targetConnection, "drop all objects");
+        sourceConnection.close();
+        targetConnection.close();
+    }
+
+    @Test
+    public void testCopy_remapsIdsByNaturalKey() throws Exception {
+        final KimNamespaceCopier copier = new KimNamespaceCopier(source, target);
+        copier.copy("KFS-SYS");
+
+        final String typeId = queryForString("select KIM_TYP_ID from KRIM_TYP_T where NM = 'Chart' and NMSPC_CD = 'KFS-SYS'");
+        final String attributeId = queryForString("select KIM_ATTR_DEFN_ID from KRIM_ATTR_DEFN_T where NM = 'chartOfAccountsCode'");
+        final String roleId = queryForString("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = 'Chart Manager'");
+        final String permissionId = queryForString("select PERM_ID from KRIM_PERM_T where NM = 'Use Ledger Screen'");
+        assertTrue(Integer.parseInt(roleId) >= 5000);
+
+        assertEquals(typeId, queryForString("select KIM_TYP_ID from KRIM_ROLE_T where ROLE_ID = '" + roleId + "'"));
+        assertEquals(attributeId, queryForString("select KIM_ATTR_DEFN_ID from KRIM_TYP_ATTR_T where KIM_TYP_ID = '" + typeId + "'"));
+        assertEquals("9010", queryForString("select PERM_TMPL_ID from KRIM_PERM_T where PERM_ID = '" + permissionId + "'"));
+        assertEquals("BL", queryForString("select ATTR_VAL from KRIM_PERM_ATTR_DATA_T where PERM_ID = '" + permissionId + "'"));
+        assertEquals(permissionId, queryForString("select PERM_ID from KRIM_ROLE_PERM_T where ROLE_ID = '" + roleId + "'"));
+
+        final String memberId = queryForString("select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = '" + roleId + "' and MBR_ID = '9001'");
+        assertEquals(attributeId, queryForString("select KIM_ATTR_DEFN_ID from KRIM_ROLE_MBR_ATTR_DATA_T where ROLE_MBR_ID = '" + memberId + "'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_T"));
+        assertEquals(1, copier.getUnresolved());
+
+        // Other namespaces are left alone
+        assertEquals("0", queryForString("select count(*) from KRIM_ROLE_T where NMSPC_CD = 'KFS-AR'"));
+    }
+
+    @Test
+    public void testCopy_repeated() throws Exception {
+        new KimNamespaceCopier(source, target).copy("KFS-SYS");
+        final KimNamespaceCopier copier = new KimNamespaceCopier(source, target);
+        copier.copy("KFS-SYS");
+
+        assertEquals(0, copier.getCopied());
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_ATTR_DATA_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_PERM_T"));
+        assertEquals("1", queryForString("select count(*) from KRIM_PERM_ATTR_DATA_T"));
+    }
+
+    private void createSchema(final Connection connection, final int firstId) throws Exception {
+        execute(connection, DDL);
+        for (final String sequence : SEQUENCES) {
+            execute(connection, String.format("create sequence %s start with %d", sequence, firstId));
+        }
+    }
+
+    private void execute(final Connection connection, final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = targetConnection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            final String retval = results.getString(1);
+            assertFalse(results.next());
+            return retval;
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.change.DatabaseChange;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.change.KimAbstractChange;
+import liquibase.ext.kualigan.lookup.KimReferenceSnapshot.Reference;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static liquibase.ext.Constants.EXTENSION_PRIORITY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Loading, ambiguous keys and updates of a {@link KimReferenceSnapshot}, and foreign keys served from it
+ *
+ * @author Leo Przybylski
+ */
+public class KimReferenceSnapshotTest {
+    private Connection connection;
+    private Database database;
+    private boolean useReferenceSnapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        useReferenceSnapshot = KimConfiguration.getInstance().getUseReferenceSnapshot();
+        KimConfiguration.getInstance().setUseReferenceSnapshot(true);
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:REFERENCE_SNAPSHOT;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_PERM_TMPL_T (PERM_TMPL_ID varchar(40), NM varchar(100))",
+                "create table KRIM_RSP_TMPL_T (RSP_TMPL_ID varchar(40), NM varchar(100))",
+                "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), NM varchar(100))",
+                "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40))",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_PERM_T (PERM_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40), PERM_TMPL_ID varchar(40))",
+                "create table KRIM_RSP_T (RSP_ID varchar(40), NM varchar(100), NMSPC_CD varchar(40))",
+                "insert into KRIM_PERM_TMPL_T values ('1', 'Initiate Document')",
+                "insert into KRIM_TYP_T values ('10', 'Chart', 'KFS-SYS')",
+                "insert into KRIM_TYP_T values ('11', 'Chart', 'KFS-COA')",
+                "insert into KRIM_ROLE_T values ('50', 'Manager', 'KFS-SYS')",
+                "insert into KRIM_ROLE_T values ('51', 'Manager', 'KFS-AR')",
+                "insert into KRIM_PERM_T values ('70', 'Initiate', 'KFS-SYS', '1')",
+                "insert into KRIM_RSP_T values ('90', 'Review', 'KFS-SYS')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KimReferenceSnapshot.reset(database);
+        KimConfiguration.getInstance().setUseReferenceSnapshot(useReferenceSnapshot);
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testGetInstance_loads() throws Exception {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+
+        assertSame(snapshot, KimReferenceSnapshot.getInstance(database));
+        assertEquals("1", snapshot.lookup(Reference.PERMISSION_TEMPLATE, "Initiate Document"));
+        assertEquals("50", snapshot.lookup(Reference.ROLE, "Manager", "KFS-SYS"));
+        assertEquals("51", snapshot.lookup(Reference.ROLE, "Manager", "KFS-AR"));
+        assertEquals("70", snapshot.lookup(Reference.PERMISSION, "Initiate", "KFS-SYS"));
+        assertEquals("70", snapshot.lookup(Reference.TEMPLATED_PERMISSION, "Initiate", "KFS-SYS", "1"));
+        assertEquals("90", snapshot.lookup(Reference.RESPONSIBILITY, "Review"));
+        assertEquals(2, snapshot.size(Reference.ROLE));
+        assertNull(snapshot.lookup(Reference.ROLE, "Manager", "KFS-COA"));
+    }
+
+    @Test
+    public void testGetInstance_disabled() throws Exception {
+        KimConfiguration.getInstance().setUseReferenceSnapshot(false);
+        assertNull(KimReferenceSnapshot.getInstance(database));
+    }
+
+    @Test
+    public void testLookup_ambiguous() throws Exception {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+
+        assertNull(snapshot.lookup(Reference.TYPE, "Chart"));
+        assertEquals("10", snapshot.lookup(Reference.NAMESPACED_TYPE, "Chart", "KFS-SYS"));
+        assertEquals("11", snapshot.lookup(Reference.NAMESPACED_TYPE, "Chart", "KFS-COA"));
+
+        snapshot.register(Reference.TYPE, "10", "Chart");
+        assertNull(snapshot.lookup(Reference.TYPE, "Chart"));
+        snapshot.evict(Reference.TYPE, "Chart");
+        snapshot.register(Reference.TYPE, "10", "Chart");
+        assertEquals("10", snapshot.lookup(Reference.TYPE, "Chart"));
+    }
+
+    @Test
+    public void testRegisterAndEvict() throws Exception {
+        final KimReferenceSnapshot snapshot = KimReferenceSnapshot.getInstance(database);
+
+        snapshot.register(Reference.ROLE, "52", "Reviewer", "KFS-SYS");
+        snapshot.register(Reference.ROLE, null, "Approver", "KFS-SYS");
+        assertEquals("52", snapshot.lookup(Reference.ROLE, "Reviewer", "KFS-SYS"));
+        assertNull(snapshot.lookup(Reference.ROLE, "Approver", "KFS-SYS"));
+        assertEquals(3, snapshot.size(Reference.ROLE));
+
+        snapshot.evict(Reference.ROLE, "Reviewer", "KFS-SYS");
+        assertNull(snapshot.lookup(Reference.ROLE, "Reviewer", "KFS-SYS"));
+        assertEquals(2, snapshot.size(Reference.ROLE));
+    }
+
+    @Test
+    public void testQueryForReference_servedFromSnapshot() throws Exception {
+        final ReferenceChange change = new ReferenceChange();
+        assertEquals("50", change.getRole(database, "Manager", "KFS-SYS"));
+
+        execute("insert into KRIM_ROLE_T values ('52', 'Reviewer', 'KFS-SYS')",
+                "update KRIM_ROLE_T set ROLE_ID = '99' where ROLE_ID = '50'");
+
+        // known keys are not queried again; unknown ones are, and are remembered
+        assertEquals("50", change.getRole(database, "Manager", "KFS-SYS"));
+        assertEquals("52", change.getRole(database, "Reviewer", "KFS-SYS"));
+        assertEquals("52", KimReferenceSnapshot.getInstance(database).lookup(Reference.ROLE, "Reviewer", "KFS-SYS"));
+
+        KimReferenceSnapshot.reset(database);
+        assertEquals("99", change.getRole(database, "Manager", "KFS-SYS"));
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Exposes the role foreign key lookup of {@link KimAbstractChange}
+     */
+    @DatabaseChange(name="referenceSnapshotTest", description = "Resolves role foreign keys", priority = EXTENSION_PRIORITY)
+    public static class ReferenceChange extends KimAbstractChange {
+
+        public ReferenceChange() {
+            super("referenceSnapshotTest", "Resolves role foreign keys", EXTENSION_PRIORITY);
+        }
+
+        @Override
+        protected String getSequenceName() {
+            return null;
+        }
+
+        public SqlStatement[] generateStatements(final Database database) {
+            return new SqlStatement[0];
+        }
+
+        public String getRole(final Database database, final String name, final String namespace) {
+            return getRoleForeignKey(database, name, namespace);
+        }
+    }
+}
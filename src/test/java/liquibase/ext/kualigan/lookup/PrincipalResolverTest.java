@@ -0,0 +1,152 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.UnexpectedLiquibaseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Chunked principal lookups of the {@link PrincipalResolver}: queries per chunk, duplicates and unknown names
+ *
+ * @author Leo Przybylski
+ */
+public class PrincipalResolverTest {
+    private static final int CHUNK_SIZE = 3;
+
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:PRINCIPALS;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))");
+        for (int i = 0; i < 10; i++) {
+            execute(String.format("insert into KRIM_PRNCPL_T values ('%d', 'user%d')", 100 + i, i));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testResolve_chunkBoundaries() throws Exception {
+        assertQueries(CHUNK_SIZE - 1, 1);
+        assertQueries(CHUNK_SIZE, 1);
+        assertQueries(CHUNK_SIZE + 1, 2);
+    }
+
+    @Test
+    public void testResolve_cached() throws Exception {
+        final PrincipalResolver resolver = new PrincipalResolver(CHUNK_SIZE);
+        assertEquals("101", resolver.resolve(database, "user1"));
+
+        final long lookups = KimLookupIndex.PRINCIPAL.getLookups();
+        resolver.request("user1");
+        assertEquals("101", resolver.resolve(database, "user1"));
+        assertEquals(lookups, KimLookupIndex.PRINCIPAL.getLookups());
+    }
+
+    @Test
+    public void testResolve_duplicates() throws Exception {
+        final PrincipalResolver resolver = new PrincipalResolver(CHUNK_SIZE);
+        final long lookups = KimLookupIndex.PRINCIPAL.getLookups();
+        resolver.request("user1", "user1", null, "user2", "user1");
+
+        assertEquals("101", resolver.resolve(database, "user1"));
+        assertEquals("102", resolver.resolve(database, "user2"));
+        assertEquals(lookups + 1, KimLookupIndex.PRINCIPAL.getLookups());
+    }
+
+    @Test
+    public void testResolve_unknown() throws Exception {
+        final PrincipalResolver resolver = new PrincipalResolver(CHUNK_SIZE);
+        resolver.request("user1", "nobody");
+        try {
+            resolver.resolve(database, "nobody");
+            fail("Expected an unknown principal to fail");
+        }
+        catch (UnexpectedLiquibaseException e) {
+            assertEquals("101", resolver.resolve(database, "user1"));
+        }
+
+        // not found names are not remembered
+        execute("insert into KRIM_PRNCPL_T values ('200', 'nobody')");
+        assertEquals("200", resolver.resolve(database, "nobody"));
+    }
+
+    @Test
+    public void testGetInstance() throws Exception {
+        assertSame(PrincipalResolver.getInstance(database), PrincipalResolver.getInstance(database));
+        assertEquals("109", PrincipalResolver.getInstance(database).resolve(database, "user9"));
+    }
+
+    /**
+     * Resolves <code>count</code> queued names with a new resolver and checks the number of queries sent
+     */
+    private void assertQueries(final int count, final int queries) {
+        final PrincipalResolver resolver = new PrincipalResolver(CHUNK_SIZE);
+        for (int i = 0; i < count; i++) {
+            resolver.request("user" + i);
+        }
+
+        final long lookups = KimLookupIndex.PRINCIPAL.getLookups();
+        for (int i = count - 1; i >= 0; i--) {
+            assertEquals(String.valueOf(100 + i), resolver.resolve(database, "user" + i));
+        }
+        assertEquals(String.format("%d names", count), lookups + queries, KimLookupIndex.PRINCIPAL.getLookups());
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
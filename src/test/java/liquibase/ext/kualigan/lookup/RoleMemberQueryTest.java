@@ -0,0 +1,157 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.DatabaseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Resolution of qualified role members through {@link RoleMemberQuery} on large qualifier sets.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberQueryTest {
+    private static final int QUALIFIERS = 200;
+
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:ROLE_MBR;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        final Statement ddl = connection.createStatement();
+        ddl.execute("create table krim_role_mbr_t (role_mbr_id varchar(40), role_id varchar(40), mbr_id varchar(40))");
+        ddl.execute("create table krim_role_mbr_attr_data_t (attr_data_id varchar(40), role_mbr_id varchar(40), kim_attr_defn_id varchar(40), attr_val varchar(400))");
+        ddl.close();
+
+        // Three assignments of the same member: the full qualifier set, one differing in its last value, and one
+        // missing its last qualifier
+        insertMember("RM1", QUALIFIERS, null);
+        insertMember("RM2", QUALIFIERS, "other");
+        insertMember("RM3", QUALIFIERS - 1, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        final Statement ddl = connection.createStatement();
+        ddl.execute("drop all objects");
+        ddl.close();
+        connection.close();
+    }
+
+    @Test
+    public void testBoundQuery_largeQualifierSet() throws Exception {
+        final BoundQuery query = RoleMemberQuery.toBoundQuery("R1", "M1", qualifiers(QUALIFIERS));
+        assertEquals(2 + 2 * QUALIFIERS, query.getParameters().length);
+        assertEquals("RM1", query.queryForString(database));
+    }
+
+    @Test
+    public void testBoundQuery_subsetMatchesAll() throws Exception {
+        // Every assignment carries the first qualifier, so the lookup is ambiguous
+        try {
+            RoleMemberQuery.toBoundQuery("R1", "M1", qualifiers(1)).queryForString(database);
+            fail("Expected ambiguous lookup to fail");
+        }
+        catch (DatabaseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSubquery_largeQualifierSet() throws Exception {
+        final Map<BoundFunction, String> expressions = new LinkedHashMap<BoundFunction, String>();
+        int i = 0;
+        for (final Map.Entry<String, String> qualifier : qualifiers(QUALIFIERS).entrySet()) {
+            expressions.put(new BoundFunction("select kim_attr_defn_id from krim_role_mbr_attr_data_t where attr_data_id = ?", "RM1-" + i++),
+                            qualifier.getValue());
+        }
+        final BoundQuery query = RoleMemberQuery.toBoundQuery(new BoundFunction("select role_id from krim_role_mbr_t where role_mbr_id = ?", "RM1"),
+                                                              "M1", expressions);
+        final BoundFunction subquery = new BoundFunction(query.getSql(), query.getParameters());
+        assertTrue(subquery.getValue().startsWith("(") && subquery.getValue().endsWith(")"));
+        assertEquals(2 + 2 * QUALIFIERS, subquery.getQuery().getParameters().length);
+
+        // inlined, as written offline
+        final Statement literal = connection.createStatement();
+        final ResultSet results = literal.executeQuery("select " + subquery.getValue() + " from dual");
+        assertTrue(results.next());
+        assertEquals("RM1", results.getString(1));
+        literal.close();
+
+        // bound, as run
+        assertEquals("RM1", new BoundQuery("select (" + subquery.getQuery().getSql() + ") from dual",
+                                           subquery.getQuery().getParameters()).queryForString(database));
+    }
+
+    private Map<String, String> qualifiers(final int count) {
+        final Map<String, String> retval = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            retval.put("DEFN" + i, "value'" + i);
+        }
+        return retval;
+    }
+
+    private void insertMember(final String roleMemberId, final int count, final String lastValue) throws Exception {
+        final PreparedStatement member = connection.prepareStatement("insert into krim_role_mbr_t values (?, 'R1', 'M1')");
+        member.setString(1, roleMemberId);
+        member.executeUpdate();
+        member.close();
+
+        final PreparedStatement attribute = connection.prepareStatement("insert into krim_role_mbr_attr_data_t values (?, ?, ?, ?)");
+        int i = 0;
+        for (final Map.Entry<String, String> qualifier : qualifiers(count).entrySet()) {
+            attribute.setString(1, roleMemberId + "-" + i);
+            attribute.setString(2, roleMemberId);
+            attribute.setString(3, qualifier.getKey());
+            attribute.setString(4, lastValue != null && i == count - 1 ? lastValue : qualifier.getValue());
+            attribute.addBatch();
+            i++;
+        }
+        attribute.executeBatch();
+        attribute.close();
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.lookup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reuse, eviction and lifetime of the prepared statements in a {@link StatementCache}
+ *
+ * @author Leo Przybylski
+ */
+public class StatementCacheTest {
+    private Connection connection;
+    private int statementCacheSize;
+
+    @Before
+    public void setUp() throws Exception {
+        statementCacheSize = KimConfiguration.getInstance().getStatementCacheSize();
+        KimConfiguration.getInstance().setStatementCacheSize(2);
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:STMT_CACHE;MODE=Oracle");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StatementCache.close(connection);
+        KimConfiguration.getInstance().setStatementCacheSize(statementCacheSize);
+        connection.close();
+    }
+
+    @Test
+    public void testGetInstance_onlyWhenOpen() throws Exception {
+        assertNull(StatementCache.getInstance(connection));
+        StatementCache.open(connection);
+        final StatementCache cache = StatementCache.getInstance(connection);
+        assertNotNull(cache);
+        StatementCache.open(connection);
+        assertSame(cache, StatementCache.getInstance(connection));
+
+        StatementCache.close(connection);
+        assertNull(StatementCache.getInstance(connection));
+    }
+
+    @Test
+    public void testGetInstance_disabled() throws Exception {
+        KimConfiguration.getInstance().setStatementCacheSize(0);
+        StatementCache.open(connection);
+        assertNull(StatementCache.getInstance(connection));
+    }
+
+    @Test
+    public void testPrepare_hitsAndCreated() throws Exception {
+        StatementCache.open(connection);
+        final StatementCache cache = StatementCache.getInstance(connection);
+
+        final PreparedStatement first = use(cache, "select 1 from dual");
+        assertSame(first, use(cache, "select 1 from dual"));
+        use(cache, "select 2 from dual");
+        assertSame(first, use(cache, "select 1 from dual"));
+
+        assertEquals(2, cache.getCreated());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testPrepare_evictsLeastRecentlyUsed() throws Exception {
+        StatementCache.open(connection);
+        final StatementCache cache = StatementCache.getInstance(connection);
+
+        final PreparedStatement first = use(cache, "select 1 from dual");
+        use(cache, "select 2 from dual");
+        use(cache, "select 3 from dual");
+
+        assertTrue(first.isClosed());
+        assertEquals(2, cache.size());
+        assertNotSame(first, use(cache, "select 1 from dual"));
+        assertEquals(4, cache.getCreated());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testPrepare_evictedWhileHeld() throws Exception {
+        StatementCache.open(connection);
+        final StatementCache cache = StatementCache.getInstance(connection);
+
+        final PreparedStatement held = cache.prepare("select 1 from dual");
+        use(cache, "select 2 from dual");
+        use(cache, "select 3 from dual");
+
+        assertFalse(held.isClosed());
+        assertTrue(held.executeQuery().next());
+        cache.release(held);
+        assertTrue(held.isClosed());
+    }
+
+    @Test
+    public void testClose_whileHeld() throws Exception {
+        StatementCache.open(connection);
+        final StatementCache cache = StatementCache.getInstance(connection);
+
+        final PreparedStatement held = cache.prepare("select 1 from dual");
+        final PreparedStatement idle = use(cache, "select 2 from dual");
+        StatementCache.close(connection);
+
+        assertTrue(idle.isClosed());
+        assertFalse(held.isClosed());
+        cache.release(held);
+        assertTrue(held.isClosed());
+    }
+
+    private PreparedStatement use(final StatementCache cache, final String sql) throws Exception {
+        final PreparedStatement retval = cache.prepare(sql);
+        cache.release(retval);
+        return retval;
+    }
+}
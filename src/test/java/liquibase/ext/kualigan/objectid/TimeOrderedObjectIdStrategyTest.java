@@ -0,0 +1,175 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.objectid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Layout, order and uniqueness of the ids of {@link TimeOrderedObjectIdStrategy}, including when the sequence runs out
+ * within one millisecond.
+ *
+ * @author Leo Przybylski
+ */
+public class TimeOrderedObjectIdStrategyTest {
+    private static final int IDS = 50000;
+    private static final int THREADS = 4;
+
+    @Test
+    public void testNext_versionSevenLayout() {
+        final long before = System.currentTimeMillis();
+        final UUID id = new TimeOrderedObjectIdStrategy().next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertTrue(millis(id) >= before && millis(id) <= System.currentTimeMillis());
+        assertEquals(36, ((String) new TimeOrderedObjectIdStrategy().nextObjectId(null)).length());
+    }
+
+    @Test
+    public void testNext_orderedAndUnique() {
+        final TimeOrderedObjectIdStrategy strategy = new TimeOrderedObjectIdStrategy();
+        final Set<String> ids = new HashSet<String>();
+        String previous = "";
+        for (int i = 0; i < IDS; i++) {
+            final String id = (String) strategy.nextObjectId(null);
+            assertTrue(id + " after " + previous, id.compareTo(previous) > 0);
+            assertEquals(7, UUID.fromString(id).version());
+            ids.add(id);
+            previous = id;
+        }
+        assertEquals(IDS, ids.size());
+    }
+
+    @Test
+    public void testNext_sequenceRollsOver() {
+        final ManualClockStrategy strategy = new ManualClockStrategy(1400000000000L);
+        final UUID first = strategy.next();
+        assertEquals(1400000000000L, millis(first));
+        assertTrue(sequence(first) < 0x800);
+
+        // the rest of the sequence stays in the same millisecond
+        UUID previous = first;
+        for (int expected = sequence(first) + 1; expected <= 0xfff; expected++) {
+            final UUID id = strategy.next();
+            assertEquals(1400000000000L, millis(id));
+            assertEquals(expected, sequence(id));
+            assertTrue(id.compareTo(previous) > 0);
+            previous = id;
+        }
+
+        // then the next millisecond is borrowed, and kept once the clock catches up
+        final UUID borrowed = strategy.next();
+        assertEquals(1400000000001L, millis(borrowed));
+        assertEquals(0, sequence(borrowed));
+        assertTrue(borrowed.compareTo(previous) > 0);
+
+        strategy.setMillis(1400000000001L);
+        final UUID caughtUp = strategy.next();
+        assertEquals(1400000000001L, millis(caughtUp));
+        assertEquals(1, sequence(caughtUp));
+
+        strategy.setMillis(1400000000005L);
+        final UUID later = strategy.next();
+        assertEquals(1400000000005L, millis(later));
+        assertTrue(later.compareTo(caughtUp) > 0);
+        assertEquals(7, later.version());
+    }
+
+    @Test
+    public void testNext_uniqueAcrossThreads() throws Exception {
+        final TimeOrderedObjectIdStrategy strategy = new TimeOrderedObjectIdStrategy();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                tasks.add(new Callable<List<String>>() {
+                        public List<String> call() {
+                            final List<String> retval = new ArrayList<String>();
+                            for (int j = 0; j < IDS; j++) {
+                                retval.add((String) strategy.nextObjectId(null));
+                            }
+                            return retval;
+                        }
+                    });
+            }
+
+            final Set<String> ids = new HashSet<String>();
+            for (final Future<List<String>> result : executor.invokeAll(tasks)) {
+                final List<String> thread = result.get();
+                final List<String> sorted = new ArrayList<String>(thread);
+                Collections.sort(sorted);
+                assertEquals(sorted, thread);
+                ids.addAll(thread);
+            }
+            assertEquals(THREADS * IDS, ids.size());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long millis(final UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static int sequence(final UUID id) {
+        return (int) (id.getMostSignificantBits() & 0xfff);
+    }
+
+    /**
+     * Reads the time from a clock the test sets
+     */
+    private static class ManualClockStrategy extends TimeOrderedObjectIdStrategy {
+        private long millis;
+
+        private ManualClockStrategy(final long millis) {
+            this.millis = millis;
+        }
+
+        public void setMillis(final long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return millis;
+        }
+    }
+}
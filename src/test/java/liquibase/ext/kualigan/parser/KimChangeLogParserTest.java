@@ -0,0 +1,139 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import liquibase.change.Change;
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.parser.core.xml.XMLChangeLogSAXParser;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.resource.ResourceAccessor;
+import liquibase.serializer.LiquibaseSerializable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The sample changelogs read by {@link KimChangeLogParser} with the {@link KimChangeLogReader} yield the same
+ * changesets and change properties as the Liquibase SAX parser.
+ *
+ * @author Leo Przybylski
+ */
+public class KimChangeLogParserTest {
+    private static final String[] CHANGELOGS = {
+        "liquibase/ext/kualigan/change/krim_role_t.xml",
+        "liquibase/ext/kualigan/change/krim_typ_t.xml",
+        "liquibase/ext/kualigan/compaction/kim_changes.xml",
+        "liquibase/ext/kualigan/execution/duplicate_roles.xml"
+    };
+
+    private final ResourceAccessor resourceAccessor = new ClassLoaderResourceAccessor();
+    private boolean useStreamingParser;
+
+    @Before
+    public void setUp() throws Exception {
+        useStreamingParser = KimConfiguration.getInstance().getUseStreamingParser();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KimConfiguration.getInstance().setUseStreamingParser(useStreamingParser);
+    }
+
+    @Test
+    public void testRead_sameAsSax() throws Exception {
+        for (final String changeLogFile : CHANGELOGS) {
+            KimConfiguration.getInstance().setUseStreamingParser(false);
+            final DatabaseChangeLog sax = new XMLChangeLogSAXParser().parse(changeLogFile, new ChangeLogParameters(), resourceAccessor);
+            KimConfiguration.getInstance().setUseStreamingParser(true);
+            final DatabaseChangeLog stax = new KimChangeLogParser().read(changeLogFile, new ChangeLogParameters(), resourceAccessor);
+
+            assertNotNull(changeLogFile, stax);
+            assertFalse(changeLogFile, sax.getChangeSets().isEmpty());
+            assertEquals(changeLogFile, sax.getChangeSets().size(), stax.getChangeSets().size());
+            for (int i = 0; i < sax.getChangeSets().size(); i++) {
+                assertSameChangeSet(sax.getChangeSets().get(i), stax.getChangeSets().get(i));
+            }
+        }
+    }
+
+    private void assertSameChangeSet(final ChangeSet expected, final ChangeSet actual) {
+        final String message = expected.toString(false);
+        assertEquals(message, expected.toString(false), actual.toString(false));
+        assertEquals(message, String.valueOf(expected.getContexts()), String.valueOf(actual.getContexts()));
+        assertEquals(message, expected.isAlwaysRun(), actual.isAlwaysRun());
+        assertEquals(message, expected.isRunOnChange(), actual.isRunOnChange());
+        assertEquals(message, expected.isRunInTransaction(), actual.isRunInTransaction());
+
+        final List<Change> expectedChanges = expected.getChanges();
+        final List<Change> actualChanges = actual.getChanges();
+        assertEquals(message, expectedChanges.size(), actualChanges.size());
+        for (int i = 0; i < expectedChanges.size(); i++) {
+            assertSameValue(message + " change " + i, expectedChanges.get(i), actualChanges.get(i));
+        }
+        assertEquals(message, expected.generateCheckSum(), actual.generateCheckSum());
+    }
+
+    private void assertSameValue(final String path, final Object expected, final Object actual) {
+        if (expected == null || actual == null) {
+            assertSame(path, expected, actual);
+            return;
+        }
+        if (expected instanceof LiquibaseSerializable) {
+            assertEquals(path, expected.getClass(), actual.getClass());
+            final LiquibaseSerializable expectedObject = (LiquibaseSerializable) expected;
+            final LiquibaseSerializable actualObject = (LiquibaseSerializable) actual;
+            for (final String field : expectedObject.getSerializableFields()) {
+                assertSameValue(path + "." + field, expectedObject.getSerializableFieldValue(field), actualObject.getSerializableFieldValue(field));
+            }
+            return;
+        }
+        if (expected instanceof Collection) {
+            final Collection<?> expectedValues = (Collection<?>) expected;
+            final Collection<?> actualValues = (Collection<?>) actual;
+            assertEquals(path, expectedValues.size(), actualValues.size());
+            final Iterator<?> actualIterator = actualValues.iterator();
+            int i = 0;
+            for (final Object each : expectedValues) {
+                assertSameValue(path + "[" + i++ + "]", each, actualIterator.next());
+            }
+            return;
+        }
+        assertEquals(path, expected, actual);
+    }
+}
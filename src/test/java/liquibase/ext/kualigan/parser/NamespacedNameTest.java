@@ -0,0 +1,86 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Canonical {@link NamespacedName} keys, and the half-built keys setters pass through on the way to one.
+ *
+ * @author Leo Przybylski
+ */
+public class NamespacedNameTest {
+
+    @Before
+    public void setUp() {
+        NamespacedName.clear();
+    }
+
+    @Test
+    public void testValueOf_sharesEqualKeys() {
+        final NamespacedName first = NamespacedName.valueOf(new String("KFS-SYS"), new String("Chart Manager"));
+        final NamespacedName second = NamespacedName.valueOf(new String("KFS-SYS"), new String("Chart Manager"));
+
+        assertSame(first, second);
+        assertSame(StringPool.getInstance().intern("KFS-SYS"), first.getNamespace());
+        assertSame(StringPool.getInstance().intern("Chart Manager"), first.getName());
+        final NamespacedName other = NamespacedName.valueOf("KFS-COA", "Chart Manager");
+        assertNotSame(first, other);
+        assertEquals(2, NamespacedName.size());
+    }
+
+    @Test
+    public void testWith_halfBuiltKeysAreNotPooled() {
+        final NamespacedName canonical = NamespacedName.valueOf("KFS-SYS", "Chart Manager");
+        final NamespacedName empty = NamespacedName.valueOf(null, null);
+        assertEquals(2, NamespacedName.size());
+
+        final NamespacedName named = empty.withName("Chart Manager");
+        final NamespacedName again = empty.withName("Chart Manager");
+        assertEquals(named, again);
+        assertNotSame(named, again);
+        assertNull(named.getNamespace());
+        final NamespacedName namespaced = empty.withNamespace("KFS-SYS");
+        assertNotSame(namespaced, empty.withNamespace("KFS-SYS"));
+        assertEquals(2, NamespacedName.size());
+
+        // canonical once both parts are set, whichever was set last
+        assertSame(canonical, named.withNamespace("KFS-SYS"));
+        assertSame(canonical, namespaced.withName("Chart Manager"));
+        assertSame(canonical, canonical.withName("Chart Manager"));
+        assertEquals(2, NamespacedName.size());
+
+        final NamespacedName renamed = canonical.withName("Chart Reviewer");
+        assertSame(NamespacedName.valueOf("KFS-SYS", "Chart Reviewer"), renamed);
+        assertEquals(3, NamespacedName.size());
+    }
+}
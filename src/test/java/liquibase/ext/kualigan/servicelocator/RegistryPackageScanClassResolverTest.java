@@ -0,0 +1,67 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.servicelocator;
+
+import liquibase.change.Change;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.change.AddPermissionAttribute;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lookups through the {@link RegistryPackageScanClassResolver}. The test classes directory ships no registry, so it
+ * stands in for another extension jar such as {@code kualigan-lb-extensions}.
+ *
+ * @author Leo Przybylski
+ */
+public class RegistryPackageScanClassResolverTest {
+
+    @Test
+    public void testFindImplementations_scansOtherExtensions() throws Exception {
+        final Set<?> found = new RegistryPackageScanClassResolver().findImplementations(ExtensionService.class, "liquibase.ext");
+
+        assertTrue(found.contains(ScannedExtensionService.class));
+    }
+
+    @Test
+    public void testFindImplementations_findsOwnServices() throws Exception {
+        final Set<?> found = new RegistryPackageScanClassResolver().findImplementations(Change.class, "liquibase.ext");
+
+        assertTrue(found.contains(AddPermissionAttribute.class));
+    }
+
+    /**
+     * Service interface of the stand-in extension
+     */
+    public static interface ExtensionService {
+    }
+
+    public static class ScannedExtensionService implements ExtensionService {
+    }
+}
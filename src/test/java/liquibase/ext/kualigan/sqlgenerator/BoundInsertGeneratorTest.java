@@ -0,0 +1,146 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.executor.ExecutorService;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.execution.CachingJdbcExecutor;
+import liquibase.ext.kualigan.lookup.BoundSql;
+import liquibase.ext.kualigan.lookup.StatementCache;
+import liquibase.ext.kualigan.statement.AssignMemberStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Inserts with nested lookups generated as {@link BoundSql}: literals in the SQL shown offline, parameters bound when
+ * the {@link CachingJdbcExecutor} runs them.
+ *
+ * @author Leo Przybylski
+ */
+public class BoundInsertGeneratorTest {
+    private Connection connection;
+    private Database database;
+    private int statementCacheSize;
+
+    @Before
+    public void setUp() throws Exception {
+        statementCacheSize = KimConfiguration.getInstance().getStatementCacheSize();
+        KimConfiguration.getInstance().setStatementCacheSize(10);
+
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:BOUND_INSERT;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        StatementCache.open(database);
+        ExecutorService.getInstance().setExecutor(database, new CachingJdbcExecutor());
+
+        execute("create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1), VER_NBR decimal(8), OBJ_ID varchar(36))",
+                "create sequence KRIM_ROLE_MBR_ID_S start with 100",
+                "insert into KRIM_PRNCPL_T values ('1', 'o''brien')",
+                "insert into KRIM_PRNCPL_T values ('2', 'asmith')",
+                "insert into KRIM_ROLE_T values ('50', 'Chart''s Manager', 'KFS-SYS')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StatementCache.close(database);
+        ExecutorService.getInstance().clearExecutor(database);
+        KimConfiguration.getInstance().setStatementCacheSize(statementCacheSize);
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testGenerateSql_literalAndBound() throws Exception {
+        final Sql[] sql = SqlGeneratorFactory.getInstance().generateSql(assign("o'brien"), database);
+
+        assertEquals(1, sql.length);
+        assertTrue(sql[0] instanceof BoundSql);
+        assertTrue(sql[0].toSql().contains("'o''brien'"));
+        assertTrue(sql[0].toSql().contains("'Chart''s Manager'"));
+        final String bound = ((BoundSql) sql[0]).getQuery().getSql();
+        assertFalse(bound.contains("brien"));
+        assertFalse(bound.contains("Manager"));
+        assertTrue(bound.contains("PRNCPL_NM = ?"));
+    }
+
+    @Test
+    public void testExecute_cachedStatement() throws Exception {
+        ExecutorService.getInstance().getExecutor(database).execute(assign("o'brien"));
+        ExecutorService.getInstance().getExecutor(database).execute(assign("asmith"));
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_MBR_T where ROLE_ID = '50'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_T where MBR_ID = '1'"));
+        final StatementCache cache = StatementCache.getInstance(connection);
+        assertEquals(1, cache.getCreated());
+        assertEquals(1, cache.getHits());
+    }
+
+    private AssignMemberStatement assign(final String member) {
+        return new AssignMemberStatement("KFS-SYS", "P", member, null, "Chart's Manager", "Y", null, null);
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.core.OracleDatabase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.sqlgenerator.oracle.BulkAssignMembersGenerator;
+import liquibase.ext.kualigan.statement.BulkAssignMembersStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk member loads through the {@link BulkAssignMembersStatement}: the per-member fallback on H2, and the blocks the
+ * Oracle generator splits a large load into.
+ *
+ * @author Leo Przybylski
+ */
+public class BulkAssignMembersGeneratorTest {
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:BULK_MBR;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_TYP_T (KIM_TYP_ID varchar(40), NM varchar(100))",
+                "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), NM varchar(100))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1), VER_NBR decimal(8), OBJ_ID varchar(36))",
+                "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400), VER_NBR decimal(8), OBJ_ID varchar(36))",
+                "create sequence KRIM_ROLE_MBR_ID_S start with 100",
+                "create sequence KRIM_ATTR_DATA_ID_S start with 500",
+                "insert into KRIM_PRNCPL_T values ('1', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('2', 'asmith')",
+                "insert into KRIM_ROLE_T values ('50', 'Chart Manager', 'KFS-SYS')",
+                "insert into KRIM_ROLE_T values ('60', 'Manager', 'KFS-AR')",
+                "insert into KRIM_TYP_T values ('30', 'Chart')",
+                "insert into KRIM_ATTR_DEFN_T values ('20', 'chartOfAccountsCode')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testGenerateSql_perMemberFallback() throws Exception {
+        final BulkAssignMembersStatement statement = new BulkAssignMembersStatement("KFS-SYS", "Chart Manager");
+        statement.addMember("P", "jdoe", null).addAttribute("Chart", "chartOfAccountsCode", "BL");
+        statement.addMember("P", "asmith", null);
+        statement.addMember("R", "Manager", "KFS-AR");
+
+        for (final Sql sql : SqlGeneratorFactory.getInstance().generateSql(statement, database)) {
+            execute(sql.toSql());
+        }
+
+        assertEquals("3", queryForString("select count(*) from KRIM_ROLE_MBR_T where ROLE_ID = '50'"));
+        assertEquals("60", queryForString("select MBR_ID from KRIM_ROLE_MBR_T where MBR_TYP_CD = 'R'"));
+        final String memberId = queryForString("select ROLE_MBR_ID from KRIM_ROLE_MBR_T where MBR_ID = '1'");
+        assertEquals(memberId, queryForString("select ROLE_MBR_ID from KRIM_ROLE_MBR_ATTR_DATA_T where ATTR_VAL = 'BL'"));
+        assertEquals("20", queryForString("select KIM_ATTR_DEFN_ID from KRIM_ROLE_MBR_ATTR_DATA_T"));
+    }
+
+    @Test
+    public void testGenerateSql_oracleBlocks() throws Exception {
+        final BulkAssignMembersStatement statement = new BulkAssignMembersStatement("KFS-SYS", "Chart Manager");
+        final int members = 2 * AbstractBulkAssignMembersGenerator.MEMBERS_PER_BLOCK + 1;
+        for (int i = 0; i < members; i++) {
+            statement.addMember("P", "user" + i, null).addAttribute("Chart", "chartOfAccountsCode", "B'L");
+        }
+
+        final Sql[] blocks = new BulkAssignMembersGenerator().generateSql(statement, new OracleDatabase(), null);
+        assertEquals(3, blocks.length);
+        for (final Sql block : blocks) {
+            assertTrue(block.toSql().startsWith("declare"));
+            assertTrue(block.toSql().contains("forall i in 1 .. v_mbr_nm.count"));
+            assertTrue(block.toSql().endsWith("end;"));
+        }
+        assertTrue(blocks[2].toSql().contains("names_t('user2000')"));
+        assertTrue(blocks[0].toSql().contains("'B''L'"));
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sqlgenerator;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.executor.ExecutorService;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import liquibase.ext.kualigan.KimConfiguration;
+import liquibase.ext.kualigan.lookup.RoleMemberClosure;
+import liquibase.ext.kualigan.statement.RoleMemberClosureStatement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@code KRIM_ROLE_MBR_CLOSURE_T} built, extended and refreshed by the {@link DefaultRoleMemberClosureGenerator} on H2.
+ * Roles 1, 2 and 3 are nested in that order and principal p1 is a member of role 3.
+ *
+ * @author Leo Przybylski
+ */
+public class RoleMemberClosureGeneratorTest {
+    private Connection connection;
+    private Database database;
+    private int roleClosureDepth;
+
+    @Before
+    public void setUp() throws Exception {
+        roleClosureDepth = KimConfiguration.getInstance().getRoleClosureDepth();
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:ROLE_CLOSURE;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_ROLE_T (ROLE_ID varchar(40), ROLE_NM varchar(80), NMSPC_CD varchar(40))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+                "create table KRIM_ROLE_MBR_CLOSURE_T (ANCSTR_ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1), DPTH decimal(8))",
+                "insert into KRIM_ROLE_T values ('1', 'Top', 'KFS-SYS')",
+                "insert into KRIM_ROLE_T values ('2', 'Middle', 'KFS-SYS')",
+                "insert into KRIM_ROLE_T values ('3', 'Bottom', 'KFS-SYS')",
+                "insert into KRIM_ROLE_MBR_T values ('10', '1', '2', 'R')",
+                "insert into KRIM_ROLE_MBR_T values ('11', '2', '3', 'R')",
+                "insert into KRIM_ROLE_MBR_T values ('12', '3', 'p1', 'P')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KimConfiguration.getInstance().setRoleClosureDepth(roleClosureDepth);
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        run(new RoleMemberClosureStatement());
+
+        assertEquals(Arrays.asList("1>2@1", "1>3@2", "1>p1@3", "2>3@1", "2>p1@2", "3>p1@1"), closure());
+        assertEquals(0, RoleMemberClosure.countBeyondDepth(database));
+    }
+
+    @Test
+    public void testBuild_beyondDepth() throws Exception {
+        KimConfiguration.getInstance().setRoleClosureDepth(2);
+
+        run(new RoleMemberClosureStatement());
+
+        assertEquals(Arrays.asList("1>2@1", "1>3@2", "2>3@1", "2>p1@2", "3>p1@1"), closure());
+        assertEquals(1, RoleMemberClosure.countBeyondDepth(database));
+    }
+
+    @Test
+    public void testAddition() throws Exception {
+        run(new RoleMemberClosureStatement());
+        execute("insert into KRIM_ROLE_T values ('4', 'Other', 'KFS-SYS')",
+                "insert into KRIM_ROLE_MBR_T values ('13', '4', '1', 'R')");
+
+        run(new RoleMemberClosureStatement("'4'", "'1'", "R"));
+
+        assertEquals(Arrays.asList("1>2@1", "1>3@2", "1>p1@3", "2>3@1", "2>p1@2", "3>p1@1",
+                                   "4>1@1", "4>2@2", "4>3@3", "4>p1@4"), closure());
+    }
+
+    @Test
+    public void testAddition_shorterPath() throws Exception {
+        run(new RoleMemberClosureStatement());
+        execute("insert into KRIM_ROLE_MBR_T values ('13', '1', '3', 'R')");
+
+        run(new RoleMemberClosureStatement("'1'", "'3'", "R"));
+
+        // role 3 and everything below it move up a level in role 1
+        assertEquals(Arrays.asList("1>2@1", "1>3@1", "1>p1@2", "2>3@1", "2>p1@2", "3>p1@1"), closure());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        run(new RoleMemberClosureStatement());
+        // an assignment rolled back
+        execute("delete from KRIM_ROLE_MBR_T where ROLE_MBR_ID = '11'");
+
+        run(new RoleMemberClosureStatement("select ROLE_ID from KRIM_ROLE_T where ROLE_ID = '2'"));
+
+        assertEquals(Arrays.asList("1>2@1", "3>p1@1"), closure());
+    }
+
+    private void run(final SqlStatement statement) throws Exception {
+        ExecutorService.getInstance().getExecutor(database).execute(statement);
+        connection.commit();
+    }
+
+    /**
+     * @return closure rows as ancestor&gt;member@depth
+     */
+    private List<String> closure() throws Exception {
+        final List<String> retval = new ArrayList<String>();
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery("select ANCSTR_ROLE_ID, MBR_ID, DPTH from KRIM_ROLE_MBR_CLOSURE_T order by 1, 2");
+            while (results.next()) {
+                retval.add(results.getString(1) + ">" + results.getString(2) + "@" + results.getInt(3));
+            }
+        }
+        finally {
+            statement.close();
+        }
+        return retval;
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+}
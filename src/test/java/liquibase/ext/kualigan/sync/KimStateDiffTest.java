@@ -0,0 +1,240 @@
+// Copyright 2014 Leo Przybylski. All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without modification, are
+// permitted provided that the following conditions are met:
+//
+//    1. Redistributions of source code must retain the above copyright notice, this list of
+//       conditions and the following disclaimer.
+//
+//    2. Redistributions in binary form must reproduce the above copyright notice, this list
+//       of conditions and the following disclaimer in the documentation and/or other materials
+//       provided with the distribution.
+//
+// THIS SOFTWARE IS PROVIDED BY Leo Przybylski ''AS IS'' AND ANY EXPRESS OR IMPLIED
+// WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+// FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> OR
+// CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+// SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+// ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+// ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+// The views and conclusions contained in the software and documentation are those of the
+// authors and should not be interpreted as representing official policies, either expressed
+// or implied, of Leo Przybylski.
+package liquibase.ext.kualigan.sync;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.executor.ExecutorService;
+import liquibase.statement.SqlStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Namespaces brought to the state of a {@link KimStateSpec} through its {@link KimStateDiff} on H2.
+ *
+ * @author Leo Przybylski
+ */
+public class KimStateDiffTest {
+    private static final String CHART_MANAGER = "namespace: KFS-SYS\n"
+        + "roles:\n"
+        + "  - name: Chart Manager\n"
+        + "    type: Chart\n"
+        + "    typeNamespace: KFS-COA\n"
+        + "    description: Manages a chart\n"
+        + "    members:\n"
+        + "      - principal: jdoe\n"
+        + "        attributes:\n"
+        + "          chartOfAccountsCode: BL\n"
+        + "      - role: Manager\n"
+        + "    permissions:\n"
+        + "      - namespace: KFS-COA\n"
+        + "        name: Maintain Chart\n"
+        + "  - name: Manager\n"
+        + "    type: Chart\n"
+        + "    typeNamespace: KFS-COA\n";
+
+    private Connection connection;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:KIM_STATE;MODE=Oracle");
+        database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+
+        execute("create table KRIM_TYP_T (KIM_TYP_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100))",
+                "create table KRIM_ATTR_DEFN_T (KIM_ATTR_DEFN_ID varchar(40), NM varchar(100))",
+                "create table KRIM_PERM_T (PERM_ID varchar(40), NMSPC_CD varchar(40), NM varchar(100))",
+                "create table KRIM_PRNCPL_T (PRNCPL_ID varchar(40), PRNCPL_NM varchar(100))",
+                "create table KRIM_ROLE_T (ROLE_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_NM varchar(80), NMSPC_CD varchar(40), DESC_TXT varchar(4000), KIM_TYP_ID varchar(40), ACTV_IND varchar(1))",
+                "create table KRIM_ROLE_MBR_T (ROLE_MBR_ID varchar(40), VER_NBR decimal(8), OBJ_ID varchar(36), ROLE_ID varchar(40), MBR_ID varchar(40), MBR_TYP_CD varchar(1))",
+                "create table KRIM_ROLE_MBR_ATTR_DATA_T (ATTR_DATA_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_MBR_ID varchar(40), KIM_TYP_ID varchar(40), KIM_ATTR_DEFN_ID varchar(40), ATTR_VAL varchar(400))",
+                "create table KRIM_ROLE_RSP_ACTN_T (ROLE_RSP_ACTN_ID varchar(40), ROLE_MBR_ID varchar(40))",
+                "create table KRIM_ROLE_PERM_T (ROLE_PERM_ID varchar(40), OBJ_ID varchar(36), VER_NBR decimal(8), ROLE_ID varchar(40), PERM_ID varchar(40), ACTV_IND varchar(1))",
+                "create sequence KRIM_ROLE_ID_S start with 100",
+                "create sequence KRIM_ROLE_MBR_ID_S start with 200",
+                "create sequence KRIM_ATTR_DATA_ID_S start with 300",
+                "create sequence KRIM_ROLE_PERM_ID_S start with 400",
+                "insert into KRIM_TYP_T values ('30', 'KFS-COA', 'Chart')",
+                "insert into KRIM_ATTR_DEFN_T values ('20', 'chartOfAccountsCode')",
+                "insert into KRIM_PERM_T values ('10', 'KFS-COA', 'Maintain Chart')",
+                "insert into KRIM_PRNCPL_T values ('1', 'jdoe')",
+                "insert into KRIM_PRNCPL_T values ('2', 'asmith')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute("drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        sync(CHART_MANAGER, true);
+
+        assertEquals("Manages a chart", queryForString("select DESC_TXT from KRIM_ROLE_T where ROLE_NM = 'Chart Manager'"));
+        assertEquals("30", queryForString("select KIM_TYP_ID from KRIM_ROLE_T where ROLE_NM = 'Manager'"));
+        final String chartManager = queryForString("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = 'Chart Manager'");
+        final String manager = queryForString("select ROLE_ID from KRIM_ROLE_T where ROLE_NM = 'Manager'");
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_MBR_T where ROLE_ID = '" + chartManager + "'"));
+        assertEquals("R", queryForString("select MBR_TYP_CD from KRIM_ROLE_MBR_T where MBR_ID = '" + manager + "'"));
+        assertEquals("BL", queryForString("select a.ATTR_VAL from KRIM_ROLE_MBR_ATTR_DATA_T a, KRIM_ROLE_MBR_T m "
+                                          + "where a.ROLE_MBR_ID = m.ROLE_MBR_ID and m.MBR_ID = '1' and a.KIM_ATTR_DEFN_ID = '20'"));
+        assertEquals("10", queryForString("select PERM_ID from KRIM_ROLE_PERM_T where ROLE_ID = '" + chartManager + "'"));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        execute("insert into KRIM_ROLE_T values ('50', 'obj-50', 1, 'Chart Manager', 'KFS-SYS', 'Old description', '30', 'Y')");
+
+        sync("namespace: KFS-SYS\n"
+             + "roles:\n"
+             + "  - name: Chart Manager\n"
+             + "    type: Chart\n"
+             + "    typeNamespace: KFS-COA\n"
+             + "    active: 'N'\n", false);
+
+        assertEquals("N", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '50'"));
+        // no description in the spec leaves the current one
+        assertEquals("Old description", queryForString("select DESC_TXT from KRIM_ROLE_T where ROLE_ID = '50'"));
+        assertEquals("30", queryForString("select KIM_TYP_ID from KRIM_ROLE_T where ROLE_ID = '50'"));
+
+        sync("namespace: KFS-SYS\n"
+             + "roles:\n"
+             + "  - name: Chart Manager\n"
+             + "    type: Chart\n"
+             + "    typeNamespace: KFS-COA\n"
+             + "    description: New description\n", false);
+
+        assertEquals("New description", queryForString("select DESC_TXT from KRIM_ROLE_T where ROLE_ID = '50'"));
+        assertEquals("Y", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '50'"));
+    }
+
+    @Test
+    public void testUpdate_roleWithoutType() throws Exception {
+        execute("insert into KRIM_ROLE_T values ('50', 'obj-50', 1, 'Chart Manager', 'KFS-SYS', 'Manages a chart', '30', 'N')");
+
+        final KimStateDiff diff = sync("namespace: KFS-SYS\n"
+                                       + "roles:\n"
+                                       + "  - name: Chart Manager\n"
+                                       + "    members:\n"
+                                       + "      - principal: jdoe\n", false);
+
+        assertEquals("roles +0 ~0 -0, members +1 -0, permissions +0 ~0 -0", diff.getSummary());
+        assertEquals("N", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '50'"));
+        assertEquals("Manages a chart", queryForString("select DESC_TXT from KRIM_ROLE_T where ROLE_ID = '50'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_T where ROLE_ID = '50'"));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        execute("insert into KRIM_ROLE_T values ('50', 'obj-50', 1, 'Chart Manager', 'KFS-SYS', 'Manages a chart', '30', 'Y')",
+                "insert into KRIM_ROLE_T values ('60', 'obj-60', 1, 'Retired', 'KFS-SYS', 'Not in the spec', '30', 'Y')",
+                "insert into KRIM_ROLE_MBR_T values ('70', 1, 'obj-70', '50', '1', 'P')",
+                "insert into KRIM_ROLE_MBR_T values ('71', 1, 'obj-71', '50', '2', 'P')",
+                "insert into KRIM_ROLE_PERM_T values ('80', 'obj-80', 1, '50', '10', 'Y')");
+        final String spec = "namespace: KFS-SYS\n"
+            + "roles:\n"
+            + "  - name: Chart Manager\n"
+            + "    members:\n"
+            + "      - principal: jdoe\n";
+
+        sync(spec, false);
+
+        assertEquals("2", queryForString("select count(*) from KRIM_ROLE_MBR_T where ROLE_ID = '50'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_PERM_T"));
+        assertEquals("Y", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '60'"));
+
+        sync(spec, true);
+
+        assertEquals("70", queryForString("select ROLE_MBR_ID from KRIM_ROLE_MBR_T where ROLE_ID = '50'"));
+        assertEquals("1", queryForString("select count(*) from KRIM_ROLE_MBR_T"));
+        assertEquals("0", queryForString("select count(*) from KRIM_ROLE_PERM_T"));
+        assertEquals("N", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '60'"));
+        assertEquals("Y", queryForString("select ACTV_IND from KRIM_ROLE_T where ROLE_ID = '50'"));
+    }
+
+    @Test
+    public void testUnchanged_onlyReads() throws Exception {
+        assertFalse(sync(CHART_MANAGER, true).isEmpty());
+
+        final KimStateSpec spec = read(CHART_MANAGER);
+        final KimStateDiff diff = new KimStateDiff(spec, KimStateSnapshot.load(database, spec), true);
+
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.toStatements(database).isEmpty());
+    }
+
+    private KimStateDiff sync(final String yaml, final boolean prune) throws Exception {
+        final KimStateSpec spec = read(yaml);
+        final KimStateDiff retval = new KimStateDiff(spec, KimStateSnapshot.load(database, spec), prune);
+        for (final SqlStatement statement : retval.toStatements(database)) {
+            ExecutorService.getInstance().getExecutor(database).execute(statement);
+        }
+        connection.commit();
+        return retval;
+    }
+
+    private KimStateSpec read(final String yaml) throws Exception {
+        return KimStateSpec.read(new ByteArrayInputStream(yaml.getBytes("UTF-8")), null);
+    }
+
+    private void execute(final String... sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            for (final String each : sql) {
+                statement.execute(each);
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    private String queryForString(final String sql) throws Exception {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet results = statement.executeQuery(sql);
+            assertTrue(results.next());
+            return results.getString(1);
+        }
+        finally {
+            statement.close();
+        }
+    }
+}